@@ -177,6 +177,12 @@ BEGIN
                         END IF;
                     END IF;
                 END IF;
+                DELETE
+                FROM ts_rollup
+                WHERE ts < (EXTRACT(EPOCH FROM make_date(partition_by_max_ttl_year::integer,
+                                                         COALESCE(partition_by_max_ttl_month, '1')::integer,
+                                                         COALESCE(partition_by_max_ttl_day, '1')::integer)::timestamp) *
+                            1000)::bigint;
             END IF;
         END IF;
     END IF;
@@ -22,6 +22,19 @@ BEGIN
 END;
 $$ LANGUAGE plpgsql;
 
+CREATE OR REPLACE FUNCTION delete_records_from_ts_rollup(entity_ids varchar, ttl bigint) RETURNS void AS
+$$
+BEGIN
+    -- buckets that contain the ttl are recomputed from the remaining data
+    EXECUTE format(
+            'INSERT INTO ts_rollup_dirty (entity_id, key, ts, version) SELECT DISTINCT entity_id, key, %L::bigint, 0 FROM ts_rollup WHERE entity_id IN (%s) AND level = 2 AND ts < %L::bigint AND ts + 86400000 > %L::bigint ON CONFLICT (entity_id, key, ts) DO UPDATE SET version = ts_rollup_dirty.version + 1',
+            ttl - mod(ttl, 60000), entity_ids, ttl, ttl);
+    EXECUTE format(
+            'DELETE FROM ts_rollup WHERE entity_id IN (%s) AND ((level = 0 AND ts <= %L::bigint) OR (level = 1 AND ts <= %L::bigint) OR (level = 2 AND ts <= %L::bigint))',
+            entity_ids, ttl - 60000, ttl - 3600000, ttl - 86400000);
+END;
+$$ LANGUAGE plpgsql;
+
 CREATE OR REPLACE FUNCTION delete_device_records_from_ts_kv(tenant_id uuid, customer_id uuid, ttl bigint,
                                                             OUT deleted bigint) AS
 $$
@@ -29,6 +42,7 @@ BEGIN
     EXECUTE format(
             'WITH deleted AS (DELETE FROM ts_kv WHERE entity_id IN (SELECT device.id as entity_id FROM device WHERE tenant_id = %L and customer_id = %L) AND ts < %L::bigint RETURNING *) SELECT count(*) FROM deleted',
             tenant_id, customer_id, ttl) into deleted;
+    PERFORM delete_records_from_ts_rollup(format('SELECT device.id as entity_id FROM device WHERE tenant_id = %L and customer_id = %L', tenant_id, customer_id), ttl);
 END;
 $$ LANGUAGE plpgsql;
 
@@ -39,6 +53,7 @@ BEGIN
     EXECUTE format(
             'WITH deleted AS (DELETE FROM ts_kv WHERE entity_id IN (SELECT asset.id as entity_id FROM asset WHERE tenant_id = %L and customer_id = %L) AND ts < %L::bigint RETURNING *) SELECT count(*) FROM deleted',
             tenant_id, customer_id, ttl) into deleted;
+    PERFORM delete_records_from_ts_rollup(format('SELECT asset.id as entity_id FROM asset WHERE tenant_id = %L and customer_id = %L', tenant_id, customer_id), ttl);
 END;
 $$ LANGUAGE plpgsql;
 
@@ -49,6 +64,7 @@ BEGIN
     EXECUTE format(
             'WITH deleted AS (DELETE FROM ts_kv WHERE entity_id IN (SELECT customer.id as entity_id FROM customer WHERE tenant_id = %L and id = %L) AND ts < %L::bigint RETURNING *) SELECT count(*) FROM deleted',
             tenant_id, customer_id, ttl) into deleted;
+    PERFORM delete_records_from_ts_rollup(format('SELECT customer.id as entity_id FROM customer WHERE tenant_id = %L and id = %L', tenant_id, customer_id), ttl);
 END;
 $$ LANGUAGE plpgsql;
 
@@ -0,0 +1,30 @@
+--
+-- Copyright © 2016-2021 The Thingsboard Authors
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+CREATE TABLE IF NOT EXISTS alarm_propagation (
+    entity_id uuid NOT NULL,
+    entity_type varchar(255),
+    alarm_id uuid NOT NULL,
+    CONSTRAINT alarm_propagation_pkey PRIMARY KEY (entity_id, alarm_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_alarm_propagation_alarm_id ON alarm_propagation(alarm_id);
+
+INSERT INTO alarm_propagation (entity_id, entity_type, alarm_id)
+SELECT from_id, from_type, to_id FROM relation WHERE relation_type_group = 'ALARM'
+ON CONFLICT DO NOTHING;
+
+DELETE FROM relation WHERE relation_type_group = 'ALARM';
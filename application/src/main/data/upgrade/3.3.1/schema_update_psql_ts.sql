@@ -0,0 +1,52 @@
+--
+-- Copyright © 2016-2021 The Thingsboard Authors
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+CREATE TABLE IF NOT EXISTS ts_rollup
+(
+    entity_id uuid     NOT NULL,
+    key       int      NOT NULL,
+    level     smallint NOT NULL,
+    ts        bigint   NOT NULL,
+    long_min  bigint,
+    long_max  bigint,
+    long_sum  bigint,
+    long_cnt  bigint   NOT NULL,
+    dbl_min   double precision,
+    dbl_max   double precision,
+    dbl_sum   double precision,
+    dbl_cnt   bigint   NOT NULL,
+    bool_cnt  bigint   NOT NULL,
+    str_cnt   bigint   NOT NULL,
+    json_cnt  bigint   NOT NULL,
+    CONSTRAINT ts_rollup_pkey PRIMARY KEY (entity_id, key, level, ts)
+);
+
+CREATE TABLE IF NOT EXISTS ts_rollup_start
+(
+    start_ts bigint NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS ts_rollup_dirty
+(
+    entity_id uuid   NOT NULL,
+    key       int    NOT NULL,
+    ts        bigint NOT NULL,
+    version   bigint NOT NULL,
+    claimed_until bigint NOT NULL DEFAULT 0,
+    CONSTRAINT ts_rollup_dirty_pkey PRIMARY KEY (entity_id, key, ts)
+);
+
+ALTER TABLE ts_rollup_dirty ADD COLUMN IF NOT EXISTS claimed_until bigint NOT NULL DEFAULT 0;
@@ -165,6 +165,7 @@ public class AppActor extends ContextAwareActor {
                     log.info("[{}] Handling tenant deleted notification: {}", msg.getTenantId(), msg);
                     deletedTenants.add(tenantId);
                     ctx.stop(new TbEntityActorId(tenantId));
+                    systemContext.getActorService().onTenantDelete(tenantId);
                 } else {
                     target = getOrCreateTenantActor(msg.getTenantId());
                 }
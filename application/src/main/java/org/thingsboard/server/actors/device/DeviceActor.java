@@ -25,6 +25,7 @@ import org.thingsboard.server.actors.TbActorException;
 import org.thingsboard.server.actors.service.ContextAwareActor;
 import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.timeout.DeviceActorServerSideRpcTimeoutMsg;
 import org.thingsboard.server.service.rpc.FromDeviceRpcResponseActorMsg;
@@ -55,8 +56,21 @@ public class DeviceActor extends ContextAwareActor {
         }
     }
 
+    @Override
+    public void destroy() {
+        processor.stop();
+    }
+
+    @Override
+    public boolean isIdle() {
+        return processor.isIdle();
+    }
+
     @Override
     protected boolean doProcess(TbActorMsg msg) {
+        if (msg.getMsgType() != MsgType.SESSION_TIMEOUT_MSG) {
+            processor.updateLastActivityTime();
+        }
         switch (msg.getMsgType()) {
             case TRANSPORT_TO_DEVICE_ACTOR_MSG:
                 processor.process(ctx, (TransportToDeviceActorMsgWrapper) msg);
@@ -81,6 +95,7 @@ public class DeviceActor extends ContextAwareActor {
                 break;
             case SESSION_TIMEOUT_MSG:
                 processor.checkSessionsTimeout();
+                processor.checkIdle(ctx);
                 break;
             case DEVICE_EDGE_UPDATE_TO_DEVICE_ACTOR_MSG:
                 processor.processEdgeUpdate((DeviceEdgeUpdateMsg) msg);
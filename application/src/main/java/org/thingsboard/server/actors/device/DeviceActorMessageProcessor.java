@@ -106,6 +106,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -123,8 +124,11 @@ class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcessor {
     private final Map<UUID, SessionInfo> rpcSubscriptions;
     private final Map<Integer, ToDeviceRpcRequestMetadata> toDeviceRpcPendingMap;
     private final boolean rpcSequential;
+    private final long passivationIdleTimeout;
 
     private int rpcSeq = 0;
+    private long lastActivityTime;
+    private ScheduledFuture<?> sessionTimeoutCheckFuture;
     private String deviceName;
     private String deviceType;
     private TbMsgMetaData defaultMetaData;
@@ -135,6 +139,8 @@ class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcessor {
         this.tenantId = tenantId;
         this.deviceId = deviceId;
         this.rpcSequential = systemContext.isRpcSequential();
+        this.passivationIdleTimeout = systemContext.getDevicePassivationIdleTimeout();
+        this.lastActivityTime = System.currentTimeMillis();
         this.attributeSubscriptions = new HashMap<>();
         this.rpcSubscriptions = new HashMap<>();
         this.toDeviceRpcPendingMap = new LinkedHashMap<>();
@@ -931,7 +937,7 @@ class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcessor {
     }
 
     void init(TbActorCtx ctx) {
-        schedulePeriodicMsgWithDelay(ctx, SessionTimeoutCheckMsg.instance(), systemContext.getSessionReportTimeout(), systemContext.getSessionReportTimeout());
+        sessionTimeoutCheckFuture = schedulePeriodicMsgWithDelay(ctx, SessionTimeoutCheckMsg.instance(), systemContext.getSessionReportTimeout(), systemContext.getSessionReportTimeout());
         PageLink pageLink = new PageLink(1024, 0, null, new SortOrder("createdTime"));
         PageData<Rpc> pageData;
         do {
@@ -968,4 +974,28 @@ class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcessor {
         log.debug("[{}] checkSessionsTimeout finished. Size after check {}", deviceId, sessions.size());
     }
 
+    void updateLastActivityTime() {
+        lastActivityTime = System.currentTimeMillis();
+    }
+
+    void checkIdle(TbActorCtx ctx) {
+        if (isIdle()) {
+            log.debug("[{}] Device actor is idle since {}", deviceId, lastActivityTime);
+            ctx.getParentRef().tell(new DeviceActorIdleMsg(tenantId, deviceId));
+        }
+    }
+
+    boolean isIdle() {
+        return passivationIdleTimeout > 0
+                && sessions.isEmpty() && attributeSubscriptions.isEmpty() && rpcSubscriptions.isEmpty() && toDeviceRpcPendingMap.isEmpty()
+                && System.currentTimeMillis() - lastActivityTime > passivationIdleTimeout;
+    }
+
+    void stop() {
+        if (sessionTimeoutCheckFuture != null) {
+            sessionTimeoutCheckFuture.cancel(false);
+            sessionTimeoutCheckFuture = null;
+        }
+    }
+
 }
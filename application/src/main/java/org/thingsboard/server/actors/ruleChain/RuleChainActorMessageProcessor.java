@@ -54,7 +54,9 @@ import org.thingsboard.server.cluster.TbClusterService;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -70,9 +72,12 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
     private final TbActorRef self;
     private final Map<RuleNodeId, RuleNodeCtx> nodeActors;
     private final Map<RuleNodeId, List<RuleNodeRelation>> nodeRoutes;
+    // outbound relations of each rule node grouped by lower case relation type
+    private final Map<RuleNodeId, Map<String, List<RuleNodeRelation>>> nodeRoutesByType;
     private final RuleChainService service;
     private final TbClusterService clusterService;
     private final TbApiUsageClient apiUsageClient;
+    private final boolean inProcessFanOut;
     private String ruleChainName;
 
     private RuleNodeId firstId;
@@ -87,6 +92,8 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
         this.self = self;
         this.nodeActors = new HashMap<>();
         this.nodeRoutes = new HashMap<>();
+        this.nodeRoutesByType = new HashMap<>();
+        this.inProcessFanOut = systemContext.isRuleChainInProcessFanOut();
         this.service = systemContext.getRuleChainService();
         this.clusterService = systemContext.getClusterService();
     }
@@ -155,6 +162,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
         nodeActors.values().stream().map(RuleNodeCtx::getSelfActor).map(TbActorRef::getActorId).forEach(ctx::stop);
         nodeActors.clear();
         nodeRoutes.clear();
+        nodeRoutesByType.clear();
         started = false;
     }
 
@@ -171,6 +179,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
 
     private void initRoutes(RuleChain ruleChain, List<RuleNode> ruleNodeList) {
         nodeRoutes.clear();
+        nodeRoutesByType.clear();
         // Populating the routes map;
         for (RuleNode ruleNode : ruleNodeList) {
             List<EntityRelation> relations = service.getRuleNodeRelations(TenantId.SYS_TENANT_ID, ruleNode.getId());
@@ -186,8 +195,10 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
                             throw new IllegalArgumentException("Rule Node [" + relation.getFrom() + "] has invalid relation to Rule node [" + relation.getTo() + "]");
                         }
                     }
-                    nodeRoutes.computeIfAbsent(ruleNode.getId(), k -> new ArrayList<>())
-                            .add(new RuleNodeRelation(ruleNode.getId(), relation.getTo(), relation.getType()));
+                    RuleNodeRelation ruleNodeRelation = new RuleNodeRelation(ruleNode.getId(), relation.getTo(), relation.getType());
+                    nodeRoutes.computeIfAbsent(ruleNode.getId(), k -> new ArrayList<>()).add(ruleNodeRelation);
+                    nodeRoutesByType.computeIfAbsent(ruleNode.getId(), k -> new HashMap<>())
+                            .computeIfAbsent(toRouteKey(relation.getType()), k -> new ArrayList<>()).add(ruleNodeRelation);
                 }
             }
         }
@@ -257,9 +268,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
                 ruleNodeRelations = Collections.emptyList();
             }
 
-            List<RuleNodeRelation> relationsByTypes = ruleNodeRelations.stream()
-                    .filter(r -> contains(relationTypes, r.getType()))
-                    .collect(Collectors.toList());
+            List<RuleNodeRelation> relationsByTypes = getRelationsByTypes(ruleNodeRelations, originatorNodeId, relationTypes);
             int relationsCount = relationsByTypes.size();
             if (relationsCount == 0) {
                 log.trace("[{}][{}][{}] No outbound relations to process", tenantId, entityId, msg.getId());
@@ -281,10 +290,18 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
                 }
             } else {
                 MultipleTbQueueTbMsgCallbackWrapper callbackWrapper = new MultipleTbQueueTbMsgCallbackWrapper(relationsCount, msg.getCallback());
-                log.trace("[{}][{}][{}] Pushing message to multiple targets: [{}]", tenantId, entityId, msg.getId(), relationsByTypes);
-                for (RuleNodeRelation relation : relationsByTypes) {
-                    EntityId target = relation.getOut();
-                    putToQueue(tpi, msg, callbackWrapper, target);
+                if (inProcessFanOut && tpi.isMyPartition()) {
+                    log.trace("[{}][{}][{}] Pushing message copies to multiple local targets: [{}]", tenantId, entityId, msg.getId(), relationsByTypes);
+                    for (RuleNodeRelation relation : relationsByTypes) {
+                        TbMsg copy = msg.copyWithCallback(UUID.randomUUID(), callbackWrapper.newTbMsgCallback());
+                        pushToTarget(tpi, copy, relation.getOut(), relation.getType());
+                    }
+                } else {
+                    log.trace("[{}][{}][{}] Pushing message to multiple targets: [{}]", tenantId, entityId, msg.getId(), relationsByTypes);
+                    for (RuleNodeRelation relation : relationsByTypes) {
+                        EntityId target = relation.getOut();
+                        putToQueue(tpi, msg, callbackWrapper, target);
+                    }
                 }
             }
         } catch (RuleNodeException rne) {
@@ -330,16 +347,30 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
         clusterService.pushMsgToRuleEngine(tpi, newMsg.getId(), toQueueMsg, callbackWrapper);
     }
 
-    private boolean contains(Set<String> relationTypes, String type) {
-        if (relationTypes == null) {
-            return true;
+    private List<RuleNodeRelation> getRelationsByTypes(List<RuleNodeRelation> ruleNodeRelations, RuleNodeId originatorNodeId, Set<String> relationTypes) {
+        if (relationTypes == null || ruleNodeRelations.isEmpty()) {
+            return ruleNodeRelations;
         }
+        Map<String, List<RuleNodeRelation>> routesByType = nodeRoutesByType.get(originatorNodeId);
+        if (routesByType == null) {
+            return Collections.emptyList();
+        }
+        if (relationTypes.size() == 1) {
+            return routesByType.getOrDefault(toRouteKey(relationTypes.iterator().next()), Collections.emptyList());
+        }
+        List<RuleNodeRelation> result = new ArrayList<>();
+        Set<String> processedKeys = new HashSet<>();
         for (String relationType : relationTypes) {
-            if (relationType.equalsIgnoreCase(type)) {
-                return true;
+            String key = toRouteKey(relationType);
+            if (processedKeys.add(key)) {
+                result.addAll(routesByType.getOrDefault(key, Collections.emptyList()));
             }
         }
-        return false;
+        return result;
+    }
+
+    private static String toRouteKey(String relationType) {
+        return relationType.toLowerCase(Locale.ROOT);
     }
 
     private void pushMsgToNode(RuleNodeCtx nodeCtx, TbMsg msg, String fromRelationType) {
@@ -15,7 +15,10 @@
  */
 package org.thingsboard.server.actors.service;
 
+import org.thingsboard.server.common.data.id.TenantId;
+
 public interface ActorService {
 
+    void onTenantDelete(TenantId tenantId);
 
 }
@@ -50,6 +50,11 @@ public abstract class ComponentActor<T extends EntityId, P extends ComponentMsgP
 
     abstract protected P createProcessor(TbActorCtx ctx);
 
+    @Override
+    public TenantId getTenantId() {
+        return tenantId;
+    }
+
     @Override
     public void init(TbActorCtx ctx) throws TbActorException {
         super.init(ctx);
@@ -15,6 +15,8 @@
  */
 package org.thingsboard.server.actors.service;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -29,10 +31,15 @@ import org.thingsboard.server.actors.DefaultTbActorSystem;
 import org.thingsboard.server.actors.TbActorRef;
 import org.thingsboard.server.actors.TbActorSystem;
 import org.thingsboard.server.actors.TbActorSystemSettings;
+import org.thingsboard.server.actors.TbTenantFairExecutor;
 import org.thingsboard.server.actors.app.AppActor;
 import org.thingsboard.server.actors.app.AppInitMsg;
 import org.thingsboard.server.actors.stats.StatsActor;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.tenant.profile.DefaultTenantProfileConfiguration;
+import org.thingsboard.server.common.data.tenant.profile.TenantProfileConfiguration;
 import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.queue.discovery.TbApplicationEventListener;
 import org.thingsboard.server.queue.discovery.event.PartitionChangeEvent;
 
@@ -40,6 +47,9 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
@@ -50,9 +60,15 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     public static final String DEVICE_DISPATCHER_NAME = "device-dispatcher";
     public static final String RULE_DISPATCHER_NAME = "rule-dispatcher";
 
+    private static final long WEIGHTS_REFRESH_INTERVAL_SEC = 60;
+    private static final long IDLE_TENANT_TIMEOUT_SEC = TimeUnit.MINUTES.toSeconds(10);
+
     @Autowired
     private ActorSystemContext actorContext;
 
+    @Autowired
+    private StatsFactory statsFactory;
+
     private TbActorSystem system;
 
     private TbActorRef appActor;
@@ -78,17 +94,28 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     @Value("${actors.system.rule_dispatcher_pool_size:4}")
     private int ruleDispatcherSize;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${actors.system.rule_dispatcher.tenant_fair_scheduling:false}")
+    private boolean ruleDispatcherTenantFairScheduling;
+
+    @Value("${actors.system.rule_dispatcher.quantum_us:1000}")
+    private long ruleDispatcherQuantumUs;
+
+    private TbTenantFairExecutor ruleDispatcherExecutor;
+
     @PostConstruct
     public void initActorSystem() {
         log.info("Initializing actor system.");
         actorContext.setActorService(this);
         TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts);
-        system = new DefaultTbActorSystem(settings);
+        system = new DefaultTbActorSystem(settings, type -> statsFactory.createGauge("actors", new AtomicInteger(), "type", type));
 
         system.createDispatcher(APP_DISPATCHER_NAME, initDispatcherExecutor(APP_DISPATCHER_NAME, appDispatcherSize));
         system.createDispatcher(TENANT_DISPATCHER_NAME, initDispatcherExecutor(TENANT_DISPATCHER_NAME, tenantDispatcherSize));
         system.createDispatcher(DEVICE_DISPATCHER_NAME, initDispatcherExecutor(DEVICE_DISPATCHER_NAME, deviceDispatcherSize));
-        system.createDispatcher(RULE_DISPATCHER_NAME, initDispatcherExecutor(RULE_DISPATCHER_NAME, ruleDispatcherSize));
+        system.createDispatcher(RULE_DISPATCHER_NAME, initRuleDispatcherExecutor());
 
         actorContext.setActorSystem(system);
 
@@ -113,6 +140,44 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
         }
     }
 
+    private ExecutorService initRuleDispatcherExecutor() {
+        if (!ruleDispatcherTenantFairScheduling) {
+            return initDispatcherExecutor(RULE_DISPATCHER_NAME, ruleDispatcherSize);
+        }
+        int poolSize = ruleDispatcherSize > 0 ? ruleDispatcherSize : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        TbTenantFairExecutor executor = new TbTenantFairExecutor(RULE_DISPATCHER_NAME, poolSize, TimeUnit.MICROSECONDS.toNanos(ruleDispatcherQuantumUs),
+                this::getRuleDispatcherWeight, this::registerRuleDispatcherMeters);
+        system.getScheduler().scheduleWithFixedDelay(() -> {
+            executor.refreshWeights();
+            executor.removeIdleTenants(TimeUnit.SECONDS.toNanos(IDLE_TENANT_TIMEOUT_SEC));
+        }, WEIGHTS_REFRESH_INTERVAL_SEC, WEIGHTS_REFRESH_INTERVAL_SEC, TimeUnit.SECONDS);
+        ruleDispatcherExecutor = executor;
+        return executor;
+    }
+
+    private Runnable registerRuleDispatcherMeters(TenantId tenantId, AtomicLong cpuTimeNs) {
+        FunctionCounter cpuTime = FunctionCounter.builder("ruleDispatcherCpuTime", cpuTimeNs, AtomicLong::get)
+                .tag("tenantId", tenantId.toString())
+                .register(meterRegistry);
+        return () -> meterRegistry.remove(cpuTime);
+    }
+
+    @Override
+    public void onTenantDelete(TenantId tenantId) {
+        if (ruleDispatcherExecutor != null) {
+            ruleDispatcherExecutor.removeTenant(tenantId);
+        }
+    }
+
+    private int getRuleDispatcherWeight(TenantId tenantId) {
+        if (tenantId.isNullUid()) {
+            return 1;
+        }
+        TenantProfileConfiguration configuration = actorContext.getTenantProfileCache().get(tenantId).getProfileData().getConfiguration();
+        return configuration instanceof DefaultTenantProfileConfiguration ?
+                ((DefaultTenantProfileConfiguration) configuration).getRuleEngineDispatcherWeight() : 1;
+    }
+
     @EventListener(ApplicationReadyEvent.class)
     @Order(value = 2)
     public void onApplicationEvent(ApplicationReadyEvent applicationReadyEvent) {
@@ -26,6 +26,7 @@ import org.thingsboard.server.actors.TbActorRef;
 import org.thingsboard.server.actors.TbEntityActorId;
 import org.thingsboard.server.actors.TbEntityTypeActorIdPredicate;
 import org.thingsboard.server.actors.device.DeviceActorCreator;
+import org.thingsboard.server.actors.device.DeviceActorIdleMsg;
 import org.thingsboard.server.actors.ruleChain.RuleChainManagerActor;
 import org.thingsboard.server.actors.service.ContextBasedCreator;
 import org.thingsboard.server.actors.service.DefaultActorService;
@@ -168,6 +169,9 @@ public class TenantActor extends RuleChainManagerActor {
             case REMOVE_RPC_TO_DEVICE_ACTOR_MSG:
                 onToDeviceActorMsg((DeviceAwareMsg) msg, true);
                 break;
+            case DEVICE_ACTOR_IDLE_MSG:
+                onDeviceActorIdleMsg((DeviceActorIdleMsg) msg);
+                break;
             case RULE_CHAIN_TO_RULE_CHAIN_MSG:
                 onRuleChainMsg((RuleChainAwareMsg) msg);
                 break;
@@ -231,6 +235,13 @@ public class TenantActor extends RuleChainManagerActor {
         }
     }
 
+    private void onDeviceActorIdleMsg(DeviceActorIdleMsg msg) {
+        // device actor is created again by the next message forwarded to it
+        if (ctx.stopIfIdle(new TbEntityActorId(msg.getDeviceId()))) {
+            log.trace("[{}][{}] Passivated idle device actor", tenantId, msg.getDeviceId());
+        }
+    }
+
     private void onComponentLifecycleMsg(ComponentLifecycleMsg msg) {
         if (msg.getEntityId().getEntityType().equals(EntityType.API_USAGE_STATE)) {
             ApiUsageState old = apiUsageState;
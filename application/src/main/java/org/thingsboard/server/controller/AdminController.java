@@ -19,12 +19,15 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.thingsboard.rule.engine.api.MailService;
 import org.thingsboard.rule.engine.api.SmsService;
@@ -32,15 +35,20 @@ import org.thingsboard.server.common.data.AdminSettings;
 import org.thingsboard.server.common.data.UpdateMessage;
 import org.thingsboard.server.common.data.exception.ThingsboardException;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.query.SqlQueryShapeSortProperty;
+import org.thingsboard.server.common.data.query.SqlQueryShapeStats;
 import org.thingsboard.server.common.data.security.model.SecuritySettings;
 import org.thingsboard.server.common.data.sms.config.TestSmsRequest;
 import org.thingsboard.server.dao.settings.AdminSettingsService;
+import org.thingsboard.server.dao.sql.stats.SqlQueryStatsService;
 import org.thingsboard.server.queue.util.TbCoreComponent;
 import org.thingsboard.server.service.security.permission.Operation;
 import org.thingsboard.server.service.security.permission.Resource;
 import org.thingsboard.server.service.security.system.SystemSecurityService;
 import org.thingsboard.server.service.update.UpdateService;
 
+import java.util.List;
+
 @RestController
 @TbCoreComponent
 @RequestMapping("/api/admin")
@@ -62,6 +70,9 @@ public class AdminController extends BaseController {
     @Autowired
     private UpdateService updateService;
 
+    @Autowired
+    private SqlQueryStatsService sqlQueryStatsService;
+
     @ApiOperation(value = "Get the Administration Settings object using key (getAdminSettings)",
             notes = "Get the Administration Settings object using specified string key. Referencing non-existing key will cause an error." + SYS_ADMIN_AUTHORITY_ONLY)
     @PreAuthorize("hasAuthority('SYS_ADMIN')")
@@ -193,4 +204,38 @@ public class AdminController extends BaseController {
         }
     }
 
+    @ApiOperation(value = "Get SQL query statistics (getQueryStats)",
+            notes = "Returns the execution statistics of the SQL query shapes sorted by the specified property in descending order. " +
+                    "Shape is the SQL statement with literals and parameters replaced by '?', the name of the repository method or of the batch save. " +
+                    "Statistics contain the number of executions, rate, total and max execution time, latency histogram, number of rows " +
+                    "and the tenants that spent the most time executing the shape. " +
+                    "Statistics are collected only if 'sql.query_stats.enabled' is set to true." + SYS_ADMIN_AUTHORITY_ONLY)
+    @PreAuthorize("hasAuthority('SYS_ADMIN')")
+    @RequestMapping(value = "/queryStats", params = {"limit"}, method = RequestMethod.GET)
+    @ResponseBody
+    public List<SqlQueryShapeStats> getQueryStats(
+            @ApiParam(value = "Max number of query shapes to return", required = true)
+            @RequestParam int limit,
+            @ApiParam(value = "Property to sort the query shapes by", allowableValues = "TOTAL_TIME, COUNT, MAX_TIME, ROWS")
+            @RequestParam(required = false, defaultValue = "TOTAL_TIME") String sortProperty) throws ThingsboardException {
+        try {
+            return sqlQueryStatsService.getTopShapes(SqlQueryShapeSortProperty.valueOf(sortProperty.toUpperCase()), limit);
+        } catch (Exception e) {
+            throw handleException(e);
+        }
+    }
+
+    @ApiOperation(value = "Reset SQL query statistics (resetQueryStats)",
+            notes = "Clears the execution statistics of all SQL query shapes." + SYS_ADMIN_AUTHORITY_ONLY)
+    @PreAuthorize("hasAuthority('SYS_ADMIN')")
+    @RequestMapping(value = "/queryStats", method = RequestMethod.DELETE)
+    @ResponseStatus(value = HttpStatus.OK)
+    public void resetQueryStats() throws ThingsboardException {
+        try {
+            sqlQueryStatsService.reset();
+        } catch (Exception e) {
+            throw handleException(e);
+        }
+    }
+
 }
@@ -76,6 +76,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -126,7 +127,8 @@ public class DefaultTbApiUsageStateService extends TbApplicationEventListener<Pa
     @Value("${usage.stats.check.cycle:60000}")
     private long nextCycleCheckInterval;
 
-    private final Lock updateLock = new ReentrantLock();
+    // Usage states are updated under the lock of their own entity, so stats of different tenants are processed in parallel
+    private final ConcurrentMap<EntityId, Lock> updateLocks = new ConcurrentHashMap<>();
 
     private final ExecutorService mailExecutor;
 
@@ -183,6 +185,7 @@ public class DefaultTbApiUsageStateService extends TbApplicationEventListener<Pa
         List<TsKvEntry> updatedEntries;
         Map<ApiFeature, ApiUsageStateValue> result;
 
+        Lock updateLock = getUpdateLock(entityId);
         updateLock.lock();
         try {
             usageState = getOrFetchState(tenantId, entityId);
@@ -242,6 +245,7 @@ public class DefaultTbApiUsageStateService extends TbApplicationEventListener<Pa
                 if (partitionService.resolve(ServiceType.TB_CORE, tenantId, tenantId).isMyPartition()) {
                     return getOrFetchState(tenantId, tenantId).getApiUsageState();
                 } else {
+                    Lock updateLock = getUpdateLock(tenantId);
                     updateLock.lock();
                     try {
                         state = otherUsageStates.get(tenantId);
@@ -269,25 +273,27 @@ public class DefaultTbApiUsageStateService extends TbApplicationEventListener<Pa
     public void onTenantProfileUpdate(TenantProfileId tenantProfileId) {
         log.info("[{}] On Tenant Profile Update", tenantProfileId);
         TenantProfile tenantProfile = tenantProfileCache.get(tenantProfileId);
-        updateLock.lock();
-        try {
-            myUsageStates.values().stream()
-                    .filter(state -> state.getEntityType() == EntityType.TENANT)
-                    .map(state -> (TenantApiUsageState) state)
-                    .forEach(state -> {
+        myUsageStates.values().stream()
+                .filter(state -> state.getEntityType() == EntityType.TENANT)
+                .map(state -> (TenantApiUsageState) state)
+                .forEach(state -> {
+                    Lock updateLock = getUpdateLock(state.getEntityId());
+                    updateLock.lock();
+                    try {
                         if (tenantProfile.getId().equals(state.getTenantProfileId())) {
                             updateTenantState(state, tenantProfile);
                         }
-                    });
-        } finally {
-            updateLock.unlock();
-        }
+                    } finally {
+                        updateLock.unlock();
+                    }
+                });
     }
 
     @Override
     public void onTenantUpdate(TenantId tenantId) {
         log.info("[{}] On Tenant Update.", tenantId);
         TenantProfile tenantProfile = tenantProfileCache.get(tenantId);
+        Lock updateLock = getUpdateLock(tenantId);
         updateLock.lock();
         try {
             TenantApiUsageState state = (TenantApiUsageState) myUsageStates.get(tenantId);
@@ -331,12 +337,18 @@ public class DefaultTbApiUsageStateService extends TbApplicationEventListener<Pa
         deletedEntities.add(tenantId);
         myUsageStates.remove(tenantId);
         otherUsageStates.remove(tenantId);
+        updateLocks.remove(tenantId);
     }
 
     @Override
     public void onCustomerDelete(CustomerId customerId) {
         deletedEntities.add(customerId);
         myUsageStates.remove(customerId);
+        updateLocks.remove(customerId);
+    }
+
+    private Lock getUpdateLock(EntityId entityId) {
+        return updateLocks.computeIfAbsent(entityId, id -> new ReentrantLock());
     }
 
     private void persistAndNotify(BaseApiUsageState state, Map<ApiFeature, ApiUsageStateValue> result) {
@@ -394,10 +406,11 @@ public class DefaultTbApiUsageStateService extends TbApplicationEventListener<Pa
     }
 
     private void checkStartOfNextCycle() {
-        updateLock.lock();
-        try {
-            long now = System.currentTimeMillis();
-            myUsageStates.values().forEach(state -> {
+        long now = System.currentTimeMillis();
+        myUsageStates.values().forEach(state -> {
+            Lock updateLock = getUpdateLock(state.getEntityId());
+            updateLock.lock();
+            try {
                 if ((state.getNextCycleTs() < now) && (now - state.getNextCycleTs() < TimeUnit.HOURS.toMillis(1))) {
                     state.setCycles(state.getNextCycleTs(), SchedulerUtils.getStartOfNextNextMonth());
                     saveNewCounts(state, Arrays.asList(ApiUsageRecordKey.values()));
@@ -406,10 +419,10 @@ public class DefaultTbApiUsageStateService extends TbApplicationEventListener<Pa
                         updateTenantState((TenantApiUsageState) state, tenantProfileCache.get(tenantId));
                     }
                 }
-            });
-        } finally {
-            updateLock.unlock();
-        }
+            } finally {
+                updateLock.unlock();
+            }
+        });
     }
 
     private void saveNewCounts(BaseApiUsageState state, List<ApiUsageRecordKey> keys) {
@@ -485,33 +498,32 @@ public class DefaultTbApiUsageStateService extends TbApplicationEventListener<Pa
     private void initStatesFromDataBase() {
         try {
             log.info("Initializing tenant states.");
-            updateLock.lock();
+            ExecutorService tmpInitExecutor = ThingsBoardExecutors.newWorkStealingPool(20, "init-tenant-states-from-db");
             try {
-                ExecutorService tmpInitExecutor = ThingsBoardExecutors.newWorkStealingPool(20, "init-tenant-states-from-db");
-                try {
-                    PageDataIterable<Tenant> tenantIterator = new PageDataIterable<>(tenantService::findTenants, 1024);
-                    List<Future<?>> futures = new ArrayList<>();
-                    for (Tenant tenant : tenantIterator) {
-                        if (!myUsageStates.containsKey(tenant.getId()) && partitionService.resolve(ServiceType.TB_CORE, tenant.getId(), tenant.getId()).isMyPartition()) {
-                            log.debug("[{}] Initializing tenant state.", tenant.getId());
-                            futures.add(tmpInitExecutor.submit(() -> {
-                                try {
-                                    updateTenantState((TenantApiUsageState) getOrFetchState(tenant.getId(), tenant.getId()), tenantProfileCache.get(tenant.getTenantProfileId()));
-                                    log.debug("[{}] Initialized tenant state.", tenant.getId());
-                                } catch (Exception e) {
-                                    log.warn("[{}] Failed to initialize tenant API state", tenant.getId(), e);
-                                }
-                            }));
-                        }
-                    }
-                    for (Future<?> future : futures) {
-                        future.get();
+                PageDataIterable<Tenant> tenantIterator = new PageDataIterable<>(tenantService::findTenants, 1024);
+                List<Future<?>> futures = new ArrayList<>();
+                for (Tenant tenant : tenantIterator) {
+                    if (!myUsageStates.containsKey(tenant.getId()) && partitionService.resolve(ServiceType.TB_CORE, tenant.getId(), tenant.getId()).isMyPartition()) {
+                        log.debug("[{}] Initializing tenant state.", tenant.getId());
+                        futures.add(tmpInitExecutor.submit(() -> {
+                            Lock updateLock = getUpdateLock(tenant.getId());
+                            updateLock.lock();
+                            try {
+                                updateTenantState((TenantApiUsageState) getOrFetchState(tenant.getId(), tenant.getId()), tenantProfileCache.get(tenant.getTenantProfileId()));
+                                log.debug("[{}] Initialized tenant state.", tenant.getId());
+                            } catch (Exception e) {
+                                log.warn("[{}] Failed to initialize tenant API state", tenant.getId(), e);
+                            } finally {
+                                updateLock.unlock();
+                            }
+                        }));
                     }
-                } finally {
-                    tmpInitExecutor.shutdownNow();
+                }
+                for (Future<?> future : futures) {
+                    future.get();
                 }
             } finally {
-                updateLock.unlock();
+                tmpInitExecutor.shutdownNow();
             }
             log.info("Initialized tenant states.");
         } catch (Exception e) {
@@ -46,6 +46,7 @@ public class PsqlTsDatabaseUpgradeService extends AbstractSqlTsDatabaseUpgradeSe
     private static final String LOAD_FUNCTIONS_SQL = "schema_update_psql_ts.sql";
     private static final String LOAD_TTL_FUNCTIONS_SQL = "schema_update_ttl.sql";
     private static final String LOAD_DROP_PARTITIONS_FUNCTIONS_SQL = "schema_update_psql_drop_partitions.sql";
+    private static final String SCHEMA_UPDATE_SQL = "schema_update_psql_ts.sql";
 
     private static final String TS_KV_OLD = "ts_kv_old;";
     private static final String TS_KV_LATEST_OLD = "ts_kv_latest_old;";
@@ -215,6 +216,16 @@ public class PsqlTsDatabaseUpgradeService extends AbstractSqlTsDatabaseUpgradeSe
                     loadSql(conn, LOAD_DROP_PARTITIONS_FUNCTIONS_SQL, "2.4.3");
                 }
                 break;
+            case "3.3.1":
+                try (Connection conn = DriverManager.getConnection(dbUrl, dbUserName, dbPassword)) {
+                    log.info("Creating timeseries rollup tables ...");
+                    loadSql(conn, SCHEMA_UPDATE_SQL, "3.3.1");
+                    log.info("Load TTL functions ...");
+                    loadSql(conn, LOAD_TTL_FUNCTIONS_SQL, "2.4.3");
+                    log.info("Load Drop Partitions functions ...");
+                    loadSql(conn, LOAD_DROP_PARTITIONS_FUNCTIONS_SQL, "2.4.3");
+                }
+                break;
             default:
                 throw new RuntimeException("Unable to upgrade SQL database, unsupported fromVersion: " + fromVersion);
         }
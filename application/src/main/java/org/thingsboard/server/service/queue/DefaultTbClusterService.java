@@ -42,6 +42,7 @@ import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.RuleChainId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
+import org.thingsboard.server.common.data.security.DeviceCredentials;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.edge.EdgeEventUpdateMsg;
 import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
@@ -215,6 +216,26 @@ public class DefaultTbClusterService implements TbClusterService {
         broadcast(new ComponentLifecycleMsg(tenantId, entityId, state));
     }
 
+    @Override
+    public void broadcastLatestAlarmInvalidation(TenantId tenantId, EntityId originator, String type) {
+        log.trace("[{}][{}] Processing latest alarm invalidation of type: {}", tenantId, originator, type);
+        TransportProtos.LatestAlarmInvalidationMsgProto invalidationMsg = TransportProtos.LatestAlarmInvalidationMsgProto.newBuilder()
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
+                .setEntityType(originator.getEntityType().name())
+                .setEntityIdMSB(originator.getId().getMostSignificantBits())
+                .setEntityIdLSB(originator.getId().getLeastSignificantBits())
+                .setType(type)
+                .build();
+        ToRuleEngineNotificationMsg toRuleEngineMsg = ToRuleEngineNotificationMsg.newBuilder().setLatestAlarmInvalidationMsg(invalidationMsg).build();
+        TbQueueProducer<TbProtoQueueMsg<ToRuleEngineNotificationMsg>> toRuleEngineProducer = producerProvider.getRuleEngineNotificationsMsgProducer();
+        for (String serviceId : partitionService.getAllServiceIds(ServiceType.TB_RULE_ENGINE)) {
+            TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_RULE_ENGINE, serviceId);
+            toRuleEngineProducer.send(tpi, new TbProtoQueueMsg<>(originator.getId(), toRuleEngineMsg), null);
+            toRuleEngineNfs.incrementAndGet();
+        }
+    }
+
     @Override
     public void onDeviceProfileChange(DeviceProfile deviceProfile, TbQueueCallback callback) {
         broadcastEntityChangeToTransport(deviceProfile.getTenantId(), deviceProfile.getId(), deviceProfile, callback);
@@ -258,6 +279,18 @@ public class DefaultTbClusterService implements TbClusterService {
         broadcastEntityStateChangeEvent(device.getTenantId(), device.getId(), ComponentLifecycleEvent.DELETED);
     }
 
+    @Override
+    public void onDeviceCredentialsUpdated(DeviceCredentials deviceCredentials, TbQueueCallback callback) {
+        DeviceId deviceId = deviceCredentials.getDeviceId();
+        log.trace("[{}] Processing device credentials update", deviceId);
+        TransportProtos.DeviceCredentialsUpdateMsg credentialsUpdateMsg = TransportProtos.DeviceCredentialsUpdateMsg.newBuilder()
+                .setDeviceIdMSB(deviceId.getId().getMostSignificantBits())
+                .setDeviceIdLSB(deviceId.getId().getLeastSignificantBits())
+                .build();
+        ToTransportMsg transportMsg = ToTransportMsg.newBuilder().setDeviceCredentialsUpdateMsg(credentialsUpdateMsg).build();
+        broadcast(transportMsg, callback);
+    }
+
     @Override
     public void onResourceChange(TbResource resource, TbQueueCallback callback) {
         TenantId tenantId = resource.getTenantId();
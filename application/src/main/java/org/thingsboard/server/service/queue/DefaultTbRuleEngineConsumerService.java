@@ -23,6 +23,7 @@ import org.springframework.stereotype.Service;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.rpc.RpcError;
 import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.queue.QueueToRuleEngineMsg;
@@ -35,6 +36,7 @@ import org.thingsboard.server.common.msg.queue.TbMsgCallback;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.common.transport.util.DataDecodingEncodingService;
+import org.thingsboard.server.dao.alarm.LatestAlarmCache;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineNotificationMsg;
@@ -99,6 +101,8 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     private final TbQueueRuleEngineSettings ruleEngineSettings;
     private final RuleEngineStatisticsService statisticsService;
     private final TbRuleEngineDeviceRpcService tbDeviceRpcService;
+    private final TbMsgLatencyTracer latencyTracer;
+    private final LatestAlarmCache latestAlarmCache;
     private final ConcurrentMap<String, TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>>> consumers = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, TbRuleEngineQueueConfiguration> consumerConfigurations = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, TbRuleEngineConsumerStats> consumerStats = new ConcurrentHashMap<>();
@@ -117,7 +121,9 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                                               StatsFactory statsFactory,
                                               TbDeviceProfileCache deviceProfileCache,
                                               TbTenantProfileCache tenantProfileCache,
-                                              TbApiUsageStateService apiUsageStateService) {
+                                              TbApiUsageStateService apiUsageStateService,
+                                              TbMsgLatencyTracer latencyTracer,
+                                              LatestAlarmCache latestAlarmCache) {
         super(actorContext, encodingService, tenantProfileCache, deviceProfileCache, apiUsageStateService, tbRuleEngineQueueFactory.createToRuleEngineNotificationsMsgConsumer());
         this.statisticsService = statisticsService;
         this.ruleEngineSettings = ruleEngineSettings;
@@ -126,6 +132,8 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         this.processingStrategyFactory = processingStrategyFactory;
         this.tbDeviceRpcService = tbDeviceRpcService;
         this.statsFactory = statsFactory;
+        this.latencyTracer = latencyTracer;
+        this.latestAlarmCache = latestAlarmCache;
     }
 
     @PostConstruct
@@ -257,7 +265,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                 final TbRuleEngineProcessingStrategy ackStrategy = getAckStrategy(configuration);
                 submitStrategy.init(msgs);
                 while (!stopped) {
-                    TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(configuration.getName(), submitStrategy);
+                    TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(configuration.getName(), submitStrategy, latencyTracer);
                     submitStrategy.submitAttempt((id, msg) -> submitExecutor.submit(() -> submitMessage(configuration, stats, ctx, id, msg)));
 
                     final boolean timeout = !ctx.await(configuration.getPackProcessingTimeout(), TimeUnit.MILLISECONDS);
@@ -327,7 +335,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                 new TbMsgPackCallback(id, tenantId, ctx);
         try {
             if (toRuleEngineMsg.getTbMsg() != null && !toRuleEngineMsg.getTbMsg().isEmpty()) {
-                forwardToRuleEngineActor(configuration.getName(), tenantId, toRuleEngineMsg, callback);
+                forwardToRuleEngineActor(configuration.getName(), tenantId, toRuleEngineMsg, callback, ctx, id);
             } else {
                 callback.onSuccess();
             }
@@ -380,14 +388,22 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                     , proto.getResponse(), error);
             tbDeviceRpcService.processRpcResponseFromDevice(response);
             callback.onSuccess();
+        } else if (nfMsg.hasLatestAlarmInvalidationMsg()) {
+            TransportProtos.LatestAlarmInvalidationMsgProto proto = nfMsg.getLatestAlarmInvalidationMsg();
+            TenantId tenantId = new TenantId(new UUID(proto.getTenantIdMSB(), proto.getTenantIdLSB()));
+            latestAlarmCache.invalidate(tenantId, EntityIdFactory.getByTypeAndUuid(proto.getEntityType(),
+                    new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB())), proto.getType());
+            callback.onSuccess();
         } else {
             log.trace("Received notification with missing handler");
             callback.onSuccess();
         }
     }
 
-    private void forwardToRuleEngineActor(String queueName, TenantId tenantId, ToRuleEngineMsg toRuleEngineMsg, TbMsgCallback callback) {
+    private void forwardToRuleEngineActor(String queueName, TenantId tenantId, ToRuleEngineMsg toRuleEngineMsg, TbMsgCallback callback,
+                                          TbMsgPackProcessingContext ctx, UUID id) {
         TbMsg tbMsg = TbMsg.fromBytes(queueName, toRuleEngineMsg.getTbMsg().toByteArray(), callback);
+        ctx.onDequeued(id, tenantId, tbMsg);
         QueueToRuleEngineMsg msg;
         ProtocolStringList relationTypesList = toRuleEngineMsg.getRelationTypesList();
         Set<String> relationTypes = null;
@@ -0,0 +1,135 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.stats.MsgLatencyStage;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency of the rule engine messages per processing stage and keeps the slowest sampled messages
+ * of each rule chain, which are periodically logged with the time spent in each rule node.
+ */
+@Slf4j
+@Component
+public class TbMsgLatencyTracer {
+
+    private static final String UNKNOWN_RULE_CHAIN = "Unknown";
+
+    private final StatsFactory statsFactory;
+
+    @Value("${metrics.msg_latency.enabled:false}")
+    private boolean latencyEnabled;
+    @Value("${metrics.msg_latency.slowest_msgs.enabled:false}")
+    private boolean slowestMsgsEnabled;
+    @Value("${metrics.msg_latency.slowest_msgs.sample_rate:0.01}")
+    private double sampleRate;
+    @Value("${metrics.msg_latency.slowest_msgs.max_per_rule_chain:5}")
+    private int maxPerRuleChain;
+
+    private final ConcurrentMap<String, PriorityQueue<TbMsgTrace>> slowestMsgs = new ConcurrentHashMap<>();
+
+    public TbMsgLatencyTracer(StatsFactory statsFactory) {
+        this.statsFactory = statsFactory;
+    }
+
+    public boolean isEnabled() {
+        return latencyEnabled || slowestMsgsEnabled;
+    }
+
+    /**
+     * Records the time the message spent in the queue and returns the trace to be completed with {@link #onProcessed}.
+     */
+    public TbMsgTrace onDequeued(String queueName, TenantId tenantId, TbMsg msg) {
+        long ts = System.currentTimeMillis();
+        boolean sampled = slowestMsgsEnabled && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        TbMsgTrace trace = new TbMsgTrace(tenantId, msg, ts, sampled);
+        if (msg.getEnqueueTs() > 0) {
+            record(MsgLatencyStage.QUEUE, queueName, tenantId, ts - msg.getEnqueueTs());
+        }
+        return trace;
+    }
+
+    public void onProcessed(String queueName, TbMsgTrace trace) {
+        long ts = System.currentTimeMillis();
+        trace.onProcessed(ts);
+        record(MsgLatencyStage.RULE_ENGINE, queueName, trace.getTenantId(), ts - trace.getDequeueTs());
+        record(MsgLatencyStage.END_TO_END, queueName, trace.getTenantId(), ts - trace.getOriginTs());
+        if (trace.isSampled()) {
+            addToSlowest(trace);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${metrics.msg_latency.slowest_msgs.dump_interval_ms:60000}")
+    public void dumpSlowestMsgs() {
+        if (!slowestMsgsEnabled || slowestMsgs.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, PriorityQueue<TbMsgTrace>> entry : slowestMsgs.entrySet()) {
+            List<TbMsgTrace> traces;
+            PriorityQueue<TbMsgTrace> queue = entry.getValue();
+            synchronized (queue) {
+                traces = new ArrayList<>(queue);
+                queue.clear();
+            }
+            if (!traces.isEmpty()) {
+                traces.sort(Comparator.comparingLong(TbMsgTrace::getDuration).reversed());
+                log.info("[{}] Slowest sampled messages:", entry.getKey());
+                traces.forEach(trace -> log.info("[{}] {}", entry.getKey(), trace));
+            }
+        }
+    }
+
+    private void addToSlowest(TbMsgTrace trace) {
+        String ruleChainName = trace.getRuleChainName() != null ? trace.getRuleChainName() : UNKNOWN_RULE_CHAIN;
+        PriorityQueue<TbMsgTrace> queue = slowestMsgs.computeIfAbsent(ruleChainName,
+                k -> new PriorityQueue<>(Comparator.comparingLong(TbMsgTrace::getDuration)));
+        synchronized (queue) {
+            if (queue.size() < maxPerRuleChain) {
+                queue.add(trace);
+            } else if (queue.peek() != null && queue.peek().getDuration() < trace.getDuration()) {
+                queue.poll();
+                queue.add(trace);
+            }
+        }
+    }
+
+    private void record(MsgLatencyStage stage, String queueName, TenantId tenantId, long latencyMs) {
+        if (latencyEnabled) {
+            Timer timer = statsFactory.getMsgLatencyTimer(stage, queueName, tenantId.getId().toString());
+            if (timer != null) {
+                timer.record(Math.max(0, latencyMs), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+}
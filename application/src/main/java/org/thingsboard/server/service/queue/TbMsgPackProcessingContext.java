@@ -19,6 +19,7 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.data.id.RuleNodeId;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.queue.RuleEngineException;
 import org.thingsboard.server.common.msg.queue.RuleNodeInfo;
 import org.thingsboard.server.gen.transport.TransportProtos;
@@ -54,9 +55,17 @@ public class TbMsgPackProcessingContext {
 
     private final ConcurrentMap<UUID, RuleNodeInfo> lastRuleNodeMap = new ConcurrentHashMap<>();
 
+    private final TbMsgLatencyTracer latencyTracer;
+    private final ConcurrentMap<UUID, TbMsgTrace> traceMap = new ConcurrentHashMap<>();
+
     public TbMsgPackProcessingContext(String queueName, TbRuleEngineSubmitStrategy submitStrategy) {
+        this(queueName, submitStrategy, null);
+    }
+
+    public TbMsgPackProcessingContext(String queueName, TbRuleEngineSubmitStrategy submitStrategy, TbMsgLatencyTracer latencyTracer) {
         this.queueName = queueName;
         this.submitStrategy = submitStrategy;
+        this.latencyTracer = latencyTracer != null && latencyTracer.isEnabled() ? latencyTracer : null;
         this.profilerEnabled = log.isDebugEnabled();
         this.pendingMap = submitStrategy.getPendingMap();
         this.pendingCount = new AtomicInteger(pendingMap.size());
@@ -70,6 +79,12 @@ public class TbMsgPackProcessingContext {
         return success;
     }
 
+    public void onDequeued(UUID id, TenantId tenantId, TbMsg msg) {
+        if (latencyTracer != null) {
+            traceMap.put(id, latencyTracer.onDequeued(queueName, tenantId, msg));
+        }
+    }
+
     public void onSuccess(UUID id) {
         TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg> msg;
         boolean empty = false;
@@ -78,6 +93,7 @@ public class TbMsgPackProcessingContext {
             empty = pendingCount.decrementAndGet() == 0;
             successMap.put(id, msg);
             submitStrategy.onSuccess(id);
+            onProcessed(id);
         }
         if (empty) {
             processingTimeoutLatch.countDown();
@@ -92,6 +108,7 @@ public class TbMsgPackProcessingContext {
             empty = pendingCount.decrementAndGet() == 0;
             failedMap.put(id, msg);
             exceptionsMap.putIfAbsent(tenantId, e);
+            onProcessed(id);
         }
         if (empty) {
             processingTimeoutLatch.countDown();
@@ -101,8 +118,23 @@ public class TbMsgPackProcessingContext {
     private final ConcurrentHashMap<UUID, TbMsgProfilerInfo> msgProfilerMap = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<UUID, TbRuleNodeProfilerInfo> ruleNodeProfilerMap = new ConcurrentHashMap<>();
 
+    private void onProcessed(UUID id) {
+        if (latencyTracer != null) {
+            TbMsgTrace trace = traceMap.remove(id);
+            if (trace != null) {
+                latencyTracer.onProcessed(queueName, trace);
+            }
+        }
+    }
+
     public void onProcessingStart(UUID id, RuleNodeInfo ruleNodeInfo) {
         lastRuleNodeMap.put(id, ruleNodeInfo);
+        if (latencyTracer != null) {
+            TbMsgTrace trace = traceMap.get(id);
+            if (trace != null) {
+                trace.onStart(ruleNodeInfo);
+            }
+        }
         if (profilerEnabled) {
             msgProfilerMap.computeIfAbsent(id, TbMsgProfilerInfo::new).onStart(ruleNodeInfo.getRuleNodeId());
             ruleNodeProfilerMap.putIfAbsent(ruleNodeInfo.getRuleNodeId().getId(), new TbRuleNodeProfilerInfo(ruleNodeInfo));
@@ -110,6 +142,12 @@ public class TbMsgPackProcessingContext {
     }
 
     public void onProcessingEnd(UUID id, RuleNodeId ruleNodeId) {
+        if (latencyTracer != null) {
+            TbMsgTrace trace = traceMap.get(id);
+            if (trace != null) {
+                trace.onEnd(ruleNodeId);
+            }
+        }
         if (profilerEnabled) {
             long processingTime = msgProfilerMap.computeIfAbsent(id, TbMsgProfilerInfo::new).onEnd(ruleNodeId);
             if (processingTime > 0) {
@@ -152,5 +190,6 @@ public class TbMsgPackProcessingContext {
         pendingMap.clear();
         successMap.clear();
         failedMap.clear();
+        traceMap.clear();
     }
 }
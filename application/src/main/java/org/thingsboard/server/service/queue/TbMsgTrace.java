@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import lombok.Getter;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.queue.RuleNodeInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stage timestamps of a single message processed by the rule engine consumer.
+ * Sampled traces additionally record the time spent in each rule node, so the slowest of them may be logged.
+ */
+public class TbMsgTrace {
+
+    @Getter
+    private final TenantId tenantId;
+    private final UUID msgId;
+    private final String msgType;
+    private final EntityId originator;
+    @Getter
+    private final long originTs;
+    @Getter
+    private final long enqueueTs;
+    @Getter
+    private final long dequeueTs;
+    @Getter
+    private volatile long endTs;
+    // null if the trace is not sampled, guarded by this
+    private final List<Step> steps;
+    private String ruleChainName;
+
+    public TbMsgTrace(TenantId tenantId, TbMsg msg, long dequeueTs, boolean sampled) {
+        this.tenantId = tenantId;
+        this.msgId = msg.getId();
+        this.msgType = msg.getType();
+        this.originator = msg.getOriginator();
+        this.originTs = msg.getTs();
+        this.enqueueTs = msg.getEnqueueTs();
+        this.dequeueTs = dequeueTs;
+        this.steps = sampled ? new ArrayList<>() : null;
+    }
+
+    public boolean isSampled() {
+        return steps != null;
+    }
+
+    public synchronized String getRuleChainName() {
+        return ruleChainName;
+    }
+
+    public long getDuration() {
+        return endTs - dequeueTs;
+    }
+
+    public void onStart(RuleNodeInfo ruleNodeInfo) {
+        if (steps != null) {
+            long ts = System.currentTimeMillis();
+            synchronized (this) {
+                if (ruleChainName == null) {
+                    ruleChainName = ruleNodeInfo.getRuleChainName();
+                }
+                steps.add(new Step(ruleNodeInfo, ts));
+            }
+        }
+    }
+
+    public void onEnd(RuleNodeId ruleNodeId) {
+        if (steps != null) {
+            long ts = System.currentTimeMillis();
+            synchronized (this) {
+                for (int i = steps.size() - 1; i >= 0; i--) {
+                    Step step = steps.get(i);
+                    if (step.endTs == 0 && step.ruleNodeInfo.getRuleNodeId().equals(ruleNodeId)) {
+                        step.endTs = ts;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    void onProcessed(long endTs) {
+        this.endTs = endTs;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[").append(msgId).append("] type: ").append(msgType).append(", originator: ").append(originator)
+                .append(", tenant: ").append(tenantId.getId())
+                .append(", total: ").append(endTs - originTs).append(" ms")
+                .append(", queue: ").append(enqueueTs > 0 ? dequeueTs - enqueueTs : 0).append(" ms")
+                .append(", rule engine: ").append(endTs - dequeueTs).append(" ms");
+        if (steps != null && !steps.isEmpty()) {
+            long prevTs = dequeueTs;
+            sb.append(", steps:");
+            for (Step step : steps) {
+                // time between the end of the previous step and the start of the next one is spent in actor mailboxes
+                sb.append(" +").append(step.startTs - prevTs).append(" ms ").append(step.ruleNodeInfo)
+                        .append(" ").append(step.endTs > 0 ? (step.endTs - step.startTs) + " ms" : "not finished").append(";");
+                prevTs = step.endTs > 0 ? step.endTs : step.startTs;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class Step {
+        private final RuleNodeInfo ruleNodeInfo;
+        private final long startTs;
+        private long endTs;
+
+        Step(RuleNodeInfo ruleNodeInfo, long startTs) {
+            this.ruleNodeInfo = ruleNodeInfo;
+            this.startTs = startTs;
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.Getter;
+import org.thingsboard.server.gen.js.JsInvokeProtos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Invocations of the same script that are sent to the JS executor in one request.
+ * Responses are matched with the invocations by their position in the batch.
+ */
+class RemoteJsInvokeBatch {
+
+    @Getter
+    private final UUID scriptId;
+    private final String functionName;
+    private final String scriptBody;
+    @Getter
+    private final long createdTs = System.currentTimeMillis();
+    private final List<JsInvokeProtos.JsInvokeArgs> invocations = new ArrayList<>();
+    private final List<SettableFuture<JsInvokeProtos.JsInvokeResponse>> futures = new ArrayList<>();
+
+    RemoteJsInvokeBatch(UUID scriptId, String functionName, String scriptBody) {
+        this.scriptId = scriptId;
+        this.functionName = functionName;
+        this.scriptBody = scriptBody;
+    }
+
+    void add(Object[] args, SettableFuture<JsInvokeProtos.JsInvokeResponse> future) {
+        JsInvokeProtos.JsInvokeArgs.Builder invocation = JsInvokeProtos.JsInvokeArgs.newBuilder();
+        for (Object arg : args) {
+            invocation.addArgs(arg.toString());
+        }
+        invocations.add(invocation.build());
+        futures.add(future);
+    }
+
+    int size() {
+        return invocations.size();
+    }
+
+    JsInvokeProtos.JsInvokeBatchRequest toProto(int timeout) {
+        return JsInvokeProtos.JsInvokeBatchRequest.newBuilder()
+                .setScriptIdMSB(scriptId.getMostSignificantBits())
+                .setScriptIdLSB(scriptId.getLeastSignificantBits())
+                .setFunctionName(functionName)
+                .setScriptBody(scriptBody)
+                .setTimeout(timeout)
+                .addAllInvocations(invocations)
+                .build();
+    }
+
+    void onResponse(JsInvokeProtos.JsInvokeBatchResponse response) {
+        for (int i = 0; i < futures.size(); i++) {
+            if (i < response.getResponsesCount()) {
+                futures.get(i).set(response.getResponses(i));
+            } else {
+                futures.get(i).setException(new RuntimeException("No response for the invocation of script: [" + scriptId + "]!"));
+            }
+        }
+    }
+
+    void onFailure(Throwable t) {
+        futures.forEach(future -> future.setException(t));
+    }
+
+}
@@ -18,6 +18,7 @@ package org.thingsboard.server.service.script;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,11 +41,14 @@ import javax.annotation.PreDestroy;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @ConditionalOnExpression("'${js.evaluator:null}'=='remote' && ('${service.type:null}'=='monolith' || '${service.type:null}'=='tb-core' || '${service.type:null}'=='tb-rule-engine')")
@@ -67,11 +71,24 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
     @Value("${js.remote.stats.enabled:false}")
     private boolean statsEnabled;
 
+    @Value("${js.remote.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${js.remote.batch.max_size:100}")
+    private int batchMaxSize;
+
+    @Value("${js.remote.batch.linger_ms:5}")
+    private long batchLingerMs;
+
     private final AtomicInteger queuePushedMsgs = new AtomicInteger(0);
     private final AtomicInteger queueInvokeMsgs = new AtomicInteger(0);
     private final AtomicInteger queueEvalMsgs = new AtomicInteger(0);
     private final AtomicInteger queueFailedMsgs = new AtomicInteger(0);
     private final AtomicInteger queueTimeoutMsgs = new AtomicInteger(0);
+    private final AtomicInteger queueBatchMsgs = new AtomicInteger(0);
+    private final AtomicInteger queueBatchInvocations = new AtomicInteger(0);
+    private final AtomicInteger queueBatchResponses = new AtomicInteger(0);
+    private final AtomicLong queueBatchLatencyMs = new AtomicLong(0);
     private final ExecutorService callbackExecutor = Executors.newFixedThreadPool(
             Runtime.getRuntime().availableProcessors(), ThingsBoardThreadFactory.forName("js-executor-remote-callback"));
 
@@ -91,6 +108,15 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
                 log.info("Queue JS Invoke Stats: pushed [{}] received [{}] invoke [{}] eval [{}] failed [{}] timedOut [{}]",
                         pushedMsgs, invokeMsgs + evalMsgs, invokeMsgs, evalMsgs, failed, timedOut);
             }
+            int batchMsgs = queueBatchMsgs.getAndSet(0);
+            int batchInvocations = queueBatchInvocations.getAndSet(0);
+            int batchResponses = queueBatchResponses.getAndSet(0);
+            long batchLatencyMs = queueBatchLatencyMs.getAndSet(0);
+            if (batchMsgs > 0) {
+                log.info("Queue JS Invoke Batch Stats: batches [{}] invocations [{}] avg fill [{}%] avg latency [{}ms]",
+                        batchMsgs, batchInvocations, batchInvocations * 100 / (batchMsgs * batchMaxSize),
+                        batchResponses > 0 ? batchLatencyMs / batchResponses : 0);
+            }
         }
     }
 
@@ -98,15 +124,25 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
     private TbQueueRequestTemplate<TbProtoJsQueueMsg<JsInvokeProtos.RemoteJsRequest>, TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> requestTemplate;
 
     private Map<UUID, String> scriptIdToBodysMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, RemoteJsInvokeBatch> pendingBatches = new ConcurrentHashMap<>();
+    private ScheduledExecutorService batchExecutor;
 
     @PostConstruct
     public void init() {
         super.init(maxRequestsTimeout);
         requestTemplate.init();
+        if (batchEnabled) {
+            long lingerMs = Math.max(1, batchLingerMs);
+            batchExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("js-executor-remote-batch"));
+            batchExecutor.scheduleWithFixedDelay(this::sendLingeringBatches, lingerMs, lingerMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @PreDestroy
     public void destroy() {
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+        }
         super.stop();
         if (requestTemplate != null) {
             requestTemplate.stop();
@@ -166,6 +202,9 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
         if (scriptBody == null) {
             return Futures.immediateFailedFuture(new RuntimeException("No script body found for scriptId: [" + scriptId + "]!"));
         }
+        if (batchEnabled) {
+            return doInvokeFunctionInBatch(scriptId, functionName, scriptBody, args);
+        }
         JsInvokeProtos.JsInvokeRequest.Builder jsRequestBuilder = JsInvokeProtos.JsInvokeRequest.newBuilder()
                 .setScriptIdMSB(scriptId.getMostSignificantBits())
                 .setScriptIdLSB(scriptId.getLeastSignificantBits())
@@ -207,18 +246,107 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
         return Futures.transform(future, response -> {
             stopWatch.stop();
             log.trace("doInvokeFunction js-response took {}ms for uuid {}", stopWatch.getTotalTimeMillis(), response.getKey());
-            JsInvokeProtos.JsInvokeResponse invokeResult = response.getValue().getInvokeResponse();
-            if (invokeResult.getSuccess()) {
-                return invokeResult.getResult();
-            } else {
-                final RuntimeException e = new RuntimeException(invokeResult.getErrorDetails());
-                onScriptExecutionError(scriptId, e, scriptBody);
-                log.debug("[{}] Failed to compile script due to [{}]: {}", scriptId, invokeResult.getErrorCode().name(), invokeResult.getErrorDetails());
-                throw e;
+            return toInvokeResult(scriptId, scriptBody, response.getValue().getInvokeResponse());
+        }, callbackExecutor);
+    }
+
+    private ListenableFuture<Object> doInvokeFunctionInBatch(UUID scriptId, String functionName, String scriptBody, Object[] args) {
+        SettableFuture<JsInvokeProtos.JsInvokeResponse> invocation = SettableFuture.create();
+        RemoteJsInvokeBatch[] fullBatch = new RemoteJsInvokeBatch[1];
+        pendingBatches.compute(scriptId, (id, batch) -> {
+            if (batch == null) {
+                batch = new RemoteJsInvokeBatch(scriptId, functionName, scriptBody);
+            }
+            batch.add(args, invocation);
+            if (batch.size() >= batchMaxSize) {
+                fullBatch[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (fullBatch[0] != null) {
+            sendBatch(fullBatch[0]);
+        }
+
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> future = invocation;
+        if (maxRequestsTimeout > 0) {
+            future = Futures.withTimeout(future, maxRequestsTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
+        }
+        Futures.addCallback(future, new FutureCallback<JsInvokeProtos.JsInvokeResponse>() {
+            @Override
+            public void onSuccess(@Nullable JsInvokeProtos.JsInvokeResponse result) {
+                queueInvokeMsgs.incrementAndGet();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                onScriptExecutionError(scriptId, t, scriptBody);
+                if (t instanceof TimeoutException || (t.getCause() != null && t.getCause() instanceof TimeoutException)) {
+                    queueTimeoutMsgs.incrementAndGet();
+                }
+                queueFailedMsgs.incrementAndGet();
+            }
+        }, callbackExecutor);
+        return Futures.transform(future, response -> toInvokeResult(scriptId, scriptBody, response), callbackExecutor);
+    }
+
+    private void sendLingeringBatches() {
+        try {
+            long expirationTs = System.currentTimeMillis() - batchLingerMs;
+            for (UUID scriptId : pendingBatches.keySet()) {
+                RemoteJsInvokeBatch[] expiredBatch = new RemoteJsInvokeBatch[1];
+                pendingBatches.computeIfPresent(scriptId, (id, batch) -> {
+                    if (batch.getCreatedTs() <= expirationTs) {
+                        expiredBatch[0] = batch;
+                        return null;
+                    }
+                    return batch;
+                });
+                if (expiredBatch[0] != null) {
+                    sendBatch(expiredBatch[0]);
+                }
+            }
+        } catch (Throwable t) {
+            log.warn("Failed to send JS invoke batches", t);
+        }
+    }
+
+    private void sendBatch(RemoteJsInvokeBatch batch) {
+        JsInvokeProtos.RemoteJsRequest jsRequestWrapper = JsInvokeProtos.RemoteJsRequest.newBuilder()
+                .setInvokeBatchRequest(batch.toProto((int) maxRequestsTimeout))
+                .build();
+        log.trace("Post invoke batch request for scriptId [{}] with [{}] invocations", batch.getScriptId(), batch.size());
+        long sendTs = System.currentTimeMillis();
+        ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> future = requestTemplate.send(new TbProtoJsQueueMsg<>(UUID.randomUUID(), jsRequestWrapper));
+        queuePushedMsgs.incrementAndGet();
+        queueBatchMsgs.incrementAndGet();
+        queueBatchInvocations.addAndGet(batch.size());
+        Futures.addCallback(future, new FutureCallback<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>>() {
+            @Override
+            public void onSuccess(@Nullable TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse> result) {
+                queueBatchResponses.incrementAndGet();
+                queueBatchLatencyMs.addAndGet(System.currentTimeMillis() - sendTs);
+                batch.onResponse(result.getValue().getInvokeBatchResponse());
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                batch.onFailure(t);
             }
         }, callbackExecutor);
     }
 
+    private Object toInvokeResult(UUID scriptId, String scriptBody, JsInvokeProtos.JsInvokeResponse invokeResult) {
+        if (invokeResult.getSuccess()) {
+            return invokeResult.getResult();
+        } else {
+            final RuntimeException e = new RuntimeException(invokeResult.getErrorDetails());
+            onScriptExecutionError(scriptId, e, scriptBody);
+            log.debug("[{}] Failed to compile script due to [{}]: {}", scriptId, invokeResult.getErrorCode().name(), invokeResult.getErrorDetails());
+            throw e;
+        }
+    }
+
     @Override
     protected void doRelease(UUID scriptId, String functionName) throws Exception {
         JsInvokeProtos.JsReleaseRequest jsRequest = JsInvokeProtos.JsReleaseRequest.newBuilder()
@@ -27,6 +27,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.id.CustomerId;
 import org.thingsboard.server.common.data.id.TenantId;
@@ -94,6 +95,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
 
     private static final int DEFAULT_LIMIT = 100;
     private final Map<String, Map<Integer, TbAbstractSubCtx>> subscriptionsBySessionId = new ConcurrentHashMap<>();
+    private final Map<TbEntityDataSharedQueryKey, TbEntityDataSharedQuery> sharedDynamicQueries = new ConcurrentHashMap<>();
 
     @Autowired
     private TelemetryWebSocketService wsService;
@@ -129,6 +131,8 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private long dynamicPageLinkRefreshInterval;
     @Value("${server.ws.dynamic_page_link.refresh_pool_size:1}")
     private int dynamicPageLinkRefreshPoolSize;
+    @Value("${server.ws.dynamic_page_link.share_identical_queries:true}")
+    private boolean shareIdenticalDynamicQueries;
     @Value("${server.ws.max_entities_per_data_subscription:1000}")
     private int maxEntitiesPerDataSubscription;
     @Value("${server.ws.max_entities_per_alarm_subscription:1000}")
@@ -199,13 +203,18 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
             stats.getRegularQueryInvocationCnt().incrementAndGet();
             stats.getRegularQueryTimeSpent().addAndGet(end - start);
             ctx.cancelTasks();
+            unsubscribeFromSharedQuery(ctx);
             if (ctx.getQuery().getPageLink().isDynamic()) {
                 //TODO: validate number of dynamic page links against rate limits. Ignore dynamic flag if limit is reached.
-                TbEntityDataSubCtx finalCtx = ctx;
-                ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
-                        () -> refreshDynamicQuery(finalCtx),
-                        dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
-                finalCtx.setRefreshTask(task);
+                if (shareIdenticalDynamicQueries && ctx.getDynamicValues().isEmpty()) {
+                    subscribeToSharedQuery(ctx);
+                } else {
+                    TbEntityDataSubCtx finalCtx = ctx;
+                    ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
+                            () -> refreshDynamicQuery(finalCtx),
+                            dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
+                    finalCtx.setRefreshTask(task);
+                }
             }
         }
         ListenableFuture<TbEntityDataSubCtx> historyFuture;
@@ -300,6 +309,58 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         }
     }
 
+    private void subscribeToSharedQuery(TbEntityDataSubCtx ctx) {
+        // Dynamic values are resolved per user, so only queries without them are shared.
+        // The key covers the normalized query and the tenant/customer scope the query is evaluated in.
+        TbEntityDataSharedQueryKey key = TbEntityDataSharedQueryKey.of(ctx.getTenantId(), ctx.getCustomerId(), ctx.getQuery());
+        sharedDynamicQueries.compute(key, (k, sharedQuery) -> {
+            if (sharedQuery == null) {
+                log.trace("[{}][{}] Creating shared dynamic query: {}", ctx.getSessionId(), ctx.getCmdId(), k);
+                sharedQuery = new TbEntityDataSharedQuery(k, ctx.getTenantId(), ctx.getCustomerId(), JacksonUtil.clone(ctx.getQuery()));
+                TbEntityDataSharedQuery finalSharedQuery = sharedQuery;
+                ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
+                        () -> refreshSharedQuery(finalSharedQuery),
+                        dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
+                sharedQuery.setRefreshTask(task);
+            }
+            sharedQuery.getSubscribers().add(ctx);
+            ctx.setSharedQueryKey(k);
+            return sharedQuery;
+        });
+    }
+
+    private void unsubscribeFromSharedQuery(TbEntityDataSubCtx ctx) {
+        TbEntityDataSharedQueryKey key = ctx.getSharedQueryKey();
+        if (key != null) {
+            ctx.setSharedQueryKey(null);
+            sharedDynamicQueries.computeIfPresent(key, (k, sharedQuery) -> {
+                sharedQuery.getSubscribers().remove(ctx);
+                if (sharedQuery.getSubscribers().isEmpty()) {
+                    log.trace("[{}][{}] Removing shared dynamic query: {}", ctx.getSessionId(), ctx.getCmdId(), k);
+                    sharedQuery.cancel();
+                    return null;
+                } else {
+                    return sharedQuery;
+                }
+            });
+        }
+    }
+
+    private void refreshSharedQuery(TbEntityDataSharedQuery sharedQuery) {
+        PageData<EntityData> result;
+        try {
+            long start = System.currentTimeMillis();
+            result = entityService.findEntityDataByQuery(sharedQuery.getTenantId(), sharedQuery.getCustomerId(), sharedQuery.getQuery());
+            long end = System.currentTimeMillis();
+            stats.getDynamicQueryInvocationCnt().incrementAndGet();
+            stats.getDynamicQueryTimeSpent().addAndGet(end - start);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to refresh shared query", sharedQuery.getKey(), e);
+            return;
+        }
+        stats.getDynamicQuerySharedUpdateCnt().addAndGet(sharedQuery.update(result));
+    }
+
     @Scheduled(fixedDelayString = "${server.ws.dynamic_page_link.stats:10000}")
     public void printStats() {
         int alarmQueryInvocationCntValue = stats.getAlarmQueryInvocationCnt().getAndSet(0);
@@ -308,13 +369,16 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         long regularQueryInvocationTimeValue = stats.getRegularQueryTimeSpent().getAndSet(0);
         int dynamicQueryInvocationCntValue = stats.getDynamicQueryInvocationCnt().getAndSet(0);
         long dynamicQueryInvocationTimeValue = stats.getDynamicQueryTimeSpent().getAndSet(0);
+        int dynamicQuerySharedUpdateCntValue = stats.getDynamicQuerySharedUpdateCnt().getAndSet(0);
         long dynamicQueryCnt = subscriptionsBySessionId.values().stream().map(Map::values).count();
         if (regularQueryInvocationCntValue > 0 || dynamicQueryInvocationCntValue > 0 || dynamicQueryCnt > 0 || alarmQueryInvocationCntValue > 0) {
             log.info("Stats: regularQueryInvocationCnt = [{}], regularQueryInvocationTime = [{}], " +
                             "dynamicQueryCnt = [{}] dynamicQueryInvocationCnt = [{}], dynamicQueryInvocationTime = [{}], " +
+                            "sharedDynamicQueryCnt = [{}], sharedDynamicQueryUpdateCnt = [{}], " +
                             "alarmQueryInvocationCnt = [{}], alarmQueryInvocationTime = [{}]",
                     regularQueryInvocationCntValue, regularQueryInvocationTimeValue,
                     dynamicQueryCnt, dynamicQueryInvocationCntValue, dynamicQueryInvocationTimeValue,
+                    sharedDynamicQueries.size(), dynamicQuerySharedUpdateCntValue,
                     alarmQueryInvocationCntValue, alarmQueryInvocationTimeValue);
         }
     }
@@ -500,6 +564,9 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private void cleanupAndCancel(TbAbstractSubCtx ctx) {
         if (ctx != null) {
             ctx.cancelTasks();
+            if (ctx instanceof TbEntityDataSubCtx) {
+                unsubscribeFromSharedQuery((TbEntityDataSubCtx) ctx);
+            }
             ctx.clearSubscriptions();
         }
     }
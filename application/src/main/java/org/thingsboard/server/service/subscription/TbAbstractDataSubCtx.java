@@ -77,6 +77,10 @@ public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends
         long end = System.currentTimeMillis();
         stats.getRegularQueryInvocationCnt().incrementAndGet();
         stats.getRegularQueryTimeSpent().addAndGet(end - start);
+        update(newData);
+    }
+
+    protected synchronized void update(PageData<EntityData> newData) {
         Map<EntityId, EntityData> oldDataMap;
         if (data != null && !data.getData().isEmpty()) {
             oldDataMap = data.getData().stream().collect(Collectors.toMap(EntityData::getEntityId, Function.identity(), (a, b) -> a));
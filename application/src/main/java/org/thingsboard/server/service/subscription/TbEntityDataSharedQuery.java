@@ -0,0 +1,116 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Dynamic entity data query that is evaluated once per refresh interval on behalf of all
+ * subscription contexts that use the same query within the same tenant and customer scope.
+ */
+@Slf4j
+public class TbEntityDataSharedQuery {
+
+    @Getter
+    private final TbEntityDataSharedQueryKey key;
+    @Getter
+    private final TenantId tenantId;
+    @Getter
+    private final CustomerId customerId;
+    @Getter
+    private final EntityDataQuery query;
+    @Getter
+    private final Set<TbEntityDataSubCtx> subscribers;
+    @Setter
+    private volatile ScheduledFuture<?> refreshTask;
+
+    public TbEntityDataSharedQuery(TbEntityDataSharedQueryKey key, TenantId tenantId, CustomerId customerId, EntityDataQuery query) {
+        this.key = key;
+        this.tenantId = tenantId;
+        this.customerId = customerId;
+        this.query = query;
+        this.subscribers = ConcurrentHashMap.newKeySet();
+    }
+
+    public void cancel() {
+        if (refreshTask != null) {
+            refreshTask.cancel(true);
+        }
+    }
+
+    /**
+     * Passes a copy of the query result to every subscriber, which computes and sends its own diff.
+     *
+     * @return number of the updated subscribers
+     */
+    public int update(PageData<EntityData> result) {
+        int updated = 0;
+        for (TbEntityDataSubCtx ctx : subscribers) {
+            try {
+                ctx.update(copyOf(result));
+                updated++;
+            } catch (Exception e) {
+                log.warn("[{}][{}] Failed to apply shared query result", ctx.getSessionId(), ctx.getCmdId(), e);
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Subscription contexts modify the entity data they hold (latest values, time-series),
+     * so every subscriber receives its own copy of the shared result.
+     */
+    public static PageData<EntityData> copyOf(PageData<EntityData> result) {
+        List<EntityData> data = new ArrayList<>(result.getData().size());
+        for (EntityData entityData : result.getData()) {
+            Map<EntityKeyType, Map<String, TsValue>> latest = null;
+            if (entityData.getLatest() != null) {
+                latest = new HashMap<>();
+                for (Map.Entry<EntityKeyType, Map<String, TsValue>> entry : entityData.getLatest().entrySet()) {
+                    latest.put(entry.getKey(), entry.getValue() != null ? new HashMap<>(entry.getValue()) : null);
+                }
+            }
+            Map<String, TsValue[]> timeseries = null;
+            if (entityData.getTimeseries() != null) {
+                timeseries = new HashMap<>();
+                for (Map.Entry<String, TsValue[]> entry : entityData.getTimeseries().entrySet()) {
+                    timeseries.put(entry.getKey(), entry.getValue() != null ? Arrays.copyOf(entry.getValue(), entry.getValue().length) : null);
+                }
+            }
+            data.add(new EntityData(entityData.getEntityId(), latest, timeseries));
+        }
+        return new PageData<>(data, result.getTotalPages(), result.getTotalElements(), result.hasNext());
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Data;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Identifies a shared dynamic entity data query by the tenant and customer scope and the normalized query.
+ * The query is normalized to a JSON tree without null fields, which compares the whole filter hierarchy by value
+ * and does not depend on the order of the fields, so equal queries built in a different way are evaluated once.
+ */
+@Data
+public class TbEntityDataSharedQueryKey {
+
+    private final TenantId tenantId;
+    private final CustomerId customerId;
+    private final JsonNode query;
+
+    public static TbEntityDataSharedQueryKey of(TenantId tenantId, CustomerId customerId, EntityDataQuery query) {
+        return new TbEntityDataSharedQueryKey(tenantId, customerId, normalize(JacksonUtil.valueToTree(query)));
+    }
+
+    private static JsonNode normalize(JsonNode node) {
+        if (node.isObject()) {
+            List<String> nullFields = new ArrayList<>();
+            node.fields().forEachRemaining(field -> {
+                if (field.getValue().isNull()) {
+                    nullFields.add(field.getKey());
+                } else {
+                    normalize(field.getValue());
+                }
+            });
+            ((ObjectNode) node).remove(nullFields);
+        } else if (node.isArray()) {
+            node.forEach(TbEntityDataSharedQueryKey::normalize);
+        }
+        return node;
+    }
+
+}
@@ -55,6 +55,9 @@ public class TbEntityDataSubCtx extends TbAbstractDataSubCtx<EntityDataQuery> {
     private LatestValueCmd latestValueCmd;
     @Getter
     private final int maxEntitiesPerDataSubscription;
+    @Getter
+    @Setter
+    private volatile TbEntityDataSharedQueryKey sharedQueryKey;
 
     public TbEntityDataSubCtx(String serviceId, TelemetryWebSocketService wsService, EntityService entityService,
                               TbLocalSubscriptionService localSubscriptionService, AttributesService attributesService,
@@ -42,6 +42,7 @@ import org.thingsboard.server.common.msg.queue.TbCallback;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.dao.alarm.AlarmOperationResult;
 import org.thingsboard.server.dao.alarm.AlarmService;
+import org.thingsboard.server.dao.alarm.LatestAlarmCache;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.queue.discovery.PartitionService;
 import org.thingsboard.server.queue.usagestats.TbApiUsageClient;
@@ -63,16 +64,19 @@ public class DefaultAlarmSubscriptionService extends AbstractSubscriptionService
     private final AlarmService alarmService;
     private final TbApiUsageClient apiUsageClient;
     private final TbApiUsageStateService apiUsageStateService;
+    private final LatestAlarmCache latestAlarmCache;
 
     public DefaultAlarmSubscriptionService(TbClusterService clusterService,
                                            PartitionService partitionService,
                                            AlarmService alarmService,
                                            TbApiUsageClient apiUsageClient,
-                                           TbApiUsageStateService apiUsageStateService) {
+                                           TbApiUsageStateService apiUsageStateService,
+                                           LatestAlarmCache latestAlarmCache) {
         super(clusterService, partitionService);
         this.alarmService = alarmService;
         this.apiUsageClient = apiUsageClient;
         this.apiUsageStateService = apiUsageStateService;
+        this.latestAlarmCache = latestAlarmCache;
     }
 
     @Autowired(required = false)
@@ -163,6 +167,7 @@ public class DefaultAlarmSubscriptionService extends AbstractSubscriptionService
         wsCallBackExecutor.submit(() -> {
             Alarm alarm = result.getAlarm();
             TenantId tenantId = result.getAlarm().getTenantId();
+            invalidateLatestAlarm(alarm);
             for (EntityId entityId : result.getPropagatedEntitiesList()) {
                 TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, tenantId, entityId);
                 if (currentPartitions.contains(tpi)) {
@@ -183,6 +188,7 @@ public class DefaultAlarmSubscriptionService extends AbstractSubscriptionService
         wsCallBackExecutor.submit(() -> {
             Alarm alarm = result.getAlarm();
             TenantId tenantId = result.getAlarm().getTenantId();
+            invalidateLatestAlarm(alarm);
             for (EntityId entityId : result.getPropagatedEntitiesList()) {
                 TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, tenantId, entityId);
                 if (currentPartitions.contains(tpi)) {
@@ -199,6 +205,14 @@ public class DefaultAlarmSubscriptionService extends AbstractSubscriptionService
         });
     }
 
+    private void invalidateLatestAlarm(Alarm alarm) {
+        // the cache of the node that owns the originator was updated by the write, unless the write was made on another node
+        if (latestAlarmCache.isEnabled()
+                && !partitionService.resolve(ServiceType.TB_RULE_ENGINE, alarm.getTenantId(), alarm.getOriginator()).isMyPartition()) {
+            clusterService.broadcastLatestAlarmInvalidation(alarm.getTenantId(), alarm.getOriginator(), alarm.getType());
+        }
+    }
+
     private class AlarmUpdateCallback implements FutureCallback<AlarmOperationResult> {
         @Override
         public void onSuccess(@Nullable AlarmOperationResult result) {
@@ -0,0 +1,75 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.queue.ServiceQueue;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.dao.alarm.LatestAlarmCache;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.discovery.TbApplicationEventListener;
+import org.thingsboard.server.queue.discovery.event.PartitionChangeEvent;
+import org.thingsboard.server.queue.util.TbRuleEngineComponent;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the latest alarm cache to the originators of the rule engine partitions assigned to this node.
+ */
+@Slf4j
+@Service
+@TbRuleEngineComponent
+@RequiredArgsConstructor
+public class LatestAlarmCachePartitionListener extends TbApplicationEventListener<PartitionChangeEvent> {
+
+    private final PartitionService partitionService;
+    private final LatestAlarmCache latestAlarmCache;
+
+    private final Set<TenantId> isolatedTenants = ConcurrentHashMap.newKeySet();
+    private volatile boolean sharedPartitions;
+
+    @Override
+    protected void onTbApplicationEvent(PartitionChangeEvent event) {
+        if (latestAlarmCache.isEnabled() && ServiceType.TB_RULE_ENGINE.equals(event.getServiceType())
+                && ServiceQueue.MAIN.equals(event.getServiceQueueKey().getServiceQueue().getQueue())) {
+            log.debug("Rule engine partitions changed, updating latest alarm cache: {}", event.getPartitions());
+            TenantId queueTenantId = event.getServiceQueueKey().getTenantId();
+            boolean hasPartitions = !event.getPartitions().isEmpty();
+            if (queueTenantId == null || TenantId.SYS_TENANT_ID.equals(queueTenantId)) {
+                sharedPartitions = hasPartitions;
+            } else if (hasPartitions) {
+                isolatedTenants.add(queueTenantId);
+            } else {
+                isolatedTenants.remove(queueTenantId);
+            }
+            latestAlarmCache.onPartitionsChange((tenantId, entityId) ->
+                    partitionService.resolve(ServiceType.TB_RULE_ENGINE, tenantId, entityId).isMyPartition(), this::isLocalTenant);
+        }
+    }
+
+    private boolean isLocalTenant(TenantId tenantId) {
+        if (isolatedTenants.contains(tenantId)) {
+            return true;
+        }
+        // isolated tenants of other nodes have their own partitions, the rest of the tenants share the common ones
+        return sharedPartitions && !partitionService.resolve(ServiceType.TB_RULE_ENGINE, tenantId, tenantId).getTenantId().isPresent();
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import io.micrometer.core.instrument.Timer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+import org.thingsboard.server.common.stats.MsgLatencyStage;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbMsgLatencyTracerTest {
+
+    static final String QUEUE_NAME = "Main";
+
+    StatsFactory statsFactory;
+    Timer timer;
+    TbMsgLatencyTracer tracer;
+    TenantId tenantId = new TenantId(UUID.randomUUID());
+
+    @Before
+    public void setUp() {
+        statsFactory = mock(StatsFactory.class);
+        timer = mock(Timer.class);
+        tracer = new TbMsgLatencyTracer(statsFactory);
+        ReflectionTestUtils.setField(tracer, "sampleRate", 1.0);
+        ReflectionTestUtils.setField(tracer, "maxPerRuleChain", 5);
+    }
+
+    @Test
+    public void givenLatencyDisabled_whenMsgProcessed_thenNothingRecorded() {
+        TbMsgTrace trace = tracer.onDequeued(QUEUE_NAME, tenantId, enqueuedMsg());
+        tracer.onProcessed(QUEUE_NAME, trace);
+
+        assertFalse(tracer.isEnabled());
+        assertFalse(trace.isSampled());
+        verify(statsFactory, never()).getMsgLatencyTimer(any(), anyString(), anyString());
+    }
+
+    @Test
+    public void givenLatencyEnabled_whenMsgProcessed_thenAllRuleEngineStagesRecorded() {
+        ReflectionTestUtils.setField(tracer, "latencyEnabled", true);
+        when(statsFactory.getMsgLatencyTimer(any(), eq(QUEUE_NAME), eq(tenantId.getId().toString()))).thenReturn(timer);
+
+        TbMsgTrace trace = tracer.onDequeued(QUEUE_NAME, tenantId, enqueuedMsg());
+        tracer.onProcessed(QUEUE_NAME, trace);
+
+        verify(statsFactory).getMsgLatencyTimer(MsgLatencyStage.QUEUE, QUEUE_NAME, tenantId.getId().toString());
+        verify(statsFactory).getMsgLatencyTimer(MsgLatencyStage.RULE_ENGINE, QUEUE_NAME, tenantId.getId().toString());
+        verify(statsFactory).getMsgLatencyTimer(MsgLatencyStage.END_TO_END, QUEUE_NAME, tenantId.getId().toString());
+        verify(timer, times(3)).record(anyLong(), eq(TimeUnit.MILLISECONDS));
+        assertTrue(trace.getEndTs() >= trace.getDequeueTs());
+    }
+
+    @Test
+    public void givenMsgNotSerialized_whenDequeued_thenQueueStageSkipped() {
+        ReflectionTestUtils.setField(tracer, "latencyEnabled", true);
+
+        tracer.onDequeued(QUEUE_NAME, tenantId, newMsg());
+
+        verify(statsFactory, never()).getMsgLatencyTimer(eq(MsgLatencyStage.QUEUE), anyString(), anyString());
+    }
+
+    @Test
+    public void givenSlowestMsgsEnabled_whenMsgDequeued_thenTraceSampled() {
+        ReflectionTestUtils.setField(tracer, "slowestMsgsEnabled", true);
+
+        TbMsgTrace trace = tracer.onDequeued(QUEUE_NAME, tenantId, enqueuedMsg());
+
+        assertTrue(tracer.isEnabled());
+        assertTrue(trace.isSampled());
+        assertEquals(0L, trace.getEndTs());
+    }
+
+    private TbMsg newMsg() {
+        return TbMsg.newMsg("POST_TELEMETRY_REQUEST", new DeviceId(UUID.randomUUID()), new TbMsgMetaData(), "{\"temperature\":42}");
+    }
+
+    private TbMsg enqueuedMsg() {
+        return TbMsg.fromBytes(QUEUE_NAME, TbMsg.toByteArray(newMsg()), TbMsgCallback.EMPTY);
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Test;
+import org.thingsboard.server.gen.js.JsInvokeProtos;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RemoteJsInvokeBatchTest {
+
+    private final UUID scriptId = UUID.randomUUID();
+
+    @Test
+    public void givenInvocations_whenConvertedToProto_thenArgsKeptInOrder() {
+        RemoteJsInvokeBatch batch = new RemoteJsInvokeBatch(scriptId, "invokeInternal", "return msg;");
+        batch.add(new Object[]{"{\"a\":1}", "{}", "POST_TELEMETRY_REQUEST"}, SettableFuture.create());
+        batch.add(new Object[]{"{\"a\":2}", "{}", "POST_TELEMETRY_REQUEST"}, SettableFuture.create());
+
+        JsInvokeProtos.JsInvokeBatchRequest request = batch.toProto(5000);
+
+        assertEquals(scriptId, new UUID(request.getScriptIdMSB(), request.getScriptIdLSB()));
+        assertEquals(5000, request.getTimeout());
+        assertEquals(2, request.getInvocationsCount());
+        assertEquals("{\"a\":2}", request.getInvocations(1).getArgs(0));
+    }
+
+    @Test
+    public void givenBatchResponse_whenReceived_thenEveryInvocationCompletedWithItsOwnResult() throws Exception {
+        RemoteJsInvokeBatch batch = new RemoteJsInvokeBatch(scriptId, "invokeInternal", "return msg;");
+        SettableFuture<JsInvokeProtos.JsInvokeResponse> first = SettableFuture.create();
+        SettableFuture<JsInvokeProtos.JsInvokeResponse> second = SettableFuture.create();
+        SettableFuture<JsInvokeProtos.JsInvokeResponse> third = SettableFuture.create();
+        batch.add(new Object[]{"1"}, first);
+        batch.add(new Object[]{"2"}, second);
+        batch.add(new Object[]{"3"}, third);
+
+        batch.onResponse(JsInvokeProtos.JsInvokeBatchResponse.newBuilder()
+                .addResponses(JsInvokeProtos.JsInvokeResponse.newBuilder().setSuccess(true).setResult("one"))
+                .addResponses(JsInvokeProtos.JsInvokeResponse.newBuilder().setSuccess(false)
+                        .setErrorCode(JsInvokeProtos.JsInvokeErrorCode.RUNTIME_ERROR).setErrorDetails("failed"))
+                .build());
+
+        assertEquals("one", first.get().getResult());
+        assertFalse(second.get().getSuccess());
+        assertTrue(third.isDone());
+        try {
+            third.get();
+            fail("Invocation without response should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RuntimeException);
+        }
+    }
+
+    @Test
+    public void givenBatchRequestFailed_whenFailureReceived_thenAllInvocationsFailed() {
+        RemoteJsInvokeBatch batch = new RemoteJsInvokeBatch(scriptId, "invokeInternal", "return msg;");
+        SettableFuture<JsInvokeProtos.JsInvokeResponse> first = SettableFuture.create();
+        SettableFuture<JsInvokeProtos.JsInvokeResponse> second = SettableFuture.create();
+        batch.add(new Object[]{"1"}, first);
+        batch.add(new Object[]{"2"}, second);
+
+        batch.onFailure(new RuntimeException("timeout"));
+
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+    }
+
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.id.AssetId;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.DeviceSearchQueryFilter;
+import org.thingsboard.server.common.data.query.DeviceTypeFilter;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityDataPageLink;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityFilter;
+import org.thingsboard.server.common.data.query.EntityKey;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.common.data.relation.EntitySearchDirection;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbEntityDataSharedQueryTest {
+
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private final CustomerId customerId = new CustomerId(UUID.randomUUID());
+
+    @Mock
+    private TbEntityDataSubCtx firstCtx;
+    @Mock
+    private TbEntityDataSubCtx secondCtx;
+
+    @Test
+    public void givenEqualQueries_whenKeysCreated_thenKeysAreEqual() {
+        EntityDataQuery query = newQuery(newDeviceTypeFilter("thermostat"));
+        EntityDataQuery sameQuery = JacksonUtil.fromString(
+                "{\"latestValues\":[{\"key\":\"temperature\",\"type\":\"TIME_SERIES\"}]," +
+                        "\"pageLink\":{\"dynamic\":true,\"page\":0,\"pageSize\":10}," +
+                        "\"entityFilter\":{\"deviceNameFilter\":\"\",\"deviceType\":\"thermostat\",\"type\":\"deviceType\"}}",
+                EntityDataQuery.class);
+
+        TbEntityDataSharedQueryKey key = TbEntityDataSharedQueryKey.of(tenantId, customerId, query);
+        TbEntityDataSharedQueryKey sameKey = TbEntityDataSharedQueryKey.of(tenantId, customerId, sameQuery);
+
+        assertThat(key, is(sameKey));
+        assertThat(key.hashCode(), is(sameKey.hashCode()));
+    }
+
+    @Test
+    public void givenDifferentScopeOrQuery_whenKeysCreated_thenKeysAreNotEqual() {
+        EntityDataQuery query = newQuery(newDeviceTypeFilter("thermostat"));
+        TbEntityDataSharedQueryKey key = TbEntityDataSharedQueryKey.of(tenantId, customerId, query);
+
+        assertThat(key, not(TbEntityDataSharedQueryKey.of(tenantId, new CustomerId(UUID.randomUUID()), query)));
+        assertThat(key, not(TbEntityDataSharedQueryKey.of(new TenantId(UUID.randomUUID()), customerId, query)));
+        assertThat(key, not(TbEntityDataSharedQueryKey.of(tenantId, customerId, newQuery(newDeviceTypeFilter("meter")))));
+    }
+
+    @Test
+    public void givenSearchQueriesWithDifferentRootEntity_whenKeysCreated_thenKeysAreNotEqual() {
+        // the filter fields inherited from EntitySearchQueryFilter are not a part of the equals of the filter
+        TbEntityDataSharedQueryKey key = TbEntityDataSharedQueryKey.of(tenantId, customerId,
+                newQuery(newDeviceSearchFilter(new AssetId(UUID.randomUUID()))));
+        TbEntityDataSharedQueryKey otherKey = TbEntityDataSharedQueryKey.of(tenantId, customerId,
+                newQuery(newDeviceSearchFilter(new AssetId(UUID.randomUUID()))));
+
+        assertThat(key, not(otherKey));
+    }
+
+    @Test
+    public void givenSubscribers_whenUpdated_thenEverySubscriberGetsOwnCopyOfResult() {
+        TbEntityDataSharedQuery sharedQuery = newSharedQuery();
+        sharedQuery.getSubscribers().add(firstCtx);
+        sharedQuery.getSubscribers().add(secondCtx);
+        PageData<EntityData> result = newResult();
+
+        assertThat(sharedQuery.update(result), is(2));
+
+        PageData<EntityData> firstData = captureUpdate(firstCtx);
+        PageData<EntityData> secondData = captureUpdate(secondCtx);
+        assertThat(firstData, not(sameInstance(secondData)));
+        assertThat(firstData.getData().get(0).getEntityId(), is(result.getData().get(0).getEntityId()));
+        assertThat(firstData.getData().get(0).getLatest(), is(result.getData().get(0).getLatest()));
+        assertThat(secondData.getData().get(0).getTimeseries().get("temperature")[0], is(new TsValue(1L, "21")));
+    }
+
+    @Test
+    public void givenSubscriberModifiesItsCopy_whenUpdated_thenOtherSubscribersAndResultAreNotAffected() {
+        TbEntityDataSharedQuery sharedQuery = newSharedQuery();
+        sharedQuery.getSubscribers().add(firstCtx);
+        sharedQuery.getSubscribers().add(secondCtx);
+        PageData<EntityData> result = newResult();
+        sharedQuery.update(result);
+
+        EntityData first = captureUpdate(firstCtx).getData().get(0);
+        first.getLatest().get(EntityKeyType.TIME_SERIES).put("temperature", new TsValue(2L, "22"));
+        first.getTimeseries().get("temperature")[0] = new TsValue(2L, "22");
+
+        EntityData second = captureUpdate(secondCtx).getData().get(0);
+        assertThat(second.getLatest().get(EntityKeyType.TIME_SERIES).get("temperature"), is(new TsValue(1L, "21")));
+        assertThat(second.getTimeseries().get("temperature")[0], is(new TsValue(1L, "21")));
+        EntityData original = result.getData().get(0);
+        assertThat(original.getLatest().get(EntityKeyType.TIME_SERIES).get("temperature"), is(new TsValue(1L, "21")));
+        assertThat(original.getTimeseries().get("temperature")[0], is(new TsValue(1L, "21")));
+    }
+
+    private PageData<EntityData> captureUpdate(TbEntityDataSubCtx ctx) {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<PageData<EntityData>> captor = ArgumentCaptor.forClass(PageData.class);
+        verify(ctx).update(captor.capture());
+        return captor.getValue();
+    }
+
+    private TbEntityDataSharedQuery newSharedQuery() {
+        EntityDataQuery query = newQuery(newDeviceTypeFilter("thermostat"));
+        return new TbEntityDataSharedQuery(TbEntityDataSharedQueryKey.of(tenantId, customerId, query), tenantId, customerId, query);
+    }
+
+    private PageData<EntityData> newResult() {
+        Map<String, TsValue> values = new HashMap<>();
+        values.put("temperature", new TsValue(1L, "21"));
+        Map<EntityKeyType, Map<String, TsValue>> latest = new HashMap<>();
+        latest.put(EntityKeyType.TIME_SERIES, values);
+        Map<String, TsValue[]> timeseries = new HashMap<>();
+        timeseries.put("temperature", new TsValue[]{new TsValue(1L, "21")});
+        EntityData entityData = new EntityData(new DeviceId(UUID.randomUUID()), latest, timeseries);
+        return new PageData<>(Collections.singletonList(entityData), 1, 1, false);
+    }
+
+    private static EntityDataQuery newQuery(EntityFilter filter) {
+        EntityDataPageLink pageLink = new EntityDataPageLink(10, 0, null, null, true);
+        List<EntityKey> latestValues = Collections.singletonList(new EntityKey(EntityKeyType.TIME_SERIES, "temperature"));
+        return new EntityDataQuery(filter, pageLink, null, latestValues, null);
+    }
+
+    private static DeviceTypeFilter newDeviceTypeFilter(String deviceType) {
+        DeviceTypeFilter filter = new DeviceTypeFilter();
+        filter.setDeviceType(deviceType);
+        filter.setDeviceNameFilter("");
+        return filter;
+    }
+
+    private static DeviceSearchQueryFilter newDeviceSearchFilter(AssetId rootEntity) {
+        DeviceSearchQueryFilter filter = new DeviceSearchQueryFilter();
+        filter.setRootEntity(rootEntity);
+        filter.setDirection(EntitySearchDirection.FROM);
+        filter.setRelationType("Contains");
+        filter.setMaxLevel(1);
+        filter.setDeviceTypes(Collections.singletonList("thermostat"));
+        return filter;
+    }
+
+}
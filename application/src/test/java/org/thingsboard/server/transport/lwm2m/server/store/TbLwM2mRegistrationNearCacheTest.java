@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.lwm2m.server.store;
+
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.server.registration.Registration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TbLwM2mRegistrationNearCacheTest {
+
+    static final long MAX_SIZE = 10;
+    static final long TTL_MS = 60000;
+
+    AtomicLong nanos;
+    TbLwM2mRegistrationNearCache cache;
+
+    @BeforeEach
+    void setUp() {
+        nanos = new AtomicLong();
+        cache = new TbLwM2mRegistrationNearCache(MAX_SIZE, TTL_MS, nanos::get);
+    }
+
+    @Test
+    void givenCachedRegistration_whenGetByEndpointOrRegistrationId_thenCachedInstanceReturned() {
+        Registration registration = registration("reg-1", "ep-1");
+        byte[] data = new byte[]{1};
+        cache.put(registration, data);
+
+        assertThat(cache.getByEndpoint("ep-1").getRegistration()).isSameAs(registration);
+        assertThat(cache.getByEndpoint("ep-1").getData()).isSameAs(data);
+        assertThat(cache.getByRegistrationId("reg-1").getRegistration()).isSameAs(registration);
+        assertThat(cache.getByEndpoint("ep-2")).isNull();
+        assertThat(cache.getByRegistrationId("reg-2")).isNull();
+    }
+
+    @Test
+    void givenEndpointRegisteredAgain_whenGetByOldRegistrationId_thenMiss() {
+        cache.put(registration("reg-1", "ep-1"), new byte[0]);
+        Registration registration = registration("reg-2", "ep-1");
+        cache.put(registration, new byte[0]);
+
+        assertThat(cache.getByRegistrationId("reg-1")).isNull();
+        assertThat(cache.getByRegistrationId("reg-2").getRegistration()).isSameAs(registration);
+    }
+
+    @Test
+    void givenInvalidatedEndpoint_whenGet_thenMiss() {
+        cache.put(registration("reg-1", "ep-1"), new byte[0]);
+        cache.put(registration("reg-2", "ep-2"), new byte[0]);
+
+        cache.invalidate("ep-1");
+
+        assertThat(cache.getByEndpoint("ep-1")).isNull();
+        assertThat(cache.getByRegistrationId("reg-1")).isNull();
+        assertThat(cache.getByEndpoint("ep-2")).isNotNull();
+    }
+
+    @Test
+    void givenInvalidationDuringRead_whenPutIfNotInvalidated_thenNotCached() {
+        long seq = cache.getInvalidationSeq();
+        cache.invalidate("ep-2");
+
+        cache.putIfNotInvalidated(seq, registration("reg-1", "ep-1"), new byte[0]);
+
+        assertThat(cache.getByEndpoint("ep-1")).isNull();
+        cache.putIfNotInvalidated(cache.getInvalidationSeq(), registration("reg-1", "ep-1"), new byte[0]);
+        assertThat(cache.getByEndpoint("ep-1")).isNotNull();
+    }
+
+    @Test
+    void givenTtlPassed_whenGet_thenExpired() {
+        cache.put(registration("reg-1", "ep-1"), new byte[0]);
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MS - 1));
+        assertThat(cache.getByEndpoint("ep-1")).isNotNull();
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(cache.getByEndpoint("ep-1")).isNull();
+        assertThat(cache.getByRegistrationId("reg-1")).isNull();
+    }
+
+    @Test
+    void givenMoreRegistrationsThanMaxSize_whenCleanedUp_thenSizeBounded() {
+        for (int i = 0; i < MAX_SIZE * 3; i++) {
+            cache.put(registration("reg-" + i, "ep-" + i), new byte[0]);
+        }
+
+        cache.cleanUp();
+
+        assertThat(cache.size()).isLessThanOrEqualTo(MAX_SIZE);
+    }
+
+    private static Registration registration(String registrationId, String endpoint) {
+        return new Registration.Builder(registrationId, endpoint, Identity.unsecure(new InetSocketAddress("localhost", 5683))).build();
+    }
+
+}
@@ -30,8 +30,10 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -43,15 +45,25 @@ public class DefaultTbActorSystem implements TbActorSystem {
     private final ConcurrentMap<TbActorId, TbActorMailbox> actors = new ConcurrentHashMap<>();
     private final ConcurrentMap<TbActorId, ReentrantLock> actorCreationLocks = new ConcurrentHashMap<>();
     private final ConcurrentMap<TbActorId, Set<TbActorId>> parentChildMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> actorsCount = new ConcurrentHashMap<>();
 
     @Getter
     private final TbActorSystemSettings settings;
     @Getter
     private final ScheduledExecutorService scheduler;
+    private final Function<String, AtomicInteger> actorsCountFactory;
 
     public DefaultTbActorSystem(TbActorSystemSettings settings) {
+        this(settings, type -> new AtomicInteger());
+    }
+
+    /**
+     * @param actorsCountFactory creates the counter of the live actors of the given type, e.g. registered as a gauge
+     */
+    public DefaultTbActorSystem(TbActorSystemSettings settings, Function<String, AtomicInteger> actorsCountFactory) {
         this.settings = settings;
         this.scheduler = Executors.newScheduledThreadPool(settings.getSchedulerPoolSize(), ThingsBoardThreadFactory.forName("actor-system-scheduler"));
+        this.actorsCountFactory = actorsCountFactory;
     }
 
     @Override
@@ -115,6 +127,7 @@ public class DefaultTbActorSystem implements TbActorSystem {
                     }
                     TbActorMailbox mailbox = new TbActorMailbox(this, settings, actorId, parentRef, actor, dispatcher);
                     actors.put(actorId, mailbox);
+                    getActorsCount(actorId).incrementAndGet();
                     mailbox.initActor();
                     actorMailbox = mailbox;
                     if (parent != null) {
@@ -192,10 +205,44 @@ public class DefaultTbActorSystem implements TbActorSystem {
         }
         TbActorMailbox mailbox = actors.remove(actorId);
         if (mailbox != null) {
+            getActorsCount(actorId).decrementAndGet();
+            TbActorRef parentRef = mailbox.getParentRef();
+            if (parentRef != null) {
+                Set<TbActorId> siblings = parentChildMap.get(parentRef.getActorId());
+                if (siblings != null) {
+                    siblings.remove(actorId);
+                }
+            }
             mailbox.destroy();
         }
     }
 
+    @Override
+    public boolean stopIfIdle(TbActorId actorId) {
+        TbActorMailbox mailbox = actors.get(actorId);
+        return mailbox != null && mailbox.tryStopIfIdle();
+    }
+
+    /**
+     * Returns the number of live actors of the given type: entity type for the entity actors or the id of the other actors.
+     */
+    public int getActorsCount(String type) {
+        AtomicInteger count = actorsCount.get(type);
+        return count != null ? count.get() : 0;
+    }
+
+    private AtomicInteger getActorsCount(TbActorId actorId) {
+        return actorsCount.computeIfAbsent(getActorType(actorId), actorsCountFactory);
+    }
+
+    private static String getActorType(TbActorId actorId) {
+        if (actorId instanceof TbEntityActorId) {
+            return ((TbEntityActorId) actorId).getEntityId().getEntityType().name();
+        } else {
+            return actorId.toString();
+        }
+    }
+
     @Override
     public void stop() {
         dispatchers.values().forEach(dispatcher -> {
@@ -210,6 +257,7 @@ public class DefaultTbActorSystem implements TbActorSystem {
             scheduler.shutdownNow();
         }
         actors.clear();
+        actorsCount.values().forEach(count -> count.set(0));
     }
 
 }
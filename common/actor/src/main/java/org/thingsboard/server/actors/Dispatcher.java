@@ -16,6 +16,7 @@
 package org.thingsboard.server.actors;
 
 import lombok.Data;
+import org.thingsboard.server.common.data.id.TenantId;
 
 import java.util.concurrent.ExecutorService;
 
@@ -25,4 +26,12 @@ class Dispatcher {
     private final String dispatcherId;
     private final ExecutorService executor;
 
+    void execute(TenantId tenantId, Runnable task) {
+        if (tenantId != null && executor instanceof TbTenantFairExecutor) {
+            ((TbTenantFairExecutor) executor).execute(tenantId, task);
+        } else {
+            executor.execute(task);
+        }
+    }
+
 }
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.actors;
 
+import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.msg.TbActorMsg;
 
 public interface TbActor {
@@ -29,6 +30,21 @@ public interface TbActor {
     default void destroy() throws TbActorException {
     }
 
+    /**
+     * Whether the actor may be stopped because it holds no state that would be lost.
+     * The actor is created again on the next message. Called only while no messages of the actor are processed.
+     */
+    default boolean isIdle() {
+        return false;
+    }
+
+    /**
+     * Tenant the actor works for. Used by {@link TbTenantFairExecutor} to share the dispatcher threads between the tenants.
+     */
+    default TenantId getTenantId() {
+        return null;
+    }
+
     default InitFailureStrategy onInitFailure(int attempt, Throwable t) {
         return InitFailureStrategy.retryWithDelay(5000L * attempt);
     }
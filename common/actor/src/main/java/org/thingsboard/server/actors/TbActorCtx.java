@@ -31,6 +31,8 @@ public interface TbActorCtx extends TbActorRef {
 
     void stop(TbActorId target);
 
+    boolean stopIfIdle(TbActorId target);
+
     TbActorRef getOrCreateChildActor(TbActorId actorId, Supplier<String> dispatcher, Supplier<TbActorCreator> creator);
 
     void broadcastToChildren(TbActorMsg msg);
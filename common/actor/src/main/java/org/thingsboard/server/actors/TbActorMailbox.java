@@ -54,7 +54,7 @@ public final class TbActorMailbox implements TbActorCtx {
     private volatile TbActorStopReason stopReason;
 
     public void initActor() {
-        dispatcher.getExecutor().execute(() -> tryInit(1));
+        dispatch(() -> tryInit(1));
     }
 
     private void tryInit(int attempt) {
@@ -78,11 +78,11 @@ public final class TbActorMailbox implements TbActorCtx {
             } else if (strategy.getRetryDelay() > 0) {
                 log.info("[{}] Failed to init actor, attempt {}, going to retry in attempts in {}ms", selfId, attempt, strategy.getRetryDelay());
                 log.debug("[{}] Error", selfId, t);
-                system.getScheduler().schedule(() -> dispatcher.getExecutor().execute(() -> tryInit(attemptIdx)), strategy.getRetryDelay(), TimeUnit.MILLISECONDS);
+                system.getScheduler().schedule(() -> dispatch(() -> tryInit(attemptIdx)), strategy.getRetryDelay(), TimeUnit.MILLISECONDS);
             } else {
                 log.info("[{}] Failed to init actor, attempt {}, going to retry immediately", selfId, attempt);
                 log.debug("[{}] Error", selfId, t);
-                dispatcher.getExecutor().execute(() -> tryInit(attemptIdx));
+                dispatch(() -> tryInit(attemptIdx));
             }
         }
     }
@@ -116,7 +116,7 @@ public final class TbActorMailbox implements TbActorCtx {
         if (ready.get() == READY) {
             if (newMsg || !highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty()) {
                 if (busy.compareAndSet(FREE, BUSY)) {
-                    dispatcher.getExecutor().execute(this::processMailbox);
+                    dispatch(this::processMailbox);
                 } else {
                     log.trace("[{}] MessageBox is busy, new msg: {}", selfId, newMsg);
                 }
@@ -156,12 +156,16 @@ public final class TbActorMailbox implements TbActorCtx {
         }
         if (noMoreElements) {
             busy.set(FREE);
-            dispatcher.getExecutor().execute(() -> tryProcessQueue(false));
+            dispatch(() -> tryProcessQueue(false));
         } else {
-            dispatcher.getExecutor().execute(this::processMailbox);
+            dispatch(this::processMailbox);
         }
     }
 
+    private void dispatch(Runnable task) {
+        dispatcher.execute(actor.getTenantId(), task);
+    }
+
     @Override
     public TbActorId getSelf() {
         return selfId;
@@ -192,6 +196,36 @@ public final class TbActorMailbox implements TbActorCtx {
         system.stop(target);
     }
 
+    @Override
+    public boolean stopIfIdle(TbActorId target) {
+        return system.stopIfIdle(target);
+    }
+
+    /**
+     * Marks the mailbox as busy, so the messages are not processed while the actor is checked,
+     * and stops the actor if there are no pending messages and the actor is idle.
+     * Messages that are added after the check are discarded along with the actor.
+     */
+    boolean tryStopIfIdle() {
+        if (ready.get() != READY || !busy.compareAndSet(FREE, BUSY)) {
+            return false;
+        }
+        boolean idle = false;
+        try {
+            idle = highPriorityMsgs.isEmpty() && normalPriorityMsgs.isEmpty() && actor.isIdle();
+        } catch (Throwable t) {
+            log.debug("[{}] Failed to check whether actor is idle", selfId, t);
+        }
+        if (idle) {
+            log.debug("[{}] Stopping idle actor", selfId);
+            system.stop(selfId);
+        } else {
+            busy.set(FREE);
+            tryProcessQueue(false);
+        }
+        return idle;
+    }
+
     @Override
     public TbActorRef getOrCreateChildActor(TbActorId actorId, Supplier<String> dispatcher, Supplier<TbActorCreator> creator) {
         TbActorRef actorRef = system.getActor(actorId);
@@ -207,7 +241,7 @@ public final class TbActorMailbox implements TbActorCtx {
             stopReason = TbActorStopReason.STOPPED;
         }
         destroyInProgress.set(true);
-        dispatcher.getExecutor().execute(() -> {
+        dispatch(() -> {
             try {
                 ready.set(NOT_READY);
                 actor.destroy();
@@ -44,6 +44,13 @@ public interface TbActorSystem {
 
     void stop(TbActorId actorId);
 
+    /**
+     * Stops the actor if its mailbox is empty and the actor is {@link TbActor#isIdle() idle}.
+     *
+     * @return true if the actor is stopped
+     */
+    boolean stopIfIdle(TbActorId actorId);
+
     void stop();
 
     void broadcastToChildren(TbActorId parent, TbActorMsg msg);
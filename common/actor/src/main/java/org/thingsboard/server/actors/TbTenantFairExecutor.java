@@ -0,0 +1,394 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Executor that shares its threads between the tenants using deficit round robin.
+ * <p>
+ * Tasks of each tenant are queued separately. Tenants with pending tasks are served in turns: in every turn a tenant
+ * gets a time quantum multiplied by its weight and its tasks are started until the quantum is used up. The average time
+ * of the tenant tasks is charged when a task is started, so several threads do not start the tasks of the same tenant
+ * on the same credit, and the difference to the actual time is settled once the task completes. A tenant with slow tasks
+ * therefore gets fewer turns instead of delaying the tasks of the other tenants. Tasks of one tenant run on several
+ * threads at once if the other tenants are idle.
+ * <p>
+ * CPU time of the tasks is accumulated per tenant for monitoring. Queues and meters of the tenants are removed
+ * once the tenants are idle for a while or deleted.
+ */
+@Slf4j
+public class TbTenantFairExecutor extends AbstractExecutorService {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    // weight of the last task time in the average task time of the tenant
+    private static final int AVG_TASK_TIME_SMOOTHING = 8;
+
+    /**
+     * Registers the meters of the tenant.
+     */
+    @FunctionalInterface
+    public interface TenantMetersFactory {
+
+        /**
+         * @param cpuTimeNs CPU time of the tenant tasks in nanoseconds
+         * @return action that removes the registered meters
+         */
+        Runnable register(TenantId tenantId, AtomicLong cpuTimeNs);
+
+    }
+
+    private final long quantumNs;
+    private final ToIntFunction<TenantId> weightFunction;
+    private final TenantMetersFactory metersFactory;
+    private final boolean cpuTimeSupported;
+
+    private final ConcurrentMap<TenantId, TenantQueue> queues = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    // tenants with pending tasks, guarded by the lock
+    private final Deque<TenantQueue> active = new ArrayDeque<>();
+    private final List<Thread> workers;
+    private volatile boolean shutdown;
+
+    public TbTenantFairExecutor(String name, int poolSize, long quantumNs, ToIntFunction<TenantId> weightFunction,
+                                TenantMetersFactory metersFactory) {
+        this.quantumNs = Math.max(1, quantumNs);
+        this.weightFunction = weightFunction;
+        this.metersFactory = metersFactory;
+        this.cpuTimeSupported = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+        ThreadFactory threadFactory = ThingsBoardThreadFactory.forName(name);
+        this.workers = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            Thread worker = threadFactory.newThread(this::runWorker);
+            workers.add(worker);
+        }
+        workers.forEach(Thread::start);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        execute(TenantId.SYS_TENANT_ID, task);
+    }
+
+    public void execute(TenantId tenantId, Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        while (true) {
+            TenantQueue queue = getQueue(tenantId);
+            lock.lock();
+            try {
+                if (queue.removed) {
+                    // the queue was removed concurrently, the task goes to the new queue of the tenant
+                    continue;
+                }
+                queue.tasks.add(task);
+                if (!queue.active) {
+                    queue.active = true;
+                    active.addLast(queue);
+                    notEmpty.signal();
+                }
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Resolves the weights of the known tenants again, e.g. after the tenant profiles are updated.
+     */
+    public void refreshWeights() {
+        queues.values().forEach(queue -> queue.weight = resolveWeight(queue.tenantId));
+    }
+
+    /**
+     * Removes the queues and meters of the tenants that have no pending or running tasks for the given period.
+     */
+    public void removeIdleTenants(long idleTimeoutNs) {
+        long now = System.nanoTime();
+        List<TenantQueue> removed = new ArrayList<>();
+        lock.lock();
+        try {
+            for (TenantQueue queue : queues.values()) {
+                if (now - queue.lastCompletedNs >= idleTimeoutNs && removeIfIdle(queue)) {
+                    removed.add(queue);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        removed.forEach(this::unregisterMeters);
+    }
+
+    /**
+     * Removes the queue and meters of the deleted tenant once its pending tasks are completed.
+     */
+    public void removeTenant(TenantId tenantId) {
+        TenantQueue queue = queues.get(tenantId);
+        if (queue == null) {
+            return;
+        }
+        boolean removed;
+        lock.lock();
+        try {
+            queue.removeWhenIdle = true;
+            removed = removeIfIdle(queue);
+        } finally {
+            lock.unlock();
+        }
+        if (removed) {
+            unregisterMeters(queue);
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            TenantQueue queue;
+            Runnable task;
+            long estimateNs;
+            lock.lock();
+            try {
+                while (active.isEmpty()) {
+                    if (shutdown) {
+                        return;
+                    }
+                    notEmpty.await();
+                }
+                queue = nextQueue();
+                task = queue.tasks.poll();
+                estimateNs = queue.avgTaskNs;
+                queue.deficitNs -= estimateNs;
+                queue.running++;
+                if (queue.tasks.isEmpty()) {
+                    active.pollFirst();
+                    queue.active = false;
+                    // unused credit is not kept by the idle tenants
+                    queue.deficitNs = Math.min(queue.deficitNs, 0);
+                }
+            } catch (InterruptedException e) {
+                if (shutdown) {
+                    return;
+                }
+                continue;
+            } finally {
+                lock.unlock();
+            }
+            long startCpuNs = cpuTimeSupported ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+            long startNs = System.nanoTime();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.warn("[{}] Failed to execute task", queue.tenantId, t);
+            }
+            long taskNs = System.nanoTime() - startNs;
+            if (cpuTimeSupported) {
+                queue.cpuTimeNs.addAndGet(THREAD_MX_BEAN.getCurrentThreadCpuTime() - startCpuNs);
+            }
+            onTaskCompleted(queue, estimateNs, taskNs);
+        }
+    }
+
+    /**
+     * Returns the first active tenant with credit, giving the credit of the next rounds to the tenants in debt.
+     * The rounds in which none of the tenants gets positive credit are credited at once, so the lookup does not
+     * depend on the debt of the tenants after long tasks.
+     */
+    private TenantQueue nextQueue() {
+        TenantQueue queue = active.peekFirst();
+        if (queue.deficitNs > 0) {
+            return queue;
+        }
+        long rounds = Long.MAX_VALUE;
+        for (TenantQueue q : active) {
+            rounds = Math.min(rounds, q.deficitNs > 0 ? 0 : -q.deficitNs / getCreditNs(q) + 1);
+        }
+        if (rounds > 1) {
+            for (TenantQueue q : active) {
+                q.deficitNs += (rounds - 1) * getCreditNs(q);
+            }
+        }
+        while (queue.deficitNs <= 0) {
+            queue.deficitNs += getCreditNs(queue);
+            active.addLast(active.pollFirst());
+            queue = active.peekFirst();
+        }
+        return queue;
+    }
+
+    private void onTaskCompleted(TenantQueue queue, long estimateNs, long taskNs) {
+        boolean removed = false;
+        lock.lock();
+        try {
+            queue.deficitNs += estimateNs - taskNs;
+            if (!queue.active) {
+                queue.deficitNs = Math.min(queue.deficitNs, 0);
+            }
+            queue.avgTaskNs += (taskNs - queue.avgTaskNs) / AVG_TASK_TIME_SMOOTHING;
+            queue.running--;
+            queue.lastCompletedNs = System.nanoTime();
+            if (queue.removeWhenIdle) {
+                removed = removeIfIdle(queue);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (removed) {
+            unregisterMeters(queue);
+        }
+    }
+
+    // guarded by the lock
+    private boolean removeIfIdle(TenantQueue queue) {
+        if (queue.removed || queue.active || queue.running > 0) {
+            return false;
+        }
+        queue.removed = true;
+        queues.remove(queue.tenantId, queue);
+        return true;
+    }
+
+    private void unregisterMeters(TenantQueue queue) {
+        try {
+            queue.unregisterMeters.run();
+        } catch (Exception e) {
+            log.debug("[{}] Failed to remove meters of the tenant", queue.tenantId, e);
+        }
+    }
+
+    private long getCreditNs(TenantQueue queue) {
+        return queue.weight * quantumNs;
+    }
+
+    private TenantQueue getQueue(TenantId tenantId) {
+        TenantQueue queue = queues.get(tenantId);
+        if (queue == null) {
+            queue = queues.computeIfAbsent(tenantId, id -> {
+                AtomicLong cpuTimeNs = new AtomicLong();
+                return new TenantQueue(id, resolveWeight(id), quantumNs, cpuTimeNs, metersFactory.register(id, cpuTimeNs));
+            });
+        }
+        return queue;
+    }
+
+    private int resolveWeight(TenantId tenantId) {
+        try {
+            return Math.max(1, weightFunction.applyAsInt(tenantId));
+        } catch (Exception e) {
+            log.debug("[{}] Failed to resolve weight of the tenant", tenantId, e);
+            return 1;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<>();
+        lock.lock();
+        try {
+            for (TenantQueue queue : active) {
+                pending.addAll(queue.tasks);
+                queue.tasks.clear();
+                queue.active = false;
+            }
+            active.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.forEach(Thread::interrupt);
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && workers.stream().noneMatch(Thread::isAlive);
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread worker : workers) {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0) {
+                return isTerminated();
+            }
+            worker.join(remainingMs);
+        }
+        return isTerminated();
+    }
+
+    private static class TenantQueue {
+        private final TenantId tenantId;
+        private final AtomicLong cpuTimeNs;
+        private final Runnable unregisterMeters;
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+        private volatile int weight;
+        // guarded by the lock
+        private long deficitNs;
+        private long avgTaskNs;
+        private int running;
+        private long lastCompletedNs = System.nanoTime();
+        private boolean active;
+        private boolean removeWhenIdle;
+        private boolean removed;
+
+        TenantQueue(TenantId tenantId, int weight, long initialTaskNs, AtomicLong cpuTimeNs, Runnable unregisterMeters) {
+            this.tenantId = tenantId;
+            this.weight = weight;
+            this.avgTaskNs = initialTaskNs;
+            this.cpuTimeNs = cpuTimeNs;
+            this.unregisterMeters = unregisterMeters;
+        }
+    }
+
+}
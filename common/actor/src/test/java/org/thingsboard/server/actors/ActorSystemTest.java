@@ -16,6 +16,7 @@
 package org.thingsboard.server.actors;
 
 import lombok.extern.slf4j.Slf4j;
+import org.awaitility.Awaitility;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -24,6 +25,7 @@ import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.thingsboard.common.util.ThingsBoardExecutors;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.id.DeviceId;
 
 import java.util.ArrayList;
@@ -34,6 +36,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -250,6 +253,42 @@ public class ActorSystemTest {
         }
     }
 
+    @Test
+    public void testStopIfIdle() throws InterruptedException {
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        ActorTestCtx testCtx = getActorTestCtx(1);
+        AtomicBoolean idle = new AtomicBoolean();
+        TbActorId actorId = new TbEntityActorId(new DeviceId(UUID.randomUUID()));
+        TbActorRef actorRef = actorSystem.createRootActor(ROOT_DISPATCHER, new TbActorCreator() {
+            @Override
+            public TbActorId createActorId() {
+                return actorId;
+            }
+
+            @Override
+            public TbActor createActor() {
+                return new TestRootActor(actorId, testCtx) {
+                    @Override
+                    public boolean isIdle() {
+                        return idle.get();
+                    }
+                };
+            }
+        });
+        Assert.assertEquals(1, ((DefaultTbActorSystem) actorSystem).getActorsCount(EntityType.DEVICE.name()));
+
+        actorRef.tell(new IntTbActorMsg(42));
+        Assert.assertTrue(testCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+        Assert.assertFalse(actorSystem.stopIfIdle(actorId));
+        Assert.assertNotNull(actorSystem.getActor(actorId));
+
+        idle.set(true);
+        Awaitility.await().atMost(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS).until(() -> actorSystem.stopIfIdle(actorId));
+        Assert.assertNull(actorSystem.getActor(actorId));
+        Assert.assertEquals(0, ((DefaultTbActorSystem) actorSystem).getActorsCount(EntityType.DEVICE.name()));
+    }
+
     private ActorTestCtx getActorTestCtx(int i) {
         CountDownLatch countDownLatch = new CountDownLatch(1);
         AtomicLong actual = new AtomicLong();
@@ -0,0 +1,186 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TbTenantFairExecutorTest {
+
+    private final TenantId tenantA = new TenantId(UUID.randomUUID());
+    private final TenantId tenantB = new TenantId(UUID.randomUUID());
+    private final List<TenantId> completed = new CopyOnWriteArrayList<>();
+
+    private TbTenantFairExecutor executor;
+
+    @After
+    public void shutdown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdownNow();
+            Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void givenTenantWithSlowTasks_whenOtherTenantSubmitsTasks_thenOtherTenantIsNotDelayed() throws InterruptedException {
+        executor = new TbTenantFairExecutor("fair-test", 1, TimeUnit.MILLISECONDS.toNanos(1), tenantId -> 1, (tenantId, cpuTimeNs) -> () -> {});
+        CountDownLatch blocked = blockWorker();
+        CountDownLatch done = new CountDownLatch(60);
+        submit(tenantA, 50, 2, done);
+        submit(tenantB, 10, 0, done);
+        blocked.countDown();
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        int lastB = completed.lastIndexOf(tenantB);
+        Assert.assertTrue("Tasks of tenant B finished at " + lastB, lastB < 15);
+    }
+
+    @Test
+    public void givenWeightedTenants_whenBothBusy_thenThreadsSharedByWeight() throws InterruptedException {
+        executor = new TbTenantFairExecutor("fair-test", 1, TimeUnit.MILLISECONDS.toNanos(1),
+                tenantId -> tenantId.equals(tenantA) ? 3 : 1, (tenantId, cpuTimeNs) -> () -> {});
+        CountDownLatch blocked = blockWorker();
+        CountDownLatch done = new CountDownLatch(120);
+        submit(tenantA, 60, 1, done);
+        submit(tenantB, 60, 1, done);
+        blocked.countDown();
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        long a = completed.subList(0, 40).stream().filter(tenantA::equals).count();
+        Assert.assertTrue("Tenant A completed " + a + " of the first 40 tasks", a >= 26 && a <= 34);
+    }
+
+    @Test
+    public void givenBusyTasks_whenExecuted_thenCpuTimeAccountedPerTenant() throws InterruptedException {
+        Map<TenantId, AtomicLong> cpuTime = new ConcurrentHashMap<>();
+        executor = new TbTenantFairExecutor("fair-test", 2, TimeUnit.MILLISECONDS.toNanos(1), tenantId -> 1,
+                (tenantId, cpuTimeNs) -> {
+                    cpuTime.put(tenantId, cpuTimeNs);
+                    return () -> {};
+                });
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(tenantA, () -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            done.countDown();
+        });
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertTrue(cpuTime.get(tenantA).get() >= TimeUnit.MILLISECONDS.toNanos(10));
+        Assert.assertFalse(cpuTime.containsKey(tenantB));
+    }
+
+    @Test
+    public void givenTenantWithVeryLongTask_whenOtherTenantBusy_thenWholeDebtIsRepaid() throws InterruptedException {
+        executor = new TbTenantFairExecutor("fair-test", 1, TimeUnit.MILLISECONDS.toNanos(1), tenantId -> 1, (tenantId, cpuTimeNs) -> () -> {});
+        CountDownLatch blocked = blockWorker();
+        CountDownLatch done = new CountDownLatch(171);
+        submit(tenantA, 1, 600, done);
+        submit(tenantA, 20, 0, done);
+        submit(tenantB, 150, 1, done);
+        blocked.countDown();
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        // the debt of 600 quanta is more than the tenant B uses to complete all its tasks
+        long a = completed.subList(0, 151).stream().filter(tenantA::equals).count();
+        Assert.assertEquals(1, a);
+    }
+
+    @Test
+    public void givenIdleTenant_whenIdleTenantsRemoved_thenMetersRemovedAndRegisteredAgainOnNextTask() throws InterruptedException {
+        Map<TenantId, AtomicInteger> registered = new ConcurrentHashMap<>();
+        Map<TenantId, AtomicInteger> removed = new ConcurrentHashMap<>();
+        executor = new TbTenantFairExecutor("fair-test", 1, TimeUnit.MILLISECONDS.toNanos(1), tenantId -> 1, (tenantId, cpuTimeNs) -> {
+            registered.computeIfAbsent(tenantId, id -> new AtomicInteger()).incrementAndGet();
+            return () -> removed.computeIfAbsent(tenantId, id -> new AtomicInteger()).incrementAndGet();
+        });
+        CountDownLatch done = new CountDownLatch(1);
+        submit(tenantA, 1, 0, done);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> {
+            executor.removeIdleTenants(0);
+            return removed.containsKey(tenantA);
+        });
+        Assert.assertEquals(1, removed.get(tenantA).get());
+
+        done = new CountDownLatch(1);
+        submit(tenantA, 1, 0, done);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, registered.get(tenantA).get());
+    }
+
+    @Test
+    public void givenDeletedTenantWithPendingTasks_whenTasksCompleted_thenMetersRemoved() throws InterruptedException {
+        Map<TenantId, AtomicInteger> removed = new ConcurrentHashMap<>();
+        executor = new TbTenantFairExecutor("fair-test", 1, TimeUnit.MILLISECONDS.toNanos(1), tenantId -> 1,
+                (tenantId, cpuTimeNs) -> () -> removed.computeIfAbsent(tenantId, id -> new AtomicInteger()).incrementAndGet());
+        CountDownLatch blocked = blockWorker();
+        CountDownLatch done = new CountDownLatch(5);
+        submit(tenantA, 5, 0, done);
+        executor.removeTenant(tenantA);
+        Assert.assertFalse(removed.containsKey(tenantA));
+        blocked.countDown();
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> removed.containsKey(tenantA));
+        Assert.assertEquals(5, completed.size());
+    }
+
+    private CountDownLatch blockWorker() {
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return latch;
+    }
+
+    private void submit(TenantId tenantId, int count, long sleepMs, CountDownLatch done) {
+        for (int i = 0; i < count; i++) {
+            executor.execute(tenantId, () -> {
+                try {
+                    Thread.sleep(sleepMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                completed.add(tenantId);
+                done.countDown();
+            });
+        }
+    }
+
+}
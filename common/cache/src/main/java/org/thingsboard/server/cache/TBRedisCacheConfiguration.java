@@ -15,7 +15,10 @@
  */
 package org.thingsboard.server.cache;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
@@ -24,10 +27,13 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.ConverterRegistry;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
-import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.format.support.DefaultFormattingConversionService;
 import org.springframework.util.Assert;
 import org.thingsboard.server.common.data.id.EntityId;
@@ -72,6 +78,21 @@ public abstract class TBRedisCacheConfiguration {
     @Value("${redis.pool_config.blockWhenExhausted}")
     private boolean blockWhenExhausted;
 
+    @Value("${redis.serializer:jdk}")
+    private String valueSerializer;
+
+    @Value("${cache.near.enabled:false}")
+    private boolean nearCacheEnabled;
+
+    @Value("${cache.near.max_size:10000}")
+    private int nearCacheMaxSize;
+
+    @Value("${cache.near.ttl_ms:60000}")
+    private long nearCacheTtlMs;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
     @Bean
     public RedisConnectionFactory redisConnectionFactory() {
         return loadFactory();
@@ -88,10 +109,31 @@ public abstract class TBRedisCacheConfiguration {
         DefaultFormattingConversionService redisConversionService = new DefaultFormattingConversionService();
         RedisCacheConfiguration.registerDefaultConverters(redisConversionService);
         registerDefaultConverters(redisConversionService);
-        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig().withConversionService(redisConversionService);
-        return RedisCacheManager.builder(cf).cacheDefaults(configuration)
-                .transactionAware()
-                .build();
+        TbRedisValueSerializer.ValueFormat valueFormat = TbRedisValueSerializer.ValueFormat.valueOf(valueSerializer.toUpperCase());
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig()
+                .withConversionService(redisConversionService)
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new TbRedisValueSerializer(valueFormat)));
+        if (nearCacheEnabled) {
+            TbNearCacheManager cacheManager = new TbNearCacheManager(cf, configuration,
+                    meterRegistry != null ? meterRegistry : new SimpleMeterRegistry(), nearCacheMaxSize, nearCacheTtlMs);
+            cacheManager.setTransactionAware(true);
+            return cacheManager;
+        }
+        TbRedisCacheManager cacheManager = new TbRedisCacheManager(RedisCacheWriter.nonLockingRedisCacheWriter(cf), configuration);
+        cacheManager.setTransactionAware(true);
+        return cacheManager;
+    }
+
+    /**
+     * Receives invalidations of the local cache entries published by the other nodes.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "cache.near", value = "enabled", havingValue = "true")
+    public RedisMessageListenerContainer nearCacheInvalidationListenerContainer(RedisConnectionFactory cf, CacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(cf);
+        container.addMessageListener((TbNearCacheManager) cacheManager, new ChannelTopic(TbNearCacheManager.INVALIDATION_CHANNEL));
+        return container;
     }
 
     @Bean
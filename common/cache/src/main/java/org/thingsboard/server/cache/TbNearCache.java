@@ -0,0 +1,179 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Cache with a bounded local (L1) cache on top of the shared Redis (L2) cache.
+ * <p>
+ * Local entries are keyed by the Redis key of the entry. Every put or evict is published to the other nodes,
+ * which drop their local copy of the entry. Values read from Redis are stored locally only if the cache was not
+ * modified or invalidated while they were read, so a concurrent update is not overwritten by the stale value
+ * (the sequence is incremented after the Redis write and before the local one).
+ * Local entries also expire after a short time to limit the staleness if an invalidation is lost.
+ */
+@Slf4j
+public class TbNearCache implements Cache {
+
+    private final TbRedisCache cache;
+    private final com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> localCache;
+    private final BiConsumer<String, String> invalidationPublisher;
+    private final AtomicLong modificationSeq = new AtomicLong();
+
+    private final Counter localHits;
+    private final Counter remoteHits;
+    private final Counter misses;
+
+    /**
+     * @param invalidationPublisher publishes the cache name and the Redis key of the modified entry, or {@code null} key if the cache is cleared
+     */
+    public TbNearCache(TbRedisCache cache, com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> localCache,
+                       BiConsumer<String, String> invalidationPublisher, MeterRegistry meterRegistry) {
+        this.cache = cache;
+        this.localCache = localCache;
+        this.invalidationPublisher = invalidationPublisher;
+        this.localHits = meterRegistry.counter("nearCache", "cacheName", cache.getName(), "result", "localHit");
+        this.remoteHits = meterRegistry.counter("nearCache", "cacheName", cache.getName(), "result", "remoteHit");
+        this.misses = meterRegistry.counter("nearCache", "cacheName", cache.getName(), "result", "miss");
+    }
+
+    @Override
+    public String getName() {
+        return cache.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return cache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String cacheKey = cache.getCacheKey(key);
+        ValueWrapper result = localCache.getIfPresent(cacheKey);
+        if (result != null) {
+            localHits.increment();
+            return result;
+        }
+        long seq = modificationSeq.get();
+        result = cache.get(key);
+        if (result != null) {
+            remoteHits.increment();
+            putLocal(cacheKey, result, seq);
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        long seq = modificationSeq.get();
+        T value = cache.get(key, valueLoader);
+        putLocal(cache.getCacheKey(key), new SimpleValueWrapper(value), seq);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String cacheKey = cache.getCacheKey(key);
+        cache.put(key, value);
+        modificationSeq.incrementAndGet();
+        localCache.put(cacheKey, new SimpleValueWrapper(value));
+        invalidationPublisher.accept(getName(), cacheKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        String cacheKey = cache.getCacheKey(key);
+        ValueWrapper existing = cache.putIfAbsent(key, value);
+        modificationSeq.incrementAndGet();
+        if (existing == null) {
+            localCache.put(cacheKey, new SimpleValueWrapper(value));
+            invalidationPublisher.accept(getName(), cacheKey);
+        } else {
+            localCache.put(cacheKey, existing);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        String cacheKey = cache.getCacheKey(key);
+        cache.evict(key);
+        modificationSeq.incrementAndGet();
+        localCache.invalidate(cacheKey);
+        invalidationPublisher.accept(getName(), cacheKey);
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+        modificationSeq.incrementAndGet();
+        localCache.invalidateAll();
+        invalidationPublisher.accept(getName(), null);
+    }
+
+    /**
+     * Drops the local copy of the entry modified by another node, or all the local entries if the key is {@code null}.
+     */
+    public void onRemoteInvalidation(String cacheKey) {
+        modificationSeq.incrementAndGet();
+        if (cacheKey == null) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(cacheKey);
+        }
+    }
+
+    long getLocalSize() {
+        return localCache.estimatedSize();
+    }
+
+    private void putLocal(String cacheKey, ValueWrapper value, long seq) {
+        if (modificationSeq.get() == seq) {
+            localCache.put(cacheKey, value);
+        } else {
+            log.trace("[{}][{}] Skip local caching of the value modified during read", getName(), cacheKey);
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis cache manager that wraps every cache into a {@link TbNearCache}.
+ * Modifications of the cache entries are published to the {@link #INVALIDATION_CHANNEL} Redis channel
+ * and the manager drops the local copies of the entries modified by the other nodes.
+ */
+@Slf4j
+public class TbNearCacheManager extends TbRedisCacheManager implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "tb:cache:invalidation";
+    private static final String SEPARATOR = "\n";
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int localMaxSize;
+    private final long localTtlMs;
+    // used to ignore own invalidation messages
+    private final String instanceId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, TbNearCache> nearCaches = new ConcurrentHashMap<>();
+
+    public TbNearCacheManager(RedisConnectionFactory connectionFactory, RedisCacheConfiguration defaultCacheConfig,
+                              MeterRegistry meterRegistry, int localMaxSize, long localTtlMs) {
+        this(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory), defaultCacheConfig,
+                new StringRedisTemplate(connectionFactory), meterRegistry, localMaxSize, localTtlMs);
+    }
+
+    private TbNearCacheManager(RedisCacheWriter cacheWriter, RedisCacheConfiguration defaultCacheConfig, StringRedisTemplate redisTemplate,
+                               MeterRegistry meterRegistry, int localMaxSize, long localTtlMs) {
+        super(cacheWriter, defaultCacheConfig);
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.localMaxSize = localMaxSize;
+        this.localTtlMs = localTtlMs;
+    }
+
+    @Override
+    protected Cache decorateCache(Cache cache) {
+        if (cache instanceof TbRedisCache) {
+            TbNearCache nearCache = new TbNearCache((TbRedisCache) cache,
+                    Caffeine.newBuilder()
+                            .maximumSize(localMaxSize)
+                            .expireAfterWrite(localTtlMs, TimeUnit.MILLISECONDS)
+                            .build(),
+                    this::publishInvalidation, meterRegistry);
+            nearCaches.put(cache.getName(), nearCache);
+            cache = nearCache;
+        }
+        return super.decorateCache(cache);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+        if (parts.length < 2 || instanceId.equals(parts[0])) {
+            return;
+        }
+        TbNearCache nearCache = nearCaches.get(parts[1]);
+        if (nearCache != null) {
+            String cacheKey = parts.length == 3 ? parts[2] : null;
+            log.trace("[{}][{}] Received invalidation of the cache entry", parts[1], cacheKey);
+            nearCache.onRemoteInvalidation(cacheKey);
+        }
+    }
+
+    private void publishInvalidation(String cacheName, String cacheKey) {
+        String msg = instanceId + SEPARATOR + cacheName + (cacheKey != null ? SEPARATOR + cacheKey : "");
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, msg);
+        } catch (Exception e) {
+            // local copies on the other nodes expire after the configured ttl
+            log.warn("[{}][{}] Failed to publish invalidation of the cache entry", cacheName, cacheKey, e);
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Redis cache that exposes the Redis key of the cache entries, so the same entry may be identified on every node.
+ * Entries that can not be decoded are treated as a cache miss and evicted.
+ */
+@Slf4j
+public class TbRedisCache extends RedisCache {
+
+    protected TbRedisCache(String name, RedisCacheWriter cacheWriter, RedisCacheConfiguration cacheConfig) {
+        super(name, cacheWriter, cacheConfig);
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        try {
+            return super.lookup(key);
+        } catch (SerializationException e) {
+            log.warn("[{}] Failed to decode cached value of [{}], evicting the entry", getName(), key, e);
+            evict(key);
+            return null;
+        }
+    }
+
+    public String getCacheKey(Object key) {
+        return createCacheKey(key);
+    }
+
+}
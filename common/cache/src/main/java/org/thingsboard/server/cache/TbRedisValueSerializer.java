@@ -0,0 +1,264 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.cache;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DataType;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.JsonDataEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializer of the Redis cache values.
+ * <p>
+ * Binary values start with a header: {@link #MAGIC}, format version and codec. Attribute entries are written field by field
+ * in the layout of KeyValueProto. Entities and lists of entities are written as CBOR, the binary form of their JSON,
+ * prefixed with the entity class, so values written before fields were added to or removed from the entity remain readable. Other values and values
+ * without the header are read and written with JDK serialization.
+ * <p>
+ * Values that can not be decoded, including values of an unknown format version or codec, raise {@link SerializationException},
+ * which {@link TbRedisCache} treats as a cache miss and evicts the entry.
+ * <p>
+ * Values are written in the JDK format until {@link ValueFormat#BINARY} is enabled, which allows all the nodes of the cluster
+ * to be upgraded before the new format is written.
+ */
+@Slf4j
+public class TbRedisValueSerializer implements RedisSerializer<Object> {
+
+    // JDK serialization stream starts with 0xACED
+    static final byte MAGIC = (byte) 0x7B;
+    static final byte VERSION = 3;
+
+    static final byte CODEC_NULL_VALUE = 0;
+    static final byte CODEC_ATTRIBUTE_KV = 1;
+    static final byte CODEC_ENTITY = 2;
+    static final byte CODEC_ENTITY_LIST = 3;
+
+    // Value types of KeyValueProto
+    private static final byte BOOLEAN_V = 0;
+    private static final byte LONG_V = 1;
+    private static final byte DOUBLE_V = 2;
+    private static final byte STRING_V = 3;
+    private static final byte JSON_V = 4;
+
+    private static final int HEADER_SIZE = 3;
+    // only the entities are written as CBOR and the class is written relative to this package
+    private static final String DATA_PACKAGE = "org.thingsboard.server.common.data.";
+
+    public enum ValueFormat {
+        JDK, BINARY
+    }
+
+    private final ValueFormat writeFormat;
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+    private final ObjectMapper mapper = new ObjectMapper(new CBORFactory()).disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    public TbRedisValueSerializer(ValueFormat writeFormat) {
+        this.writeFormat = writeFormat;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (writeFormat == ValueFormat.JDK) {
+            return jdkSerializer.serialize(value);
+        }
+        try {
+            if (value instanceof NullValue) {
+                return header(CODEC_NULL_VALUE, 0).toByteArray();
+            } else if (value instanceof AttributeKvEntry) {
+                ByteArrayOutputStream out = header(CODEC_ATTRIBUTE_KV, 64);
+                writeAttributeKvEntry(new DataOutputStream(out), (AttributeKvEntry) value);
+                return out.toByteArray();
+            } else if (isEntity(value)) {
+                ByteArrayOutputStream out = header(CODEC_ENTITY, 256);
+                writeEntity(out, value.getClass(), value);
+                return out.toByteArray();
+            } else if (isEntityList(value)) {
+                ByteArrayOutputStream out = header(CODEC_ENTITY_LIST, 1024);
+                writeEntity(out, ((List<?>) value).get(0).getClass(), value);
+                return out.toByteArray();
+            } else {
+                return jdkSerializer.serialize(value);
+            }
+        } catch (Exception e) {
+            throw new SerializationException("Failed to serialize cache value of " + value.getClass(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return jdkSerializer.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_SIZE || bytes[1] != VERSION) {
+            throw new SerializationException("Unsupported cache value format version: " + (bytes.length > 1 ? bytes[1] : null));
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE));
+            switch (bytes[2]) {
+                case CODEC_NULL_VALUE:
+                    return NullValue.INSTANCE;
+                case CODEC_ATTRIBUTE_KV:
+                    return readAttributeKvEntry(in);
+                case CODEC_ENTITY:
+                    return mapper.readValue((InputStream) in, mapper.getTypeFactory().constructType(readEntityClass(in)));
+                case CODEC_ENTITY_LIST:
+                    JavaType listType = mapper.getTypeFactory().constructCollectionType(ArrayList.class, readEntityClass(in));
+                    return mapper.readValue((InputStream) in, listType);
+                default:
+                    throw new IOException("Unsupported cache value codec: " + bytes[2]);
+            }
+        } catch (Exception e) {
+            throw new SerializationException("Failed to deserialize cache value", e);
+        }
+    }
+
+    private void writeEntity(ByteArrayOutputStream out, Class<?> entityClass, Object value) throws IOException {
+        writeString(new DataOutputStream(out), entityClass.getName().substring(DATA_PACKAGE.length()));
+        mapper.writeValue(out, value);
+    }
+
+    private static Class<?> readEntityClass(DataInputStream in) throws IOException, ClassNotFoundException {
+        return Class.forName(DATA_PACKAGE + readString(in));
+    }
+
+    private static boolean isEntity(Object value) {
+        return value.getClass().getName().startsWith(DATA_PACKAGE);
+    }
+
+    private static boolean isEntityList(Object value) {
+        if (!(value instanceof List) || ((List<?>) value).isEmpty()) {
+            return false;
+        }
+        List<?> list = (List<?>) value;
+        Class<?> entityClass = list.get(0) != null ? list.get(0).getClass() : null;
+        if (entityClass == null || !entityClass.getName().startsWith(DATA_PACKAGE)) {
+            return false;
+        }
+        for (Object element : list) {
+            if (element == null || element.getClass() != entityClass) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteArrayOutputStream header(byte codec, int size) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + size);
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(codec);
+        return out;
+    }
+
+    private static void writeAttributeKvEntry(DataOutputStream out, AttributeKvEntry entry) throws IOException {
+        writeString(out, entry.getKey());
+        DataType type = entry.getDataType();
+        switch (type) {
+            case BOOLEAN:
+                out.writeByte(BOOLEAN_V);
+                out.writeBoolean(entry.getBooleanValue().orElse(false));
+                break;
+            case LONG:
+                out.writeByte(LONG_V);
+                out.writeLong(entry.getLongValue().orElse(0L));
+                break;
+            case DOUBLE:
+                out.writeByte(DOUBLE_V);
+                out.writeDouble(entry.getDoubleValue().orElse(0.0));
+                break;
+            case STRING:
+                out.writeByte(STRING_V);
+                writeString(out, entry.getStrValue().orElse(""));
+                break;
+            case JSON:
+                out.writeByte(JSON_V);
+                writeString(out, entry.getJsonValue().orElse(""));
+                break;
+            default:
+                throw new IOException("Unsupported data type: " + type);
+        }
+        out.writeLong(entry.getLastUpdateTs());
+    }
+
+    private static AttributeKvEntry readAttributeKvEntry(DataInputStream in) throws IOException {
+        String key = readString(in);
+        byte type = in.readByte();
+        KvEntry kvEntry;
+        switch (type) {
+            case BOOLEAN_V:
+                kvEntry = new BooleanDataEntry(key, in.readBoolean());
+                break;
+            case LONG_V:
+                kvEntry = new LongDataEntry(key, in.readLong());
+                break;
+            case DOUBLE_V:
+                kvEntry = new DoubleDataEntry(key, in.readDouble());
+                break;
+            case STRING_V:
+                kvEntry = new StringDataEntry(key, readString(in));
+                break;
+            case JSON_V:
+                kvEntry = new JsonDataEntry(key, readString(in));
+                break;
+            default:
+                throw new IOException("Unsupported data type: " + type);
+        }
+        return new BaseAttributeKvEntry(kvEntry, in.readLong());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
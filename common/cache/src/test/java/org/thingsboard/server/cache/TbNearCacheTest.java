@@ -0,0 +1,118 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TbNearCacheTest {
+
+    static final String CACHE_NAME = "devices";
+
+    TbRedisCache redisCache;
+    SimpleMeterRegistry meterRegistry;
+    List<String> invalidations;
+    TbNearCache nearCache;
+
+    @BeforeEach
+    public void setUp() {
+        redisCache = mock(TbRedisCache.class);
+        when(redisCache.getName()).thenReturn(CACHE_NAME);
+        when(redisCache.getCacheKey(any())).thenAnswer(invocation -> CACHE_NAME + "::" + invocation.getArgument(0));
+        meterRegistry = new SimpleMeterRegistry();
+        invalidations = new ArrayList<>();
+        nearCache = new TbNearCache(redisCache, Caffeine.newBuilder().maximumSize(100).build(),
+                (cacheName, cacheKey) -> invalidations.add(cacheName + "|" + cacheKey), meterRegistry);
+    }
+
+    @Test
+    public void givenValueInRedis_whenReadTwice_thenSecondReadIsLocal() {
+        when(redisCache.get("key")).thenReturn(new SimpleValueWrapper("value"));
+
+        assertThat(nearCache.get("key", String.class)).isEqualTo("value");
+        assertThat(nearCache.get("key", String.class)).isEqualTo("value");
+
+        verify(redisCache, times(1)).get("key");
+        assertThat(count("remoteHit")).isEqualTo(1.0);
+        assertThat(count("localHit")).isEqualTo(1.0);
+    }
+
+    @Test
+    public void givenMissingValue_whenRead_thenMissCountedAndNothingCachedLocally() {
+        assertThat(nearCache.get("key")).isNull();
+
+        assertThat(count("miss")).isEqualTo(1.0);
+        assertThat(nearCache.getLocalSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void whenPutOrEvict_thenRedisUpdatedAndInvalidationPublished() {
+        nearCache.put("key", "value");
+        assertThat(nearCache.get("key", String.class)).isEqualTo("value");
+
+        nearCache.evict("key");
+        nearCache.clear();
+
+        verify(redisCache).put("key", "value");
+        verify(redisCache).evict("key");
+        verify(redisCache).clear();
+        assertThat(invalidations).containsExactly(CACHE_NAME + "|" + CACHE_NAME + "::key", CACHE_NAME + "|" + CACHE_NAME + "::key", CACHE_NAME + "|null");
+        assertThat(nearCache.getLocalSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void givenLocalValue_whenInvalidatedByOtherNode_thenNextReadGoesToRedis() {
+        when(redisCache.get("key")).thenReturn(new SimpleValueWrapper("old"), new SimpleValueWrapper("new"));
+        assertThat(nearCache.get("key", String.class)).isEqualTo("old");
+
+        nearCache.onRemoteInvalidation(CACHE_NAME + "::key");
+
+        assertThat(nearCache.get("key", String.class)).isEqualTo("new");
+        verify(redisCache, times(2)).get("key");
+    }
+
+    @Test
+    public void givenValueModifiedDuringRead_whenReadCompletes_thenValueNotCachedLocally() {
+        when(redisCache.get("key")).thenAnswer(invocation -> {
+            nearCache.onRemoteInvalidation(CACHE_NAME + "::key");
+            return new SimpleValueWrapper("stale");
+        });
+
+        Cache.ValueWrapper result = nearCache.get("key");
+
+        assertThat(result.get()).isEqualTo("stale");
+        assertThat(nearCache.getLocalSize()).isEqualTo(0);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("nearCache").tag("cacheName", CACHE_NAME).tag("result", result).counter().count();
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.DeviceProfile;
+import org.thingsboard.server.common.data.DeviceProfileType;
+import org.thingsboard.server.common.data.EntityView;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.DeviceProfileId;
+import org.thingsboard.server.common.data.id.EntityViewId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compares payload size and encode/decode time of the JDK and the binary formats of {@link TbRedisValueSerializer}
+ * for the typical cached values.
+ * <p>
+ * The name does not match the test patterns, so the benchmark is run manually and not as a part of the build.
+ */
+@Slf4j
+public class TbRedisValueSerializerBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 50000;
+    private static final int ITERATIONS = 200000;
+
+    public static void main(String[] args) {
+        TbRedisValueSerializer jdk = new TbRedisValueSerializer(TbRedisValueSerializer.ValueFormat.JDK);
+        TbRedisValueSerializer binary = new TbRedisValueSerializer(TbRedisValueSerializer.ValueFormat.BINARY);
+        for (Map.Entry<String, Object> entry : values().entrySet()) {
+            run(entry.getKey(), "JDK", jdk, entry.getValue());
+            run(entry.getKey(), "BINARY", binary, entry.getValue());
+        }
+    }
+
+    private static void run(String name, String format, TbRedisValueSerializer serializer, Object value) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+        byte[] data = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            data = serializer.serialize(value);
+        }
+        long encodeNs = (System.nanoTime() - start) / ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            serializer.deserialize(data);
+        }
+        long decodeNs = (System.nanoTime() - start) / ITERATIONS;
+        log.info("[{}][{}] size: {} bytes, encode: {} ns/op, decode: {} ns/op", name, format, data.length, encodeNs, decodeNs);
+    }
+
+    private static Map<String, Object> values() {
+        TenantId tenantId = new TenantId(UUID.randomUUID());
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        Device device = new Device(new DeviceId(UUID.randomUUID()));
+        device.setTenantId(tenantId);
+        device.setDeviceProfileId(new DeviceProfileId(UUID.randomUUID()));
+        device.setName("Thermometer A1");
+        device.setType("thermometer");
+        device.setLabel("Building 1, floor 2");
+        values.put("Device", device);
+
+        DeviceProfile profile = new DeviceProfile(new DeviceProfileId(UUID.randomUUID()));
+        profile.setTenantId(tenantId);
+        profile.setName("thermometer");
+        profile.setType(DeviceProfileType.DEFAULT);
+        profile.setDescription("Default thermometer profile");
+        values.put("DeviceProfile", profile);
+
+        List<EntityView> entityViews = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            EntityView entityView = new EntityView(new EntityViewId(UUID.randomUUID()));
+            entityView.setTenantId(tenantId);
+            entityView.setEntityId(device.getId());
+            entityView.setName("View " + i);
+            entityView.setType("view");
+            entityViews.add(entityView);
+        }
+        values.put("List<EntityView>", entityViews);
+
+        values.put("AttributeKvEntry", new BaseAttributeKvEntry(new DoubleDataEntry("temperature", 42.5), System.currentTimeMillis()));
+        return values;
+    }
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DataType;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.JsonDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TbRedisValueSerializerTest {
+
+    TbRedisValueSerializer binarySerializer = new TbRedisValueSerializer(TbRedisValueSerializer.ValueFormat.BINARY);
+    TbRedisValueSerializer jdkSerializer = new TbRedisValueSerializer(TbRedisValueSerializer.ValueFormat.JDK);
+
+    @Test
+    public void givenAttributeKvEntry_whenSerializedToBinary_thenRestoredAndSmallerThanJdk() {
+        AttributeKvEntry entry = new BaseAttributeKvEntry(new DoubleDataEntry("temperature", 42.5), 1600000000000L);
+
+        byte[] binary = binarySerializer.serialize(entry);
+        AttributeKvEntry restored = (AttributeKvEntry) binarySerializer.deserialize(binary);
+
+        assertThat(binary[0]).isEqualTo(TbRedisValueSerializer.MAGIC);
+        assertThat(binary.length).isLessThan(jdkSerializer.serialize(entry).length);
+        assertThat(restored.getKey()).isEqualTo("temperature");
+        assertThat(restored.getDataType()).isEqualTo(DataType.DOUBLE);
+        assertThat(restored.getDoubleValue()).hasValue(42.5);
+        assertThat(restored.getLastUpdateTs()).isEqualTo(1600000000000L);
+    }
+
+    @Test
+    public void givenStringAndJsonAttributes_whenSerializedToBinary_thenRestored() {
+        AttributeKvEntry str = new BaseAttributeKvEntry(new StringDataEntry("model", "Тест-1"), 1L);
+        AttributeKvEntry json = new BaseAttributeKvEntry(new JsonDataEntry("config", "{\"a\":1}"), 2L);
+
+        assertThat(((AttributeKvEntry) binarySerializer.deserialize(binarySerializer.serialize(str))).getStrValue()).hasValue("Тест-1");
+        assertThat(((AttributeKvEntry) binarySerializer.deserialize(binarySerializer.serialize(json))).getJsonValue()).hasValue("{\"a\":1}");
+    }
+
+    @Test
+    public void givenEntity_whenSerializedToBinary_thenRestoredAndSmallerThanJdk() {
+        Device device = new Device(new DeviceId(UUID.randomUUID()));
+        device.setTenantId(new TenantId(UUID.randomUUID()));
+        device.setName("Thermometer A1");
+        device.setType("thermometer");
+
+        byte[] binary = binarySerializer.serialize(device);
+
+        assertThat(binary[2]).isEqualTo(TbRedisValueSerializer.CODEC_ENTITY);
+        assertThat(binary.length).isLessThan(jdkSerializer.serialize(device).length);
+        assertThat(binarySerializer.deserialize(binary)).isEqualTo(device);
+    }
+
+    @Test
+    public void givenNullValue_whenSerializedToBinary_thenRestored() {
+        assertThat(binarySerializer.deserialize(binarySerializer.serialize(NullValue.INSTANCE))).isSameAs(NullValue.INSTANCE);
+    }
+
+    @Test
+    public void givenValueWrittenWithJdkSerialization_whenDeserialized_thenRestored() {
+        AttributeKvEntry entry = new BaseAttributeKvEntry(new StringDataEntry("model", "A1"), 1L);
+
+        byte[] legacy = new JdkSerializationRedisSerializer().serialize(entry);
+
+        assertThat(binarySerializer.deserialize(legacy)).isEqualTo(entry);
+    }
+
+    @Test
+    public void givenUnknownFormatVersion_whenDeserialized_thenFails() {
+        byte[] data = binarySerializer.serialize(NullValue.INSTANCE);
+        data[1] = TbRedisValueSerializer.VERSION + 1;
+
+        assertThatThrownBy(() -> binarySerializer.deserialize(data)).isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    public void givenAttributeKvEntry_whenSerializedToBinary_thenValueTypeOfKeyValueProtoIsWritten() {
+        byte[] data = binarySerializer.serialize(new BaseAttributeKvEntry(new BooleanDataEntry("active", true), 1L));
+
+        // header, key length and key are followed by BOOLEAN_V = 0 regardless of the order of DataType constants
+        assertThat(data[2]).isEqualTo(TbRedisValueSerializer.CODEC_ATTRIBUTE_KV);
+        assertThat(data[3 + 4 + "active".length()]).isEqualTo((byte) 0);
+    }
+
+    @Test
+    public void givenEntityWithAddedAndRemovedFields_whenDeserialized_thenKnownFieldsRestored() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeByte(TbRedisValueSerializer.MAGIC);
+        dataOut.writeByte(TbRedisValueSerializer.VERSION);
+        dataOut.writeByte(TbRedisValueSerializer.CODEC_ENTITY);
+        byte[] className = "Device".getBytes(StandardCharsets.UTF_8);
+        dataOut.writeInt(className.length);
+        dataOut.write(className);
+        // written by a version without the label field and with a field that was removed later
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("name", "Thermometer A1");
+        fields.put("type", "thermometer");
+        fields.put("removedField", 42);
+        dataOut.write(new ObjectMapper(new CBORFactory()).writeValueAsBytes(fields));
+
+        Device device = (Device) binarySerializer.deserialize(out.toByteArray());
+
+        assertThat(device.getName()).isEqualTo("Thermometer A1");
+        assertThat(device.getType()).isEqualTo("thermometer");
+        assertThat(device.getLabel()).isNull();
+    }
+
+    @Test
+    public void givenEntityList_whenSerializedToBinary_thenRestored() {
+        List<Device> devices = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Device device = new Device(new DeviceId(UUID.randomUUID()));
+            device.setTenantId(new TenantId(UUID.randomUUID()));
+            device.setName("Thermometer " + i);
+            devices.add(device);
+        }
+
+        byte[] data = binarySerializer.serialize(devices);
+
+        assertThat(data[2]).isEqualTo(TbRedisValueSerializer.CODEC_ENTITY_LIST);
+        assertThat(binarySerializer.deserialize(data)).isEqualTo(devices);
+    }
+
+    @Test
+    public void givenUndecodableValue_whenCacheLookup_thenCacheMissAndEntryEvicted() {
+        RedisCacheWriter cacheWriter = mock(RedisCacheWriter.class);
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(binarySerializer));
+        TbRedisCache cache = new TbRedisCache("devices", cacheWriter, configuration);
+        byte[] data = binarySerializer.serialize(NullValue.INSTANCE);
+        data[2] = 42;
+        when(cacheWriter.get(eq("devices"), any())).thenReturn(data);
+
+        assertThat(cache.get("device")).isNull();
+        verify(cacheWriter).remove(eq("devices"), any());
+    }
+
+}
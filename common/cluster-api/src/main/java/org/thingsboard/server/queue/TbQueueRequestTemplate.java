@@ -26,6 +26,14 @@ public interface TbQueueRequestTemplate<Request extends TbQueueMsg, Response ext
 
     ListenableFuture<Response> send(Request request, long timeoutNs);
 
+    /**
+     * Sends the request that may share the response of the identical in-flight request with the same key.
+     * The key must identify the request content, so it should only be used for idempotent requests.
+     */
+    default ListenableFuture<Response> sendCoalesced(Request request, Object coalescingKey) {
+        return send(request);
+    }
+
     void stop();
 
     void setMessagesStats(MessagesStats messagesStats);
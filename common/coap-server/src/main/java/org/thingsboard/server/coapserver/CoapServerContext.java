@@ -46,6 +46,14 @@ public class CoapServerContext {
     @Value("${transport.coap.paging_transmission_window:10000}")
     private long pagingTransmissionWindow;
 
+    @Getter
+    @Value("${transport.coap.so_reuseport:false}")
+    private boolean reusePort;
+
+    @Getter
+    @Value("${transport.coap.socket_count:0}")
+    private int socketCount;
+
     @Getter
     @Autowired(required = false)
     private TbCoapDtlsSettings dtlsSettings;
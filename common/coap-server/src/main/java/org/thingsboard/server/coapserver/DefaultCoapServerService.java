@@ -100,14 +100,25 @@ public class DefaultCoapServerService implements CoapServerService {
         networkConfig.setInt(NetworkConfig.Keys.COAP_PORT, coapServerContext.getPort());
         server = new CoapServer(networkConfig);
 
-        CoapEndpoint.Builder noSecCoapEndpointBuilder = new CoapEndpoint.Builder();
         InetAddress addr = InetAddress.getByName(coapServerContext.getHost());
         InetSocketAddress sockAddr = new InetSocketAddress(addr, coapServerContext.getPort());
-        noSecCoapEndpointBuilder.setInetSocketAddress(sockAddr);
+        int socketCount = getNoSecSocketCount();
+        if (socketCount > 1) {
+            log.info("Binding {} CoAP sockets to {} using SO_REUSEPORT", socketCount, sockAddr);
+            for (int i = 0; i < socketCount; i++) {
+                CoapEndpoint.Builder noSecCoapEndpointBuilder = new CoapEndpoint.Builder();
+                noSecCoapEndpointBuilder.setConnectorWithAutoConfiguration(new TbReusePortUdpConnector(sockAddr));
+                noSecCoapEndpointBuilder.setNetworkConfig(networkConfig);
+                server.addEndpoint(noSecCoapEndpointBuilder.build());
+            }
+        } else {
+            CoapEndpoint.Builder noSecCoapEndpointBuilder = new CoapEndpoint.Builder();
+            noSecCoapEndpointBuilder.setInetSocketAddress(sockAddr);
 
-        noSecCoapEndpointBuilder.setNetworkConfig(networkConfig);
-        CoapEndpoint noSecCoapEndpoint = noSecCoapEndpointBuilder.build();
-        server.addEndpoint(noSecCoapEndpoint);
+            noSecCoapEndpointBuilder.setNetworkConfig(networkConfig);
+            CoapEndpoint noSecCoapEndpoint = noSecCoapEndpointBuilder.build();
+            server.addEndpoint(noSecCoapEndpoint);
+        }
         if (isDtlsEnabled()) {
             CoapEndpoint.Builder dtlsCoapEndpointBuilder = new CoapEndpoint.Builder();
             TbCoapDtlsSettings dtlsSettings = coapServerContext.getDtlsSettings();
@@ -130,6 +141,18 @@ public class DefaultCoapServerService implements CoapServerService {
         return server;
     }
 
+    private int getNoSecSocketCount() {
+        if (!coapServerContext.isReusePort()) {
+            return 1;
+        }
+        if (!TbReusePortUdpConnector.isReusePortSupported()) {
+            log.warn("SO_REUSEPORT is not supported by the platform, using single CoAP socket");
+            return 1;
+        }
+        int socketCount = coapServerContext.getSocketCount();
+        return socketCount > 0 ? socketCount : Runtime.getRuntime().availableProcessors();
+    }
+
     private boolean isDtlsEnabled() {
         return coapServerContext.getDtlsSettings() != null;
     }
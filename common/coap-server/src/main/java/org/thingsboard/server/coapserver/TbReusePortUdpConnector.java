@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.coapserver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.californium.elements.UDPConnector;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+
+/**
+ * UDP connector that binds its socket with SO_REUSEPORT, so several connectors may listen on the same port
+ * and the kernel distributes incoming datagrams between their sockets.
+ */
+@Slf4j
+public class TbReusePortUdpConnector extends UDPConnector {
+
+    private final InetSocketAddress bindAddress;
+
+    public TbReusePortUdpConnector(InetSocketAddress bindAddress) {
+        super(bindAddress);
+        this.bindAddress = bindAddress;
+    }
+
+    public static boolean isReusePortSupported() {
+        try (DatagramSocket socket = new DatagramSocket(null)) {
+            return socket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            log.debug("Failed to check SO_REUSEPORT support", e);
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (isRunning()) {
+            return;
+        }
+        DatagramSocket socket = new DatagramSocket(null);
+        try {
+            socket.setReuseAddress(true);
+            socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            socket.bind(bindAddress);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        init(socket);
+    }
+
+}
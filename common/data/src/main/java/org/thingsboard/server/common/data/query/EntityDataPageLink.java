@@ -19,6 +19,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.UUID;
+
 @Data
 @AllArgsConstructor
 public class EntityDataPageLink {
@@ -28,10 +30,20 @@ public class EntityDataPageLink {
     private String textSearch;
     private EntityDataSortOrder sortOrder;
     private boolean dynamic = false;
+    /**
+     * Id of the last entity of the previous page. If set, the page is selected with a keyset (seek) predicate
+     * on the sort order value and entity id instead of the offset, so the cost of the query does not grow with
+     * the page number. Falls back to the offset if the entity no longer matches the query.
+     */
+    private UUID afterEntityId;
 
     public EntityDataPageLink() {
     }
 
+    public EntityDataPageLink(int pageSize, int page, String textSearch, EntityDataSortOrder sortOrder, boolean dynamic) {
+        this(pageSize, page, textSearch, sortOrder, dynamic, null);
+    }
+
     public EntityDataPageLink(int pageSize, int page, String textSearch, EntityDataSortOrder sortOrder) {
         this(pageSize, page, textSearch, sortOrder, false);
     }
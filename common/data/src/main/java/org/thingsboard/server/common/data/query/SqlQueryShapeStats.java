@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.data.query;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@ApiModel
+@Data
+public class SqlQueryShapeStats {
+
+    @ApiModelProperty(position = 1, value = "Short hash of the query shape. Used as the 'shape' tag of the query shape metrics.")
+    private String id;
+    @ApiModelProperty(position = 2, value = "SQL statement with literals and parameters replaced by '?', or the name of the repository method or batch operation.")
+    private String shape;
+    @ApiModelProperty(position = 3, value = "Timestamp of the first execution since the statistics were reset.")
+    private long sinceTs;
+    @ApiModelProperty(position = 4, value = "Number of executions.")
+    private long count;
+    @ApiModelProperty(position = 5, value = "Number of executions per second since 'sinceTs'.")
+    private double ratePerSecond;
+    @ApiModelProperty(position = 6, value = "Total execution time in milliseconds.")
+    private long totalTimeMs;
+    @ApiModelProperty(position = 7, value = "Average execution time in milliseconds.")
+    private double avgTimeMs;
+    @ApiModelProperty(position = 8, value = "Max execution time in milliseconds.")
+    private long maxTimeMs;
+    @ApiModelProperty(position = 9, value = "Total number of rows returned or saved.")
+    private long rows;
+    @ApiModelProperty(position = 10, value = "Number of executions per latency bucket. Key is the upper bound of the bucket in milliseconds.")
+    private Map<String, Long> latencyHistogram;
+    @ApiModelProperty(position = 11, value = "Tenants with the largest total execution time of the shape.")
+    private List<SqlQueryTenantStats> topTenants;
+
+}
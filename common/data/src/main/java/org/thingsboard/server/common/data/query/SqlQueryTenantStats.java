@@ -0,0 +1,36 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.data.query;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+import org.thingsboard.server.common.data.id.TenantId;
+
+@ApiModel
+@Data
+public class SqlQueryTenantStats {
+
+    @ApiModelProperty(position = 1, value = "JSON object with the Tenant Id.")
+    private final TenantId tenantId;
+    @ApiModelProperty(position = 2, value = "Number of executions.")
+    private final long count;
+    @ApiModelProperty(position = 3, value = "Total execution time in milliseconds.")
+    private final long totalTimeMs;
+    @ApiModelProperty(position = 4, value = "Total number of rows returned or saved.")
+    private final long rows;
+
+}
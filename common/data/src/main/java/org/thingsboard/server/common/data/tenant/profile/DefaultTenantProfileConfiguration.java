@@ -50,6 +50,7 @@ public class DefaultTenantProfileConfiguration implements TenantProfileConfigura
     private long maxJSExecutions;
     private long maxDPStorageDays;
     private int maxRuleNodeExecutionsPerMessage;
+    private int ruleEngineDispatcherWeight;
     private long maxEmails;
     private long maxSms;
     private long maxCreatedAlarms;
@@ -56,6 +56,9 @@ public final class TbMsg implements Serializable {
     private final RuleNodeId ruleNodeId;
     @Getter(value = AccessLevel.NONE)
     private final AtomicInteger ruleNodeExecCounter;
+    // time the message was pushed to the queue it was read from, 0 if the message was not read from the queue
+    @JsonIgnore
+    private final long enqueueTs;
 
 
     public int getAndIncrementRuleNodeCounter() {
@@ -144,6 +147,11 @@ public final class TbMsg implements Serializable {
 
     private TbMsg(String queueName, UUID id, long ts, String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data,
                   RuleChainId ruleChainId, RuleNodeId ruleNodeId, int ruleNodeExecCounter, TbMsgCallback callback) {
+        this(queueName, id, ts, type, originator, customerId, metaData, dataType, data, ruleChainId, ruleNodeId, ruleNodeExecCounter, callback, 0L);
+    }
+
+    private TbMsg(String queueName, UUID id, long ts, String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data,
+                  RuleChainId ruleChainId, RuleNodeId ruleNodeId, int ruleNodeExecCounter, TbMsgCallback callback, long enqueueTs) {
         this.id = id;
         this.queueName = queueName != null ? queueName : ServiceQueue.MAIN;
         if (ts > 0) {
@@ -173,6 +181,7 @@ public final class TbMsg implements Serializable {
         } else {
             this.callback = TbMsgCallback.EMPTY;
         }
+        this.enqueueTs = enqueueTs;
     }
 
     public static ByteString toByteString(TbMsg msg) {
@@ -210,6 +219,7 @@ public final class TbMsg implements Serializable {
         builder.setDataType(msg.getDataType().ordinal());
         builder.setData(msg.getData());
         builder.setRuleNodeExecCounter(msg.ruleNodeExecCounter.get());
+        builder.setEnqueueTs(System.currentTimeMillis());
         return builder.build().toByteArray();
     }
 
@@ -232,7 +242,7 @@ public final class TbMsg implements Serializable {
             }
 
             TbMsgDataType dataType = TbMsgDataType.values()[proto.getDataType()];
-            return new TbMsg(queueName, UUID.fromString(proto.getId()), proto.getTs(), proto.getType(), entityId, customerId, metaData, dataType, proto.getData(), ruleChainId, ruleNodeId, proto.getRuleNodeExecCounter(), callback);
+            return new TbMsg(queueName, UUID.fromString(proto.getId()), proto.getTs(), proto.getType(), entityId, customerId, metaData, dataType, proto.getData(), ruleChainId, ruleNodeId, proto.getRuleNodeExecCounter(), callback, proto.getEnqueueTs());
         } catch (InvalidProtocolBufferException e) {
             throw new IllegalStateException("Could not parse protobuf for TbMsg", e);
         }
@@ -250,6 +260,15 @@ public final class TbMsg implements Serializable {
         return new TbMsg(this.queueName, msgId, this.ts, this.type, this.originator, this.customerId, this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.ruleNodeExecCounter.get(), callback);
     }
 
+    /**
+     * Creates an independent copy of the message for one of the branches processed within the same rule engine instance.
+     * Metadata is copied because rule nodes of the other branches may modify it.
+     */
+    public TbMsg copyWithCallback(UUID msgId, TbMsgCallback callback) {
+        return new TbMsg(this.queueName, msgId, this.ts, this.type, this.originator, this.customerId, this.metaData.copy(), this.dataType, this.data,
+                this.ruleChainId, this.ruleNodeId, this.ruleNodeExecCounter.get(), callback, this.enqueueTs);
+    }
+
     public TbMsgCallback getCallback() {
         //May be null in case of deserialization;
         if (callback != null) {
@@ -22,9 +22,12 @@ public class RuleNodeInfo {
     private final String label;
     @Getter
     private final RuleNodeId ruleNodeId;
+    @Getter
+    private final String ruleChainName;
 
     public RuleNodeInfo(RuleNodeId id, String ruleChainName, String ruleNodeName) {
         this.ruleNodeId = id;
+        this.ruleChainName = ruleChainName;
         this.label = "[RuleChain: " + ruleChainName + "|RuleNode: " + ruleNodeName + "(" + id + ")]";
     }
 
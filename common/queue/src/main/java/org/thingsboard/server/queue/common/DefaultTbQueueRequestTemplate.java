@@ -17,6 +17,7 @@ package org.thingsboard.server.queue.common;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import lombok.Builder;
 import lombok.Getter;
@@ -34,9 +35,12 @@ import org.thingsboard.server.queue.TbQueueRequestTemplate;
 import org.thingsboard.server.common.stats.MessagesStats;
 
 import javax.annotation.Nullable;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -49,22 +53,27 @@ import java.util.concurrent.locks.ReentrantLock;
 public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response extends TbQueueMsg> extends AbstractTbQueueTemplate
         implements TbQueueRequestTemplate<Request, Response> {
 
+    private static final Comparator<ResponseMetaData<?>> DEADLINE_COMPARATOR =
+            Comparator.<ResponseMetaData<?>>comparingLong(ResponseMetaData::getExpTime).thenComparing(ResponseMetaData::getRequestId);
+
     private final TbQueueAdmin queueAdmin;
     private final TbQueueProducer<Request> requestTemplate;
     private final TbQueueConsumer<Response> responseTemplate;
     final ConcurrentHashMap<UUID, DefaultTbQueueRequestTemplate.ResponseMetaData<Response>> pendingRequests = new ConcurrentHashMap<>();
+    // pending requests ordered by expiration time, so only the expired ones are visited by the cleanup
+    final ConcurrentSkipListSet<DefaultTbQueueRequestTemplate.ResponseMetaData<Response>> pendingDeadlines = new ConcurrentSkipListSet<>(DEADLINE_COMPARATOR);
+    final ConcurrentHashMap<Object, SettableFuture<Response>> coalescedRequests = new ConcurrentHashMap<>();
     final boolean internalExecutor;
     final ExecutorService executor;
     final long maxRequestTimeoutNs;
     final long maxPendingRequests;
     final long pollInterval;
+    final boolean coalescing;
     volatile boolean stopped = false;
-    long nextCleanupNs = 0L;
     private final Lock cleanerLock = new ReentrantLock();
 
     private MessagesStats messagesStats;
 
-    @Builder
     public DefaultTbQueueRequestTemplate(TbQueueAdmin queueAdmin,
                                          TbQueueProducer<Request> requestTemplate,
                                          TbQueueConsumer<Response> responseTemplate,
@@ -72,6 +81,22 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
                                          long maxPendingRequests,
                                          long pollInterval,
                                          @Nullable ExecutorService executor) {
+        this(queueAdmin, requestTemplate, responseTemplate, maxRequestTimeout, maxPendingRequests, pollInterval, executor, false);
+    }
+
+    /**
+     * @param coalescing whether {@link #sendCoalesced} shares the response of the in-flight request with the same key
+     *                   instead of sending the request again
+     */
+    @Builder
+    public DefaultTbQueueRequestTemplate(TbQueueAdmin queueAdmin,
+                                         TbQueueProducer<Request> requestTemplate,
+                                         TbQueueConsumer<Response> responseTemplate,
+                                         long maxRequestTimeout,
+                                         long maxPendingRequests,
+                                         long pollInterval,
+                                         @Nullable ExecutorService executor,
+                                         boolean coalescing) {
         this.queueAdmin = queueAdmin;
         this.requestTemplate = requestTemplate;
         this.responseTemplate = responseTemplate;
@@ -80,6 +105,7 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
         this.pollInterval = pollInterval;
         this.internalExecutor = (executor == null);
         this.executor = internalExecutor ? createExecutor() : executor;
+        this.coalescing = coalescing;
     }
 
     ExecutorService createExecutor() {
@@ -124,16 +150,16 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
         try {
             log.trace("tryCleanStaleRequest...");
             final long currentNs = getCurrentClockNs();
-            if (nextCleanupNs < currentNs) {
-                pendingRequests.forEach((key, value) -> {
-                    if (value.expTime < currentNs) {
-                        ResponseMetaData<Response> staleRequest = pendingRequests.remove(key);
-                        if (staleRequest != null) {
-                            setTimeoutException(key, staleRequest, currentNs);
-                        }
-                    }
-                });
-                setupNextCleanup();
+            Iterator<ResponseMetaData<Response>> iterator = pendingDeadlines.iterator();
+            while (iterator.hasNext()) {
+                ResponseMetaData<Response> staleRequest = iterator.next();
+                if (staleRequest.expTime >= currentNs) {
+                    break;
+                }
+                iterator.remove();
+                if (pendingRequests.remove(staleRequest.requestId, staleRequest)) {
+                    setTimeoutException(staleRequest.requestId, staleRequest, currentNs);
+                }
             }
         } finally {
             cleanerLock.unlock();
@@ -141,11 +167,6 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
         return true;
     }
 
-    void setupNextCleanup() {
-        nextCleanupNs = getCurrentClockNs() + maxRequestTimeoutNs;
-        log.trace("setupNextCleanup {}", nextCleanupNs);
-    }
-
     List<Response> doPoll() {
         return responseTemplate.poll(pollInterval);
     }
@@ -175,6 +196,7 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
             if (expectedResponse == null) {
                 log.warn("[{}] Invalid or stale request, response: {}", requestId, String.valueOf(response).replace("\n", " "));
             } else {
+                pendingDeadlines.remove(expectedResponse);
                 expectedResponse.future.set(response);
             }
         }
@@ -219,16 +241,42 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
         request.getHeaders().put(REQUEST_TIME, longToBytes(getCurrentTimeMs()));
         long currentClockNs = getCurrentClockNs();
         SettableFuture<Response> future = SettableFuture.create();
-        ResponseMetaData<Response> responseMetaData = new ResponseMetaData<>(currentClockNs + requestTimeoutNs, future, currentClockNs, requestTimeoutNs);
+        ResponseMetaData<Response> responseMetaData = new ResponseMetaData<>(currentClockNs + requestTimeoutNs, future, currentClockNs, requestTimeoutNs, requestId);
         log.trace("pending {}", responseMetaData);
         if (pendingRequests.putIfAbsent(requestId, responseMetaData) != null) {
             log.warn("Pending request already exists [{}]!", maxPendingRequests);
             return Futures.immediateFailedFuture(new RuntimeException("Pending request already exists !" + requestId));
         }
+        pendingDeadlines.add(responseMetaData);
         sendToRequestTemplate(request, requestId, future, responseMetaData);
         return future;
     }
 
+    /**
+     * Requests with the same key that are sent while the first of them is in flight are not sent to the queue,
+     * they are completed with the response (or the failure) of the first request instead.
+     * Coalesced requests share the timeout of the first request.
+     */
+    @Override
+    public ListenableFuture<Response> sendCoalesced(Request request, Object coalescingKey) {
+        if (!coalescing) {
+            return send(request);
+        }
+        SettableFuture<Response> future = SettableFuture.create();
+        SettableFuture<Response> inFlight = coalescedRequests.putIfAbsent(coalescingKey, future);
+        if (inFlight != null) {
+            log.trace("[{}] Request coalesced with the in-flight request", coalescingKey);
+            return Futures.nonCancellationPropagating(inFlight);
+        }
+        future.addListener(() -> coalescedRequests.remove(coalescingKey, future), MoreExecutors.directExecutor());
+        try {
+            future.setFuture(send(request));
+        } catch (Throwable t) {
+            future.setException(t);
+        }
+        return Futures.nonCancellationPropagating(future);
+    }
+
     /**
      * MONOTONIC clock instead jumping wall clock.
      * Wrapped into the method for the test purposes to travel through the time
@@ -264,6 +312,7 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
                     messagesStats.incrementFailed();
                 }
                 pendingRequests.remove(requestId);
+                pendingDeadlines.remove(responseMetaData);
                 future.setException(t);
             }
         });
@@ -275,12 +324,14 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
         private final long timeout;
         private final long expTime;
         private final SettableFuture<T> future;
+        private final UUID requestId;
 
-        ResponseMetaData(long ts, SettableFuture<T> future, long submitTime, long timeout) {
+        ResponseMetaData(long ts, SettableFuture<T> future, long submitTime, long timeout, UUID requestId) {
             this.submitTime = submitTime;
             this.timeout = timeout;
             this.expTime = ts;
             this.future = future;
+            this.requestId = requestId;
         }
 
         @Override
@@ -291,6 +342,7 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
                     ", deltaMs=" + (expTime - submitTime) +
                     ", expTime=" + expTime +
                     ", future=" + future +
+                    ", requestId=" + requestId +
                     '}';
         }
     }
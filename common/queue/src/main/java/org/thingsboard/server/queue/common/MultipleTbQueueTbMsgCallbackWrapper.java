@@ -15,7 +15,9 @@
  */
 package org.thingsboard.server.queue.common;
 
+import org.thingsboard.server.common.data.id.RuleNodeId;
 import org.thingsboard.server.common.msg.queue.RuleEngineException;
+import org.thingsboard.server.common.msg.queue.RuleNodeInfo;
 import org.thingsboard.server.common.msg.queue.TbCallback;
 import org.thingsboard.server.common.msg.queue.TbMsgCallback;
 import org.thingsboard.server.queue.TbQueueCallback;
@@ -44,4 +46,32 @@ public class MultipleTbQueueTbMsgCallbackWrapper implements TbQueueCallback {
     public void onFailure(Throwable t) {
         tbMsgCallback.onFailure(new RuleEngineException(t.getMessage()));
     }
+
+    /**
+     * Callback of a message copy delivered to a local rule node instead of the queue.
+     * The original callback succeeds once all the copies are processed and fails as soon as any of them fails.
+     */
+    public TbMsgCallback newTbMsgCallback() {
+        return new TbMsgCallback() {
+            @Override
+            public void onSuccess() {
+                MultipleTbQueueTbMsgCallbackWrapper.this.onSuccess(null);
+            }
+
+            @Override
+            public void onFailure(RuleEngineException e) {
+                tbMsgCallback.onFailure(e);
+            }
+
+            @Override
+            public void onProcessingStart(RuleNodeInfo ruleNodeInfo) {
+                tbMsgCallback.onProcessingStart(ruleNodeInfo);
+            }
+
+            @Override
+            public void onProcessingEnd(RuleNodeId ruleNodeId) {
+                tbMsgCallback.onProcessingEnd(ruleNodeId);
+            }
+        };
+    }
 }
@@ -89,6 +89,7 @@ public class AwsSqsTransportQueueFactory implements TbTransportQueueFactory {
         templateBuilder.requestTemplate(producerTemplate);
         templateBuilder.responseTemplate(consumerTemplate);
         templateBuilder.maxPendingRequests(transportApiSettings.getMaxPendingRequests());
+        templateBuilder.coalescing(transportApiSettings.isRequestCoalescing());
         templateBuilder.maxRequestTimeout(transportApiSettings.getMaxRequestsTimeout());
         templateBuilder.pollInterval(transportApiSettings.getResponsePollInterval());
         return templateBuilder.build();
@@ -78,6 +78,7 @@ public class InMemoryTbTransportQueueFactory implements TbTransportQueueFactory
         templateBuilder.requestTemplate(producerTemplate);
         templateBuilder.responseTemplate(consumerTemplate);
         templateBuilder.maxPendingRequests(transportApiSettings.getMaxPendingRequests());
+        templateBuilder.coalescing(transportApiSettings.isRequestCoalescing());
         templateBuilder.maxRequestTimeout(transportApiSettings.getMaxRequestsTimeout());
         templateBuilder.pollInterval(transportApiSettings.getResponsePollInterval());
         return templateBuilder.build();
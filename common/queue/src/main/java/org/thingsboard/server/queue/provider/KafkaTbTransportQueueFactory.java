@@ -107,6 +107,7 @@ public class KafkaTbTransportQueueFactory implements TbTransportQueueFactory {
         templateBuilder.requestTemplate(requestBuilder.build());
         templateBuilder.responseTemplate(responseBuilder.build());
         templateBuilder.maxPendingRequests(transportApiSettings.getMaxPendingRequests());
+        templateBuilder.coalescing(transportApiSettings.isRequestCoalescing());
         templateBuilder.maxRequestTimeout(transportApiSettings.getMaxRequestsTimeout());
         templateBuilder.pollInterval(transportApiSettings.getResponsePollInterval());
         return templateBuilder.build();
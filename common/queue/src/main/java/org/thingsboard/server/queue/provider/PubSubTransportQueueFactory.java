@@ -93,6 +93,7 @@ public class PubSubTransportQueueFactory implements TbTransportQueueFactory {
         templateBuilder.requestTemplate(producer);
         templateBuilder.responseTemplate(consumer);
         templateBuilder.maxPendingRequests(transportApiSettings.getMaxPendingRequests());
+        templateBuilder.coalescing(transportApiSettings.isRequestCoalescing());
         templateBuilder.maxRequestTimeout(transportApiSettings.getMaxRequestsTimeout());
         templateBuilder.pollInterval(transportApiSettings.getResponsePollInterval());
         return templateBuilder.build();
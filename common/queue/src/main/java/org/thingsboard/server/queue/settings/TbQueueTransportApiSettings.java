@@ -44,4 +44,7 @@ public class TbQueueTransportApiSettings {
     @Value("${queue.transport_api.response_poll_interval}")
     private long responsePollInterval;
 
+    @Value("${queue.transport_api.request_coalescing:false}")
+    private boolean requestCoalescing;
+
 }
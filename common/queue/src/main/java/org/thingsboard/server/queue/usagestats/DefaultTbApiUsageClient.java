@@ -16,6 +16,7 @@
 package org.thingsboard.server.queue.usagestats;
 
 import lombok.Data;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -36,13 +37,16 @@ import org.thingsboard.server.queue.scheduler.SchedulerComponent;
 
 import javax.annotation.PostConstruct;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 @Component
 @Slf4j
@@ -55,7 +59,11 @@ public class DefaultTbApiUsageClient implements TbApiUsageClient {
     @Value("${usage.stats.report.interval:10}")
     private int interval;
 
-    private final EnumMap<ApiUsageRecordKey, ConcurrentMap<OwnerId, AtomicLong>> stats = new EnumMap<>(ApiUsageRecordKey.class);
+    // Counters are LongAdders looked up by the id itself, so reporting allocates nothing once an owner is known
+    // and threads that hit the same tenant or the system counter do not contend on a single cache line.
+    private final EnumMap<ApiUsageRecordKey, ConcurrentMap<TenantId, LongAdder>> tenantStats = new EnumMap<>(ApiUsageRecordKey.class);
+    private final EnumMap<ApiUsageRecordKey, ConcurrentMap<CustomerId, CustomerStats>> customerStats = new EnumMap<>(ApiUsageRecordKey.class);
+    private final EnumMap<ApiUsageRecordKey, LongAdder> systemStats = new EnumMap<>(ApiUsageRecordKey.class);
 
     private final PartitionService partitionService;
     private final SchedulerComponent scheduler;
@@ -73,7 +81,9 @@ public class DefaultTbApiUsageClient implements TbApiUsageClient {
         if (enabled) {
             msgProducer = this.producerProvider.getTbUsageStatsMsgProducer();
             for (ApiUsageRecordKey key : ApiUsageRecordKey.values()) {
-                stats.put(key, new ConcurrentHashMap<>());
+                tenantStats.put(key, new ConcurrentHashMap<>());
+                customerStats.put(key, new ConcurrentHashMap<>());
+                systemStats.put(key, new LongAdder());
             }
             scheduler.scheduleWithFixedDelay(() -> {
                 try {
@@ -86,33 +96,27 @@ public class DefaultTbApiUsageClient implements TbApiUsageClient {
     }
 
     private void reportStats() {
-        ConcurrentMap<OwnerId, ToUsageStatsServiceMsg.Builder> report = new ConcurrentHashMap<>();
+        Map<OwnerId, ToUsageStatsServiceMsg.Builder> report = new HashMap<>();
 
         for (ApiUsageRecordKey key : ApiUsageRecordKey.values()) {
-            ConcurrentMap<OwnerId, AtomicLong> statsForKey = stats.get(key);
-            statsForKey.forEach((ownerId, statsValue) -> {
-                long value = statsValue.get();
-                if (value == 0) return;
-
-                ToUsageStatsServiceMsg.Builder statsMsgBuilder = report.computeIfAbsent(ownerId, id -> {
-                    ToUsageStatsServiceMsg.Builder newStatsMsgBuilder = ToUsageStatsServiceMsg.newBuilder();
-
-                    TenantId tenantId = ownerId.getTenantId();
-                    newStatsMsgBuilder.setTenantIdMSB(tenantId.getId().getMostSignificantBits());
-                    newStatsMsgBuilder.setTenantIdLSB(tenantId.getId().getLeastSignificantBits());
-
-                    EntityId entityId = ownerId.getEntityId();
-                    if (entityId != null && entityId.getEntityType() == EntityType.CUSTOMER) {
-                        newStatsMsgBuilder.setCustomerIdMSB(entityId.getId().getMostSignificantBits());
-                        newStatsMsgBuilder.setCustomerIdLSB(entityId.getId().getLeastSignificantBits());
-                    }
-
-                    return newStatsMsgBuilder;
-                });
-
-                statsMsgBuilder.addValues(UsageStatsKVProto.newBuilder().setKey(key.name()).setValue(value).build());
+            ConcurrentMap<TenantId, LongAdder> tenantStatsForKey = tenantStats.get(key);
+            tenantStatsForKey.forEach((tenantId, statsValue) -> {
+                long value = drain(tenantStatsForKey, tenantId, statsValue);
+                if (value != 0) {
+                    addToReport(report, new OwnerId(tenantId), key, value);
+                }
+            });
+            ConcurrentMap<CustomerId, CustomerStats> customerStatsForKey = customerStats.get(key);
+            customerStatsForKey.forEach((customerId, statsValue) -> {
+                long value = drain(customerStatsForKey, customerId, statsValue);
+                if (value != 0) {
+                    addToReport(report, new OwnerId(statsValue.getTenantId(), customerId), key, value);
+                }
             });
-            statsForKey.clear();
+            long systemValue = systemStats.get(key).sumThenReset();
+            if (systemValue != 0) {
+                addToReport(report, new OwnerId(TenantId.SYS_TENANT_ID), key, systemValue);
+            }
         }
 
         report.forEach(((ownerId, statsMsg) -> {
@@ -129,25 +133,86 @@ public class DefaultTbApiUsageClient implements TbApiUsageClient {
         }
     }
 
+    private void addToReport(Map<OwnerId, ToUsageStatsServiceMsg.Builder> report, OwnerId ownerId, ApiUsageRecordKey key, long value) {
+        ToUsageStatsServiceMsg.Builder statsMsgBuilder = report.computeIfAbsent(ownerId, id -> {
+            ToUsageStatsServiceMsg.Builder newStatsMsgBuilder = ToUsageStatsServiceMsg.newBuilder();
+
+            TenantId tenantId = ownerId.getTenantId();
+            newStatsMsgBuilder.setTenantIdMSB(tenantId.getId().getMostSignificantBits());
+            newStatsMsgBuilder.setTenantIdLSB(tenantId.getId().getLeastSignificantBits());
+
+            EntityId entityId = ownerId.getEntityId();
+            if (entityId != null && entityId.getEntityType() == EntityType.CUSTOMER) {
+                newStatsMsgBuilder.setCustomerIdMSB(entityId.getId().getMostSignificantBits());
+                newStatsMsgBuilder.setCustomerIdLSB(entityId.getId().getLeastSignificantBits());
+            }
+
+            return newStatsMsgBuilder;
+        });
+
+        statsMsgBuilder.addValues(UsageStatsKVProto.newBuilder().setKey(key.name()).setValue(value).build());
+    }
+
     @Override
     public void report(TenantId tenantId, CustomerId customerId, ApiUsageRecordKey key, long value) {
         if (enabled) {
-            ConcurrentMap<OwnerId, AtomicLong> statsForKey = stats.get(key);
-
-            statsForKey.computeIfAbsent(new OwnerId(tenantId), id -> new AtomicLong()).addAndGet(value);
-            statsForKey.computeIfAbsent(new OwnerId(TenantId.SYS_TENANT_ID), id -> new AtomicLong()).addAndGet(value);
+            add(tenantStats.get(key), tenantId, id -> new LongAdder(), value);
+            systemStats.get(key).add(value);
 
             if (enabledPerCustomer && customerId != null && !customerId.isNullUid()) {
-                statsForKey.computeIfAbsent(new OwnerId(tenantId, customerId), id -> new AtomicLong()).addAndGet(value);
+                add(customerStats.get(key), customerId, id -> new CustomerStats(tenantId), value);
+            }
+        }
+    }
+
+    /**
+     * Adds the value to the counter of the owner without locking. If the counter is evicted concurrently,
+     * the part of the value that was not drained by the eviction is moved to the new counter of the owner.
+     */
+    private static <K, V extends LongAdder> void add(ConcurrentMap<K, V> stats, K id, Function<K, V> factory, long value) {
+        while (true) {
+            V statsValue = stats.get(id);
+            if (statsValue == null) {
+                statsValue = stats.computeIfAbsent(id, factory);
+            }
+            statsValue.add(value);
+            if (stats.get(id) == statsValue) {
+                return;
+            }
+            value = statsValue.sumThenReset();
+            if (value == 0) {
+                return;
             }
         }
     }
 
+    /**
+     * Returns the value accumulated since the previous report. Idle counters are evicted to keep the maps small,
+     * increments that land on the counter while it is evicted are drained once more after the removal
+     * or moved to the new counter by {@link #add}.
+     */
+    private static <K, V extends LongAdder> long drain(ConcurrentMap<K, V> stats, K id, V statsValue) {
+        long value = statsValue.sumThenReset();
+        if (value == 0 && stats.remove(id, statsValue)) {
+            value = statsValue.sumThenReset();
+        }
+        return value;
+    }
+
     @Override
     public void report(TenantId tenantId, CustomerId customerId, ApiUsageRecordKey key) {
         report(tenantId, customerId, key, 1);
     }
 
+    private static class CustomerStats extends LongAdder {
+        @Getter
+        private final TenantId tenantId;
+
+        CustomerStats(TenantId tenantId) {
+            this.tenantId = tenantId;
+        }
+    }
+
     @Data
     private static class OwnerId {
         private TenantId tenantId;
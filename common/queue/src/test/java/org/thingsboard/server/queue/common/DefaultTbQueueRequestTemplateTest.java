@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.queue.common;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.After;
 import org.junit.Before;
@@ -32,12 +33,15 @@ import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThan;
 import static org.mockito.ArgumentMatchers.any;
@@ -54,6 +58,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.hamcrest.MockitoHamcrest.longThat;
 
 @Slf4j
@@ -106,7 +111,6 @@ public class DefaultTbQueueRequestTemplateTest {
     @Test
     public void givenExternalExecutor_whenInitStop_thenOK() {
         inst.init();
-        assertThat(inst.nextCleanupNs, equalTo(0L));
         verify(queueAdmin, times(1)).createTopicIfNotExists(topic);
         verify(requestTemplate, times(1)).init();
         verify(responseTemplate, times(1)).subscribe();
@@ -180,7 +184,6 @@ public class DefaultTbQueueRequestTemplateTest {
             return currentTime.get();
         }).given(inst).getCurrentClockNs();
         inst.init();
-        inst.setupNextCleanup();
         willReturn(Collections.emptyList()).given(inst).doPoll();
 
         //when
@@ -204,6 +207,96 @@ public class DefaultTbQueueRequestTemplateTest {
         for (int i = 0; i < responseMetaDataList.size(); i++) {
             assertThat("tickTs >= calculatedExpTime", tickTsList.get(i), greaterThanOrEqualTo(responseMetaDataList.get(i).getSubmitTime() + responseMetaDataList.get(i).getTimeout()));
         }
+        assertThat(inst.pendingDeadlines.size(), equalTo(inst.pendingRequests.size()));
+    }
+
+    @Test
+    public void givenRequestsWithDifferentTimeouts_whenFetchAndProcessResponses_thenOnlyExpiredRequestsFailed() throws Exception {
+        AtomicLong currentTime = new AtomicLong();
+        willAnswer(x -> currentTime.get()).given(inst).getCurrentClockNs();
+        willDoNothing().given(inst).sendToRequestTemplate(any(), any(), any(), any());
+        willReturn(Collections.emptyList()).given(inst).doPoll();
+        inst.init();
+
+        ListenableFuture<TbQueueMsg> longRequest = inst.send(getRequestMsgMock(), TimeUnit.MILLISECONDS.toNanos(20));
+        ListenableFuture<TbQueueMsg> shortRequest = inst.send(getRequestMsgMock(), TimeUnit.MILLISECONDS.toNanos(5));
+        currentTime.set(TimeUnit.MILLISECONDS.toNanos(10));
+        inst.fetchAndProcessResponses();
+
+        assertThat(shortRequest.isDone(), is(true));
+        try {
+            shortRequest.get();
+            fail("Expired request should fail with timeout");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+        assertThat(longRequest.isDone(), is(false));
+        assertThat(inst.pendingRequests.mappingCount(), equalTo(1L));
+        assertThat(inst.pendingDeadlines.size(), equalTo(1));
+    }
+
+    @Test
+    public void givenPendingRequest_whenResponseReceived_thenRequestCompletedAndDeadlineRemoved() throws Exception {
+        willDoNothing().given(inst).sendToRequestTemplate(any(), any(), any(), any());
+        inst.init();
+
+        ListenableFuture<TbQueueMsg> future = inst.send(getRequestMsgMock());
+        TbQueueMsg response = getResponseMsg(inst.pendingRequests.keys().nextElement());
+        inst.processResponse(response);
+
+        assertThat(future.get(), is(response));
+        assertThat(inst.pendingRequests.isEmpty(), is(true));
+        assertThat(inst.pendingDeadlines.isEmpty(), is(true));
+    }
+
+    @Test
+    public void givenCoalescingEnabled_whenSendSameKeyConcurrently_thenOneRequestSentAndAllCompleted() throws Exception {
+        inst = spy(new DefaultTbQueueRequestTemplate<>(
+                queueAdmin, requestTemplate, responseTemplate,
+                maxRequestTimeout, maxPendingRequests, pollInterval, executorMock, true));
+        willDoNothing().given(inst).sendToRequestTemplate(any(), any(), any(), any());
+        inst.init();
+
+        ListenableFuture<TbQueueMsg> first = inst.sendCoalesced(getRequestMsgMock(), "token");
+        ListenableFuture<TbQueueMsg> second = inst.sendCoalesced(getRequestMsgMock(), "token");
+        ListenableFuture<TbQueueMsg> other = inst.sendCoalesced(getRequestMsgMock(), "otherToken");
+
+        ArgumentCaptor<UUID> requestIdCaptor = ArgumentCaptor.forClass(UUID.class);
+        verify(inst, times(2)).sendToRequestTemplate(any(), requestIdCaptor.capture(), any(), any());
+        assertThat(inst.pendingRequests.mappingCount(), equalTo(2L));
+
+        second.cancel(true);
+        assertThat(first.isCancelled(), is(false));
+
+        TbQueueMsg response = getResponseMsg(requestIdCaptor.getAllValues().get(0));
+        inst.processResponse(response);
+
+        assertThat(first.get(), is(response));
+        assertThat(other.isDone(), is(false));
+        assertThat(inst.coalescedRequests.containsKey("token"), is(false));
+
+        inst.sendCoalesced(getRequestMsgMock(), "token");
+        verify(inst, times(3)).sendToRequestTemplate(any(), any(), any(), any());
+    }
+
+    @Test
+    public void givenCoalescingDisabled_whenSendSameKey_thenEachRequestSent() {
+        willDoNothing().given(inst).sendToRequestTemplate(any(), any(), any(), any());
+        inst.init();
+
+        inst.sendCoalesced(getRequestMsgMock(), "token");
+        inst.sendCoalesced(getRequestMsgMock(), "token");
+
+        verify(inst, times(2)).sendToRequestTemplate(any(), any(), any(), any());
+        assertThat(inst.coalescedRequests.isEmpty(), is(true));
+    }
+
+    TbQueueMsg getResponseMsg(UUID requestId) {
+        DefaultTbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        headers.put(AbstractTbQueueTemplate.REQUEST_ID_HEADER, inst.uuidToBytes(requestId));
+        TbQueueMsg response = mock(TbQueueMsg.class);
+        willReturn(headers).given(response).getHeaders();
+        return response;
     }
 
     TbQueueMsg getRequestMsgMock() {
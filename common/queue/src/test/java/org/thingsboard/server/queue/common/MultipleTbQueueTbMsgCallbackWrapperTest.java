@@ -0,0 +1,82 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.msg.queue.RuleEngineException;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class MultipleTbQueueTbMsgCallbackWrapperTest {
+
+    TbMsgCallback msgCallback;
+    MultipleTbQueueTbMsgCallbackWrapper wrapper;
+
+    @Before
+    public void setUp() {
+        msgCallback = mock(TbMsgCallback.class);
+        wrapper = new MultipleTbQueueTbMsgCallbackWrapper(2, msgCallback);
+    }
+
+    @Test
+    public void givenTwoCopies_whenBothProcessed_thenOriginalSucceeds() {
+        TbMsgCallback first = wrapper.newTbMsgCallback();
+        TbMsgCallback second = wrapper.newTbMsgCallback();
+
+        first.onSuccess();
+        verify(msgCallback, never()).onSuccess();
+
+        second.onSuccess();
+        verify(msgCallback).onSuccess();
+    }
+
+    @Test
+    public void givenCopyDeliveredLocallyAndCopyPushedToQueue_whenBothProcessed_thenOriginalSucceeds() {
+        wrapper.newTbMsgCallback().onSuccess();
+        wrapper.onSuccess(null);
+
+        verify(msgCallback).onSuccess();
+    }
+
+    @Test
+    public void givenCopy_whenFailed_thenOriginalFailsWithSameException() {
+        RuleEngineException e = new RuleEngineException("test");
+
+        wrapper.newTbMsgCallback().onFailure(e);
+
+        verify(msgCallback).onFailure(e);
+        verify(msgCallback, never()).onSuccess();
+    }
+
+    @Test
+    public void givenCopy_whenProcessingEnds_thenOriginalNotified() {
+        RuleNodeId ruleNodeId = new RuleNodeId(UUID.randomUUID());
+
+        wrapper.newTbMsgCallback().onProcessingEnd(ruleNodeId);
+
+        verify(msgCallback).onProcessingEnd(ruleNodeId);
+        verify(msgCallback, never()).onFailure(any());
+    }
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.usagestats;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.ApiUsageRecordKey;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.gen.transport.TransportProtos.ToUsageStatsServiceMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.UsageStatsKVProto;
+import org.thingsboard.server.queue.TbQueueProducer;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
+import org.thingsboard.server.queue.scheduler.SchedulerComponent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Reports API usage from a growing number of threads, while a flusher sends and evicts the counters every 10 ms,
+ * and logs the achieved reports per second for every thread count up to the number of cores.
+ * Checks that the flushed totals match the number of reports.
+ * The name does not match the test patterns, so the benchmark is run manually and not as a part of the build.
+ */
+@Slf4j
+public class DefaultTbApiUsageClientBenchmark {
+
+    private static final ApiUsageRecordKey KEY = ApiUsageRecordKey.TRANSPORT_MSG_COUNT;
+    private static final int TENANTS = 4;
+    private static final int REPORTS_PER_THREAD = 1_000_000;
+    private static final long FLUSH_INTERVAL_MS = 10;
+
+    private final Map<UUID, LongAdder> flushed = new ConcurrentHashMap<>();
+    private final DefaultTbApiUsageClient client;
+
+    @SuppressWarnings("unchecked")
+    private DefaultTbApiUsageClientBenchmark() {
+        PartitionService partitionService = mock(PartitionService.class);
+        TbQueueProducerProvider producerProvider = mock(TbQueueProducerProvider.class);
+        TbQueueProducer<TbProtoQueueMsg<ToUsageStatsServiceMsg>> msgProducer = mock(TbQueueProducer.class);
+        willReturn(msgProducer).given(producerProvider).getTbUsageStatsMsgProducer();
+        willReturn("tb_usage_stats").given(msgProducer).getDefaultTopic();
+        willReturn(new TopicPartitionInfo("tb_core", null, 0, true)).given(partitionService).resolve(any(), any(TenantId.class), any());
+        willAnswer(invocation -> {
+            TbProtoQueueMsg<ToUsageStatsServiceMsg> msg = invocation.getArgument(1);
+            ToUsageStatsServiceMsg statsMsg = msg.getValue();
+            UUID ownerId = statsMsg.getCustomerIdMSB() != 0 ? new UUID(statsMsg.getCustomerIdMSB(), statsMsg.getCustomerIdLSB())
+                    : new UUID(statsMsg.getTenantIdMSB(), statsMsg.getTenantIdLSB());
+            for (UsageStatsKVProto kv : statsMsg.getValuesList()) {
+                flushed.computeIfAbsent(ownerId, id -> new LongAdder()).add(kv.getValue());
+            }
+            return null;
+        }).given(msgProducer).send(any(), any(), any());
+        client = new DefaultTbApiUsageClient(partitionService, mock(SchedulerComponent.class), producerProvider);
+        ReflectionTestUtils.setField(client, "enabled", true);
+        ReflectionTestUtils.setField(client, "enabledPerCustomer", true);
+        ReflectionTestUtils.setField(client, "interval", 10);
+        ReflectionTestUtils.invokeMethod(client, "init");
+    }
+
+    public static void main(String[] args) throws Exception {
+        DefaultTbApiUsageClientBenchmark benchmark = new DefaultTbApiUsageClientBenchmark();
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            benchmark.run(threads);
+        }
+        benchmark.run(maxThreads);
+    }
+
+    private void run(int threads) throws Exception {
+        flushed.clear();
+        TenantId[] tenants = new TenantId[TENANTS];
+        for (int i = 0; i < TENANTS; i++) {
+            tenants[i] = new TenantId(UUID.randomUUID());
+        }
+        CustomerId customerId = new CustomerId(UUID.randomUUID());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> reporters = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                TenantId tenantId = tenants[t % TENANTS];
+                reporters.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < REPORTS_PER_THREAD; i++) {
+                        client.report(tenantId, customerId, KEY);
+                    }
+                    return null;
+                }));
+            }
+            AtomicBoolean stopped = new AtomicBoolean();
+            Future<?> flusher = executor.submit(() -> {
+                while (!stopped.get()) {
+                    ReflectionTestUtils.invokeMethod(client, "reportStats");
+                    Thread.sleep(FLUSH_INTERVAL_MS);
+                }
+                return null;
+            });
+            long startNs = System.nanoTime();
+            start.countDown();
+            for (Future<?> reporter : reporters) {
+                reporter.get(5, TimeUnit.MINUTES);
+            }
+            long durationNs = System.nanoTime() - startNs;
+            stopped.set(true);
+            flusher.get(1, TimeUnit.MINUTES);
+            ReflectionTestUtils.invokeMethod(client, "reportStats");
+
+            long expected = (long) threads * REPORTS_PER_THREAD;
+            long tenantTotal = 0;
+            for (TenantId tenantId : tenants) {
+                LongAdder total = flushed.get(tenantId.getId());
+                tenantTotal += total != null ? total.sum() : 0;
+            }
+            log.info("threads: {}, reports/s: {}", threads, expected * TimeUnit.SECONDS.toNanos(1) / durationNs);
+            if (tenantTotal != expected || sum(customerId.getId()) != expected || sum(TenantId.SYS_TENANT_ID.getId()) != expected) {
+                log.warn("threads: {}, expected {} reports, flushed tenants: {}, customer: {}, system: {}", threads, expected,
+                        tenantTotal, sum(customerId.getId()), sum(TenantId.SYS_TENANT_ID.getId()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long sum(UUID ownerId) {
+        LongAdder total = flushed.get(ownerId);
+        return total != null ? total.sum() : 0;
+    }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.usagestats;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.ApiUsageRecordKey;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.gen.transport.TransportProtos.ToUsageStatsServiceMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.UsageStatsKVProto;
+import org.thingsboard.server.queue.TbQueueProducer;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
+import org.thingsboard.server.queue.scheduler.SchedulerComponent;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willReturn;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultTbApiUsageClientTest {
+
+    private static final ApiUsageRecordKey KEY = ApiUsageRecordKey.TRANSPORT_MSG_COUNT;
+    private static final int THREADS = 4;
+    private static final int REPORTS_PER_THREAD = 10_000;
+
+    @Mock
+    PartitionService partitionService;
+    @Mock
+    SchedulerComponent scheduler;
+    @Mock
+    TbQueueProducerProvider producerProvider;
+    @Mock
+    TbQueueProducer<TbProtoQueueMsg<ToUsageStatsServiceMsg>> msgProducer;
+
+    DefaultTbApiUsageClient client;
+    ExecutorService executor;
+    List<TbProtoQueueMsg<ToUsageStatsServiceMsg>> sent = new ArrayList<>();
+
+    TenantId tenantId = new TenantId(UUID.randomUUID());
+    CustomerId customerId = new CustomerId(UUID.randomUUID());
+
+    @Before
+    public void setUp() {
+        willReturn(msgProducer).given(producerProvider).getTbUsageStatsMsgProducer();
+        willReturn("tb_usage_stats").given(msgProducer).getDefaultTopic();
+        willReturn(new TopicPartitionInfo("tb_core", null, 0, true)).given(partitionService).resolve(any(), any(TenantId.class), any());
+        willAnswer(invocation -> sent.add(invocation.getArgument(1))).given(msgProducer).send(any(), any(), any());
+        client = new DefaultTbApiUsageClient(partitionService, scheduler, producerProvider);
+        ReflectionTestUtils.setField(client, "enabled", true);
+        ReflectionTestUtils.setField(client, "enabledPerCustomer", true);
+        ReflectionTestUtils.setField(client, "interval", 10);
+        ReflectionTestUtils.invokeMethod(client, "init");
+    }
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void givenReports_whenReportStats_thenTotalsReportedOncePerOwner() {
+        client.report(tenantId, customerId, KEY);
+        client.report(tenantId, customerId, KEY, 4);
+        client.report(tenantId, null, KEY);
+
+        Map<UUID, Long> totals = reportStats();
+
+        assertThat(totals.get(tenantId.getId()), is(6L));
+        assertThat(totals.get(customerId.getId()), is(5L));
+        assertThat(totals.get(TenantId.SYS_TENANT_ID.getId()), is(6L));
+        assertThat(reportStats().isEmpty(), is(true));
+    }
+
+    @Test
+    public void givenIdleOwner_whenReportStats_thenEvictedAndCountedAgainAfterNextReport() {
+        client.report(tenantId, customerId, KEY);
+        reportStats();
+
+        reportStats();
+        assertThat(tenantStats().get(tenantId), nullValue());
+        assertThat(customerStats().get(customerId), nullValue());
+
+        client.report(tenantId, customerId, KEY, 3);
+        Map<UUID, Long> totals = reportStats();
+        assertThat(totals.get(tenantId.getId()), is(3L));
+        assertThat(totals.get(customerId.getId()), is(3L));
+    }
+
+    @Test
+    public void givenReportsRacingWithEviction_whenReportStats_thenNoIncrementLost() throws Exception {
+        executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> reporters = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            reporters.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < REPORTS_PER_THREAD; i++) {
+                    client.report(tenantId, customerId, KEY);
+                    if (i % 100 == 0) {
+                        // lets the owner become idle, so the flush evicts its counters
+                        Thread.yield();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        Map<UUID, Long> totals = new HashMap<>();
+        start.countDown();
+        boolean done = false;
+        while (!done) {
+            done = reporters.stream().allMatch(Future::isDone);
+            reportStats().forEach((id, value) -> totals.merge(id, value, Long::sum));
+        }
+        for (Future<?> reporter : reporters) {
+            reporter.get(1, TimeUnit.MINUTES);
+        }
+        reportStats().forEach((id, value) -> totals.merge(id, value, Long::sum));
+
+        long expected = (long) THREADS * REPORTS_PER_THREAD;
+        assertThat(totals.get(tenantId.getId()), is(expected));
+        assertThat(totals.get(customerId.getId()), is(expected));
+        assertThat(totals.get(TenantId.SYS_TENANT_ID.getId()), is(expected));
+    }
+
+    private Map<UUID, Long> reportStats() {
+        sent.clear();
+        ReflectionTestUtils.invokeMethod(client, "reportStats");
+        Map<UUID, Long> totals = new HashMap<>();
+        for (TbProtoQueueMsg<ToUsageStatsServiceMsg> msg : sent) {
+            ToUsageStatsServiceMsg statsMsg = msg.getValue();
+            UUID ownerId = statsMsg.getCustomerIdMSB() != 0 ? new UUID(statsMsg.getCustomerIdMSB(), statsMsg.getCustomerIdLSB())
+                    : new UUID(statsMsg.getTenantIdMSB(), statsMsg.getTenantIdLSB());
+            for (UsageStatsKVProto kv : statsMsg.getValuesList()) {
+                assertThat(kv.getKey(), is(KEY.name()));
+                totals.merge(ownerId, kv.getValue(), Long::sum);
+            }
+        }
+        return totals;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentMap<TenantId, ?> tenantStats() {
+        return ((EnumMap<ApiUsageRecordKey, ConcurrentMap<TenantId, ?>>) ReflectionTestUtils.getField(client, "tenantStats")).get(KEY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentMap<CustomerId, ?> customerStats() {
+        return ((EnumMap<ApiUsageRecordKey, ConcurrentMap<CustomerId, ?>>) ReflectionTestUtils.getField(client, "customerStats")).get(KEY);
+    }
+
+}
@@ -22,6 +22,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
@@ -32,6 +35,8 @@ public class DefaultStatsFactory implements StatsFactory {
 
     private static final String STATS_NAME_TAG = "statsName";
 
+    private static final String MSG_LATENCY = "msgLatency";
+
     private static final Counter STUB_COUNTER = new StubCounter();
 
     @Autowired
@@ -43,8 +48,19 @@ public class DefaultStatsFactory implements StatsFactory {
     @Value("${metrics.timer.percentiles:0.5}")
     private String timerPercentilesStr;
 
+    @Value("${metrics.msg_latency.enabled:false}")
+    private boolean msgLatencyEnabled;
+
+    @Value("${metrics.msg_latency.per_tenant:false}")
+    private boolean msgLatencyPerTenant;
+
+    @Value("${metrics.msg_latency.max_expected_ms:60000}")
+    private long msgLatencyMaxExpectedMs;
+
     private double[] timerPercentiles;
 
+    private final ConcurrentMap<String, Timer> msgLatencyTimers = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void init() {
         if (!StringUtils.isEmpty(timerPercentilesStr)) {
@@ -102,6 +118,39 @@ public class DefaultStatsFactory implements StatsFactory {
         return timerBuilder.register(meterRegistry);
     }
 
+    @Override
+    public void removeMeters(String key, String... tags) {
+        meterRegistry.find(key).tags(tags).meters().forEach(meterRegistry::remove);
+    }
+
+    @Override
+    public Timer getMsgLatencyTimer(MsgLatencyStage stage, String queueName, String tenantId) {
+        if (!msgLatencyEnabled) {
+            return null;
+        }
+        String timerTenantId = msgLatencyPerTenant && tenantId != null ? tenantId : null;
+        String timerKey = stage.getName() + "|" + queueName + "|" + timerTenantId;
+        Timer timer = msgLatencyTimers.get(timerKey);
+        if (timer == null) {
+            timer = msgLatencyTimers.computeIfAbsent(timerKey, k -> {
+                Timer.Builder timerBuilder = Timer.builder(MSG_LATENCY)
+                        .tag("stage", stage.getName())
+                        .tag("queue", queueName)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofMillis(Math.max(1, msgLatencyMaxExpectedMs)));
+                if (timerTenantId != null) {
+                    timerBuilder.tag("tenantId", timerTenantId);
+                }
+                if (timerPercentiles != null && timerPercentiles.length > 0) {
+                    timerBuilder.publishPercentiles(timerPercentiles);
+                }
+                return timerBuilder.register(meterRegistry);
+            });
+        }
+        return timer;
+    }
+
     private static class StubCounter implements Counter {
         @Override
         public void increment(double amount) {
@@ -0,0 +1,48 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.stats;
+
+/**
+ * Stages of message processing measured by the message latency histograms.
+ */
+public enum MsgLatencyStage {
+    /**
+     * From the moment the message is pushed to the queue until it is polled by the rule engine consumer.
+     */
+    QUEUE("queue"),
+    /**
+     * From the moment the message is polled by the rule engine consumer until it is acknowledged by the rule chain.
+     */
+    RULE_ENGINE("ruleEngine"),
+    /**
+     * From the creation of the message (e.g. by the transport) until it is acknowledged by the rule chain.
+     */
+    END_TO_END("endToEnd"),
+    /**
+     * From the moment the entity is added to the SQL persistence queue until the batch containing it is saved.
+     */
+    PERSISTENCE("persistence");
+
+    private final String name;
+
+    MsgLatencyStage(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
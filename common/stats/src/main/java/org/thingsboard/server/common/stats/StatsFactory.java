@@ -27,4 +27,17 @@ public interface StatsFactory {
     MessagesStats createMessagesStats(String key);
 
     Timer createTimer(String key, String... tags);
+
+    /**
+     * Removes the meters with the given name and tags from the registry, so they are no longer published.
+     */
+    void removeMeters(String key, String... tags);
+
+    /**
+     * Returns the histogram timer of the message latency for the given stage and queue,
+     * or {@code null} if message latency metrics are disabled.
+     *
+     * @param tenantId tenant id of the message or {@code null}. Ignored unless per tenant latency metrics are enabled
+     */
+    Timer getMsgLatencyTimer(MsgLatencyStage stage, String queueName, String tenantId);
 }
@@ -0,0 +1,535 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.netty;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonStreamParser;
+import com.google.gson.JsonSyntaxException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.ReferenceCountUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.ota.OtaPackageType;
+import org.thingsboard.server.common.data.rpc.RpcStatus;
+import org.thingsboard.server.common.transport.SessionMsgListener;
+import org.thingsboard.server.common.transport.TransportService;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.adaptor.JsonConverter;
+import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.gen.transport.TransportProtos.AttributeUpdateNotificationMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.GetAttributeRequestMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.GetAttributeResponseMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.PostTelemetryMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ProvisionDeviceResponseMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionCloseNotificationProto;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
+import org.thingsboard.server.gen.transport.TransportProtos.SubscribeToAttributeUpdatesMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.SubscribeToRPCMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToDeviceRpcRequestMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToDeviceRpcResponseMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToServerRpcResponseMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToTransportUpdateCredentialsProto;
+import org.thingsboard.server.transport.http.HttpTransportContext;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Serves the device API of {@link org.thingsboard.server.transport.http.DeviceApiController} on top of netty.
+ * <p>
+ * Request bodies are parsed straight from the received buffers, access tokens are resolved through
+ * {@link HttpDeviceSessionCache} and connections are kept alive between requests. Requests pipelined on the same
+ * connection are processed concurrently, while their responses are written in the order of the requests.
+ * Besides the endpoints of the servlet API, {@code POST /api/v1/{deviceToken}/telemetry/batch} accepts a stream of
+ * telemetry JSON documents (a JSON array, concatenated or newline delimited objects) and pushes them as a single message.
+ */
+@Slf4j
+public class HttpDeviceApiHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    private static final String API_PREFIX = "/api/v1/";
+
+    private final HttpTransportContext context;
+    private final TransportService transportService;
+    private final HttpDeviceSessionCache sessionCache;
+    private final int maxInFlightRequests;
+
+    // accessed from the event loop thread only
+    private final Deque<HttpResponder> inFlight = new ArrayDeque<>();
+    private ChannelHandlerContext ctx;
+
+    public HttpDeviceApiHandler(HttpTransportContext context, HttpDeviceSessionCache sessionCache, int maxInFlightRequests) {
+        this.context = context;
+        this.transportService = context.getTransportService();
+        this.sessionCache = sessionCache;
+        this.maxInFlightRequests = Math.max(1, maxInFlightRequests);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+        HttpResponder responder = new HttpResponder(HttpUtil.isKeepAlive(request));
+        inFlight.add(responder);
+        if (inFlight.size() >= maxInFlightRequests) {
+            ctx.channel().config().setAutoRead(false);
+        }
+        if (!request.decoderResult().isSuccess()) {
+            responder.send(HttpResponseStatus.BAD_REQUEST);
+            return;
+        }
+        try {
+            route(request, responder);
+        } catch (RuntimeException e) {
+            log.debug("[{}] Failed to process request {} {}", ctx.channel().remoteAddress(), request.method(), request.uri(), e);
+            responder.send(HttpResponseStatus.BAD_REQUEST);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (HttpResponder responder : inFlight) {
+            responder.release();
+        }
+        inFlight.clear();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.debug("[{}] Unexpected exception", ctx.channel().remoteAddress(), cause);
+        ctx.close();
+    }
+
+    private void route(FullHttpRequest request, HttpResponder responder) {
+        QueryStringDecoder uri = new QueryStringDecoder(request.uri());
+        String path = uri.path();
+        if (!path.startsWith(API_PREFIX)) {
+            responder.send(HttpResponseStatus.NOT_FOUND);
+            return;
+        }
+        String[] parts = path.substring(API_PREFIX.length()).split("/");
+        String method = request.method().name();
+        if (parts.length == 1) {
+            if ("POST".equals(method) && "provision".equals(parts[0])) {
+                provisionDevice(parseJson(request), responder);
+            } else {
+                responder.send(HttpResponseStatus.NOT_FOUND);
+            }
+            return;
+        }
+        String token = parts[0];
+        String resource = parts.length == 2 ? parts[1] : (parts.length == 3 ? parts[1] + "/" + parts[2] : "");
+        if (parts.length == 3 && "rpc".equals(parts[1])) {
+            resource = "rpc/{requestId}";
+        }
+        switch (method + " " + resource) {
+            case "GET attributes":
+                getDeviceAttributes(token, getParam(uri, "clientKeys", ""), getParam(uri, "sharedKeys", ""), responder);
+                break;
+            case "POST attributes":
+                postDeviceAttributes(token, JsonConverter.convertToAttributesProto(parseJson(request)), responder);
+                break;
+            case "GET attributes/updates":
+                subscribe(token, SubscribeToAttributeUpdatesMsg.getDefaultInstance(), getTimeout(uri), responder);
+                break;
+            case "POST telemetry":
+                postTelemetry(token, JsonConverter.convertToTelemetryProto(parseJson(request)), responder);
+                break;
+            case "POST telemetry/batch":
+                postTelemetry(token, parseTelemetryBatch(request), responder);
+                break;
+            case "POST claim":
+                claimDevice(token, request.content().isReadable() ? parseJson(request) : null, responder);
+                break;
+            case "GET rpc":
+                subscribe(token, SubscribeToRPCMsg.getDefaultInstance(), getTimeout(uri), responder);
+                break;
+            case "POST rpc":
+                postRpcRequest(token, JsonConverter.convertToServerRpcRequest(parseJson(request), 0), responder);
+                break;
+            case "POST rpc/{requestId}":
+                replyToCommand(token, ToDeviceRpcResponseMsg.newBuilder().setRequestId(Integer.parseInt(parts[2]))
+                        .setPayload(request.content().toString(StandardCharsets.UTF_8)).build(), responder);
+                break;
+            case "GET firmware":
+                getOtaPackage(token, uri, OtaPackageType.FIRMWARE, responder);
+                break;
+            case "GET software":
+                getOtaPackage(token, uri, OtaPackageType.SOFTWARE, responder);
+                break;
+            default:
+                responder.send(HttpResponseStatus.NOT_FOUND);
+        }
+    }
+
+    private void getDeviceAttributes(String token, String clientKeys, String sharedKeys, HttpResponder responder) {
+        GetAttributeRequestMsg.Builder request = GetAttributeRequestMsg.newBuilder().setRequestId(0);
+        if (!StringUtils.isEmpty(clientKeys)) {
+            request.addAllClientAttributeNames(Arrays.asList(clientKeys.split(",")));
+        }
+        if (!StringUtils.isEmpty(sharedKeys)) {
+            request.addAllSharedAttributeNames(Arrays.asList(sharedKeys.split(",")));
+        }
+        withSession(token, responder, session -> {
+            SessionInfoProto sessionInfo = registerSyncSession(token, session, responder, context.getDefaultTimeout());
+            transportService.process(sessionInfo, request.build(), new SessionCloseOnErrorCallback(responder));
+        });
+    }
+
+    private void postDeviceAttributes(String token, TransportProtos.PostAttributeMsg msg, HttpResponder responder) {
+        withSession(token, responder, session -> transportService.process(session.getSessionInfo(), msg, new HttpOkCallback(responder)));
+    }
+
+    private void postTelemetry(String token, PostTelemetryMsg msg, HttpResponder responder) {
+        withSession(token, responder, session -> transportService.process(session.getSessionInfo(), msg, new HttpOkCallback(responder)));
+    }
+
+    private void claimDevice(String token, JsonElement json, HttpResponder responder) {
+        withSession(token, responder, session -> {
+            SessionInfoProto sessionInfo = session.getSessionInfo();
+            DeviceId deviceId = new DeviceId(new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB()));
+            TransportProtos.ClaimDeviceMsg msg = json != null ? JsonConverter.convertToClaimDeviceProto(deviceId, json)
+                    : JsonConverter.convertToClaimDeviceProto(deviceId, (String) null);
+            transportService.process(sessionInfo, msg, new HttpOkCallback(responder));
+        });
+    }
+
+    private void subscribe(String token, SubscribeToAttributeUpdatesMsg msg, long timeout, HttpResponder responder) {
+        withSession(token, responder, session -> {
+            SessionInfoProto sessionInfo = registerSyncSession(token, session, responder, timeout);
+            transportService.process(sessionInfo, msg, new SessionCloseOnErrorCallback(responder));
+        });
+    }
+
+    private void subscribe(String token, SubscribeToRPCMsg msg, long timeout, HttpResponder responder) {
+        withSession(token, responder, session -> {
+            SessionInfoProto sessionInfo = registerSyncSession(token, session, responder, timeout);
+            transportService.process(sessionInfo, msg, new SessionCloseOnErrorCallback(responder));
+        });
+    }
+
+    private void postRpcRequest(String token, TransportProtos.ToServerRpcRequestMsg msg, HttpResponder responder) {
+        withSession(token, responder, session -> {
+            SessionInfoProto sessionInfo = registerSyncSession(token, session, responder, context.getDefaultTimeout());
+            transportService.process(sessionInfo, msg, new SessionCloseOnErrorCallback(responder));
+        });
+    }
+
+    private void replyToCommand(String token, ToDeviceRpcResponseMsg msg, HttpResponder responder) {
+        withSession(token, responder, session -> transportService.process(session.getSessionInfo(), msg, new HttpOkCallback(responder)));
+    }
+
+    private void getOtaPackage(String token, QueryStringDecoder uri, OtaPackageType type, HttpResponder responder) {
+        String title = getParam(uri, "title", null);
+        String version = getParam(uri, "version", null);
+        if (title == null || version == null) {
+            responder.send(HttpResponseStatus.BAD_REQUEST);
+            return;
+        }
+        int size = Integer.parseInt(getParam(uri, "size", "0"));
+        int chunk = Integer.parseInt(getParam(uri, "chunk", "0"));
+        withSession(token, responder, session -> {
+            SessionInfoProto sessionInfo = session.getSessionInfo();
+            TransportProtos.GetOtaPackageRequestMsg requestMsg = TransportProtos.GetOtaPackageRequestMsg.newBuilder()
+                    .setTenantIdMSB(sessionInfo.getTenantIdMSB())
+                    .setTenantIdLSB(sessionInfo.getTenantIdLSB())
+                    .setDeviceIdMSB(sessionInfo.getDeviceIdMSB())
+                    .setDeviceIdLSB(sessionInfo.getDeviceIdLSB())
+                    .setType(type.name()).build();
+            transportService.process(sessionInfo, requestMsg, new TransportServiceCallback<>() {
+                @Override
+                public void onSuccess(TransportProtos.GetOtaPackageResponseMsg msg) {
+                    if (!TransportProtos.ResponseStatus.SUCCESS.equals(msg.getResponseStatus())) {
+                        responder.send(HttpResponseStatus.NOT_FOUND);
+                    } else if (title.equals(msg.getTitle()) && version.equals(msg.getVersion())) {
+                        String otaPackageId = new UUID(msg.getOtaPackageIdMSB(), msg.getOtaPackageIdLSB()).toString();
+                        byte[] data = context.getOtaPackageDataCache().get(otaPackageId, size, chunk);
+                        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                                data != null ? Unpooled.wrappedBuffer(data) : Unpooled.EMPTY_BUFFER);
+                        response.headers()
+                                .set(HttpHeaderNames.CONTENT_DISPOSITION, "attachment;filename=" + msg.getFileName())
+                                .set("x-filename", msg.getFileName())
+                                .set(HttpHeaderNames.CONTENT_TYPE, StringUtils.isEmpty(msg.getContentType()) ?
+                                        HttpHeaderValues.APPLICATION_OCTET_STREAM : msg.getContentType());
+                        responder.send(response);
+                    } else {
+                        responder.send(HttpResponseStatus.BAD_REQUEST);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    log.warn("Failed to process request", e);
+                    responder.send(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                }
+            });
+        });
+    }
+
+    private void provisionDevice(JsonElement json, HttpResponder responder) {
+        transportService.process(JsonConverter.convertToProvisionRequestMsg(json.getAsJsonObject()), new TransportServiceCallback<>() {
+            @Override
+            public void onSuccess(ProvisionDeviceResponseMsg msg) {
+                responder.sendJson(JsonConverter.toJson(msg).toString());
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                log.warn("Failed to process request", e);
+                responder.send(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            }
+        });
+    }
+
+    private void withSession(String token, HttpResponder responder, Consumer<HttpDeviceSession> onSuccess) {
+        sessionCache.getSession(token, new TransportServiceCallback<>() {
+            @Override
+            public void onSuccess(HttpDeviceSession session) {
+                if (session == null) {
+                    responder.send(HttpResponseStatus.UNAUTHORIZED);
+                    return;
+                }
+                try {
+                    onSuccess.accept(session);
+                } catch (Exception e) {
+                    log.warn("Failed to process request", e);
+                    responder.send(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                }
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                log.warn("Failed to process request", e);
+                responder.send(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            }
+        });
+    }
+
+    private SessionInfoProto registerSyncSession(String token, HttpDeviceSession session, HttpResponder responder, long timeout) {
+        SessionInfoProto sessionInfo = session.newSyncSessionInfo();
+        responder.syncSession = sessionInfo;
+        transportService.registerSyncSession(sessionInfo, new HttpSessionListener(token, responder, sessionInfo), timeout);
+        return sessionInfo;
+    }
+
+    private long getTimeout(QueryStringDecoder uri) {
+        long timeout = Long.parseLong(getParam(uri, "timeout", "0"));
+        return timeout == 0 ? context.getDefaultTimeout() : Math.min(timeout, context.getMaxRequestTimeout());
+    }
+
+    private static String getParam(QueryStringDecoder uri, String name, String defaultValue) {
+        List<String> values = uri.parameters().get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : defaultValue;
+    }
+
+    private static JsonElement parseJson(FullHttpRequest request) {
+        return new JsonParser().parse(newReader(request.content()));
+    }
+
+    static PostTelemetryMsg parseTelemetryBatch(FullHttpRequest request) {
+        PostTelemetryMsg.Builder builder = PostTelemetryMsg.newBuilder();
+        long ts = System.currentTimeMillis();
+        JsonStreamParser parser = new JsonStreamParser(newReader(request.content()));
+        while (parser.hasNext()) {
+            builder.addAllTsKvList(JsonConverter.convertToTelemetryProto(parser.next(), ts).getTsKvListList());
+        }
+        if (builder.getTsKvListCount() == 0) {
+            throw new JsonSyntaxException("Telemetry batch is empty!");
+        }
+        return builder.build();
+    }
+
+    private static Reader newReader(ByteBuf content) {
+        return new InputStreamReader(new ByteBufInputStream(content), StandardCharsets.UTF_8);
+    }
+
+    private void onResponse(HttpResponder responder, FullHttpResponse response) {
+        if (!ctx.channel().isActive() || !inFlight.contains(responder)) {
+            ReferenceCountUtil.release(response);
+            return;
+        }
+        responder.response = response;
+        boolean written = false;
+        while (!inFlight.isEmpty() && inFlight.peek().response != null) {
+            HttpResponder next = inFlight.poll();
+            if (next.keepAlive) {
+                ctx.write(next.response);
+            } else {
+                ctx.writeAndFlush(next.response).addListener(ChannelFutureListener.CLOSE);
+                return;
+            }
+            written = true;
+        }
+        if (written) {
+            ctx.flush();
+        }
+        if (!ctx.channel().config().isAutoRead() && inFlight.size() < maxInFlightRequests) {
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    private class HttpResponder {
+        private final boolean keepAlive;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile SessionInfoProto syncSession;
+        // accessed from the event loop thread only
+        private FullHttpResponse response;
+
+        HttpResponder(boolean keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        void send(HttpResponseStatus status) {
+            send(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.EMPTY_BUFFER));
+        }
+
+        void sendJson(String json) {
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                    Unpooled.copiedBuffer(json, StandardCharsets.UTF_8));
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+            send(response);
+        }
+
+        void send(FullHttpResponse response) {
+            if (!done.compareAndSet(false, true)) {
+                ReferenceCountUtil.release(response);
+                return;
+            }
+            release();
+            HttpUtil.setContentLength(response, response.content().readableBytes());
+            HttpUtil.setKeepAlive(response, keepAlive);
+            if (ctx.executor().inEventLoop()) {
+                onResponse(this, response);
+            } else {
+                ctx.executor().execute(() -> onResponse(this, response));
+            }
+        }
+
+        void release() {
+            SessionInfoProto sessionInfo = syncSession;
+            if (sessionInfo != null) {
+                syncSession = null;
+                transportService.deregisterSession(sessionInfo);
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class HttpOkCallback implements TransportServiceCallback<Void> {
+        private final HttpResponder responder;
+
+        @Override
+        public void onSuccess(Void msg) {
+            responder.send(HttpResponseStatus.OK);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            responder.send(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class SessionCloseOnErrorCallback implements TransportServiceCallback<Void> {
+        private final HttpResponder responder;
+
+        @Override
+        public void onSuccess(Void msg) {
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            responder.send(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class HttpSessionListener implements SessionMsgListener {
+        private final String token;
+        private final HttpResponder responder;
+        private final SessionInfoProto sessionInfo;
+
+        @Override
+        public void onGetAttributesResponse(GetAttributeResponseMsg msg) {
+            responder.sendJson(JsonConverter.toJson(msg).toString());
+        }
+
+        @Override
+        public void onAttributeUpdate(UUID sessionId, AttributeUpdateNotificationMsg msg) {
+            log.trace("[{}] Received attributes update notification to device", sessionId);
+            responder.sendJson(JsonConverter.toJson(msg).toString());
+        }
+
+        @Override
+        public void onRemoteSessionCloseCommand(UUID sessionId, SessionCloseNotificationProto sessionCloseNotification) {
+            log.trace("[{}] Received the remote command to close the session: {}", sessionId, sessionCloseNotification.getMessage());
+            responder.send(HttpResponseStatus.REQUEST_TIMEOUT);
+        }
+
+        @Override
+        public void onToTransportUpdateCredentials(ToTransportUpdateCredentialsProto notification) {
+            sessionCache.invalidate(token);
+        }
+
+        @Override
+        public void onDeviceDeleted(DeviceId deviceId) {
+            log.trace("[{}] Device deleted, dropping the cached session", deviceId);
+            sessionCache.invalidate(token);
+            responder.send(HttpResponseStatus.UNAUTHORIZED);
+        }
+
+        @Override
+        public void onToDeviceRpcRequest(UUID sessionId, ToDeviceRpcRequestMsg msg) {
+            log.trace("[{}] Received RPC command to device", sessionId);
+            responder.sendJson(JsonConverter.toJson(msg, true).toString());
+            transportService.process(sessionInfo, msg, RpcStatus.DELIVERED, TransportServiceCallback.EMPTY);
+        }
+
+        @Override
+        public void onToServerRpcResponse(ToServerRpcResponseMsg msg) {
+            responder.sendJson(JsonConverter.toJson(msg).toString());
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.netty;
+
+import lombok.Data;
+import org.thingsboard.server.common.transport.auth.SessionInfoCreator;
+import org.thingsboard.server.common.transport.auth.ValidateDeviceCredentialsResponse;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
+
+import java.util.UUID;
+
+/**
+ * Result of the access token validation shared by all HTTP requests of the device.
+ * Fire-and-forget requests reuse {@link #sessionInfo}, while long polling requests register
+ * their own sync session, so they do not collide with each other.
+ */
+@Data
+public class HttpDeviceSession {
+
+    private final ValidateDeviceCredentialsResponse credentials;
+    private final SessionInfoProto sessionInfo;
+
+    public SessionInfoProto newSyncSessionInfo() {
+        return SessionInfoCreator.create(credentials, sessionInfo.getNodeId(), UUID.randomUUID());
+    }
+
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.netty;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.DeviceTransportType;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.transport.TransportService;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.auth.SessionInfoCreator;
+import org.thingsboard.server.common.transport.auth.ValidateDeviceCredentialsResponse;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceTokenRequestMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches validated access tokens of HTTP devices, so subsequent requests of the device skip the round trip
+ * to the core service. Concurrent requests with the same not yet cached token share a single validation.
+ * <p>
+ * Entries of a device are dropped once its credentials are changed or the device is deleted. The configured TTL
+ * only bounds the lifetime of entries whose invalidation was missed. Tokens that failed the validation are not cached.
+ */
+@Slf4j
+public class HttpDeviceSessionCache {
+
+    private final TransportService transportService;
+    private final Supplier<String> nodeIdSupplier;
+    private final Cache<String, HttpDeviceSession> sessions;
+    private final ConcurrentMap<String, List<TransportServiceCallback<HttpDeviceSession>>> pendingValidations = new ConcurrentHashMap<>();
+    // incremented on every invalidation, so validations that started before it do not cache outdated results
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public HttpDeviceSessionCache(TransportService transportService, Supplier<String> nodeIdSupplier, long maxSize, long ttlMs) {
+        this.transportService = transportService;
+        this.nodeIdSupplier = nodeIdSupplier;
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Completes the callback with the session of the device or with {@code null} if the token is not valid.
+     */
+    public void getSession(String token, TransportServiceCallback<HttpDeviceSession> callback) {
+        HttpDeviceSession session = sessions.getIfPresent(token);
+        if (session != null) {
+            callback.onSuccess(session);
+            return;
+        }
+        boolean[] first = new boolean[1];
+        pendingValidations.compute(token, (k, callbacks) -> {
+            if (callbacks == null) {
+                callbacks = new ArrayList<>();
+                first[0] = true;
+            }
+            callbacks.add(callback);
+            return callbacks;
+        });
+        if (first[0]) {
+            validate(token);
+        }
+    }
+
+    public void invalidate(String token) {
+        invalidations.incrementAndGet();
+        sessions.invalidate(token);
+    }
+
+    public void invalidate(DeviceId deviceId) {
+        invalidations.incrementAndGet();
+        long deviceIdMSB = deviceId.getId().getMostSignificantBits();
+        long deviceIdLSB = deviceId.getId().getLeastSignificantBits();
+        sessions.asMap().values().removeIf(session -> {
+            SessionInfoProto sessionInfo = session.getSessionInfo();
+            return sessionInfo.getDeviceIdMSB() == deviceIdMSB && sessionInfo.getDeviceIdLSB() == deviceIdLSB;
+        });
+    }
+
+    public long size() {
+        return sessions.estimatedSize();
+    }
+
+    private void validate(String token) {
+        long invalidationsBefore = invalidations.get();
+        transportService.process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(token).build(),
+                new TransportServiceCallback<>() {
+                    @Override
+                    public void onSuccess(ValidateDeviceCredentialsResponse msg) {
+                        HttpDeviceSession session = null;
+                        if (msg.hasDeviceInfo()) {
+                            session = new HttpDeviceSession(msg, SessionInfoCreator.create(msg, nodeIdSupplier.get(), UUID.randomUUID()));
+                            sessions.put(token, session);
+                            if (invalidations.get() != invalidationsBefore) {
+                                sessions.asMap().remove(token, session);
+                            }
+                        }
+                        List<TransportServiceCallback<HttpDeviceSession>> callbacks = pendingValidations.remove(token);
+                        if (callbacks != null) {
+                            for (TransportServiceCallback<HttpDeviceSession> callback : callbacks) {
+                                callback.onSuccess(session);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        log.debug("Failed to validate device token", e);
+                        List<TransportServiceCallback<HttpDeviceSession>> callbacks = pendingValidations.remove(token);
+                        if (callbacks != null) {
+                            for (TransportServiceCallback<HttpDeviceSession> callback : callbacks) {
+                                callback.onError(e);
+                            }
+                        }
+                    }
+                });
+    }
+
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.netty;
+
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import org.thingsboard.server.transport.http.HttpTransportContext;
+
+public class HttpNettyServerInitializer extends ChannelInitializer<SocketChannel> {
+
+    private final HttpTransportContext context;
+    private final HttpDeviceSessionCache sessionCache;
+    private final int maxPayloadSize;
+    private final int maxInFlightRequests;
+
+    public HttpNettyServerInitializer(HttpTransportContext context, HttpDeviceSessionCache sessionCache, int maxPayloadSize, int maxInFlightRequests) {
+        this.context = context;
+        this.sessionCache = sessionCache;
+        this.maxPayloadSize = maxPayloadSize;
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    @Override
+    public void initChannel(SocketChannel ch) {
+        ChannelPipeline pipeline = ch.pipeline();
+        pipeline.addLast("codec", new HttpServerCodec());
+        pipeline.addLast("aggregator", new HttpObjectAggregator(maxPayloadSize));
+        pipeline.addLast("handler", new HttpDeviceApiHandler(context, sessionCache, maxInFlightRequests));
+    }
+
+}
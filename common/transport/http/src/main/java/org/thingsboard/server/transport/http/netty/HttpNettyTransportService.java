@@ -0,0 +1,127 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.netty;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.transport.DeviceCredentialsUpdatedEvent;
+import org.thingsboard.server.common.transport.DeviceDeletedEvent;
+import org.thingsboard.server.common.transport.DeviceUpdatedEvent;
+import org.thingsboard.server.transport.http.HttpTransportContext;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Netty based alternative to the servlet HTTP device API, listening on its own port.
+ */
+@Service("HttpNettyTransportService")
+@ConditionalOnExpression("('${service.type:null}'=='tb-transport' || ('${service.type:null}'=='monolith' && '${transport.api_enabled:true}'=='true' && '${transport.http.enabled}'=='true')) && '${transport.http.netty.enabled:false}'=='true'")
+@Slf4j
+public class HttpNettyTransportService {
+
+    @Value("${transport.http.netty.bind_address:0.0.0.0}")
+    private String host;
+    @Value("${transport.http.netty.bind_port:8082}")
+    private Integer port;
+    @Value("${transport.http.netty.boss_group_thread_count:1}")
+    private Integer bossGroupThreadCount;
+    @Value("${transport.http.netty.worker_group_thread_count:12}")
+    private Integer workerGroupThreadCount;
+    @Value("${transport.http.netty.so_keep_alive:false}")
+    private boolean keepAlive;
+    @Value("${transport.http.netty.max_payload_size:65536}")
+    private Integer maxPayloadSize;
+    @Value("${transport.http.netty.max_in_flight_requests_per_connection:16}")
+    private Integer maxInFlightRequests;
+    @Value("${transport.http.netty.session_cache.max_size:100000}")
+    private long sessionCacheMaxSize;
+    @Value("${transport.http.netty.session_cache.ttl:60000}")
+    private long sessionCacheTtl;
+
+    @Autowired
+    private HttpTransportContext context;
+
+    private HttpDeviceSessionCache sessionCache;
+    private Channel serverChannel;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+
+    @PostConstruct
+    public void init() throws Exception {
+        log.info("Starting HTTP netty transport...");
+        sessionCache = new HttpDeviceSessionCache(context.getTransportService(), context::getNodeId,
+                sessionCacheMaxSize, sessionCacheTtl);
+        bossGroup = new NioEventLoopGroup(bossGroupThreadCount);
+        workerGroup = new NioEventLoopGroup(workerGroupThreadCount);
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new HttpNettyServerInitializer(context, sessionCache, maxPayloadSize, maxInFlightRequests))
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.SO_KEEPALIVE, keepAlive)
+                .childOption(ChannelOption.TCP_NODELAY, true);
+        serverChannel = b.bind(host, port).sync().channel();
+        log.info("HTTP netty transport started on {}:{}!", host, port);
+    }
+
+    @EventListener(DeviceCredentialsUpdatedEvent.class)
+    public void onDeviceCredentialsUpdated(DeviceCredentialsUpdatedEvent event) {
+        sessionCache.invalidate(event.getDeviceId());
+    }
+
+    @EventListener(DeviceUpdatedEvent.class)
+    public void onDeviceUpdated(DeviceUpdatedEvent event) {
+        // cached session info holds the device name, type, profile and customer
+        sessionCache.invalidate(event.getDevice().getId());
+    }
+
+    @EventListener(DeviceDeletedEvent.class)
+    public void onDeviceDeleted(DeviceDeletedEvent event) {
+        sessionCache.invalidate(event.getDeviceId());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        log.info("Stopping HTTP netty transport!");
+        try {
+            if (serverChannel != null) {
+                serverChannel.close().sync();
+            }
+        } finally {
+            if (workerGroup != null) {
+                workerGroup.shutdownGracefully();
+            }
+            if (bossGroup != null) {
+                bossGroup.shutdownGracefully();
+            }
+        }
+        log.info("HTTP netty transport stopped!");
+    }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.netty;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.server.common.data.DeviceTransportType;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.DeviceProfileId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.transport.TransportService;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.auth.TransportDeviceInfo;
+import org.thingsboard.server.common.transport.auth.ValidateDeviceCredentialsResponse;
+import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceTokenRequestMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HttpDeviceSessionCacheTest {
+
+    static final String TOKEN = "A1_TEST_TOKEN";
+
+    @Mock
+    TransportService transportService;
+
+    HttpDeviceSessionCache cache;
+    List<HttpDeviceSession> results;
+    List<Throwable> errors;
+
+    @Before
+    public void setUp() {
+        cache = new HttpDeviceSessionCache(transportService, () -> "node-1", 100, 60000);
+        results = new ArrayList<>();
+        errors = new ArrayList<>();
+    }
+
+    @Test
+    public void givenConcurrentRequests_whenTokenNotCached_thenValidatedOnceAndCached() {
+        cache.getSession(TOKEN, collector());
+        cache.getSession(TOKEN, collector());
+
+        TransportServiceCallback<ValidateDeviceCredentialsResponse> validation = captureValidation(1);
+        validation.onSuccess(validResponse());
+
+        assertThat(results.size(), is(2));
+        assertThat(results.get(0), not(nullValue()));
+        assertThat(results.get(1), sameInstance(results.get(0)));
+        assertThat(results.get(0).getSessionInfo().getNodeId(), is("node-1"));
+
+        cache.getSession(TOKEN, collector());
+
+        verify(transportService, times(1)).process(eq(DeviceTransportType.DEFAULT), any(ValidateDeviceTokenRequestMsg.class), any());
+        assertThat(results.get(2), sameInstance(results.get(0)));
+    }
+
+    @Test
+    public void givenCachedSession_whenNewSyncSession_thenSessionIdDiffers() {
+        cache.getSession(TOKEN, collector());
+        captureValidation(1).onSuccess(validResponse());
+
+        HttpDeviceSession session = results.get(0);
+
+        assertThat(session.newSyncSessionInfo().getSessionIdLSB(), not(is(session.getSessionInfo().getSessionIdLSB())));
+        assertThat(session.newSyncSessionInfo().getDeviceIdLSB(), is(session.getSessionInfo().getDeviceIdLSB()));
+    }
+
+    @Test
+    public void givenInvalidToken_whenValidated_thenNotCached() {
+        cache.getSession(TOKEN, collector());
+        captureValidation(1).onSuccess(ValidateDeviceCredentialsResponse.builder().build());
+
+        assertThat(results.size(), is(1));
+        assertThat(results.get(0), nullValue());
+        assertThat(cache.size(), is(0L));
+
+        cache.getSession(TOKEN, collector());
+        captureValidation(2).onError(new RuntimeException("timeout"));
+
+        assertThat(errors.size(), is(1));
+        assertThat(cache.size(), is(0L));
+    }
+
+    @Test
+    public void givenCachedSession_whenCredentialsRevoked_thenTokenRefusedImmediately() {
+        cache.getSession(TOKEN, collector());
+        ValidateDeviceCredentialsResponse response = validResponse();
+        captureValidation(1).onSuccess(response);
+        assertThat(cache.size(), is(1L));
+
+        cache.invalidate(response.getDeviceInfo().getDeviceId());
+        assertThat(cache.size(), is(0L));
+
+        cache.getSession(TOKEN, collector());
+        captureValidation(2).onSuccess(ValidateDeviceCredentialsResponse.builder().build());
+
+        assertThat(results.size(), is(2));
+        assertThat(results.get(1), nullValue());
+    }
+
+    @Test
+    public void givenCachedSessions_whenDeviceDeleted_thenOnlyItsTokensDropped() {
+        ValidateDeviceCredentialsResponse deleted = validResponse();
+        cache.getSession(TOKEN, collector());
+        captureValidation(1).onSuccess(deleted);
+        cache.getSession("OTHER_TOKEN", collector());
+        captureValidation(2).onSuccess(validResponse());
+        assertThat(cache.size(), is(2L));
+
+        cache.invalidate(deleted.getDeviceInfo().getDeviceId());
+
+        assertThat(cache.size(), is(1L));
+        cache.getSession("OTHER_TOKEN", collector());
+        verify(transportService, times(2)).process(eq(DeviceTransportType.DEFAULT), any(ValidateDeviceTokenRequestMsg.class), any());
+    }
+
+    @Test
+    public void givenValidationInFlight_whenCredentialsRevoked_thenResultNotCached() {
+        ValidateDeviceCredentialsResponse response = validResponse();
+        cache.getSession(TOKEN, collector());
+        TransportServiceCallback<ValidateDeviceCredentialsResponse> validation = captureValidation(1);
+
+        cache.invalidate(response.getDeviceInfo().getDeviceId());
+        validation.onSuccess(response);
+
+        assertThat(results.size(), is(1));
+        assertThat(results.get(0), not(nullValue()));
+        assertThat(cache.size(), is(0L));
+    }
+
+    @SuppressWarnings("unchecked")
+    TransportServiceCallback<ValidateDeviceCredentialsResponse> captureValidation(int times) {
+        ArgumentCaptor<TransportServiceCallback<ValidateDeviceCredentialsResponse>> captor = ArgumentCaptor.forClass(TransportServiceCallback.class);
+        verify(transportService, times(times)).process(eq(DeviceTransportType.DEFAULT), any(ValidateDeviceTokenRequestMsg.class), captor.capture());
+        return captor.getValue();
+    }
+
+    TransportServiceCallback<HttpDeviceSession> collector() {
+        return new TransportServiceCallback<>() {
+            @Override
+            public void onSuccess(HttpDeviceSession msg) {
+                results.add(msg);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                errors.add(e);
+            }
+        };
+    }
+
+    static ValidateDeviceCredentialsResponse validResponse() {
+        TransportDeviceInfo deviceInfo = new TransportDeviceInfo();
+        deviceInfo.setTenantId(new TenantId(UUID.randomUUID()));
+        deviceInfo.setCustomerId(new CustomerId(UUID.randomUUID()));
+        deviceInfo.setDeviceProfileId(new DeviceProfileId(UUID.randomUUID()));
+        deviceInfo.setDeviceId(new DeviceId(UUID.randomUUID()));
+        deviceInfo.setDeviceName("Test device");
+        deviceInfo.setDeviceType("default");
+        return ValidateDeviceCredentialsResponse.builder().deviceInfo(deviceInfo).build();
+    }
+
+}
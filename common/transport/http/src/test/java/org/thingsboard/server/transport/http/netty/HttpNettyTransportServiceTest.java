@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.netty;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.DeviceTransportType;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.transport.DeviceUpdatedEvent;
+import org.thingsboard.server.common.transport.TransportService;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.auth.ValidateDeviceCredentialsResponse;
+import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceTokenRequestMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HttpNettyTransportServiceTest {
+
+    static final String TOKEN = "A1_TEST_TOKEN";
+
+    @Mock
+    TransportService transportService;
+
+    HttpDeviceSessionCache cache;
+    HttpNettyTransportService service;
+    List<HttpDeviceSession> results;
+
+    @Before
+    public void setUp() {
+        cache = new HttpDeviceSessionCache(transportService, () -> "node-1", 100, 60000);
+        service = new HttpNettyTransportService();
+        ReflectionTestUtils.setField(service, "sessionCache", cache);
+        results = new ArrayList<>();
+    }
+
+    @Test
+    public void givenCachedSession_whenDeviceUpdated_thenSessionInfoReloaded() {
+        ValidateDeviceCredentialsResponse response = HttpDeviceSessionCacheTest.validResponse();
+        cache.getSession(TOKEN, collector());
+        captureValidation(1).onSuccess(response);
+        assertThat(cache.size(), is(1L));
+
+        service.onDeviceUpdated(new DeviceUpdatedEvent(newDevice(new DeviceId(UUID.randomUUID()))));
+        assertThat(cache.size(), is(1L));
+
+        service.onDeviceUpdated(new DeviceUpdatedEvent(newDevice(response.getDeviceInfo().getDeviceId())));
+        assertThat(cache.size(), is(0L));
+
+        ValidateDeviceCredentialsResponse updated = HttpDeviceSessionCacheTest.validResponse();
+        updated.getDeviceInfo().setDeviceId(response.getDeviceInfo().getDeviceId());
+        CustomerId newCustomerId = updated.getDeviceInfo().getCustomerId();
+        cache.getSession(TOKEN, collector());
+        captureValidation(2).onSuccess(updated);
+
+        assertThat(results.size(), is(2));
+        assertThat(results.get(1).getSessionInfo().getCustomerIdMSB(), is(newCustomerId.getId().getMostSignificantBits()));
+        assertThat(results.get(1).getSessionInfo().getCustomerIdLSB(), is(newCustomerId.getId().getLeastSignificantBits()));
+    }
+
+    private static Device newDevice(DeviceId deviceId) {
+        Device device = new Device(deviceId);
+        device.setName("Test device");
+        device.setType("default");
+        return device;
+    }
+
+    @SuppressWarnings("unchecked")
+    TransportServiceCallback<ValidateDeviceCredentialsResponse> captureValidation(int times) {
+        ArgumentCaptor<TransportServiceCallback<ValidateDeviceCredentialsResponse>> captor = ArgumentCaptor.forClass(TransportServiceCallback.class);
+        verify(transportService, times(times)).process(eq(DeviceTransportType.DEFAULT), any(ValidateDeviceTokenRequestMsg.class), captor.capture());
+        return captor.getValue();
+    }
+
+    TransportServiceCallback<HttpDeviceSession> collector() {
+        return new TransportServiceCallback<>() {
+            @Override
+            public void onSuccess(HttpDeviceSession msg) {
+                results.add(msg);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+        };
+    }
+
+}
@@ -41,8 +41,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.connection.RedisClusterConnection;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.integration.redis.util.RedisLockRegistry;
 
 import java.net.InetSocketAddress;
@@ -54,6 +57,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -68,6 +72,10 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
     public static final int DEFAULT_CLEAN_LIMIT = 500;
     /** Defaut Extra time for registration lifetime in seconds */
     public static final long DEFAULT_GRACE_PERIOD = 0;
+    /** Default max number of registrations cached locally */
+    public static final long DEFAULT_REGISTRATION_CACHE_MAX_SIZE = 100000;
+    /** Default time in milliseconds to keep a cached registration, bounds the staleness if an invalidation is missed */
+    public static final long DEFAULT_REGISTRATION_CACHE_TTL_MS = 60000;
 
     private static final Logger LOG = LoggerFactory.getLogger(RedisRegistrationStore.class);
 
@@ -81,6 +89,12 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
     private static final String OBS_TKNS_REGID_IDX = "TKNS:REGID:"; // secondary index (token list by registration)
     private static final byte[] EXP_EP = "EXP:EP".getBytes(UTF_8); // a sorted set used for registration expiration
     // (expiration date, Endpoint)
+    private static final String REG_INVALIDATION_CHANNEL = "LWM2M:REG:INVALIDATE"; // (instance id + Endpoint)
+
+    // Replaces the registration only if it was not changed since it was read
+    private static final byte[] COMPARE_AND_SET_SCRIPT = ("if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "redis.call('set', KEYS[1], ARGV[2]) return 1 else return 0 end").getBytes(UTF_8);
+    private static final int MAX_COMPARE_AND_SET_ATTEMPTS = 3;
 
     private final RedisConnectionFactory connectionFactory;
 
@@ -97,24 +111,43 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
 
     private final RedisLockRegistry redisLock;
 
+    private final TbLwM2mRegistrationNearCache nearCache;
+    private final String instanceId = UUID.randomUUID().toString();
+    private RedisMessageListenerContainer invalidationListenerContainer;
+
     public TbLwM2mRedisRegistrationStore(RedisConnectionFactory connectionFactory) {
         this(connectionFactory, DEFAULT_CLEAN_PERIOD, DEFAULT_GRACE_PERIOD, DEFAULT_CLEAN_LIMIT); // default clean period 60s
     }
 
+    public TbLwM2mRedisRegistrationStore(RedisConnectionFactory connectionFactory, long registrationCacheMaxSize, long registrationCacheTtlMs) {
+        this(connectionFactory, newCleanerExecutor(DEFAULT_CLEAN_PERIOD), DEFAULT_CLEAN_PERIOD, DEFAULT_GRACE_PERIOD, DEFAULT_CLEAN_LIMIT,
+                registrationCacheMaxSize, registrationCacheTtlMs);
+    }
+
     public TbLwM2mRedisRegistrationStore(RedisConnectionFactory connectionFactory, long cleanPeriodInSec, long lifetimeGracePeriodInSec, int cleanLimit) {
-        this(connectionFactory, Executors.newScheduledThreadPool(1,
-                new NamedThreadFactory(String.format("RedisRegistrationStore Cleaner (%ds)", cleanPeriodInSec))),
-                cleanPeriodInSec, lifetimeGracePeriodInSec, cleanLimit);
+        this(connectionFactory, newCleanerExecutor(cleanPeriodInSec), cleanPeriodInSec, lifetimeGracePeriodInSec, cleanLimit);
     }
 
     public TbLwM2mRedisRegistrationStore(RedisConnectionFactory connectionFactory, ScheduledExecutorService schedExecutor, long cleanPeriodInSec,
                                          long lifetimeGracePeriodInSec, int cleanLimit) {
+        this(connectionFactory, schedExecutor, cleanPeriodInSec, lifetimeGracePeriodInSec, cleanLimit,
+                DEFAULT_REGISTRATION_CACHE_MAX_SIZE, DEFAULT_REGISTRATION_CACHE_TTL_MS);
+    }
+
+    public TbLwM2mRedisRegistrationStore(RedisConnectionFactory connectionFactory, ScheduledExecutorService schedExecutor, long cleanPeriodInSec,
+                                         long lifetimeGracePeriodInSec, int cleanLimit, long registrationCacheMaxSize, long registrationCacheTtlMs) {
         this.connectionFactory = connectionFactory;
         this.schedExecutor = schedExecutor;
         this.cleanPeriod = cleanPeriodInSec;
         this.cleanLimit = cleanLimit;
         this.gracePeriod = lifetimeGracePeriodInSec;
         this.redisLock = new RedisLockRegistry(connectionFactory, "Registration");
+        this.nearCache = new TbLwM2mRegistrationNearCache(registrationCacheMaxSize, registrationCacheTtlMs);
+    }
+
+    private static ScheduledExecutorService newCleanerExecutor(long cleanPeriodInSec) {
+        return Executors.newScheduledThreadPool(1,
+                new NamedThreadFactory(String.format("RedisRegistrationStore Cleaner (%ds)", cleanPeriodInSec)));
     }
 
     /* *************** Redis Key utility function **************** */
@@ -151,7 +184,10 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
                 lock.lock();
                 // add registration
                 byte[] k = toEndpointKey(registration.getEndpoint());
-                byte[] old = connection.getSet(k, serializeReg(registration));
+                byte[] data = serializeReg(registration);
+                byte[] old = connection.getSet(k, data);
+                nearCache.put(registration, data);
+                publishInvalidation(connection, registration.getEndpoint());
 
                 // add registration: secondary indexes
                 byte[] regid_idx = toRegIdKey(registration.getId());
@@ -192,6 +228,64 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
 
     @Override
     public UpdatedRegistration updateRegistration(RegistrationUpdate update) {
+        try (var connection = connectionFactory.getConnection()) {
+            for (int attempt = 0; attempt < MAX_COMPARE_AND_SET_ATTEMPTS; attempt++) {
+                Registration r;
+                byte[] data;
+                TbLwM2mRegistrationNearCache.CachedRegistration cached = attempt == 0 ? nearCache.getByRegistrationId(update.getRegistrationId()) : null;
+                if (cached != null) {
+                    r = cached.getRegistration();
+                    data = cached.getData();
+                } else {
+                    // Fetch the registration ep by registration ID index
+                    byte[] ep = connection.get(toRegIdKey(update.getRegistrationId()));
+                    if (ep == null) {
+                        return null;
+                    }
+                    data = connection.get(toEndpointKey(ep));
+                    if (data == null) {
+                        return null;
+                    }
+                    r = deserializeReg(data);
+                    if (!r.getId().equals(update.getRegistrationId())) {
+                        // the endpoint has registered again in the meantime
+                        return null;
+                    }
+                }
+
+                Registration updatedRegistration = update.update(r);
+                byte[] updatedData = serializeReg(updatedRegistration);
+
+                // Store the new registration if nobody changed it since it was read
+                if (compareAndSet(connection, toEndpointKey(updatedRegistration.getEndpoint()), data, updatedData)) {
+                    nearCache.put(updatedRegistration, updatedData);
+                    publishInvalidation(connection, updatedRegistration.getEndpoint());
+
+                    // Add or update expiration
+                    addOrUpdateExpiration(connection, updatedRegistration);
+
+                    /** Update secondary index :
+                     * If registration is already associated to this address we don't care as we only want to keep the most
+                     * recent binding. */
+                    byte[] addr_idx = toRegAddrKey(updatedRegistration.getSocketAddress());
+                    connection.set(addr_idx, updatedRegistration.getEndpoint().getBytes(UTF_8));
+                    if (!r.getSocketAddress().equals(updatedRegistration.getSocketAddress())) {
+                        removeAddrIndex(connection, r);
+                    }
+                    if (!r.getIdentity().equals(updatedRegistration.getIdentity())) {
+                        removeIdentityIndex(connection, r);
+                    }
+
+                    return new UpdatedRegistration(r, updatedRegistration);
+                }
+                nearCache.invalidate(r.getEndpoint());
+            }
+        }
+        LOG.debug("Registration {} is updated concurrently, falling back to the locked update", update.getRegistrationId());
+        return updateRegistrationWithLock(update);
+    }
+
+    private UpdatedRegistration updateRegistrationWithLock(RegistrationUpdate update) {
         Lock lock = null;
         try (var connection = connectionFactory.getConnection()) {
 
@@ -218,6 +312,8 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
 
                 // Store the new registration
                 connection.set(toEndpointKey(updatedRegistration.getEndpoint()), serializeReg(updatedRegistration));
+                nearCache.invalidate(updatedRegistration.getEndpoint());
+                publishInvalidation(connection, updatedRegistration.getEndpoint());
 
                 // Add or update expiration
                 addOrUpdateExpiration(connection, updatedRegistration);
@@ -246,6 +342,10 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
 
     @Override
     public Registration getRegistration(String registrationId) {
+        TbLwM2mRegistrationNearCache.CachedRegistration cached = nearCache.getByRegistrationId(registrationId);
+        if (cached != null) {
+            return cached.getRegistration();
+        }
         try (var connection = connectionFactory.getConnection()) {
             return getRegistration(connection, registrationId);
         }
@@ -254,12 +354,12 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
     @Override
     public Registration getRegistrationByEndpoint(String endpoint) {
         Validate.notNull(endpoint);
+        TbLwM2mRegistrationNearCache.CachedRegistration cached = nearCache.getByEndpoint(endpoint);
+        if (cached != null) {
+            return cached.getRegistration();
+        }
         try (var connection = connectionFactory.getConnection()) {
-            byte[] data = connection.get(toEndpointKey(endpoint));
-            if (data == null) {
-                return null;
-            }
-            return deserializeReg(data);
+            return getRegistrationByEndpoint(connection, endpoint.getBytes(UTF_8));
         }
     }
 
@@ -271,11 +371,7 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
             if (ep == null) {
                 return null;
             }
-            byte[] data = connection.get(toEndpointKey(ep));
-            if (data == null) {
-                return null;
-            }
-            return deserializeReg(data);
+            return getRegistrationByEndpoint(connection, ep);
         }
     }
 
@@ -287,11 +383,7 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
             if (ep == null) {
                 return null;
             }
-            byte[] data = connection.get(toEndpointKey(ep));
-            if (data == null) {
-                return null;
-            }
-            return deserializeReg(data);
+            return getRegistrationByEndpoint(connection, ep);
         }
     }
 
@@ -350,6 +442,8 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
                 long nbRemoved = connection.del(toRegIdKey(r.getId()));
                 if (nbRemoved > 0) {
                     connection.del(toEndpointKey(r.getEndpoint()));
+                    nearCache.invalidate(r.getEndpoint());
+                    publishInvalidation(connection, r.getEndpoint());
                     Collection<Observation> obsRemoved = unsafeRemoveAllObservations(connection, r.getId());
                     removeAddrIndex(connection, r);
                     removeIdentityIndex(connection, r);
@@ -365,6 +459,22 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
         }
     }
 
+    private boolean compareAndSet(RedisConnection connection, byte[] key, byte[] expected, byte[] value) {
+        Long result = connection.eval(COMPARE_AND_SET_SCRIPT, ReturnType.INTEGER, 1, key, expected, value);
+        return result != null && result == 1L;
+    }
+
+    private void publishInvalidation(RedisConnection connection, String endpoint) {
+        connection.publish(REG_INVALIDATION_CHANNEL.getBytes(UTF_8), (instanceId + endpoint).getBytes(UTF_8));
+    }
+
+    private void onInvalidation(byte[] message) {
+        String msg = new String(message, UTF_8);
+        if (!msg.startsWith(instanceId)) {
+            nearCache.invalidate(msg.substring(instanceId.length()));
+        }
+    }
+
     private void removeAddrIndex(RedisConnection connection, Registration r) {
         removeSecondaryIndex(connection, toRegAddrKey(r.getSocketAddress()), r.getEndpoint());
     }
@@ -662,16 +772,30 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
     /* *************** Observation utility functions **************** */
 
     private Registration getRegistration(RedisConnection connection, String registrationId) {
+        TbLwM2mRegistrationNearCache.CachedRegistration cached = nearCache.getByRegistrationId(registrationId);
+        if (cached != null) {
+            return cached.getRegistration();
+        }
         byte[] ep = connection.get(toRegIdKey(registrationId));
         if (ep == null) {
             return null;
         }
+        return getRegistrationByEndpoint(connection, ep);
+    }
+
+    private Registration getRegistrationByEndpoint(RedisConnection connection, byte[] ep) {
+        TbLwM2mRegistrationNearCache.CachedRegistration cached = nearCache.getByEndpoint(new String(ep, UTF_8));
+        if (cached != null) {
+            return cached.getRegistration();
+        }
+        long seq = nearCache.getInvalidationSeq();
         byte[] data = connection.get(toEndpointKey(ep));
         if (data == null) {
             return null;
         }
-
-        return deserializeReg(data);
+        Registration registration = deserializeReg(data);
+        nearCache.putIfNotInvalidated(seq, registration, data);
+        return registration;
     }
 
     private void unsafeRemoveObservation(RedisConnection connection, String registrationId, byte[] observationId) {
@@ -726,6 +850,12 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
     public synchronized void start() {
         if (!started) {
             started = true;
+            invalidationListenerContainer = new RedisMessageListenerContainer();
+            invalidationListenerContainer.setConnectionFactory(connectionFactory);
+            invalidationListenerContainer.addMessageListener((message, pattern) -> onInvalidation(message.getBody()),
+                    new ChannelTopic(REG_INVALIDATION_CHANNEL));
+            invalidationListenerContainer.afterPropertiesSet();
+            invalidationListenerContainer.start();
             cleanerTask = schedExecutor.scheduleAtFixedRate(new TbLwM2mRedisRegistrationStore.Cleaner(), cleanPeriod, cleanPeriod, TimeUnit.SECONDS);
         }
     }
@@ -741,6 +871,7 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
                 cleanerTask.cancel(false);
                 cleanerTask = null;
             }
+            stopInvalidationListener();
         }
     }
 
@@ -750,6 +881,7 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
     @Override
     public synchronized void destroy() {
         started = false;
+        stopInvalidationListener();
         schedExecutor.shutdownNow();
         try {
             schedExecutor.awaitTermination(5, TimeUnit.SECONDS);
@@ -758,6 +890,19 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
         }
     }
 
+    private void stopInvalidationListener() {
+        if (invalidationListenerContainer != null) {
+            try {
+                invalidationListenerContainer.destroy();
+            } catch (Exception e) {
+                LOG.warn("Failed to stop registration invalidation listener", e);
+            }
+            invalidationListenerContainer = null;
+        }
+        // invalidations are not received anymore
+        nearCache.clear();
+    }
+
     private class Cleaner implements Runnable {
 
         @Override
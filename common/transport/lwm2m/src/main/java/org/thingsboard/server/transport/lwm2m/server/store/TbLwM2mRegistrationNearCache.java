@@ -0,0 +1,122 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.lwm2m.server.store;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import lombok.Data;
+import org.eclipse.leshan.server.registration.Registration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local cache of deserialized registrations on top of the Redis registration store.
+ * Entries are dropped when any transport node changes the registration of the endpoint.
+ * The cache is bounded by size, and entries expire after the configured time in case an invalidation is missed.
+ */
+public class TbLwM2mRegistrationNearCache {
+
+    private final Cache<String, CachedRegistration> registrationsByEndpoint;
+    private final Cache<String, String> endpointsByRegistrationId;
+    private final AtomicLong invalidationSeq = new AtomicLong();
+
+    public TbLwM2mRegistrationNearCache(long maxSize, long ttlMs) {
+        this(maxSize, ttlMs, Ticker.systemTicker());
+    }
+
+    TbLwM2mRegistrationNearCache(long maxSize, long ttlMs, Ticker ticker) {
+        this.registrationsByEndpoint = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .build();
+        this.endpointsByRegistrationId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .build();
+    }
+
+    public CachedRegistration getByEndpoint(String endpoint) {
+        return registrationsByEndpoint.getIfPresent(endpoint);
+    }
+
+    public CachedRegistration getByRegistrationId(String registrationId) {
+        String endpoint = endpointsByRegistrationId.getIfPresent(registrationId);
+        if (endpoint == null) {
+            return null;
+        }
+        CachedRegistration cached = registrationsByEndpoint.getIfPresent(endpoint);
+        return cached != null && cached.getRegistration().getId().equals(registrationId) ? cached : null;
+    }
+
+    /**
+     * Returns the sequence number to pass to {@link #putIfNotInvalidated} for a value that is about to be read from Redis.
+     */
+    public long getInvalidationSeq() {
+        return invalidationSeq.get();
+    }
+
+    /**
+     * Caches a value read from Redis unless some registration was invalidated after the read had started,
+     * since the value could be older than the invalidation.
+     */
+    public void putIfNotInvalidated(long seq, Registration registration, byte[] data) {
+        if (seq == invalidationSeq.get()) {
+            put(registration, data);
+        }
+    }
+
+    public void put(Registration registration, byte[] data) {
+        CachedRegistration old = registrationsByEndpoint.asMap().put(registration.getEndpoint(), new CachedRegistration(registration, data));
+        if (old != null && !old.getRegistration().getId().equals(registration.getId())) {
+            endpointsByRegistrationId.asMap().remove(old.getRegistration().getId(), registration.getEndpoint());
+        }
+        endpointsByRegistrationId.put(registration.getId(), registration.getEndpoint());
+    }
+
+    public void invalidate(String endpoint) {
+        invalidationSeq.incrementAndGet();
+        CachedRegistration old = registrationsByEndpoint.asMap().remove(endpoint);
+        if (old != null) {
+            endpointsByRegistrationId.asMap().remove(old.getRegistration().getId(), endpoint);
+        }
+    }
+
+    public void clear() {
+        invalidationSeq.incrementAndGet();
+        registrationsByEndpoint.invalidateAll();
+        endpointsByRegistrationId.invalidateAll();
+    }
+
+    void cleanUp() {
+        registrationsByEndpoint.cleanUp();
+        endpointsByRegistrationId.cleanUp();
+    }
+
+    long size() {
+        return registrationsByEndpoint.estimatedSize();
+    }
+
+    @Data
+    public static class CachedRegistration {
+        private final Registration registration;
+        private final byte[] data;
+    }
+
+}
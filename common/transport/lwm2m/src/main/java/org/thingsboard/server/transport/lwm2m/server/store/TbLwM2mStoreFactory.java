@@ -45,10 +45,16 @@ public class TbLwM2mStoreFactory {
     @Value("${transport.lwm2m.redis.enabled:false}")
     private boolean useRedis;
 
+    @Value("${transport.lwm2m.redis.registration_cache_max_size:100000}")
+    private long registrationCacheMaxSize;
+
+    @Value("${transport.lwm2m.redis.registration_cache_ttl_ms:60000}")
+    private long registrationCacheTtlMs;
+
     @Bean
     private CaliforniumRegistrationStore registrationStore() {
         return isRedis() ?
-                new TbLwM2mRedisRegistrationStore(getConnectionFactory()) : new InMemoryRegistrationStore(config.getCleanPeriodInSec());
+                new TbLwM2mRedisRegistrationStore(getConnectionFactory(), registrationCacheMaxSize, registrationCacheTtlMs) : new InMemoryRegistrationStore(config.getCleanPeriodInSec());
     }
 
     @Bean
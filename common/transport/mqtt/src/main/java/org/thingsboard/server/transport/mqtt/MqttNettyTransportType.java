@@ -0,0 +1,88 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Netty transport used by the MQTT server: JDK NIO selector or Linux native epoll.
+ */
+@Slf4j
+public enum MqttNettyTransportType {
+
+    NIO {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads) {
+            return new NioEventLoopGroup(threads);
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> getServerChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getChannelClass() {
+            return NioSocketChannel.class;
+        }
+    },
+    EPOLL {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads) {
+            return new EpollEventLoopGroup(threads);
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> getServerChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getChannelClass() {
+            return EpollSocketChannel.class;
+        }
+    };
+
+    public abstract EventLoopGroup newEventLoopGroup(int threads);
+
+    public abstract Class<? extends ServerSocketChannel> getServerChannelClass();
+
+    public abstract Class<? extends SocketChannel> getChannelClass();
+
+    /**
+     * Returns {@link #EPOLL} if it is requested and the native library can be loaded on this platform, {@link #NIO} otherwise.
+     */
+    public static MqttNettyTransportType resolve(boolean nativeEpoll) {
+        if (nativeEpoll) {
+            if (Epoll.isAvailable()) {
+                return EPOLL;
+            }
+            log.warn("Native epoll transport is not available, falling back to NIO", Epoll.unavailabilityCause());
+        }
+        return NIO;
+    }
+
+}
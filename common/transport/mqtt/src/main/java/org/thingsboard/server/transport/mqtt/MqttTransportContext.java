@@ -73,12 +73,32 @@ public class MqttTransportContext extends TransportContext {
     @Value("${transport.mqtt.timeout:10000}")
     private long timeout;
 
+    @Value("${transport.mqtt.backpressure.enabled:true}")
+    private boolean backpressureEnabled;
+
+    @Value("${transport.mqtt.backpressure.max_pending_msgs_per_channel:50}")
+    private int maxPendingMsgsPerChannel;
+
+    @Value("${transport.mqtt.backpressure.max_pending_msgs_per_event_loop:10000}")
+    private int maxPendingMsgsPerEventLoop;
+
+    @Getter
+    @Value("${transport.mqtt.netty.consolidate_ack_flushes:true}")
+    private boolean consolidateAckFlushes;
+
+    @Getter
+    private MqttUplinkBackpressure uplinkBackpressure;
+
     private final AtomicInteger connectionsCounter = new AtomicInteger();
 
     @PostConstruct
     public void init() {
         super.init();
         transportService.createGaugeStats("openConnections", connectionsCounter);
+        if (backpressureEnabled) {
+            uplinkBackpressure = new MqttUplinkBackpressure(maxPendingMsgsPerChannel, maxPendingMsgsPerEventLoop);
+            transportService.createGaugeStats("pausedChannels", uplinkBackpressure.getPausedChannels());
+        }
     }
 
     public void channelRegistered() {
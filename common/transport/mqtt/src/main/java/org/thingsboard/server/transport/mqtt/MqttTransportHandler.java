@@ -42,6 +42,7 @@ import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.thingsboard.mqtt.MqttTopicTrie;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Device;
 import org.thingsboard.server.common.data.DeviceProfile;
@@ -71,7 +72,6 @@ import org.thingsboard.server.queue.scheduler.SchedulerComponent;
 import org.thingsboard.server.transport.mqtt.adaptors.MqttTransportAdaptor;
 import org.thingsboard.server.transport.mqtt.session.DeviceSessionCtx;
 import org.thingsboard.server.transport.mqtt.session.GatewaySessionHandler;
-import org.thingsboard.server.transport.mqtt.session.MqttTopicMatcher;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
 import java.io.IOException;
@@ -121,7 +121,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
     private final TransportService transportService;
     private final SchedulerComponent scheduler;
     private final SslHandler sslHandler;
-    private final ConcurrentMap<MqttTopicMatcher, Integer> mqttQoSMap;
+    private final MqttTopicTrie<Integer> mqttQoSMap;
 
     final DeviceSessionCtx deviceSessionCtx;
     volatile InetSocketAddress address;
@@ -142,7 +142,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         this.transportService = context.getTransportService();
         this.scheduler = context.getScheduler();
         this.sslHandler = sslHandler;
-        this.mqttQoSMap = new ConcurrentHashMap<>();
+        this.mqttQoSMap = new MqttTopicTrie<>();
         this.deviceSessionCtx = new DeviceSessionCtx(sessionId, mqttQoSMap, context);
         this.otaPackSessions = new ConcurrentHashMap<>();
         this.chunkSizes = new ConcurrentHashMap<>();
@@ -164,6 +164,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
         log.trace("[{}] Processing msg: {}", sessionId, msg);
+        deviceSessionCtx.setReadInProgress(true);
         try {
             if (msg instanceof MqttMessage) {
                 MqttMessage message = (MqttMessage) msg;
@@ -277,7 +278,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
                 break;
             case PINGREQ:
                 if (checkConnected(ctx, msg)) {
-                    ctx.writeAndFlush(new MqttMessage(new MqttFixedHeader(PINGRESP, false, AT_MOST_ONCE, false, 0)));
+                    deviceSessionCtx.writeAck(new MqttMessage(new MqttFixedHeader(PINGRESP, false, AT_MOST_ONCE, false, 0)));
                     transportService.reportActivity(deviceSessionCtx.getSessionInfo());
                 }
                 break;
@@ -474,21 +475,24 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
 
     private void ack(ChannelHandlerContext ctx, int msgId) {
         if (msgId > 0) {
-            ctx.writeAndFlush(createMqttPubAckMsg(msgId));
+            deviceSessionCtx.writeAck(createMqttPubAckMsg(msgId));
         }
     }
 
     private <T> TransportServiceCallback<Void> getPubAckCallback(final ChannelHandlerContext ctx, final int msgId, final T msg) {
+        deviceSessionCtx.onUplinkMsgReceived();
         return new TransportServiceCallback<>() {
             @Override
             public void onSuccess(Void dummy) {
                 log.trace("[{}] Published msg: {}", sessionId, msg);
+                deviceSessionCtx.onUplinkMsgProcessed();
                 ack(ctx, msgId);
             }
 
             @Override
             public void onError(Throwable e) {
                 log.trace("[{}] Failed to publish msg: {}", sessionId, msg, e);
+                deviceSessionCtx.onUplinkMsgProcessed();
                 ctx.close();
             }
         };
@@ -667,7 +671,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         if (!activityReported) {
             transportService.reportActivity(deviceSessionCtx.getSessionInfo());
         }
-        ctx.writeAndFlush(createSubAckMessage(mqttMsg.variableHeader().messageId(), grantedQoSList));
+        deviceSessionCtx.writeAck(createSubAckMessage(mqttMsg.variableHeader().messageId(), grantedQoSList));
     }
 
     private void processRpcSubscribe(List<Integer> grantedQoSList, String topic, MqttQoS reqQoS, TopicType topicType) {
@@ -684,7 +688,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
 
     private void registerSubQoS(String topic, List<Integer> grantedQoSList, MqttQoS reqQoS) {
         grantedQoSList.add(getMinSupportedQos(reqQoS));
-        mqttQoSMap.put(new MqttTopicMatcher(topic), getMinSupportedQos(reqQoS));
+        mqttQoSMap.set(topic, getMinSupportedQos(reqQoS));
     }
 
     private void processUnsubscribe(ChannelHandlerContext ctx, MqttUnsubscribeMessage mqttMsg) {
@@ -694,7 +698,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         boolean activityReported = false;
         log.trace("[{}] Processing subscription [{}]!", sessionId, mqttMsg.variableHeader().messageId());
         for (String topicName : mqttMsg.payload().topics()) {
-            mqttQoSMap.remove(new MqttTopicMatcher(topicName));
+            mqttQoSMap.removeAll(topicName);
             try {
                 switch (topicName) {
                     case MqttTopics.DEVICE_ATTRIBUTES_TOPIC:
@@ -742,7 +746,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         if (!activityReported) {
             transportService.reportActivity(deviceSessionCtx.getSessionInfo());
         }
-        ctx.writeAndFlush(createUnSubAckMessage(mqttMsg.variableHeader().messageId()));
+        deviceSessionCtx.writeAck(createUnSubAckMessage(mqttMsg.variableHeader().messageId()));
     }
 
     private MqttMessage createUnSubAckMessage(int msgId) {
@@ -849,6 +853,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
 
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) {
+        deviceSessionCtx.setReadInProgress(false);
         ctx.flush();
     }
 
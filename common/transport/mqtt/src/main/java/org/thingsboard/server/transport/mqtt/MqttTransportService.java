@@ -16,11 +16,12 @@
 package org.thingsboard.server.transport.mqtt;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.util.ResourceLeakDetector;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +34,8 @@ import org.thingsboard.server.common.data.TbTransportService;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Andrew Shvayka
@@ -63,12 +66,28 @@ public class MqttTransportService implements TbTransportService {
     private Integer workerGroupThreadCount;
     @Value("${transport.mqtt.netty.so_keep_alive}")
     private boolean keepAlive;
+    @Value("${transport.mqtt.netty.native_epoll:false}")
+    private boolean nativeEpoll;
+    @Value("${transport.mqtt.netty.so_reuseport:false}")
+    private boolean reusePort;
+    @Value("${transport.mqtt.netty.allocator.prefer_direct:true}")
+    private boolean preferDirect;
+    @Value("${transport.mqtt.netty.allocator.num_heap_arenas:0}")
+    private int numHeapArenas;
+    @Value("${transport.mqtt.netty.allocator.num_direct_arenas:0}")
+    private int numDirectArenas;
+    @Value("${transport.mqtt.netty.allocator.page_size:8192}")
+    private int pageSize;
+    @Value("${transport.mqtt.netty.allocator.max_order:11}")
+    private int maxOrder;
 
     @Autowired
     private MqttTransportContext context;
 
-    private Channel serverChannel;
-    private Channel sslServerChannel;
+    private MqttNettyTransportType transportType;
+    private ByteBufAllocator allocator;
+    private List<Channel> serverChannels;
+    private List<Channel> sslServerChannels;
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
 
@@ -78,33 +97,30 @@ public class MqttTransportService implements TbTransportService {
         ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.valueOf(leakDetectorLevel.toUpperCase()));
 
         log.info("Starting MQTT transport...");
-        bossGroup = new NioEventLoopGroup(bossGroupThreadCount);
-        workerGroup = new NioEventLoopGroup(workerGroupThreadCount);
-        ServerBootstrap b = new ServerBootstrap();
-        b.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
-                .childHandler(new MqttTransportServerInitializer(context, false))
-                .childOption(ChannelOption.SO_KEEPALIVE, keepAlive);
+        transportType = MqttNettyTransportType.resolve(nativeEpoll);
+        allocator = new PooledByteBufAllocator(preferDirect,
+                numHeapArenas > 0 ? numHeapArenas : PooledByteBufAllocator.defaultNumHeapArena(),
+                numDirectArenas > 0 ? numDirectArenas : PooledByteBufAllocator.defaultNumDirectArena(),
+                pageSize, maxOrder,
+                PooledByteBufAllocator.defaultSmallCacheSize(), PooledByteBufAllocator.defaultNormalCacheSize(),
+                PooledByteBufAllocator.defaultUseCacheForAllThreads());
+        bossGroup = transportType.newEventLoopGroup(bossGroupThreadCount);
+        workerGroup = transportType.newEventLoopGroup(workerGroupThreadCount);
 
-        serverChannel = b.bind(host, port).sync().channel();
+        serverChannels = bind(host, port, false);
         if (sslEnabled) {
-            b = new ServerBootstrap();
-            b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new MqttTransportServerInitializer(context, true))
-                    .childOption(ChannelOption.SO_KEEPALIVE, keepAlive);
-            sslServerChannel = b.bind(sslHost, sslPort).sync().channel();
+            sslServerChannels = bind(sslHost, sslPort, true);
         }
-        log.info("Mqtt transport started!");
+        log.info("Mqtt transport started using {} transport with {} acceptor(s)!", transportType, serverChannels.size());
     }
 
     @PreDestroy
     public void shutdown() throws InterruptedException {
         log.info("Stopping MQTT transport!");
         try {
-            serverChannel.close().sync();
+            closeAll(serverChannels);
             if (sslEnabled) {
-                sslServerChannel.close().sync();
+                closeAll(sslServerChannels);
             }
         } finally {
             workerGroup.shutdownGracefully();
@@ -113,6 +129,42 @@ public class MqttTransportService implements TbTransportService {
         log.info("MQTT transport stopped!");
     }
 
+    /**
+     * With SO_REUSEPORT each boss thread gets its own listening socket bound to the same port,
+     * so the kernel balances incoming connections between acceptors instead of waking a single one.
+     */
+    private List<Channel> bind(String host, int port, boolean sslEnabled) throws InterruptedException {
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(bossGroup, workerGroup)
+                .channel(transportType.getServerChannelClass())
+                .childHandler(new MqttTransportServerInitializer(context, sslEnabled))
+                .option(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.SO_KEEPALIVE, keepAlive);
+        int acceptors = 1;
+        if (reusePort) {
+            if (transportType == MqttNettyTransportType.EPOLL) {
+                b.option(EpollChannelOption.SO_REUSEPORT, true);
+                acceptors = Math.max(1, bossGroupThreadCount);
+            } else {
+                log.warn("SO_REUSEPORT is supported by the native epoll transport only, using single acceptor");
+            }
+        }
+        List<Channel> channels = new ArrayList<>(acceptors);
+        for (int i = 0; i < acceptors; i++) {
+            channels.add(b.bind(host, port).sync().channel());
+        }
+        return channels;
+    }
+
+    private static void closeAll(List<Channel> channels) throws InterruptedException {
+        if (channels != null) {
+            for (Channel channel : channels) {
+                channel.close().sync();
+            }
+        }
+    }
+
     @Override
     public String getName() {
         return DataConstants.MQTT_TRANSPORT_NAME;
@@ -0,0 +1,140 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stops reading from MQTT channels while their uplink messages are not yet processed by the transport service.
+ * <p>
+ * A message is pending from the moment it is read from the socket until the transport service acknowledges it.
+ * Reading of a channel is paused when the channel or its event loop has too many pending messages and is resumed
+ * once both counters drop to the low watermark (half of the limit). Auto-read flag of the channel and the set of
+ * paused channels are only modified from the event loop of the channel.
+ */
+@Slf4j
+public class MqttUplinkBackpressure {
+
+    private final int channelHighWatermark;
+    private final int channelLowWatermark;
+    private final int eventLoopHighWatermark;
+    private final int eventLoopLowWatermark;
+
+    private final ConcurrentMap<EventExecutor, EventLoopState> eventLoops = new ConcurrentHashMap<>();
+    @Getter
+    private final AtomicInteger pausedChannels = new AtomicInteger();
+
+    public MqttUplinkBackpressure(int maxPendingPerChannel, int maxPendingPerEventLoop) {
+        this.channelHighWatermark = Math.max(1, maxPendingPerChannel);
+        this.channelLowWatermark = channelHighWatermark / 2;
+        this.eventLoopHighWatermark = Math.max(1, maxPendingPerEventLoop);
+        this.eventLoopLowWatermark = eventLoopHighWatermark / 2;
+    }
+
+    public void onUplinkReceived(ChannelHandlerContext ctx, AtomicInteger channelPending) {
+        EventLoopState loop = getEventLoopState(ctx.executor());
+        int channelCnt = channelPending.incrementAndGet();
+        int loopCnt = loop.pending.incrementAndGet();
+        if (channelCnt >= channelHighWatermark || loopCnt >= eventLoopHighWatermark) {
+            runInEventLoop(ctx, () -> updateAutoRead(ctx, channelPending, loop));
+        }
+    }
+
+    public void onUplinkProcessed(ChannelHandlerContext ctx, AtomicInteger channelPending) {
+        EventLoopState loop = getEventLoopState(ctx.executor());
+        int channelCnt = channelPending.decrementAndGet();
+        int loopCnt = loop.pending.decrementAndGet();
+        if (loopCnt == eventLoopLowWatermark) {
+            runInEventLoop(ctx, () -> resumeEventLoop(loop));
+        } else if (channelCnt == channelLowWatermark) {
+            runInEventLoop(ctx, () -> updateAutoRead(ctx, channelPending, loop));
+        }
+    }
+
+    public void onChannelClosed(ChannelHandlerContext ctx) {
+        EventLoopState loop = eventLoops.get(ctx.executor());
+        if (loop != null) {
+            runInEventLoop(ctx, () -> {
+                if (loop.paused.remove(ctx) != null) {
+                    pausedChannels.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void updateAutoRead(ChannelHandlerContext ctx, AtomicInteger channelPending, EventLoopState loop) {
+        Channel channel = ctx.channel();
+        if (!channel.isActive()) {
+            if (loop.paused.remove(ctx) != null) {
+                pausedChannels.decrementAndGet();
+            }
+            return;
+        }
+        if (loop.paused.containsKey(ctx)) {
+            if (channelPending.get() <= channelLowWatermark && loop.pending.get() <= eventLoopLowWatermark) {
+                loop.paused.remove(ctx);
+                pausedChannels.decrementAndGet();
+                channel.config().setAutoRead(true);
+                log.trace("[{}] Resumed reading, pending uplink msgs: {}", channel.remoteAddress(), channelPending.get());
+            }
+        } else if (channelPending.get() >= channelHighWatermark || loop.pending.get() >= eventLoopHighWatermark) {
+            channel.config().setAutoRead(false);
+            loop.paused.put(ctx, channelPending);
+            pausedChannels.incrementAndGet();
+            log.trace("[{}] Paused reading, pending uplink msgs: {}, pending event loop msgs: {}", channel.remoteAddress(), channelPending.get(), loop.pending.get());
+        }
+    }
+
+    private void resumeEventLoop(EventLoopState loop) {
+        for (Map.Entry<ChannelHandlerContext, AtomicInteger> entry : new ArrayList<>(loop.paused.entrySet())) {
+            updateAutoRead(entry.getKey(), entry.getValue(), loop);
+        }
+    }
+
+    private EventLoopState getEventLoopState(EventExecutor executor) {
+        EventLoopState state = eventLoops.get(executor);
+        if (state == null) {
+            state = eventLoops.computeIfAbsent(executor, e -> new EventLoopState());
+        }
+        return state;
+    }
+
+    private static void runInEventLoop(ChannelHandlerContext ctx, Runnable task) {
+        if (ctx.executor().inEventLoop()) {
+            task.run();
+        } else {
+            ctx.executor().execute(task);
+        }
+    }
+
+    private static class EventLoopState {
+        private final AtomicInteger pending = new AtomicInteger();
+        // accessed from the event loop thread only
+        private final Map<ChannelHandlerContext, AtomicInteger> paused = new HashMap<>();
+    }
+
+}
@@ -23,6 +23,7 @@ import io.netty.util.ReferenceCountUtil;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.MqttTopicTrie;
 import org.thingsboard.server.common.data.DeviceProfile;
 import org.thingsboard.server.common.data.DeviceTransportType;
 import org.thingsboard.server.common.data.TransportPayloadType;
@@ -32,6 +33,7 @@ import org.thingsboard.server.common.data.device.profile.ProtoTransportPayloadCo
 import org.thingsboard.server.common.data.device.profile.TransportPayloadTypeConfiguration;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.transport.mqtt.MqttTransportContext;
+import org.thingsboard.server.transport.mqtt.MqttUplinkBackpressure;
 import org.thingsboard.server.transport.mqtt.adaptors.MqttTransportAdaptor;
 import org.thingsboard.server.transport.mqtt.util.MqttTopicFilter;
 import org.thingsboard.server.transport.mqtt.util.MqttTopicFilterFactory;
@@ -41,7 +43,7 @@ import java.util.Collections;
 import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -69,6 +71,16 @@ public class DeviceSessionCtx extends MqttDeviceAwareSessionContext {
 
     private final AtomicInteger msgQueueSize = new AtomicInteger(0);
 
+    private final AtomicInteger pendingUplinkMsgs = new AtomicInteger(0);
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /**
+     * Set by the channel handler for the duration of a read cycle. Accessed from the event loop thread only.
+     */
+    @Setter
+    private boolean readInProgress;
+
     @Getter
     @Setter
     private boolean provisionOnly = false;
@@ -85,7 +97,7 @@ public class DeviceSessionCtx extends MqttDeviceAwareSessionContext {
     @Setter
     private TransportPayloadType provisionPayloadType = payloadType;
 
-    public DeviceSessionCtx(UUID sessionId, ConcurrentMap<MqttTopicMatcher, Integer> mqttQoSMap, MqttTransportContext context) {
+    public DeviceSessionCtx(UUID sessionId, MqttTopicTrie<Integer> mqttQoSMap, MqttTransportContext context) {
         super(sessionId, mqttQoSMap);
         this.context = context;
     }
@@ -166,10 +178,51 @@ public class DeviceSessionCtx extends MqttDeviceAwareSessionContext {
 
     public void addToQueue(MqttMessage msg) {
         msgQueueSize.incrementAndGet();
+        onUplinkMsgReceived();
         ReferenceCountUtil.retain(msg);
         msgQueue.add(msg);
     }
 
+    /**
+     * Accounts the uplink msg that is not yet processed by the transport service. Every call must be followed by
+     * exactly one {@link #onUplinkMsgProcessed()}.
+     */
+    public void onUplinkMsgReceived() {
+        MqttUplinkBackpressure backpressure = context.getUplinkBackpressure();
+        if (backpressure != null) {
+            backpressure.onUplinkReceived(channel, pendingUplinkMsgs);
+        }
+    }
+
+    public void onUplinkMsgProcessed() {
+        MqttUplinkBackpressure backpressure = context.getUplinkBackpressure();
+        if (backpressure != null) {
+            backpressure.onUplinkProcessed(channel, pendingUplinkMsgs);
+        }
+    }
+
+    /**
+     * Writes the acknowledgement without flushing the channel right away: acks written during the read cycle are
+     * flushed once the cycle completes, acks written from transport callbacks are flushed by a single task
+     * submitted to the event loop, so a burst of acks results in one flush.
+     */
+    public void writeAck(MqttMessage msg) {
+        if (!context.isConsolidateAckFlushes()) {
+            channel.writeAndFlush(msg);
+            return;
+        }
+        channel.write(msg);
+        if (readInProgress && channel.executor().inEventLoop()) {
+            return;
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            channel.executor().execute(() -> {
+                flushScheduled.set(false);
+                channel.flush();
+            });
+        }
+    }
+
     public void tryProcessQueuedMsgs(Consumer<MqttMessage> msgProcessor) {
         while (!msgQueue.isEmpty()) {
             if (msgQueueProcessorLock.tryLock()) {
@@ -181,6 +234,7 @@ public class DeviceSessionCtx extends MqttDeviceAwareSessionContext {
                             msgProcessor.accept(msg);
                         } finally {
                             ReferenceCountUtil.safeRelease(msg);
+                            onUplinkMsgProcessed();
                         }
                     }
                 } finally {
@@ -199,8 +253,15 @@ public class DeviceSessionCtx extends MqttDeviceAwareSessionContext {
     public void release() {
         if (!msgQueue.isEmpty()) {
             log.warn("doDisconnect for device {} but unprocessed messages {} left in the msg queue", getDeviceId(), msgQueue.size());
-            msgQueue.forEach(ReferenceCountUtil::safeRelease);
-            msgQueue.clear();
+            MqttMessage msg;
+            while ((msg = msgQueue.poll()) != null) {
+                ReferenceCountUtil.safeRelease(msg);
+                onUplinkMsgProcessed();
+            }
+        }
+        MqttUplinkBackpressure backpressure = context.getUplinkBackpressure();
+        if (backpressure != null && channel != null) {
+            backpressure.onChannelClosed(channel);
         }
     }
 
@@ -18,6 +18,7 @@ package org.thingsboard.server.transport.mqtt.session;
 import io.netty.channel.ChannelFuture;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.MqttTopicTrie;
 import org.thingsboard.server.common.data.DeviceProfile;
 import org.thingsboard.server.common.data.rpc.RpcStatus;
 import org.thingsboard.server.common.transport.SessionMsgListener;
@@ -28,7 +29,6 @@ import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
 
 import java.util.UUID;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by ashvayka on 19.01.17.
@@ -40,7 +40,7 @@ public class GatewayDeviceSessionCtx extends MqttDeviceAwareSessionContext imple
     private final TransportService transportService;
 
     public GatewayDeviceSessionCtx(GatewaySessionHandler parent, TransportDeviceInfo deviceInfo,
-                                   DeviceProfile deviceProfile, ConcurrentMap<MqttTopicMatcher, Integer> mqttQoSMap,
+                                   DeviceProfile deviceProfile, MqttTopicTrie<Integer> mqttQoSMap,
                                    TransportService transportService) {
         super(UUID.randomUUID(), mqttQoSMap);
         this.parent = parent;
@@ -36,6 +36,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ConcurrentReferenceHashMap;
 import org.springframework.util.StringUtils;
+import org.thingsboard.mqtt.MqttTopicTrie;
 import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.transport.TransportService;
 import org.thingsboard.server.common.transport.TransportServiceCallback;
@@ -86,7 +87,7 @@ public class GatewaySessionHandler {
     private final ConcurrentMap<String, Lock> deviceCreationLockMap;
     private final ConcurrentMap<String, GatewayDeviceSessionCtx> devices;
     private final ConcurrentMap<String, ListenableFuture<GatewayDeviceSessionCtx>> deviceFutures;
-    private final ConcurrentMap<MqttTopicMatcher, Integer> mqttQoSMap;
+    private final MqttTopicTrie<Integer> mqttQoSMap;
     private final ChannelHandlerContext channel;
     private final DeviceSessionCtx deviceSessionCtx;
 
@@ -714,7 +715,7 @@ public class GatewaySessionHandler {
     private void ack(MqttPublishMessage msg) {
         int msgId = getMsgId(msg);
         if (msgId > 0) {
-            writeAndFlush(MqttTransportHandler.createMqttPubAckMsg(msgId));
+            deviceSessionCtx.writeAck(MqttTransportHandler.createMqttPubAckMsg(msgId));
         }
     }
 
@@ -725,18 +726,21 @@ public class GatewaySessionHandler {
     }
 
     private <T> TransportServiceCallback<Void> getPubAckCallback(final ChannelHandlerContext ctx, final String deviceName, final int msgId, final T msg) {
+        deviceSessionCtx.onUplinkMsgReceived();
         return new TransportServiceCallback<Void>() {
             @Override
             public void onSuccess(Void dummy) {
                 log.trace("[{}][{}] Published msg: {}", sessionId, deviceName, msg);
+                deviceSessionCtx.onUplinkMsgProcessed();
                 if (msgId > 0) {
-                    ctx.writeAndFlush(MqttTransportHandler.createMqttPubAckMsg(msgId));
+                    deviceSessionCtx.writeAck(MqttTransportHandler.createMqttPubAckMsg(msgId));
                 }
             }
 
             @Override
             public void onError(Throwable e) {
                 log.trace("[{}] Failed to publish msg: {} for device: {}", sessionId, msg, deviceName, e);
+                deviceSessionCtx.onUplinkMsgProcessed();
                 ctx.close();
             }
         };
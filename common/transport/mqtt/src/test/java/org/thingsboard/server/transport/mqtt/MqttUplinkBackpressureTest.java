@@ -0,0 +1,101 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class MqttUplinkBackpressureTest {
+
+    static final int MAX_PENDING_PER_CHANNEL = 4;
+    static final int MAX_PENDING_PER_EVENT_LOOP = 1000;
+
+    MqttUplinkBackpressure backpressure;
+    EmbeddedChannel channel;
+    ChannelHandlerContext ctx;
+    AtomicInteger pending;
+
+    @Before
+    public void setUp() {
+        backpressure = new MqttUplinkBackpressure(MAX_PENDING_PER_CHANNEL, MAX_PENDING_PER_EVENT_LOOP);
+        channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().firstContext();
+        pending = new AtomicInteger();
+    }
+
+    @Test
+    public void givenPendingMsgsOverChannelLimit_whenUplinkReceived_thenReadingPaused() {
+        for (int i = 0; i < MAX_PENDING_PER_CHANNEL - 1; i++) {
+            backpressure.onUplinkReceived(ctx, pending);
+        }
+        assertThat(channel.config().isAutoRead(), is(true));
+
+        backpressure.onUplinkReceived(ctx, pending);
+
+        assertThat(channel.config().isAutoRead(), is(false));
+        assertThat(backpressure.getPausedChannels().get(), is(1));
+    }
+
+    @Test
+    public void givenPausedChannel_whenPendingMsgsDropToLowWatermark_thenReadingResumed() {
+        givenPendingMsgsOverChannelLimit_whenUplinkReceived_thenReadingPaused();
+
+        backpressure.onUplinkProcessed(ctx, pending);
+        assertThat(channel.config().isAutoRead(), is(false));
+
+        backpressure.onUplinkProcessed(ctx, pending);
+
+        assertThat(pending.get(), is(MAX_PENDING_PER_CHANNEL / 2));
+        assertThat(channel.config().isAutoRead(), is(true));
+        assertThat(backpressure.getPausedChannels().get(), is(0));
+    }
+
+    @Test
+    public void givenPendingMsgsOverEventLoopLimit_whenUplinkReceived_thenChannelsOfEventLoopPausedAndResumed() {
+        backpressure = new MqttUplinkBackpressure(MAX_PENDING_PER_EVENT_LOOP, 2);
+        EmbeddedChannel otherChannel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        AtomicInteger otherPending = new AtomicInteger();
+        // every embedded channel has its own event loop, so the other channel is not affected by the limit
+        backpressure.onUplinkReceived(ctx, pending);
+        backpressure.onUplinkReceived(ctx, pending);
+        backpressure.onUplinkReceived(otherChannel.pipeline().firstContext(), otherPending);
+
+        assertThat(channel.config().isAutoRead(), is(false));
+        assertThat(otherChannel.config().isAutoRead(), is(true));
+
+        backpressure.onUplinkProcessed(ctx, pending);
+
+        assertThat(channel.config().isAutoRead(), is(true));
+    }
+
+    @Test
+    public void givenPausedChannel_whenChannelClosed_thenPausedChannelRemoved() {
+        givenPendingMsgsOverChannelLimit_whenUplinkReceived_thenReadingPaused();
+
+        backpressure.onChannelClosed(ctx);
+
+        assertThat(backpressure.getPausedChannels().get(), is(0));
+    }
+
+}
@@ -64,6 +64,15 @@ public class PduService {
         return pdu;
     }
 
+    public PDU createPdu(DeviceSessionContext sessionContext, SnmpMethod snmpMethod, List<SnmpMapping> mappings) {
+        PDU pdu = setUpPdu(sessionContext);
+        pdu.setType(snmpMethod.getCode());
+        pdu.addAll(mappings.stream()
+                .map(mapping -> new VariableBinding(new OID(mapping.getOid())))
+                .collect(Collectors.toList()));
+        return pdu;
+    }
+
     public PDU createSingleVariablePdu(DeviceSessionContext sessionContext, SnmpMethod snmpMethod, String oid, String value, DataType dataType) {
         PDU pdu = setUpPdu(sessionContext);
         pdu.setType(snmpMethod.getCode());
@@ -0,0 +1,148 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.snmp.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing wheel for periodic SNMP polling.
+ * <p>
+ * Each task gets a stable offset within its period derived from its key, so devices with the same
+ * querying frequency are spread uniformly across the period instead of firing at the same instant.
+ * The wheel is only modified by the single ticker thread; new tasks are handed over through a queue.
+ */
+@Slf4j
+public class SnmpPollingScheduler {
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final long tickMs;
+    private final Executor pollingExecutor;
+    private final List<PollingTask>[] wheel;
+    private final Queue<PollingTask> newTasks = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService ticker;
+    private final long startTime;
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public SnmpPollingScheduler(long tickMs, Executor pollingExecutor) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        this.tickMs = tickMs;
+        this.pollingExecutor = pollingExecutor;
+        this.wheel = new List[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.startTime = System.currentTimeMillis();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("snmp-polling-wheel"));
+        this.ticker.scheduleAtFixedRate(this::advance, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    public PollingTask schedule(Object key, long periodMs, Runnable poll) {
+        long periodTicks = Math.max(1, periodMs / tickMs);
+        // spreading the hash to avoid clustering of sequential keys
+        long hash = (key.hashCode() * 0x9E3779B9L) & 0xFFFFFFFFL;
+        PollingTask task = new PollingTask(periodTicks, hash % periodTicks, poll);
+        newTasks.add(task);
+        return task;
+    }
+
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    private void advance() {
+        try {
+            long targetTick = (System.currentTimeMillis() - startTime) / tickMs;
+            while (currentTick < targetTick) {
+                currentTick++;
+                addNewTasks();
+                expireSlot();
+            }
+        } catch (Throwable e) {
+            log.error("Failed to process SNMP polling wheel tick", e);
+        }
+    }
+
+    private void addNewTasks() {
+        PollingTask task;
+        while ((task = newTasks.poll()) != null) {
+            if (!task.cancelled) {
+                long delay = Math.floorMod(task.offsetTicks - currentTick, task.periodTicks);
+                place(task, currentTick + (delay == 0 ? task.periodTicks : delay));
+            }
+        }
+    }
+
+    private void expireSlot() {
+        int idx = (int) (currentTick & WHEEL_MASK);
+        List<PollingTask> slot = wheel[idx];
+        wheel[idx] = new ArrayList<>(slot.size());
+        for (PollingTask task : slot) {
+            if (task.cancelled) {
+                continue;
+            }
+            if (task.deadlineTick > currentTick) {
+                wheel[idx].add(task);
+                continue;
+            }
+            try {
+                pollingExecutor.execute(task.poll);
+            } catch (RejectedExecutionException e) {
+                log.trace("Polling executor rejected the task", e);
+            }
+            place(task, task.deadlineTick + task.periodTicks);
+        }
+    }
+
+    private void place(PollingTask task, long deadlineTick) {
+        task.deadlineTick = deadlineTick;
+        wheel[(int) (deadlineTick & WHEEL_MASK)].add(task);
+    }
+
+    public static class PollingTask {
+        private final long periodTicks;
+        private final long offsetTicks;
+        private final Runnable poll;
+        private long deadlineTick;
+        private volatile boolean cancelled;
+
+        private PollingTask(long periodTicks, long offsetTicks, Runnable poll) {
+            this.periodTicks = periodTicks;
+            this.offsetTicks = offsetTicks;
+            this.poll = poll;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+}
@@ -54,17 +54,15 @@ import org.thingsboard.server.transport.snmp.session.DeviceSessionContext;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @TbSnmpTransportComponent
@@ -77,7 +75,8 @@ public class SnmpTransportService implements TbTransportService {
 
     @Getter
     private Snmp snmp;
-    private ScheduledExecutorService queryingExecutor;
+    private ExecutorService queryingExecutor;
+    private SnmpPollingScheduler pollingScheduler;
     private ExecutorService responseProcessingExecutor;
 
     private final Map<SnmpCommunicationSpec, ResponseDataMapper> responseDataMappers = new EnumMap<>(SnmpCommunicationSpec.class);
@@ -87,10 +86,17 @@ public class SnmpTransportService implements TbTransportService {
     private Integer responseProcessingParallelismLevel;
     @Value("${transport.snmp.underlying_protocol}")
     private String snmpUnderlyingProtocol;
+    @Value("${transport.snmp.querying.tick_ms:100}")
+    private long queryingTickMs;
+    @Value("${transport.snmp.querying.max_oids_per_request:64}")
+    private int maxOidsPerRequest;
+    @Value("${transport.snmp.querying.max_pending_requests_per_device:2}")
+    private int maxPendingRequestsPerDevice;
 
     @PostConstruct
     private void init() throws IOException {
-        queryingExecutor = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), ThingsBoardThreadFactory.forName("snmp-querying"));
+        queryingExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), ThingsBoardThreadFactory.forName("snmp-querying"));
+        pollingScheduler = new SnmpPollingScheduler(queryingTickMs, queryingExecutor);
         responseProcessingExecutor = ThingsBoardExecutors.newWorkStealingPool(responseProcessingParallelismLevel, "snmp-response-processing");
 
         initializeSnmp();
@@ -102,6 +108,9 @@ public class SnmpTransportService implements TbTransportService {
 
     @PreDestroy
     public void stop() {
+        if (pollingScheduler != null) {
+            pollingScheduler.stop();
+        }
         if (queryingExecutor != null) {
             queryingExecutor.shutdownNow();
         }
@@ -130,36 +139,60 @@ public class SnmpTransportService implements TbTransportService {
     }
 
     public void createQueryingTasks(DeviceSessionContext sessionContext) {
-        List<ScheduledFuture<?>> queryingTasks = sessionContext.getProfileTransportConfiguration().getCommunicationConfigs().stream()
+        // configs with the same querying frequency are polled with shared requests
+        Map<Long, List<RepeatingQueryingSnmpCommunicationConfig>> configsByFrequency = sessionContext.getProfileTransportConfiguration().getCommunicationConfigs().stream()
                 .filter(communicationConfig -> communicationConfig instanceof RepeatingQueryingSnmpCommunicationConfig)
-                .map(config -> {
-                    RepeatingQueryingSnmpCommunicationConfig repeatingCommunicationConfig = (RepeatingQueryingSnmpCommunicationConfig) config;
-                    Long queryingFrequency = repeatingCommunicationConfig.getQueryingFrequencyMs();
-
-                    return queryingExecutor.scheduleWithFixedDelay(() -> {
-                        try {
-                            if (sessionContext.isActive()) {
-                                sendRequest(sessionContext, repeatingCommunicationConfig);
-                            }
-                        } catch (Exception e) {
-                            log.error("Failed to send SNMP request for device {}: {}", sessionContext.getDeviceId(), e.toString());
+                .map(config -> (RepeatingQueryingSnmpCommunicationConfig) config)
+                .collect(Collectors.groupingBy(RepeatingQueryingSnmpCommunicationConfig::getQueryingFrequencyMs, LinkedHashMap::new, Collectors.toList()));
+
+        List<SnmpPollingScheduler.PollingTask> queryingTasks = configsByFrequency.entrySet().stream()
+                .map(entry -> pollingScheduler.schedule(sessionContext.getDeviceId(), entry.getKey(), () -> {
+                    try {
+                        if (sessionContext.isActive()) {
+                            sendQueryingRequests(sessionContext, entry.getValue());
                         }
-                    }, queryingFrequency, queryingFrequency, TimeUnit.MILLISECONDS);
-                })
+                    } catch (Exception e) {
+                        log.error("Failed to send SNMP request for device {}: {}", sessionContext.getDeviceId(), e.toString());
+                    }
+                }))
                 .collect(Collectors.toList());
         sessionContext.getQueryingTasks().addAll(queryingTasks);
     }
 
     public void cancelQueryingTasks(DeviceSessionContext sessionContext) {
-        sessionContext.getQueryingTasks().forEach(task -> task.cancel(true));
+        sessionContext.getQueryingTasks().forEach(SnmpPollingScheduler.PollingTask::cancel);
         sessionContext.getQueryingTasks().clear();
     }
 
+    private void sendQueryingRequests(DeviceSessionContext sessionContext, List<RepeatingQueryingSnmpCommunicationConfig> communicationConfigs) {
+        if (sessionContext.getPendingRequests().get() >= maxPendingRequestsPerDevice) {
+            log.debug("Skipping SNMP querying for device {}: {} requests are still pending", sessionContext.getDeviceId(), sessionContext.getPendingRequests().get());
+            return;
+        }
+        Map<SnmpCommunicationSpec, List<SnmpMapping>> batch = new EnumMap<>(SnmpCommunicationSpec.class);
+        List<SnmpMapping> batchMappings = new ArrayList<>();
+        for (RepeatingQueryingSnmpCommunicationConfig communicationConfig : communicationConfigs) {
+            for (SnmpMapping mapping : communicationConfig.getAllMappings()) {
+                batch.computeIfAbsent(communicationConfig.getSpec(), spec -> new ArrayList<>()).add(mapping);
+                batchMappings.add(mapping);
+                if (batchMappings.size() >= maxOidsPerRequest) {
+                    sendQueryingRequest(sessionContext, batch, batchMappings);
+                    batch = new EnumMap<>(SnmpCommunicationSpec.class);
+                    batchMappings = new ArrayList<>();
+                }
+            }
+        }
+        if (!batchMappings.isEmpty()) {
+            sendQueryingRequest(sessionContext, batch, batchMappings);
+        }
+    }
 
-    private void sendRequest(DeviceSessionContext sessionContext, SnmpCommunicationConfig communicationConfig) {
-        sendRequest(sessionContext, communicationConfig, Collections.emptyMap());
+    private void sendQueryingRequest(DeviceSessionContext sessionContext, Map<SnmpCommunicationSpec, List<SnmpMapping>> batch, List<SnmpMapping> batchMappings) {
+        PDU request = pduService.createPdu(sessionContext, SnmpMethod.GET, batchMappings);
+        sendRequest(sessionContext, request, new RequestInfo(batch));
     }
 
+
     private void sendRequest(DeviceSessionContext sessionContext, SnmpCommunicationConfig communicationConfig, Map<String, String> values) {
         PDU request = pduService.createPdu(sessionContext, communicationConfig, values);
         RequestInfo requestInfo = new RequestInfo(communicationConfig.getSpec(), communicationConfig.getAllMappings());
@@ -169,9 +202,11 @@ public class SnmpTransportService implements TbTransportService {
     private void sendRequest(DeviceSessionContext sessionContext, PDU request, RequestInfo requestInfo) {
         if (request.size() > 0) {
             log.trace("Executing SNMP request for device {}. Variables bindings: {}", sessionContext.getDeviceId(), request.getVariableBindings());
+            sessionContext.getPendingRequests().incrementAndGet();
             try {
                 snmp.send(request, sessionContext.getTarget(), requestInfo, sessionContext);
             } catch (IOException e) {
+                sessionContext.getPendingRequests().decrementAndGet();
                 log.error("Failed to send SNMP request to device {}: {}", sessionContext.getDeviceId(), e.toString());
             }
         }
@@ -222,6 +257,7 @@ public class SnmpTransportService implements TbTransportService {
 
     public void processResponseEvent(DeviceSessionContext sessionContext, ResponseEvent event) {
         ((Snmp) event.getSource()).cancel(event.getRequest(), sessionContext);
+        sessionContext.getPendingRequests().decrementAndGet();
 
         if (event.getError() != null) {
             log.warn("SNMP response error: {}", event.getError().toString());
@@ -236,7 +272,13 @@ public class SnmpTransportService implements TbTransportService {
 
         RequestInfo requestInfo = (RequestInfo) event.getUserObject();
         responseProcessingExecutor.execute(() -> {
-            processResponse(sessionContext, response, requestInfo);
+            if (requestInfo.getBatch() != null) {
+                requestInfo.getBatch().forEach((communicationSpec, responseMappings) -> {
+                    processResponse(sessionContext, response, new RequestInfo(communicationSpec, responseMappings));
+                });
+            } else {
+                processResponse(sessionContext, response, requestInfo);
+            }
         });
     }
 
@@ -318,6 +360,9 @@ public class SnmpTransportService implements TbTransportService {
     @PreDestroy
     public void shutdown() {
         log.info("Stopping SNMP transport!");
+        if (pollingScheduler != null) {
+            pollingScheduler.stop();
+        }
         if (queryingExecutor != null) {
             queryingExecutor.shutdownNow();
         }
@@ -339,6 +384,7 @@ public class SnmpTransportService implements TbTransportService {
         private Integer requestId;
         private SnmpCommunicationSpec communicationSpec;
         private List<SnmpMapping> responseMappings;
+        private Map<SnmpCommunicationSpec, List<SnmpMapping>> batch;
 
         public RequestInfo(Integer requestId, SnmpCommunicationSpec communicationSpec, List<SnmpMapping> responseMappings) {
             this.requestId = requestId;
@@ -350,6 +396,10 @@ public class SnmpTransportService implements TbTransportService {
             this.communicationSpec = communicationSpec;
             this.responseMappings = responseMappings;
         }
+
+        public RequestInfo(Map<SnmpCommunicationSpec, List<SnmpMapping>> batch) {
+            this.batch = batch;
+        }
     }
 
     private interface ResponseDataMapper {
@@ -0,0 +1,113 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.snmp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.thingsboard.server.transport.snmp.service.SnmpPollingScheduler;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Polls a local snmp4j agent on behalf of many simulated devices through {@link SnmpPollingScheduler}
+ * and logs the achieved request and OID rates, the number of timeouts and the max response time.
+ * The name does not match the test patterns, so the benchmark is run manually and not as a part of the build.
+ */
+@Slf4j
+public class SnmpPollingThroughputBenchmark {
+
+    private static final int DEVICES = 5000;
+    private static final int OIDS_PER_DEVICE = 20;
+    private static final long QUERYING_FREQUENCY_MS = 5000;
+    private static final int DURATION_SEC = 60;
+
+    public static void main(String[] args) throws Exception {
+        SnmpDeviceSimulatorV2 device = new SnmpDeviceSimulatorV2(1610, "public");
+        device.start();
+        Map<String, String> mappings = new LinkedHashMap<>();
+        for (int i = 0; i < OIDS_PER_DEVICE; i++) {
+            mappings.put(".1.3.6.1.2.1.1." + (i + 1) + ".0", Integer.toString(i));
+        }
+        device.setUpMappings(mappings);
+        List<VariableBinding> variableBindings = mappings.keySet().stream()
+                .map(oid -> new VariableBinding(new OID(oid)))
+                .collect(Collectors.toList());
+
+        Snmp snmp = new Snmp(new DefaultUdpTransportMapping());
+        snmp.listen();
+
+        AtomicLong requests = new AtomicLong();
+        AtomicLong responses = new AtomicLong();
+        AtomicLong oids = new AtomicLong();
+        AtomicLong timeouts = new AtomicLong();
+        AtomicLong maxResponseTime = new AtomicLong();
+        ResponseListener listener = new ResponseListener() {
+            @Override
+            public void onResponse(ResponseEvent event) {
+                ((Snmp) event.getSource()).cancel(event.getRequest(), this);
+                if (event.getResponse() == null) {
+                    timeouts.incrementAndGet();
+                    return;
+                }
+                responses.incrementAndGet();
+                oids.addAndGet(event.getResponse().size());
+                long responseTime = System.currentTimeMillis() - (Long) event.getUserObject();
+                maxResponseTime.accumulateAndGet(responseTime, Math::max);
+            }
+        };
+
+        ExecutorService pollingExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        SnmpPollingScheduler scheduler = new SnmpPollingScheduler(100, pollingExecutor);
+        for (int i = 0; i < DEVICES; i++) {
+            scheduler.schedule("device-" + i, QUERYING_FREQUENCY_MS, () -> {
+                PDU pdu = new PDU();
+                pdu.setType(PDU.GET);
+                pdu.addAll(variableBindings);
+                try {
+                    requests.incrementAndGet();
+                    snmp.send(pdu, device.getTarget(), System.currentTimeMillis(), listener);
+                } catch (Exception e) {
+                    log.warn("Failed to send request", e);
+                }
+            });
+        }
+
+        for (int sec = 1; sec <= DURATION_SEC; sec++) {
+            TimeUnit.SECONDS.sleep(1);
+            log.info("requests/s: {}, responses/s: {}, oids/s: {}, timeouts: {}, max response time: {} ms",
+                    requests.getAndSet(0), responses.getAndSet(0), oids.getAndSet(0), timeouts.get(), maxResponseTime.getAndSet(0));
+        }
+
+        scheduler.stop();
+        pollingExecutor.shutdownNow();
+        snmp.close();
+        device.stop();
+    }
+
+}
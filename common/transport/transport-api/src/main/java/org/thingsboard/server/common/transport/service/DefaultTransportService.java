@@ -57,6 +57,8 @@ import org.thingsboard.server.common.msg.tools.TbRateLimitsException;
 import org.thingsboard.server.common.stats.MessagesStats;
 import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.common.stats.StatsType;
+import org.thingsboard.server.common.transport.DeviceCredentialsUpdatedEvent;
+import org.thingsboard.server.common.transport.DeviceDeletedEvent;
 import org.thingsboard.server.common.transport.DeviceUpdatedEvent;
 import org.thingsboard.server.common.transport.SessionMsgListener;
 import org.thingsboard.server.common.transport.TransportDeviceProfileCache;
@@ -277,7 +279,7 @@ public class DefaultTransportService implements TransportService {
         TbProtoQueueMsg<TransportProtos.TransportApiRequestMsg> protoMsg =
                 new TbProtoQueueMsg<>(UUID.randomUUID(), TransportProtos.TransportApiRequestMsg.newBuilder().setEntityProfileRequestMsg(msg).build());
         try {
-            TbProtoQueueMsg<TransportApiResponseMsg> response = transportApiRequestTemplate.send(protoMsg).get();
+            TbProtoQueueMsg<TransportApiResponseMsg> response = transportApiRequestTemplate.sendCoalesced(protoMsg, protoMsg.getValue()).get();
             return response.getValue().getEntityProfileResponseMsg();
         } catch (InterruptedException | ExecutionException e) {
             throw new RuntimeException(e);
@@ -289,7 +291,7 @@ public class DefaultTransportService implements TransportService {
         TbProtoQueueMsg<TransportProtos.TransportApiRequestMsg> protoMsg =
                 new TbProtoQueueMsg<>(UUID.randomUUID(), TransportProtos.TransportApiRequestMsg.newBuilder().setResourceRequestMsg(msg).build());
         try {
-            TbProtoQueueMsg<TransportApiResponseMsg> response = transportApiRequestTemplate.send(protoMsg).get();
+            TbProtoQueueMsg<TransportApiResponseMsg> response = transportApiRequestTemplate.sendCoalesced(protoMsg, protoMsg.getValue()).get();
             return response.getValue().getResourceResponseMsg();
         } catch (InterruptedException | ExecutionException e) {
             throw new RuntimeException(e);
@@ -321,7 +323,7 @@ public class DefaultTransportService implements TransportService {
         );
 
         try {
-            TransportApiResponseMsg response = transportApiRequestTemplate.send(protoMsg).get().getValue();
+            TransportApiResponseMsg response = transportApiRequestTemplate.sendCoalesced(protoMsg, protoMsg.getValue()).get().getValue();
             if (response.hasDeviceResponseMsg()) {
                 return response.getDeviceResponseMsg();
             } else {
@@ -341,7 +343,7 @@ public class DefaultTransportService implements TransportService {
         );
 
         try {
-            TbProtoQueueMsg<TransportApiResponseMsg> response = transportApiRequestTemplate.send(protoMsg).get();
+            TbProtoQueueMsg<TransportApiResponseMsg> response = transportApiRequestTemplate.sendCoalesced(protoMsg, protoMsg.getValue()).get();
             return response.getValue().getDeviceCredentialsResponseMsg();
         } catch (InterruptedException | ExecutionException e) {
             throw new RuntimeException(e);
@@ -370,7 +372,7 @@ public class DefaultTransportService implements TransportService {
     public void process(TransportProtos.ValidateDeviceLwM2MCredentialsRequestMsg requestMsg, TransportServiceCallback<ValidateDeviceCredentialsResponse> callback) {
         log.trace("Processing msg: {}", requestMsg);
         TbProtoQueueMsg<TransportApiRequestMsg> protoMsg = new TbProtoQueueMsg<>(UUID.randomUUID(), TransportApiRequestMsg.newBuilder().setValidateDeviceLwM2MCredentialsRequestMsg(requestMsg).build());
-        ListenableFuture<ValidateDeviceCredentialsResponse> response = Futures.transform(transportApiRequestTemplate.send(protoMsg), tmp -> {
+        ListenableFuture<ValidateDeviceCredentialsResponse> response = Futures.transform(transportApiRequestTemplate.sendCoalesced(protoMsg, protoMsg.getValue()), tmp -> {
             TransportProtos.ValidateDeviceCredentialsResponseMsg msg = tmp.getValue().getValidateCredResponseMsg();
             ValidateDeviceCredentialsResponse.ValidateDeviceCredentialsResponseBuilder result = ValidateDeviceCredentialsResponse.builder();
             if (msg.hasDeviceInfo()) {
@@ -397,7 +399,7 @@ public class DefaultTransportService implements TransportService {
 
     private void doProcess(DeviceTransportType transportType, TbProtoQueueMsg<TransportApiRequestMsg> protoMsg,
                            TransportServiceCallback<ValidateDeviceCredentialsResponse> callback) {
-        ListenableFuture<ValidateDeviceCredentialsResponse> response = Futures.transform(transportApiRequestTemplate.send(protoMsg), tmp -> {
+        ListenableFuture<ValidateDeviceCredentialsResponse> response = Futures.transform(transportApiRequestTemplate.sendCoalesced(protoMsg, protoMsg.getValue()), tmp -> {
             TransportProtos.ValidateDeviceCredentialsResponseMsg msg = tmp.getValue().getValidateCredResponseMsg();
             ValidateDeviceCredentialsResponse.ValidateDeviceCredentialsResponseBuilder result = ValidateDeviceCredentialsResponse.builder();
             if (msg.hasDeviceInfo()) {
@@ -674,7 +676,7 @@ public class DefaultTransportService implements TransportService {
             TbProtoQueueMsg<TransportProtos.TransportApiRequestMsg> protoMsg =
                     new TbProtoQueueMsg<>(UUID.randomUUID(), TransportProtos.TransportApiRequestMsg.newBuilder().setOtaPackageRequestMsg(msg).build());
 
-            AsyncCallbackTemplate.withCallback(transportApiRequestTemplate.send(protoMsg), response -> {
+            AsyncCallbackTemplate.withCallback(transportApiRequestTemplate.sendCoalesced(protoMsg, protoMsg.getValue()), response -> {
                 callback.onSuccess(response.getValue().getOtaPackageResponseMsg());
             }, callback::onError, transportCallbackExecutor);
         }
@@ -899,7 +901,11 @@ public class DefaultTransportService implements TransportService {
                 } else if (EntityType.DEVICE.equals(entityType)) {
                     rateLimitService.remove(new DeviceId(entityUuid));
                     onDeviceDeleted(new DeviceId(entityUuid));
+                    eventPublisher.publishEvent(new DeviceDeletedEvent(new DeviceId(entityUuid)));
                 }
+            } else if (toSessionMsg.hasDeviceCredentialsUpdateMsg()) {
+                TransportProtos.DeviceCredentialsUpdateMsg msg = toSessionMsg.getDeviceCredentialsUpdateMsg();
+                eventPublisher.publishEvent(new DeviceCredentialsUpdatedEvent(new DeviceId(new UUID(msg.getDeviceIdMSB(), msg.getDeviceIdLSB()))));
             } else if (toSessionMsg.hasResourceUpdateMsg()) {
                 TransportProtos.ResourceUpdateMsg msg = toSessionMsg.getResourceUpdateMsg();
                 TenantId tenantId = new TenantId(new UUID(msg.getTenantIdMSB(), msg.getTenantIdLSB()));
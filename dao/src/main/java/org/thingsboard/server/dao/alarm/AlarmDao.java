@@ -32,6 +32,7 @@ import org.thingsboard.server.common.data.query.AlarmDataQuery;
 import org.thingsboard.server.dao.Dao;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
@@ -59,4 +60,12 @@ public interface AlarmDao extends Dao<Alarm> {
 
     PageData<AlarmId> findAlarmsIdsByEndTsBeforeAndTenantId(Long time, TenantId tenantId, PageLink pageLink);
 
+    PageData<Alarm> findLatestActiveAlarms(TenantId tenantId, PageLink pageLink);
+
+    void saveAlarmPropagation(TenantId tenantId, AlarmId alarmId, Collection<EntityId> entityIds);
+
+    List<EntityId> findAlarmPropagationEntityIds(TenantId tenantId, AlarmId alarmId);
+
+    void deleteAlarmPropagationByEntityId(TenantId tenantId, EntityId entityId);
+
 }
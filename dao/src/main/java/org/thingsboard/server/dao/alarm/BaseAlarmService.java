@@ -45,7 +45,6 @@ import org.thingsboard.server.common.data.query.AlarmDataQuery;
 import org.thingsboard.server.common.data.relation.EntityRelation;
 import org.thingsboard.server.common.data.relation.EntityRelationsQuery;
 import org.thingsboard.server.common.data.relation.EntitySearchDirection;
-import org.thingsboard.server.common.data.relation.RelationTypeGroup;
 import org.thingsboard.server.common.data.relation.RelationsSearchParameters;
 import org.thingsboard.server.dao.entity.AbstractEntityService;
 import org.thingsboard.server.dao.entity.EntityService;
@@ -59,6 +58,7 @@ import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -77,15 +77,15 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
     public static final String INCORRECT_TENANT_ID = "Incorrect tenantId ";
     public static final String INCORRECT_CUSTOMER_ID = "Incorrect customerId ";
 
-    @Autowired
-    private AlarmDao alarmDao;
-
     @Autowired
     private TenantDao tenantDao;
 
     @Autowired
     private EntityService entityService;
 
+    @Autowired
+    private LatestAlarmCache latestAlarmCache;
+
     protected ExecutorService readResultsProcessingExecutor;
 
     @PostConstruct
@@ -117,7 +117,9 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
             }
             alarm.setCustomerId(entityService.fetchEntityCustomerId(alarm.getTenantId(), alarm.getOriginator()));
             if (alarm.getId() == null) {
+                // the cached alarm may be outdated by an ack or clear on another node, so the merge always starts from the database
                 Alarm existing = alarmDao.findLatestByOriginatorAndType(alarm.getTenantId(), alarm.getOriginator(), alarm.getType()).get();
+                latestAlarmCache.onLoaded(alarm.getTenantId(), alarm.getOriginator(), alarm.getType(), existing);
                 if (existing == null || existing.getStatus().isCleared()) {
                     if (!alarmCreationEnabled) {
                         throw new ApiUsageLimitsExceededException("Alarms creation is disabled");
@@ -135,7 +137,8 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
     }
 
     public ListenableFuture<Alarm> findLatestByOriginatorAndType(TenantId tenantId, EntityId originator, String type) {
-        return alarmDao.findLatestByOriginatorAndType(tenantId, originator, type);
+        return latestAlarmCache.findLatest(tenantId, originator, type,
+                () -> alarmDao.findLatestByOriginatorAndType(tenantId, originator, type));
     }
 
     @Override
@@ -157,6 +160,7 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
             AlarmOperationResult result = new AlarmOperationResult(alarm, true, new ArrayList<>(getPropagationEntityIds(alarm)));
             deleteEntityRelations(tenantId, alarm.getId());
             alarmDao.deleteAlarm(tenantId, alarm);
+            latestAlarmCache.onDeleted(alarm);
             return result;
         } catch (ExecutionException | InterruptedException e) {
             throw new RuntimeException(e);
@@ -166,19 +170,18 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
     private AlarmOperationResult createAlarm(Alarm alarm) throws InterruptedException, ExecutionException {
         log.debug("New Alarm : {}", alarm);
         Alarm saved = alarmDao.save(alarm.getTenantId(), alarm);
-        List<EntityId> propagatedEntitiesList = createAlarmRelations(saved);
+        latestAlarmCache.onCreated(saved);
+        List<EntityId> propagatedEntitiesList = createAlarmPropagation(saved);
         return new AlarmOperationResult(saved, true, true, propagatedEntitiesList);
     }
 
-    private List<EntityId> createAlarmRelations(Alarm alarm) throws InterruptedException, ExecutionException {
+    private List<EntityId> createAlarmPropagation(Alarm alarm) throws InterruptedException, ExecutionException {
         List<EntityId> propagatedEntitiesList;
         if (alarm.isPropagate()) {
             Set<EntityId> parentEntities = getParentEntities(alarm);
+            alarmDao.saveAlarmPropagation(alarm.getTenantId(), alarm.getId(), parentEntities);
             propagatedEntitiesList = new ArrayList<>(parentEntities.size() + 1);
-            for (EntityId parentId : parentEntities) {
-                propagatedEntitiesList.add(parentId);
-                createAlarmRelation(alarm.getTenantId(), parentId, alarm.getId());
-            }
+            propagatedEntitiesList.addAll(parentEntities);
             propagatedEntitiesList.add(alarm.getOriginator());
         } else {
             propagatedEntitiesList = Collections.singletonList(alarm.getOriginator());
@@ -218,12 +221,13 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
         boolean oldPropagate = oldAlarm.isPropagate();
         boolean newPropagate = newAlarm.isPropagate();
         Alarm result = alarmDao.save(newAlarm.getTenantId(), merge(oldAlarm, newAlarm));
+        latestAlarmCache.onUpdated(result);
         List<EntityId> propagatedEntitiesList;
         if (!oldPropagate && newPropagate) {
             try {
-                propagatedEntitiesList = createAlarmRelations(result);
+                propagatedEntitiesList = createAlarmPropagation(result);
             } catch (InterruptedException | ExecutionException e) {
-                log.warn("Failed to update alarm relations [{}]", result, e);
+                log.warn("Failed to update alarm propagation [{}]", result, e);
                 throw new RuntimeException(e);
             }
         } else {
@@ -246,6 +250,7 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
                     alarm.setStatus(newStatus);
                     alarm.setAckTs(ackTime);
                     alarm = alarmDao.save(alarm.getTenantId(), alarm);
+                    latestAlarmCache.onUpdated(alarm);
                     return new AlarmOperationResult(alarm, true, new ArrayList<>(getPropagationEntityIds(alarm)));
                 }
             }
@@ -269,6 +274,7 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
                         alarm.setDetails(details);
                     }
                     alarm = alarmDao.save(alarm.getTenantId(), alarm);
+                    latestAlarmCache.onUpdated(alarm);
                     return new AlarmOperationResult(alarm, true, new ArrayList<>(getPropagationEntityIds(alarm)));
                 }
             }
@@ -382,8 +388,7 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
 
     private Set<EntityId> getPropagationEntityIds(Alarm alarm) {
         if (alarm.isPropagate()) {
-            List<EntityRelation> relations = relationService.findByTo(alarm.getTenantId(), alarm.getId(), RelationTypeGroup.ALARM);
-            Set<EntityId> propagationEntityIds = relations.stream().map(EntityRelation::getFrom).collect(Collectors.toSet());
+            Set<EntityId> propagationEntityIds = new HashSet<>(alarmDao.findAlarmPropagationEntityIds(alarm.getTenantId(), alarm.getId()));
             propagationEntityIds.add(alarm.getOriginator());
             return propagationEntityIds;
         } else {
@@ -391,10 +396,6 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
         }
     }
 
-    private void createAlarmRelation(TenantId tenantId, EntityId entityId, EntityId alarmId) {
-        createRelation(tenantId, new EntityRelation(entityId, alarmId, AlarmSearchStatus.ANY.name(), RelationTypeGroup.ALARM));
-    }
-
     private <T> ListenableFuture<T> getAndUpdate(TenantId tenantId, AlarmId alarmId, Function<Alarm, T> function) {
         validateId(alarmId, "Alarm id should be specified!");
         ListenableFuture<Alarm> entity = alarmDao.findAlarmByIdAsync(tenantId, alarmId.getId());
@@ -0,0 +1,247 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.alarm;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.alarm.Alarm;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.page.PageLink;
+import org.thingsboard.server.common.data.page.SortOrder;
+import org.thingsboard.server.dao.tenant.TenantDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the latest alarm of each originator and alarm type for the entities that are processed by this node.
+ * <p>
+ * The owner of the entities (rule engine partitions) is defined by the filters passed to {@link #onPartitionsChange}.
+ * Active alarms of the local tenants are loaded once the partitions are assigned, other keys are cached on the first
+ * lookup. An empty value means that the originator has no alarm of this type. Entries are updated by the writes of
+ * {@link BaseAlarmService}; modifications made on other nodes, such as an ack or clear from the UI, invalidate the entry
+ * through {@link #invalidate}, which is called on the cluster notification of the alarm update. The expiration of the
+ * entries only limits the staleness if a notification is lost.
+ * <p>
+ * The cache only serves reads. {@link BaseAlarmService#createOrUpdateAlarm} always reads the latest alarm from the
+ * database and refreshes the entry with it, so a stale entry never overrides an ack or clear made on another node.
+ */
+@Component
+@Slf4j
+public class LatestAlarmCache {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    @Value("${cache.alarms.latest.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cache.alarms.latest.max_size:100000}")
+    private long maxSize;
+
+    @Value("${cache.alarms.latest.ttl_ms:60000}")
+    private long ttlMs;
+
+    private final AlarmDao alarmDao;
+    private final TenantDao tenantDao;
+    private final AtomicInteger partitionsVersion = new AtomicInteger();
+
+    private volatile BiPredicate<TenantId, EntityId> localEntityFilter = (tenantId, entityId) -> false;
+    private Cache<AlarmKey, Optional<Alarm>> cache;
+    private ExecutorService loadExecutor;
+
+    public LatestAlarmCache(AlarmDao alarmDao, TenantDao tenantDao) {
+        this.alarmDao = alarmDao;
+        this.tenantDao = tenantDao;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            cache = Caffeine.newBuilder()
+                    .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                    .maximumSize(maxSize)
+                    .build();
+            loadExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("latest-alarm-cache"));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (loadExecutor != null) {
+            loadExecutor.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the latest alarm of the originator, using the loader on a cache miss or if the originator is not local.
+     */
+    public ListenableFuture<Alarm> findLatest(TenantId tenantId, EntityId originator, String type, Supplier<ListenableFuture<Alarm>> loader) {
+        if (!enabled || !localEntityFilter.test(tenantId, originator)) {
+            return loader.get();
+        }
+        AlarmKey key = new AlarmKey(originator, type);
+        Optional<Alarm> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Futures.immediateFuture(cached.map(LatestAlarmCache::copy).orElse(null));
+        }
+        return Futures.transform(loader.get(), alarm -> {
+            // a concurrent write of the same key wins over the value read from the database
+            Optional<Alarm> current = cache.asMap().putIfAbsent(key, Optional.ofNullable(copy(alarm)));
+            return current != null ? current.map(LatestAlarmCache::copy).orElse(null) : alarm;
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Replaces the entry with the latest alarm read from the database, {@code null} if the originator has no alarm of this type.
+     */
+    public void onLoaded(TenantId tenantId, EntityId originator, String type, Alarm alarm) {
+        if (enabled && localEntityFilter.test(tenantId, originator)) {
+            cache.put(new AlarmKey(originator, type), Optional.ofNullable(copy(alarm)));
+        }
+    }
+
+    public void onCreated(Alarm alarm) {
+        if (isCached(alarm)) {
+            Alarm value = copy(alarm);
+            cache.asMap().merge(toKey(alarm), Optional.of(value), (old, created) ->
+                    old.isPresent() && old.get().getStartTs() > value.getStartTs() ? old : created);
+        }
+    }
+
+    public void onUpdated(Alarm alarm) {
+        if (isCached(alarm)) {
+            Alarm value = copy(alarm);
+            cache.asMap().computeIfPresent(toKey(alarm), (key, old) ->
+                    old.isPresent() && old.get().getId().equals(value.getId()) ? Optional.of(value) : old);
+        }
+    }
+
+    public void onDeleted(Alarm alarm) {
+        if (enabled) {
+            cache.invalidate(toKey(alarm));
+        }
+    }
+
+    /**
+     * Drops the entry of the alarm that was modified on another node, the next lookup reads it from the database.
+     */
+    public void invalidate(TenantId tenantId, EntityId originator, String type) {
+        if (enabled && localEntityFilter.test(tenantId, originator)) {
+            cache.invalidate(new AlarmKey(originator, type));
+        }
+    }
+
+    /**
+     * Drops the entries of the entities that are no longer local and loads the active alarms of the tenants
+     * that may have local entities.
+     */
+    public void onPartitionsChange(BiPredicate<TenantId, EntityId> localEntityFilter, Predicate<TenantId> localTenantFilter) {
+        if (!enabled) {
+            return;
+        }
+        this.localEntityFilter = localEntityFilter;
+        int version = partitionsVersion.incrementAndGet();
+        cache.asMap().values().removeIf(value -> value.isPresent() && !localEntityFilter.test(value.get().getTenantId(), value.get().getOriginator()));
+        loadExecutor.submit(() -> loadActiveAlarms(version, localTenantFilter));
+    }
+
+    private void loadActiveAlarms(int version, Predicate<TenantId> localTenantFilter) {
+        PageLink tenantsPageLink = new PageLink(LOAD_PAGE_SIZE);
+        int loaded = 0;
+        try {
+            PageData<TenantId> tenants;
+            do {
+                tenants = tenantDao.findTenantsIds(tenantsPageLink);
+                for (TenantId tenantId : tenants.getData()) {
+                    if (localTenantFilter.test(tenantId)) {
+                        int tenantLoaded = loadActiveAlarms(version, tenantId);
+                        if (tenantLoaded < 0) {
+                            log.debug("Partitions changed, stopped loading of the active alarms");
+                            return;
+                        }
+                        loaded += tenantLoaded;
+                    }
+                }
+                tenantsPageLink = tenantsPageLink.nextPageLink();
+            } while (tenants.hasNext());
+            log.info("Loaded {} active alarms of the local entities", loaded);
+        } catch (Exception e) {
+            log.warn("Failed to load active alarms", e);
+        }
+    }
+
+    private int loadActiveAlarms(int version, TenantId tenantId) {
+        PageLink pageLink = new PageLink(LOAD_PAGE_SIZE, 0, null, new SortOrder("id"));
+        int loaded = 0;
+        PageData<Alarm> page;
+        do {
+            if (version != partitionsVersion.get()) {
+                return -1;
+            }
+            page = alarmDao.findLatestActiveAlarms(tenantId, pageLink);
+            for (Alarm alarm : page.getData()) {
+                if (localEntityFilter.test(alarm.getTenantId(), alarm.getOriginator())) {
+                    cache.asMap().putIfAbsent(toKey(alarm), Optional.of(alarm));
+                    loaded++;
+                }
+            }
+            pageLink = pageLink.nextPageLink();
+        } while (page.hasNext());
+        return loaded;
+    }
+
+    private boolean isCached(Alarm alarm) {
+        return enabled && localEntityFilter.test(alarm.getTenantId(), alarm.getOriginator());
+    }
+
+    private static AlarmKey toKey(Alarm alarm) {
+        return new AlarmKey(alarm.getOriginator(), alarm.getType());
+    }
+
+    // alarms are mutable, so the callers never get the cached instance
+    private static Alarm copy(Alarm alarm) {
+        return alarm != null ? new Alarm(alarm) : null;
+    }
+
+    @Data
+    private static class AlarmKey {
+        private final EntityId originator;
+        private final String type;
+    }
+
+}
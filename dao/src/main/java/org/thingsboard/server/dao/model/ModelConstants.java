@@ -276,6 +276,14 @@ public class ModelConstants {
 
     public static final String ALARM_BY_ID_VIEW_NAME = "alarm_by_id";
 
+    /**
+     * Alarm propagation constants.
+     */
+    public static final String ALARM_PROPAGATION_COLUMN_FAMILY_NAME = "alarm_propagation";
+    public static final String ALARM_PROPAGATION_ENTITY_ID_PROPERTY = "entity_id";
+    public static final String ALARM_PROPAGATION_ENTITY_TYPE_PROPERTY = "entity_type";
+    public static final String ALARM_PROPAGATION_ALARM_ID_PROPERTY = "alarm_id";
+
     /**
      * Cassandra entity relation constants.
      */
@@ -0,0 +1,53 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.model.sql;
+
+import lombok.Data;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.util.UUID;
+
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_PROPAGATION_ALARM_ID_PROPERTY;
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_PROPAGATION_COLUMN_FAMILY_NAME;
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_PROPAGATION_ENTITY_ID_PROPERTY;
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_PROPAGATION_ENTITY_TYPE_PROPERTY;
+
+/**
+ * Entity the alarm is propagated to. Used by the alarm queries only, the rows are written in batches
+ * by {@link org.thingsboard.server.dao.sql.alarm.AlarmPropagationRepository}.
+ */
+@Data
+@Entity
+@Table(name = ALARM_PROPAGATION_COLUMN_FAMILY_NAME)
+@IdClass(AlarmPropagationCompositeKey.class)
+public final class AlarmPropagationEntity {
+
+    @Id
+    @Column(name = ALARM_PROPAGATION_ENTITY_ID_PROPERTY, columnDefinition = "uuid")
+    private UUID entityId;
+
+    @Column(name = ALARM_PROPAGATION_ENTITY_TYPE_PROPERTY)
+    private String entityType;
+
+    @Id
+    @Column(name = ALARM_PROPAGATION_ALARM_ID_PROPERTY, columnDefinition = "uuid")
+    private UUID alarmId;
+
+}
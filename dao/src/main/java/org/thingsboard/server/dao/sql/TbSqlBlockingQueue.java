@@ -17,9 +17,11 @@ package org.thingsboard.server.dao.sql;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.stats.MessagesStats;
+import org.thingsboard.server.dao.sql.stats.SqlQueryStatsService;
 
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -41,10 +43,18 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
 
     private ExecutorService executor;
     private final MessagesStats stats;
+    private final Timer latencyTimer;
+    private final SqlQueryStatsService queryStats;
 
     public TbSqlBlockingQueue(TbSqlBlockingQueueParams params, MessagesStats stats) {
+        this(params, stats, null, null);
+    }
+
+    public TbSqlBlockingQueue(TbSqlBlockingQueueParams params, MessagesStats stats, Timer latencyTimer, SqlQueryStatsService queryStats) {
         this.params = params;
         this.stats = stats;
+        this.latencyTimer = latencyTimer;
+        this.queryStats = queryStats;
     }
 
     @Override
@@ -68,12 +78,20 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
                     boolean fullPack = entities.size() == batchSize;
                     log.debug("[{}] Going to save {} entities", logName, entities.size());
                     Stream<E> entitiesStream = entities.stream().map(TbSqlQueueElement::getEntity);
+                    long saveStartNs = System.nanoTime();
                     saveFunction.accept(
                             (params.isBatchSortEnabled() ? entitiesStream.sorted(batchUpdateComparator) : entitiesStream)
                                     .collect(Collectors.toList())
                     );
+                    if (queryStats != null) {
+                        queryStats.recordOperation(null, logName + " batch save", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - saveStartNs), entities.size());
+                    }
                     entities.forEach(v -> v.getFuture().set(null));
                     stats.incrementSuccessful(entities.size());
+                    if (latencyTimer != null) {
+                        long savedTs = System.currentTimeMillis();
+                        entities.forEach(v -> latencyTimer.record(savedTs - v.getAddTs(), TimeUnit.MILLISECONDS));
+                    }
                     if (!fullPack) {
                         long remainingDelay = maxDelay - (System.currentTimeMillis() - currentTs);
                         if (remainingDelay > 0) {
@@ -16,10 +16,13 @@
 package org.thingsboard.server.dao.sql;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import io.micrometer.core.instrument.Timer;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.stats.MessagesStats;
+import org.thingsboard.server.common.stats.MsgLatencyStage;
 import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.dao.sql.stats.SqlQueryStatsService;
 
 import java.util.Comparator;
 import java.util.List;
@@ -36,6 +39,7 @@ public class TbSqlBlockingQueueWrapper<E> {
     private final Function<E, Integer> hashCodeFunction;
     private final int maxThreads;
     private final StatsFactory statsFactory;
+    private final SqlQueryStatsService queryStats;
 
     /**
      * Starts TbSqlBlockingQueues.
@@ -46,9 +50,10 @@ public class TbSqlBlockingQueueWrapper<E> {
      *                               NOTE: you must use all of primary key parts in your comparator
      */
     public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator) {
+        Timer latencyTimer = statsFactory.getMsgLatencyTimer(MsgLatencyStage.PERSISTENCE, params.getStatsNamePrefix(), null);
         for (int i = 0; i < maxThreads; i++) {
             MessagesStats stats = statsFactory.createMessagesStats(params.getStatsNamePrefix() + ".queue." + i);
-            TbSqlBlockingQueue<E> queue = new TbSqlBlockingQueue<>(params, stats);
+            TbSqlBlockingQueue<E> queue = new TbSqlBlockingQueue<>(params, stats, latencyTimer, queryStats);
             queues.add(queue);
             queue.init(logExecutor, saveFunction, batchUpdateComparator, i);
         }
@@ -0,0 +1,87 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.alarm;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stores the entities each alarm is propagated to. All entities of an alarm are written with a single batch
+ * regardless of the depth of the hierarchy. Saving replaces the entities stored for the alarm before,
+ * so propagation may be turned off and on again.
+ */
+@Repository
+public class AlarmPropagationRepository {
+
+    private static final String INSERT = "INSERT INTO alarm_propagation (entity_id, entity_type, alarm_id) VALUES (?, ?, ?)";
+    private static final String SELECT_BY_ALARM_ID = "SELECT entity_id, entity_type FROM alarm_propagation WHERE alarm_id = ?";
+    private static final String DELETE_BY_ALARM_ID = "DELETE FROM alarm_propagation WHERE alarm_id = ?";
+    private static final String DELETE_BY_ENTITY_ID = "DELETE FROM alarm_propagation WHERE entity_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AlarmPropagationRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional
+    public void save(UUID alarmId, Collection<EntityId> entityIds) {
+        jdbcTemplate.update(DELETE_BY_ALARM_ID, alarmId);
+        if (entityIds.isEmpty()) {
+            return;
+        }
+        List<EntityId> entities = new ArrayList<>(entityIds);
+        jdbcTemplate.batchUpdate(INSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                EntityId entityId = entities.get(i);
+                ps.setObject(1, entityId.getId());
+                ps.setString(2, entityId.getEntityType().name());
+                ps.setObject(3, alarmId);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entities.size();
+            }
+        });
+    }
+
+    public List<EntityId> findEntityIds(UUID alarmId) {
+        return jdbcTemplate.query(SELECT_BY_ALARM_ID, (rs, rowNum) ->
+                EntityIdFactory.getByTypeAndUuid(rs.getString(2), (UUID) rs.getObject(1)), alarmId);
+    }
+
+    public void delete(UUID alarmId) {
+        jdbcTemplate.update(DELETE_BY_ALARM_ID, alarmId);
+    }
+
+    public void deleteByEntityId(UUID entityId) {
+        jdbcTemplate.update(DELETE_BY_ENTITY_ID, entityId);
+    }
+
+}
@@ -42,13 +42,11 @@ public interface AlarmRepository extends CrudRepository<AlarmEntity, UUID> {
                                                     Pageable pageable);
 
     @Query(value = "SELECT new org.thingsboard.server.dao.model.sql.AlarmInfoEntity(a) FROM AlarmEntity a " +
-            "LEFT JOIN RelationEntity re ON a.id = re.toId " +
-            "AND re.relationTypeGroup = 'ALARM' " +
-            "AND re.toType = 'ALARM' " +
-            "AND re.fromId = :affectedEntityId " +
-            "AND re.fromType = :affectedEntityType " +
+            "LEFT JOIN AlarmPropagationEntity re ON a.id = re.alarmId " +
+            "AND re.entityId = :affectedEntityId " +
+            "AND re.entityType = :affectedEntityType " +
             "WHERE a.tenantId = :tenantId " +
-            "AND (a.originatorId = :affectedEntityId or re.fromId IS NOT NULL) " +
+            "AND (a.originatorId = :affectedEntityId or re.entityId IS NOT NULL) " +
             "AND (:startTime IS NULL OR a.createdTime >= :startTime) " +
             "AND (:endTime IS NULL OR a.createdTime <= :endTime) " +
             "AND ((:alarmStatuses) IS NULL OR a.status in (:alarmStatuses)) " +
@@ -59,14 +57,12 @@ public interface AlarmRepository extends CrudRepository<AlarmEntity, UUID> {
             countQuery = "" +
                     "SELECT count(a) + " + //alarms with relations only
                     " (SELECT count(a) FROM AlarmEntity a " + //alarms WITHOUT any relations
-                    "    LEFT JOIN RelationEntity re ON a.id = re.toId " +
-                    "    AND re.relationTypeGroup = 'ALARM' " +
-                    "    AND re.toType = 'ALARM' " +
-                    "    AND re.fromId = :affectedEntityId " +
-                    "    AND re.fromType = :affectedEntityType " +
+                    "    LEFT JOIN AlarmPropagationEntity re ON a.id = re.alarmId " +
+                    "    AND re.entityId = :affectedEntityId " +
+                    "    AND re.entityType = :affectedEntityType " +
                     "    WHERE a.tenantId = :tenantId " +
                     "    AND (a.originatorId = :affectedEntityId) " +
-                    "    AND (re.fromId IS NULL) " + //anti join
+                    "    AND (re.entityId IS NULL) " + //anti join
                     "    AND (:startTime IS NULL OR a.createdTime >= :startTime) " +
                     "    AND (:endTime IS NULL OR a.createdTime <= :endTime) " +
                     "    AND ((:alarmStatuses) IS NULL OR a.status in (:alarmStatuses)) " +
@@ -75,11 +71,9 @@ public interface AlarmRepository extends CrudRepository<AlarmEntity, UUID> {
                     "    OR LOWER(a.status) LIKE LOWER(CONCAT(:searchText, '%'))) " +
                     " )" +
                     "FROM AlarmEntity a " +
-                    "INNER JOIN RelationEntity re ON a.id = re.toId " +
-                    "AND re.relationTypeGroup = 'ALARM' " +
-                    "AND re.toType = 'ALARM' " +
-                    "AND re.fromId = :affectedEntityId " +
-                    "AND re.fromType = :affectedEntityType " +
+                    "INNER JOIN AlarmPropagationEntity re ON a.id = re.alarmId " +
+                    "AND re.entityId = :affectedEntityId " +
+                    "AND re.entityType = :affectedEntityType " +
                     "WHERE a.tenantId = :tenantId " +
                     "AND (:startTime IS NULL OR a.createdTime >= :startTime) " +
                     "AND (:endTime IS NULL OR a.createdTime <= :endTime) " +
@@ -149,13 +143,11 @@ public interface AlarmRepository extends CrudRepository<AlarmEntity, UUID> {
                                              Pageable pageable);
 
     @Query(value = "SELECT a.severity FROM AlarmEntity a " +
-            "LEFT JOIN RelationEntity re ON a.id = re.toId " +
-            "AND re.relationTypeGroup = 'ALARM' " +
-            "AND re.toType = 'ALARM' " +
-            "AND re.fromId = :affectedEntityId " +
-            "AND re.fromType = :affectedEntityType " +
+            "LEFT JOIN AlarmPropagationEntity re ON a.id = re.alarmId " +
+            "AND re.entityId = :affectedEntityId " +
+            "AND re.entityType = :affectedEntityType " +
             "WHERE a.tenantId = :tenantId " +
-            "AND (a.originatorId = :affectedEntityId or re.fromId IS NOT NULL) " +
+            "AND (a.originatorId = :affectedEntityId or re.entityId IS NOT NULL) " +
             "AND ((:alarmStatuses) IS NULL OR a.status in (:alarmStatuses))")
     Set<AlarmSeverity> findAlarmSeverities(@Param("tenantId") UUID tenantId,
                                            @Param("affectedEntityId") UUID affectedEntityId,
@@ -165,4 +157,10 @@ public interface AlarmRepository extends CrudRepository<AlarmEntity, UUID> {
     @Query("SELECT a.id FROM AlarmEntity a WHERE a.tenantId = :tenantId AND a.createdTime < :time AND a.endTs < :time")
     Page<UUID> findAlarmsIdsByEndTsBeforeAndTenantId(@Param("time") Long time, @Param("tenantId") UUID tenantId, Pageable pageable);
 
+    @Query("SELECT a FROM AlarmEntity a WHERE a.tenantId = :tenantId AND a.status IN :alarmStatuses AND NOT EXISTS " +
+            "(SELECT n.id FROM AlarmEntity n WHERE n.originatorId = a.originatorId AND n.type = a.type AND n.startTs > a.startTs)")
+    Page<AlarmEntity> findLatestAlarmsByStatuses(@Param("tenantId") UUID tenantId,
+                                                 @Param("alarmStatuses") Set<AlarmStatus> alarmStatuses,
+                                                 Pageable pageable);
+
 }
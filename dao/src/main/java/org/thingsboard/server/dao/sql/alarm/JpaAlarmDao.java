@@ -24,6 +24,7 @@ import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.data.alarm.Alarm;
 import org.thingsboard.server.common.data.alarm.AlarmInfo;
 import org.thingsboard.server.common.data.alarm.AlarmQuery;
+import org.thingsboard.server.common.data.alarm.AlarmSearchStatus;
 import org.thingsboard.server.common.data.alarm.AlarmSeverity;
 import org.thingsboard.server.common.data.alarm.AlarmStatus;
 import org.thingsboard.server.common.data.id.AlarmId;
@@ -61,6 +62,9 @@ public class JpaAlarmDao extends JpaAbstractDao<AlarmEntity, Alarm> implements A
     @Autowired
     private AlarmQueryRepository alarmQueryRepository;
 
+    @Autowired
+    private AlarmPropagationRepository alarmPropagationRepository;
+
     @Autowired
     private RelationDao relationDao;
 
@@ -76,6 +80,7 @@ public class JpaAlarmDao extends JpaAbstractDao<AlarmEntity, Alarm> implements A
 
     @Override
     public Boolean deleteAlarm(TenantId tenantId, Alarm alarm) {
+        alarmPropagationRepository.delete(alarm.getUuidId());
         return removeById(tenantId, alarm.getUuidId());
     }
 
@@ -169,4 +174,24 @@ public class JpaAlarmDao extends JpaAbstractDao<AlarmEntity, Alarm> implements A
         return DaoUtil.pageToPageData(alarmRepository.findAlarmsIdsByEndTsBeforeAndTenantId(time, tenantId.getId(), DaoUtil.toPageable(pageLink)))
                 .mapData(AlarmId::new);
     }
+
+    @Override
+    public PageData<Alarm> findLatestActiveAlarms(TenantId tenantId, PageLink pageLink) {
+        return DaoUtil.toPageData(alarmRepository.findLatestAlarmsByStatuses(tenantId.getId(), AlarmSearchStatus.ACTIVE.getStatuses(), DaoUtil.toPageable(pageLink)));
+    }
+
+    @Override
+    public void saveAlarmPropagation(TenantId tenantId, AlarmId alarmId, Collection<EntityId> entityIds) {
+        alarmPropagationRepository.save(alarmId.getId(), entityIds);
+    }
+
+    @Override
+    public List<EntityId> findAlarmPropagationEntityIds(TenantId tenantId, AlarmId alarmId) {
+        return alarmPropagationRepository.findEntityIds(alarmId.getId());
+    }
+
+    @Override
+    public void deleteAlarmPropagationByEntityId(TenantId tenantId, EntityId entityId) {
+        alarmPropagationRepository.deleteByEntityId(entityId.getId());
+    }
 }
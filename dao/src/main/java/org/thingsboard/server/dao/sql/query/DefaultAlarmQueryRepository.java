@@ -105,7 +105,7 @@ public class DefaultAlarmQueryRepository implements AlarmQueryRepository {
             " a.propagate_relation_types as propagate_relation_types, " +
             " a.type as type," + SELECT_ORIGINATOR_NAME + ", ";
 
-    private static final String JOIN_RELATIONS = "left join relation r on r.relation_type_group = 'ALARM' and r.relation_type = 'ANY' and a.id = r.to_id and r.from_id in (:entity_ids)";
+    private static final String JOIN_RELATIONS = "left join alarm_propagation r on a.id = r.alarm_id and r.entity_id in (:entity_ids)";
 
     protected final NamedParameterJdbcTemplate jdbcTemplate;
     private final TransactionTemplate transactionTemplate;
@@ -132,7 +132,7 @@ public class DefaultAlarmQueryRepository implements AlarmQueryRepository {
             StringBuilder joinPart = new StringBuilder();
             boolean addAnd = false;
             if (pageLink.isSearchPropagatedAlarms()) {
-                selectPart.append(" CASE WHEN r.from_id IS NULL THEN a.originator_id ELSE r.from_id END as entity_id ");
+                selectPart.append(" CASE WHEN r.entity_id IS NULL THEN a.originator_id ELSE r.entity_id END as entity_id ");
                 fromPart.append(JOIN_RELATIONS);
                 wherePart.append(buildPermissionsQuery(tenantId, customerId, ctx));
                 addAnd = true;
@@ -145,7 +145,7 @@ public class DefaultAlarmQueryRepository implements AlarmQueryRepository {
                 sortPart.append(alarmFieldColumnMap.getOrDefault(sortOrderKey, sortOrderKey))
                         .append(" ").append(sortOrder.getDirection().name());
                 if (pageLink.isSearchPropagatedAlarms()) {
-                    wherePart.append(" and (a.originator_id in (:entity_ids) or r.from_id IS NOT NULL)");
+                    wherePart.append(" and (a.originator_id in (:entity_ids) or r.entity_id IS NOT NULL)");
                 } else {
                     addAndIfNeeded(wherePart, addAnd);
                     addAnd = true;
@@ -166,7 +166,7 @@ public class DefaultAlarmQueryRepository implements AlarmQueryRepository {
                 }
                 joinPart.append(" as e(id, priority)) e ");
                 if (pageLink.isSearchPropagatedAlarms()) {
-                    joinPart.append("on (r.from_id IS NULL and a.originator_id = e.id) or (r.from_id IS NOT NULL and r.from_id = e.id)");
+                    joinPart.append("on (r.entity_id IS NULL and a.originator_id = e.id) or (r.entity_id IS NOT NULL and r.entity_id = e.id)");
                 } else {
                     joinPart.append("on a.originator_id = e.id");
                 }
@@ -248,11 +248,11 @@ public class DefaultAlarmQueryRepository implements AlarmQueryRepository {
                 dataQuery = String.format("%s limit %s offset %s", dataQuery, pageLink.getPageSize(), startIndex);
             }
             queryTs = System.currentTimeMillis();
-            List<Map<String, Object>> rows;
+            List<Map<String, Object>> rows = null;
             try {
                 rows = jdbcTemplate.queryForList(dataQuery, ctx);
             } finally {
-                queryLog.logQuery(ctx, dataQuery, System.currentTimeMillis() - queryTs);
+                queryLog.logQuery(ctx, dataQuery, System.currentTimeMillis() - queryTs, rows != null ? rows.size() : 0);
             }
             return AlarmDataAdapter.createAlarmData(pageLink, rows, totalElements, orderedEntityIds);
         });
@@ -15,8 +15,12 @@
  */
 package org.thingsboard.server.dao.sql.query;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.support.TransactionTemplate;
@@ -51,13 +55,15 @@ import org.thingsboard.server.common.data.query.SingleEntityFilter;
 import org.thingsboard.server.common.data.relation.EntitySearchDirection;
 import org.thingsboard.server.common.data.relation.RelationEntityTypeFilter;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Repository
@@ -259,12 +265,29 @@ public class DefaultEntityQueryRepository implements EntityQueryRepository {
     private final TransactionTemplate transactionTemplate;
     private final DefaultQueryLogComponent queryLog;
 
+    @Value("${sql.entity_data_query.count_cache_ttl_ms:0}")
+    private long countCacheTtlMs;
+    @Value("${sql.entity_data_query.count_cache_max_size:10000}")
+    private long countCacheMaxSize;
+
+    private Cache<CountCacheKey, Integer> countCache;
+
     public DefaultEntityQueryRepository(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, DefaultQueryLogComponent queryLog) {
         this.jdbcTemplate = jdbcTemplate;
         this.transactionTemplate = transactionTemplate;
         this.queryLog = queryLog;
     }
 
+    @PostConstruct
+    public void init() {
+        if (countCacheTtlMs > 0) {
+            countCache = Caffeine.newBuilder()
+                    .expireAfterWrite(countCacheTtlMs, TimeUnit.MILLISECONDS)
+                    .maximumSize(countCacheMaxSize)
+                    .build();
+        }
+    }
+
     @Override
     public long countEntitiesByQuery(TenantId tenantId, CustomerId customerId, EntityCountQuery query) {
         EntityType entityType = resolveEntityType(query.getEntityFilter());
@@ -329,7 +352,7 @@ public class DefaultEntityQueryRepository implements EntityQueryRepository {
                 try {
                     return jdbcTemplate.queryForObject(countQuery, ctx, Long.class);
                 } finally {
-                    queryLog.logQuery(ctx, ctx.getQuery(), System.currentTimeMillis() - startTs);
+                    queryLog.logQuery(ctx, countQuery, System.currentTimeMillis() - startTs);
                 }
             });
         }
@@ -404,13 +427,7 @@ public class DefaultEntityQueryRepository implements EntityQueryRepository {
             }
             String countQuery = String.format("select count(id) %s", fromClauseCount);
 
-            long startTs = System.currentTimeMillis();
-            int totalElements;
-            try {
-                totalElements = jdbcTemplate.queryForObject(countQuery, ctx, Integer.class);
-            } finally {
-                queryLog.logQuery(ctx, countQuery, System.currentTimeMillis() - startTs);
-            }
+            int totalElements = countEntities(ctx, countQuery);
 
             if (totalElements == 0) {
                 return new PageData<>();
@@ -418,34 +435,130 @@ public class DefaultEntityQueryRepository implements EntityQueryRepository {
             String dataQuery = String.format("select * %s", fromClauseData);
 
             EntityDataSortOrder sortOrder = pageLink.getSortOrder();
+            EntityKeyMapping sortOrderMapping = null;
             if (sortOrder != null) {
-                Optional<EntityKeyMapping> sortOrderMappingOpt = mappings.stream().filter(EntityKeyMapping::isSortOrder).findFirst();
-                if (sortOrderMappingOpt.isPresent()) {
-                    EntityKeyMapping sortOrderMapping = sortOrderMappingOpt.get();
-                    String direction = sortOrder.getDirection() == EntityDataSortOrder.Direction.ASC ? "asc" : "desc";
-                    if (sortOrderMapping.getEntityKey().getType() == EntityKeyType.ENTITY_FIELD) {
-                        dataQuery = String.format("%s order by %s %s", dataQuery, sortOrderMapping.getValueAlias(), direction);
-                    } else {
-                        dataQuery = String.format("%s order by %s %s, %s %s", dataQuery,
-                                sortOrderMapping.getSortOrderNumAlias(), direction, sortOrderMapping.getSortOrderStrAlias(), direction);
-                    }
+                sortOrderMapping = mappings.stream().filter(EntityKeyMapping::isSortOrder).findFirst().orElse(null);
+            }
+            boolean asc = sortOrderMapping == null || sortOrder.getDirection() == EntityDataSortOrder.Direction.ASC;
+            List<String> sortColumns = getSortColumns(sortOrderMapping);
+
+            boolean keyset = false;
+            if (pageLink.getAfterEntityId() != null && pageLink.getPageSize() > 0) {
+                String seekPredicate = buildKeysetPredicate(ctx, fromClauseData, textSearchQuery, sortOrderMapping, sortColumns, asc, pageLink.getAfterEntityId());
+                if (seekPredicate != null) {
+                    dataQuery = String.format("%s %s %s", dataQuery, textSearchQuery.isEmpty() ? "where" : "and", seekPredicate);
+                    keyset = true;
                 }
             }
+            if (sortOrderMapping != null || keyset) {
+                String direction = asc ? "asc" : "desc";
+                // explicit nulls placement matches the keyset predicate, default placement differs between databases
+                String nulls = asc ? "nulls last" : "nulls first";
+                List<String> orderBy = new ArrayList<>();
+                sortColumns.forEach(column -> orderBy.add(column + " " + direction + " " + nulls));
+                // entity id makes the order unique, that is required for the keyset pagination
+                orderBy.add("id " + direction);
+                dataQuery = String.format("%s order by %s", dataQuery, String.join(", ", orderBy));
+            }
             int startIndex = pageLink.getPageSize() * pageLink.getPage();
-            if (pageLink.getPageSize() > 0) {
+            if (keyset) {
+                dataQuery = String.format("%s limit %s", dataQuery, pageLink.getPageSize() + 1);
+            } else if (pageLink.getPageSize() > 0) {
                 dataQuery = String.format("%s limit %s offset %s", dataQuery, pageLink.getPageSize(), startIndex);
             }
-            startTs = System.currentTimeMillis();
-            List<Map<String, Object>> rows;
+            long startTs = System.currentTimeMillis();
+            List<Map<String, Object>> rows = null;
             try {
                 rows = jdbcTemplate.queryForList(dataQuery, ctx);
             } finally {
-                queryLog.logQuery(ctx, countQuery, System.currentTimeMillis() - startTs);
+                queryLog.logQuery(ctx, dataQuery, System.currentTimeMillis() - startTs, rows != null ? rows.size() : 0);
+            }
+            if (keyset) {
+                boolean hasNext = rows.size() > pageLink.getPageSize();
+                if (hasNext) {
+                    rows = rows.subList(0, pageLink.getPageSize());
+                }
+                return EntityDataAdapter.createEntityData(pageLink, selectionMapping, rows, totalElements, hasNext);
             }
             return EntityDataAdapter.createEntityData(pageLink, selectionMapping, rows, totalElements);
         });
     }
 
+    private int countEntities(QueryContext ctx, String countQuery) {
+        if (countCache == null) {
+            return doCountEntities(ctx, countQuery);
+        }
+        Map<String, Object> params = new HashMap<>();
+        for (String name : ctx.getParameterNames()) {
+            params.put(name, ctx.getValue(name));
+        }
+        return countCache.get(new CountCacheKey(countQuery, params), key -> doCountEntities(ctx, countQuery));
+    }
+
+    private int doCountEntities(QueryContext ctx, String countQuery) {
+        long startTs = System.currentTimeMillis();
+        try {
+            return jdbcTemplate.queryForObject(countQuery, ctx, Integer.class);
+        } finally {
+            queryLog.logQuery(ctx, countQuery, System.currentTimeMillis() - startTs);
+        }
+    }
+
+    private static List<String> getSortColumns(EntityKeyMapping sortOrderMapping) {
+        if (sortOrderMapping == null) {
+            return Collections.emptyList();
+        } else if (sortOrderMapping.getEntityKey().getType() == EntityKeyType.ENTITY_FIELD) {
+            return Collections.singletonList(sortOrderMapping.getValueAlias());
+        } else {
+            return Arrays.asList(sortOrderMapping.getSortOrderNumAlias(), sortOrderMapping.getSortOrderStrAlias());
+        }
+    }
+
+    /**
+     * Builds the predicate that selects entities placed after the given one in the order of the query,
+     * or returns null if the entity does not match the query anymore.
+     * Entity field value may be null: nulls are last in ascending and first in descending order,
+     * the same placement is set explicitly in the order by clause of the query.
+     * Sort order values of attributes and time series are never null.
+     */
+    private String buildKeysetPredicate(QueryContext ctx, String fromClauseData, String textSearchQuery, EntityKeyMapping sortOrderMapping,
+                                        List<String> sortColumns, boolean asc, UUID afterEntityId) {
+        ctx.addUuidParameter("keyset_entity_id", afterEntityId);
+        String op = asc ? ">" : "<";
+        if (sortColumns.isEmpty()) {
+            return String.format("id %s :keyset_entity_id", op);
+        }
+        String positionQuery = String.format("select %s %s %s id = :keyset_entity_id", String.join(", ", sortColumns),
+                fromClauseData, textSearchQuery.isEmpty() ? "where" : "and");
+        long startTs = System.currentTimeMillis();
+        List<Map<String, Object>> position = null;
+        try {
+            position = jdbcTemplate.queryForList(positionQuery, ctx);
+        } finally {
+            queryLog.logQuery(ctx, positionQuery, System.currentTimeMillis() - startTs, position != null ? position.size() : 0);
+        }
+        if (position.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> values = position.get(0);
+        if (sortOrderMapping.getEntityKey().getType() == EntityKeyType.ENTITY_FIELD) {
+            String column = sortColumns.get(0);
+            Object value = values.get(column);
+            if (value == null) {
+                return asc ? String.format("(%s is null and id > :keyset_entity_id)", column)
+                        : String.format("(%s is not null or id < :keyset_entity_id)", column);
+            }
+            ctx.addStringParameter("keyset_value", value.toString());
+            return asc ? String.format("(%s is null or (%s, id) > (:keyset_value, :keyset_entity_id))", column, column)
+                    : String.format("(%s, id) < (:keyset_value, :keyset_entity_id)", column);
+        } else {
+            ctx.addDoubleParameter("keyset_num_value", ((Number) values.get(sortColumns.get(0))).doubleValue());
+            ctx.addStringParameter("keyset_str_value", values.get(sortColumns.get(1)).toString());
+            return String.format("(%s, %s, id) %s (:keyset_num_value, :keyset_str_value, :keyset_entity_id)",
+                    sortColumns.get(0), sortColumns.get(1), op);
+        }
+    }
+
     private String buildEntityWhere(QueryContext ctx, EntityFilter entityFilter, List<EntityKeyMapping> entityFieldsFilters) {
         String permissionQuery = this.buildPermissionQuery(ctx, entityFilter);
         String entityFilterQuery = this.buildEntityFilterQuery(ctx, entityFilter);
@@ -797,4 +910,14 @@ public class DefaultEntityQueryRepository implements EntityQueryRepository {
                 throw new RuntimeException("Not implemented!");
         }
     }
+
+    /**
+     * Count query with the values of its parameters, so the cached counts are never shared between tenants or customers.
+     */
+    @Data
+    private static class CountCacheKey {
+        private final String query;
+        private final Map<String, Object> params;
+    }
+
 }
@@ -18,6 +18,7 @@ package org.thingsboard.server.dao.sql.query;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.dao.sql.stats.SqlQueryStatsService;
 
 import java.util.Arrays;
 
@@ -30,8 +31,15 @@ public class DefaultQueryLogComponent implements QueryLogComponent {
     @Value("${sql.log_queries_threshold:5000}")
     private long logQueriesThreshold;
 
+    private final SqlQueryStatsService queryStats;
+
+    public DefaultQueryLogComponent(SqlQueryStatsService queryStats) {
+        this.queryStats = queryStats;
+    }
+
     @Override
-    public void logQuery(QueryContext ctx, String query, long duration) {
+    public void logQuery(QueryContext ctx, String query, long duration, int rows) {
+        queryStats.recordQuery(ctx.getTenantId(), query, duration, rows);
         if (logSqlQueries && duration > logQueriesThreshold) {
             log.info("QUERY: {} took {}ms", query, duration);
             Arrays.asList(ctx.getParameterNames()).forEach(param -> log.info("QUERY PARAM: {} -> {}", param, ctx.getValue(param)));
@@ -17,5 +17,9 @@ package org.thingsboard.server.dao.sql.query;
 
 public interface QueryLogComponent {
 
-    void logQuery(QueryContext ctx, String query, long duration);
+    default void logQuery(QueryContext ctx, String query, long duration) {
+        logQuery(ctx, query, duration, 1);
+    }
+
+    void logQuery(QueryContext ctx, String query, long duration, int rows);
 }
@@ -0,0 +1,299 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.stats;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.query.SqlQueryShapeSortProperty;
+import org.thingsboard.server.common.data.query.SqlQueryShapeStats;
+import org.thingsboard.server.common.data.query.SqlQueryTenantStats;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregates execution time, row count and rate of SQL statements per query shape and per tenant.
+ * <p>
+ * The number of tracked shapes is limited, executions of new shapes above the limit are accounted to a single
+ * overflow shape. Shapes with the largest total execution time are periodically published as Micrometer timers
+ * tagged with the shape id, so the shape text may be looked up with the REST API. Meters of the shapes that drop out
+ * of the top or are reset are removed from the registry.
+ */
+@Service
+@Slf4j
+public class DefaultSqlQueryStatsService implements SqlQueryStatsService {
+
+    static final String OVERFLOW_SHAPE = "<other shapes>";
+    static final String SHAPE_TIMER = "sqlQueryShape";
+    static final String SHAPE_ROWS_COUNTER = "sqlQueryShapeRows";
+    static final String SHAPE_TAG = "shape";
+    static final long[] LATENCY_BUCKETS_MS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+    private static final int MAX_TOP_TENANTS = 10;
+
+    @Value("${sql.query_stats.enabled:false}")
+    private boolean enabled;
+    @Value("${sql.query_stats.max_shapes:1000}")
+    private int maxShapes;
+    @Value("${sql.query_stats.max_tenants_per_shape:100}")
+    private int maxTenantsPerShape;
+    @Value("${sql.query_stats.normalized_cache_size:10000}")
+    private int normalizedCacheSize;
+    @Value("${sql.query_stats.metrics.top_n:10}")
+    private int metricsTopN;
+    @Value("${sql.query_stats.metrics.interval_ms:60000}")
+    private long metricsIntervalMs;
+    @Value("${metrics.enabled:false}")
+    private boolean metricsEnabled;
+
+    private final StatsFactory statsFactory;
+
+    private final ConcurrentMap<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ShapeMeters> meters = new ConcurrentHashMap<>();
+    private Cache<String, String> normalizedQueries;
+    private ScheduledExecutorService metricsExecutor;
+
+    public DefaultSqlQueryStatsService(StatsFactory statsFactory) {
+        this.statsFactory = statsFactory;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        normalizedQueries = Caffeine.newBuilder().maximumSize(normalizedCacheSize).build();
+        if (metricsEnabled && metricsTopN > 0) {
+            metricsExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("sql-query-stats"));
+            metricsExecutor.scheduleWithFixedDelay(this::publishTopShapes, metricsIntervalMs, metricsIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (metricsExecutor != null) {
+            metricsExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void recordQuery(TenantId tenantId, String query, long durationMs, int rows) {
+        if (enabled) {
+            record(tenantId, normalizedQueries.get(query, SqlQueryShapeNormalizer::normalize), durationMs, rows);
+        }
+    }
+
+    @Override
+    public void recordOperation(TenantId tenantId, String operation, long durationMs, int rows) {
+        if (enabled) {
+            record(tenantId, operation, durationMs, rows);
+        }
+    }
+
+    private void record(TenantId tenantId, String shape, long durationMs, int rows) {
+        ShapeStats stats = shapes.get(shape);
+        if (stats == null) {
+            String key = shapes.size() < maxShapes ? shape : OVERFLOW_SHAPE;
+            stats = shapes.computeIfAbsent(key, ShapeStats::new);
+        }
+        stats.record(tenantId, durationMs, rows, maxTenantsPerShape);
+        ShapeMeters shapeMeters = meters.get(stats.id);
+        if (shapeMeters != null) {
+            shapeMeters.timer.record(durationMs, TimeUnit.MILLISECONDS);
+            shapeMeters.rows.add(rows);
+        }
+    }
+
+    @Override
+    public List<SqlQueryShapeStats> getTopShapes(SqlQueryShapeSortProperty sortProperty, int limit) {
+        long now = System.currentTimeMillis();
+        return shapes.values().stream()
+                .sorted(getComparator(sortProperty).reversed())
+                .limit(limit)
+                .map(stats -> stats.toData(now))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized void reset() {
+        shapes.clear();
+        removeMeters(id -> true);
+    }
+
+    synchronized void publishTopShapes() {
+        try {
+            List<ShapeStats> topShapes = shapes.values().stream()
+                    .sorted(getComparator(SqlQueryShapeSortProperty.TOTAL_TIME).reversed())
+                    .limit(metricsTopN)
+                    .collect(Collectors.toList());
+            Set<String> topIds = topShapes.stream().map(stats -> stats.id).collect(Collectors.toSet());
+            removeMeters(id -> !topIds.contains(id));
+            topShapes.forEach(stats -> meters.computeIfAbsent(stats.id, id -> {
+                log.debug("[{}] Publishing metrics of query shape: {}", id, stats.shape);
+                return new ShapeMeters(statsFactory.createTimer(SHAPE_TIMER, SHAPE_TAG, id),
+                        statsFactory.createDefaultCounter(SHAPE_ROWS_COUNTER, SHAPE_TAG, id));
+            }));
+        } catch (Exception e) {
+            log.warn("Failed to publish query shape metrics", e);
+        }
+    }
+
+    private void removeMeters(Predicate<String> filter) {
+        meters.keySet().removeIf(id -> {
+            if (!filter.test(id)) {
+                return false;
+            }
+            log.debug("[{}] Removing metrics of query shape", id);
+            statsFactory.removeMeters(SHAPE_TIMER, SHAPE_TAG, id);
+            statsFactory.removeMeters(SHAPE_ROWS_COUNTER, SHAPE_TAG, id);
+            return true;
+        });
+    }
+
+    private static Comparator<ShapeStats> getComparator(SqlQueryShapeSortProperty sortProperty) {
+        switch (sortProperty) {
+            case COUNT:
+                return Comparator.comparingLong(stats -> stats.count.sum());
+            case MAX_TIME:
+                return Comparator.comparingLong(stats -> stats.maxTime.get());
+            case ROWS:
+                return Comparator.comparingLong(stats -> stats.rows.sum());
+            default:
+                return Comparator.comparingLong(stats -> stats.totalTime.sum());
+        }
+    }
+
+    private static int getLatencyBucket(long durationMs) {
+        for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+            if (durationMs <= LATENCY_BUCKETS_MS[i]) {
+                return i;
+            }
+        }
+        return LATENCY_BUCKETS_MS.length;
+    }
+
+    private static class ShapeStats {
+        private final String id;
+        private final String shape;
+        private final long sinceTs = System.currentTimeMillis();
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final AtomicLong maxTime = new AtomicLong();
+        private final LongAdder[] latencyHistogram = new LongAdder[LATENCY_BUCKETS_MS.length + 1];
+        private final ConcurrentMap<TenantId, TenantStats> tenants = new ConcurrentHashMap<>();
+
+        ShapeStats(String shape) {
+            this.id = Hashing.murmur3_128().hashString(shape, StandardCharsets.UTF_8).toString().substring(0, 16);
+            this.shape = shape;
+            for (int i = 0; i < latencyHistogram.length; i++) {
+                latencyHistogram[i] = new LongAdder();
+            }
+        }
+
+        void record(TenantId tenantId, long durationMs, int rowCount, int maxTenants) {
+            count.increment();
+            totalTime.add(durationMs);
+            rows.add(rowCount);
+            maxTime.accumulateAndGet(durationMs, Math::max);
+            latencyHistogram[getLatencyBucket(durationMs)].increment();
+            if (tenantId != null) {
+                TenantStats tenantStats = tenants.get(tenantId);
+                if (tenantStats == null) {
+                    if (tenants.size() >= maxTenants) {
+                        return;
+                    }
+                    tenantStats = tenants.computeIfAbsent(tenantId, id -> new TenantStats());
+                }
+                tenantStats.count.increment();
+                tenantStats.totalTime.add(durationMs);
+                tenantStats.rows.add(rowCount);
+            }
+        }
+
+        SqlQueryShapeStats toData(long now) {
+            long countValue = count.sum();
+            long totalTimeValue = totalTime.sum();
+            SqlQueryShapeStats data = new SqlQueryShapeStats();
+            data.setId(id);
+            data.setShape(shape);
+            data.setSinceTs(sinceTs);
+            data.setCount(countValue);
+            data.setRatePerSecond(countValue * 1000.0 / Math.max(1000L, now - sinceTs));
+            data.setTotalTimeMs(totalTimeValue);
+            data.setAvgTimeMs(countValue > 0 ? (double) totalTimeValue / countValue : 0.0);
+            data.setMaxTimeMs(maxTime.get());
+            data.setRows(rows.sum());
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+                histogram.put(Long.toString(LATENCY_BUCKETS_MS[i]), latencyHistogram[i].sum());
+            }
+            histogram.put("+Inf", latencyHistogram[LATENCY_BUCKETS_MS.length].sum());
+            data.setLatencyHistogram(histogram);
+            data.setTopTenants(tenants.entrySet().stream()
+                    .map(e -> new SqlQueryTenantStats(e.getKey(), e.getValue().count.sum(), e.getValue().totalTime.sum(), e.getValue().rows.sum()))
+                    .sorted(Comparator.comparingLong(SqlQueryTenantStats::getTotalTimeMs).reversed())
+                    .limit(MAX_TOP_TENANTS)
+                    .collect(Collectors.toList()));
+            return data;
+        }
+    }
+
+    private static class TenantStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+    }
+
+    private static class ShapeMeters {
+        private final Timer timer;
+        private final DefaultCounter rows;
+
+        ShapeMeters(Timer timer, DefaultCounter rows) {
+            this.timer = timer;
+            this.rows = rows;
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.stats;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reduces SQL statements to their shape: string and numeric literals and named parameters are replaced with '?',
+ * lists of placeholders are collapsed and whitespace is normalized. Statements that differ only in the values they
+ * use have the same shape.
+ */
+public final class SqlQueryShapeNormalizer {
+
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\( ?\\?(?: ?, ?\\?)+ ?\\)");
+    private static final String COLLAPSED_PLACEHOLDER_LIST = "(?, ...)";
+
+    private SqlQueryShapeNormalizer() {
+    }
+
+    public static String normalize(String sql) {
+        int length = sql.length();
+        StringBuilder sb = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i = skipStringLiteral(sql, i + 1);
+                sb.append('?');
+            } else if (c == '"') {
+                int end = sql.indexOf('"', i + 1);
+                end = end < 0 ? length : end + 1;
+                sb.append(sql, i, end);
+                i = end;
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (sb.length() > 0 && i < length) {
+                    sb.append(' ');
+                }
+            } else if (c == ':' && i + 1 < length && sql.charAt(i + 1) == ':') {
+                sb.append("::");
+                i += 2;
+            } else if (c == ':' && i + 1 < length && isIdentifierStart(sql.charAt(i + 1))) {
+                i++;
+                while (i < length && isIdentifierPart(sql.charAt(i))) {
+                    i++;
+                }
+                sb.append('?');
+            } else if (Character.isDigit(c) && !endsWithIdentifier(sb)) {
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                sb.append('?');
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return PLACEHOLDER_LIST.matcher(sb).replaceAll(COLLAPSED_PLACEHOLDER_LIST);
+    }
+
+    private static int skipStringLiteral(String sql, int i) {
+        int length = sql.length();
+        while (i < length) {
+            if (sql.charAt(i) == '\'') {
+                if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return length;
+    }
+
+    private static boolean endsWithIdentifier(StringBuilder sb) {
+        return sb.length() > 0 && isIdentifierPart(sb.charAt(sb.length() - 1));
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+}
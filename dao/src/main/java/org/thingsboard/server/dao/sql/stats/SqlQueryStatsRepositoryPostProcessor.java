@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.stats;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records execution of Spring Data repository methods to the {@link SqlQueryStatsService}.
+ * The shape of the execution is the repository method name. Tenant is resolved from the argument
+ * annotated with {@code @Param("tenantId")} or from the argument of {@link TenantId} type.
+ */
+@Component
+@ConditionalOnProperty(prefix = "sql.query_stats", value = "enabled", havingValue = "true")
+@Slf4j
+public class SqlQueryStatsRepositoryPostProcessor implements BeanPostProcessor {
+
+    private static final int NO_TENANT_ARG = -1;
+
+    @Lazy
+    @Autowired
+    private SqlQueryStatsService queryStats;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof Repository && bean instanceof Advised) {
+            Advised advised = (Advised) bean;
+            Class<?>[] interfaces = advised.getProxiedInterfaces();
+            String repositoryName = interfaces.length > 0 ? interfaces[0].getSimpleName() : beanName;
+            advised.addAdvice(0, new RepositoryStatsInterceptor(repositoryName));
+            log.debug("[{}] Added query stats interceptor", repositoryName);
+        }
+        return bean;
+    }
+
+    private class RepositoryStatsInterceptor implements MethodInterceptor {
+
+        private final String repositoryName;
+        private final ConcurrentMap<Method, Integer> tenantArgs = new ConcurrentHashMap<>();
+
+        RepositoryStatsInterceptor(String repositoryName) {
+            this.repositoryName = repositoryName;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Method method = invocation.getMethod();
+            if (method.getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+            long startNs = System.nanoTime();
+            Object result = null;
+            try {
+                result = invocation.proceed();
+                return result;
+            } finally {
+                queryStats.recordOperation(getTenantId(method, invocation.getArguments()), repositoryName + "." + method.getName(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs), countRows(result));
+            }
+        }
+
+        private TenantId getTenantId(Method method, Object[] args) {
+            int idx = tenantArgs.computeIfAbsent(method, SqlQueryStatsRepositoryPostProcessor::findTenantArg);
+            if (idx == NO_TENANT_ARG || args[idx] == null) {
+                return null;
+            }
+            Object arg = args[idx];
+            if (arg instanceof TenantId) {
+                return (TenantId) arg;
+            }
+            return arg instanceof UUID ? new TenantId((UUID) arg) : null;
+        }
+    }
+
+    private static int findTenantArg(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < types.length; i++) {
+            if (TenantId.class.equals(types[i])) {
+                return i;
+            }
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof Param && "tenantId".equals(((Param) annotation).value()) && UUID.class.equals(types[i])) {
+                    return i;
+                }
+            }
+        }
+        return NO_TENANT_ARG;
+    }
+
+    private static int countRows(Object result) {
+        if (result == null) {
+            return 0;
+        } else if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        } else if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        } else if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        } else {
+            return 1;
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.stats;
+
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.query.SqlQueryShapeSortProperty;
+import org.thingsboard.server.common.data.query.SqlQueryShapeStats;
+
+import java.util.List;
+
+public interface SqlQueryStatsService {
+
+    boolean isEnabled();
+
+    /**
+     * Records execution of the SQL statement under its normalized shape.
+     *
+     * @param tenantId tenant the statement was executed for or {@code null} if unknown
+     */
+    void recordQuery(TenantId tenantId, String query, long durationMs, int rows);
+
+    /**
+     * Records execution of the named operation (repository method, batch save) that has no SQL text available.
+     *
+     * @param tenantId tenant the operation was executed for or {@code null} if unknown
+     */
+    void recordOperation(TenantId tenantId, String operation, long durationMs, int rows);
+
+    List<SqlQueryShapeStats> getTopShapes(SqlQueryShapeSortProperty sortProperty, int limit);
+
+    void reset();
+
+}
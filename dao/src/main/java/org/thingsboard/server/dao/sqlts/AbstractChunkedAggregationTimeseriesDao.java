@@ -36,7 +36,11 @@ import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
 import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
+import org.thingsboard.server.dao.sql.stats.SqlQueryStatsService;
 import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
+import org.thingsboard.server.dao.sqlts.rollup.TsRollupAggregate;
+import org.thingsboard.server.dao.sqlts.rollup.TsRollupLevel;
+import org.thingsboard.server.dao.sqlts.rollup.TsRollupService;
 import org.thingsboard.server.dao.sqlts.ts.TsKvRepository;
 import org.thingsboard.server.dao.timeseries.TimeseriesDao;
 
@@ -56,10 +60,16 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     @Autowired
     protected InsertTsRepository<TsKvEntity> insertRepository;
 
+    @Autowired(required = false)
+    protected TsRollupService rollupService;
+
     protected TbSqlBlockingQueueWrapper<TsKvEntity> tsQueue;
     @Autowired
     private StatsFactory statsFactory;
 
+    @Autowired
+    private SqlQueryStatsService queryStats;
+
     @PostConstruct
     protected void init() {
         TbSqlBlockingQueueParams tsParams = TbSqlBlockingQueueParams.builder()
@@ -72,7 +82,7 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
                 .build();
 
         Function<TsKvEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
-        tsQueue = new TbSqlBlockingQueueWrapper<>(tsParams, hashcodeFunction, tsBatchThreads, statsFactory);
+        tsQueue = new TbSqlBlockingQueueWrapper<>(tsParams, hashcodeFunction, tsBatchThreads, statsFactory, queryStats);
         tsQueue.init(logExecutor, v -> insertRepository.saveOrUpdate(v),
                 Comparator.comparing((Function<TsKvEntity, UUID>) AbstractTsKvEntity::getEntityId)
                         .thenComparing(AbstractTsKvEntity::getKey)
@@ -90,11 +100,17 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     @Override
     public ListenableFuture<Void> remove(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
         return service.submit(() -> {
-            tsKvRepository.delete(
+            Integer keyId = getOrSaveKeyId(query.getKey());
+            Runnable removeRawData = () -> tsKvRepository.delete(
                     entityId.getId(),
-                    getOrSaveKeyId(query.getKey()),
+                    keyId,
                     query.getStartTs(),
                     query.getEndTs());
+            if (rollupService != null) {
+                rollupService.remove(entityId.getId(), keyId, query.getStartTs(), query.getEndTs(), removeRawData);
+            } else {
+                removeRawData.run();
+            }
             return null;
         });
     }
@@ -119,6 +135,10 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         if (query.getAggregation() == Aggregation.NONE) {
             return findAllAsyncWithLimit(entityId, query);
         } else {
+            TsRollupLevel rollupLevel = rollupService != null ? rollupService.getLevel(query) : null;
+            if (rollupLevel != null) {
+                return findAllAsyncWithRollup(entityId, query, rollupLevel);
+            }
             long stepTs = query.getStartTs();
             List<ListenableFuture<Optional<TsKvEntry>>> futures = new ArrayList<>();
             while (stepTs < query.getEndTs()) {
@@ -146,19 +166,55 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         return Futures.immediateFuture(DaoUtil.convertDataList(tsKvEntities));
     }
 
+    /**
+     * Intervals that are already covered by the rollups are merged from the rollup buckets by a single query,
+     * the most recent intervals and the ones that can't be served from the rollups are aggregated from the raw data.
+     */
+    private ListenableFuture<List<TsKvEntry>> findAllAsyncWithRollup(EntityId entityId, ReadTsKvQuery query, TsRollupLevel level) {
+        long interval = query.getInterval();
+        long rollupEndTs = Math.min(query.getEndTs(), rollupService.getRollupEndTs());
+        if (rollupEndTs > query.getStartTs()) {
+            rollupEndTs = query.getStartTs() + (rollupEndTs - query.getStartTs()) / interval * interval;
+        }
+        final long rollupEndTsFinal = rollupEndTs;
+        ListenableFuture<Map<Long, TsRollupAggregate>> aggregatesFuture = rollupEndTs > query.getStartTs() ?
+                service.submit(() -> rollupService.findAggregates(entityId.getId(), getOrSaveKeyId(query.getKey()), level,
+                        query.getStartTs(), rollupEndTsFinal, interval)) :
+                Futures.immediateFuture(Collections.emptyMap());
+        return Futures.transformAsync(aggregatesFuture, aggregates -> {
+            List<ListenableFuture<Optional<TsKvEntry>>> futures = new ArrayList<>();
+            long stepTs = query.getStartTs();
+            while (stepTs < query.getEndTs()) {
+                long startTs = stepTs;
+                long endTs = stepTs + interval;
+                long ts = startTs + (endTs - startTs) / 2;
+                TsRollupAggregate aggregate = aggregates.get(startTs);
+                if (endTs > rollupEndTsFinal || (aggregate != null && !aggregate.isSupported(query.getAggregation()))) {
+                    futures.add(findAndAggregateAsync(entityId, query.getKey(), startTs, endTs, ts, query.getAggregation()));
+                } else if (aggregate != null) {
+                    futures.add(Futures.immediateFuture(toTsKvEntry(aggregate.toTsKvEntity(query.getAggregation()), entityId, query.getKey(), ts)));
+                }
+                stepTs = endTs;
+            }
+            return getTskvEntriesFuture(Futures.allAsList(futures));
+        }, MoreExecutors.directExecutor());
+    }
+
     private ListenableFuture<Optional<TsKvEntry>> findAndAggregateAsync(EntityId entityId, String key, long startTs, long endTs, long ts, Aggregation aggregation) {
         List<CompletableFuture<TsKvEntity>> entitiesFutures = new ArrayList<>();
         switchAggregation(entityId, key, startTs, endTs, aggregation, entitiesFutures);
-        return Futures.transform(setFutures(entitiesFutures), entity -> {
-            if (entity != null && entity.isNotEmpty()) {
-                entity.setEntityId(entityId.getId());
-                entity.setStrKey(key);
-                entity.setTs(ts);
-                return Optional.of(DaoUtil.getData(entity));
-            } else {
-                return Optional.empty();
-            }
-        }, MoreExecutors.directExecutor());
+        return Futures.transform(setFutures(entitiesFutures), entity -> toTsKvEntry(entity, entityId, key, ts), MoreExecutors.directExecutor());
+    }
+
+    private static Optional<TsKvEntry> toTsKvEntry(TsKvEntity entity, EntityId entityId, String key, long ts) {
+        if (entity != null && entity.isNotEmpty()) {
+            entity.setEntityId(entityId.getId());
+            entity.setStrKey(key);
+            entity.setTs(ts);
+            return Optional.of(DaoUtil.getData(entity));
+        } else {
+            return Optional.empty();
+        }
     }
 
     protected void switchAggregation(EntityId entityId, String key, long startTs, long endTs, Aggregation aggregation, List<CompletableFuture<TsKvEntity>> entitiesFutures) {
@@ -15,19 +15,27 @@
  */
 package org.thingsboard.server.dao.sqlts.insert.psql;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
 import org.thingsboard.server.dao.sqlts.insert.AbstractInsertRepository;
 import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
+import org.thingsboard.server.dao.sqlts.rollup.TsRollupBucket;
+import org.thingsboard.server.dao.sqlts.rollup.TsRollupLevel;
+import org.thingsboard.server.dao.sqlts.rollup.TsRollupRepository;
 import org.thingsboard.server.dao.util.PsqlDao;
 import org.thingsboard.server.dao.util.SqlTsDao;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 @SqlTsDao
 @PsqlDao
@@ -38,6 +46,12 @@ public class PsqlInsertTsRepository extends AbstractInsertRepository implements
     private static final String INSERT_ON_CONFLICT_DO_UPDATE = "INSERT INTO ts_kv (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) VALUES (?, ?, ?, ?, ?, ?, ?, cast(? AS json)) " +
             "ON CONFLICT (entity_id, key, ts) DO UPDATE SET bool_v = ?, str_v = ?, long_v = ?, dbl_v = ?, json_v = cast(? AS json);";
 
+    @Value("${sql.ts_rollup.enabled:false}")
+    private boolean rollupEnabled;
+
+    @Autowired
+    private TsRollupRepository rollupRepository;
+
     @Override
     public void saveOrUpdate(List<TsKvEntity> entities) {
         jdbcTemplate.batchUpdate(INSERT_ON_CONFLICT_DO_UPDATE, new BatchPreparedStatementSetter() {
@@ -85,6 +99,13 @@ public class PsqlInsertTsRepository extends AbstractInsertRepository implements
                 return entities.size();
             }
         });
+        if (rollupEnabled) {
+            Set<TsRollupBucket> buckets = new TreeSet<>(TsRollupBucket.COMPARATOR);
+            for (TsKvEntity tsKvEntity : entities) {
+                buckets.add(new TsRollupBucket(tsKvEntity.getEntityId(), tsKvEntity.getKey(), TsRollupLevel.MINUTE.getBucketTs(tsKvEntity.getTs())));
+            }
+            rollupRepository.markDirty(new ArrayList<>(buckets));
+        }
     }
 
 }
@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+/**
+ * Rollup buckets merged over a single interval of the aggregation query.
+ * Sums and counts are kept separately for long and double values, so the result is built
+ * exactly as the aggregation queries of {@link org.thingsboard.server.dao.sqlts.ts.TsKvRepository} do.
+ */
+@Data
+public class TsRollupAggregate {
+
+    private long longMin;
+    private long longMax;
+    private long longSum;
+    private long longCount;
+    private double doubleMin;
+    private double doubleMax;
+    private double doubleSum;
+    private long doubleCount;
+    private long booleanCount;
+    private long strCount;
+    private long jsonCount;
+    private boolean dirty;
+
+    /**
+     * MIN and MAX of string values are not kept in rollups, so such intervals are aggregated from the raw data.
+     * So are the intervals with buckets that are not recomputed yet.
+     */
+    public boolean isSupported(Aggregation aggregation) {
+        return !dirty && (strCount == 0 || (aggregation != Aggregation.MIN && aggregation != Aggregation.MAX));
+    }
+
+    public TsKvEntity toTsKvEntity(Aggregation aggregation) {
+        switch (aggregation) {
+            case AVG:
+            case SUM:
+                return new TsKvEntity(longSum, doubleSum, longCount, doubleCount, aggregation.name());
+            case MIN:
+                return new TsKvEntity(longMin, doubleMin, longCount, doubleCount, aggregation.name());
+            case MAX:
+                return new TsKvEntity(longMax, doubleMax, longCount, doubleCount, aggregation.name());
+            case COUNT:
+                return new TsKvEntity(booleanCount, strCount, longCount, doubleCount, jsonCount);
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+}
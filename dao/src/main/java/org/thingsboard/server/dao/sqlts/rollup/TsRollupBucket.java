@@ -0,0 +1,37 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import lombok.Data;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+@Data
+public class TsRollupBucket {
+
+    /**
+     * Orders the buckets the same way in every transaction to avoid deadlocks between concurrent updates.
+     */
+    public static final Comparator<TsRollupBucket> COMPARATOR = Comparator.comparing(TsRollupBucket::getEntityId)
+            .thenComparingInt(TsRollupBucket::getKey)
+            .thenComparingLong(TsRollupBucket::getTs);
+
+    private final UUID entityId;
+    private final int key;
+    private final long ts;
+
+}
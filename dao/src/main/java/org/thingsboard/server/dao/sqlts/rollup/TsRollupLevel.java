@@ -0,0 +1,68 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bucket sizes of the timeseries rollups. Buckets are aligned to the epoch (UTC).
+ * Each level except the first one is computed from the buckets of the previous level.
+ */
+public enum TsRollupLevel {
+
+    MINUTE(0, TimeUnit.MINUTES.toMillis(1)),
+    HOUR(1, TimeUnit.HOURS.toMillis(1)),
+    DAY(2, TimeUnit.DAYS.toMillis(1));
+
+    @Getter
+    private final int id;
+    @Getter
+    private final long bucketMs;
+
+    TsRollupLevel(int id, long bucketMs) {
+        this.id = id;
+        this.bucketMs = bucketMs;
+    }
+
+    public long getBucketTs(long ts) {
+        return ts - Math.floorMod(ts, bucketMs);
+    }
+
+    public boolean isAligned(long ts) {
+        return Math.floorMod(ts, bucketMs) == 0;
+    }
+
+    public TsRollupLevel getSourceLevel() {
+        return this == MINUTE ? null : values()[ordinal() - 1];
+    }
+
+    /**
+     * Returns the coarsest level which buckets fit into every interval of the aggregation query.
+     */
+    public static TsRollupLevel forInterval(long startTs, long interval) {
+        TsRollupLevel[] levels = values();
+        for (int i = levels.length - 1; i >= 0; i--) {
+            TsRollupLevel level = levels[i];
+            if (interval % level.bucketMs == 0 && level.isAligned(startTs)) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.server.dao.util.PsqlDao;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+@SqlTsDao
+@PsqlDao
+@Repository
+public class TsRollupRepository {
+
+    private static final String INSERT_START_TS = "INSERT INTO ts_rollup_start (start_ts) SELECT ? WHERE NOT EXISTS (SELECT 1 FROM ts_rollup_start);";
+
+    private static final String SELECT_START_TS = "SELECT MIN(start_ts) FROM ts_rollup_start;";
+
+    private static final String INSERT_DIRTY = "INSERT INTO ts_rollup_dirty (entity_id, key, ts, version) VALUES (?, ?, ?, 0) " +
+            "ON CONFLICT (entity_id, key, ts) DO UPDATE SET version = ts_rollup_dirty.version + 1;";
+
+    private static final String CLAIM_DIRTY = "UPDATE ts_rollup_dirty d SET claimed_until = ? FROM " +
+            "(SELECT entity_id, key, ts FROM ts_rollup_dirty WHERE claimed_until < ? LIMIT ? FOR UPDATE SKIP LOCKED) c " +
+            "WHERE d.entity_id = c.entity_id AND d.key = c.key AND d.ts = c.ts RETURNING d.entity_id, d.key, d.ts, d.version;";
+
+    private static final String RELEASE_DIRTY = "UPDATE ts_rollup_dirty SET claimed_until = 0 WHERE entity_id = ? AND key = ? AND ts = ?;";
+
+    private static final String SELECT_DIRTY_TS = "SELECT ts FROM ts_rollup_dirty WHERE entity_id = ? AND key = ? AND ts >= ? AND ts < ?;";
+
+    private static final String DELETE_DIRTY = "DELETE FROM ts_rollup_dirty WHERE entity_id = ? AND key = ? AND ts = ? AND version = ?;";
+
+    private static final String DELETE_BUCKET = "DELETE FROM ts_rollup WHERE entity_id = ? AND key = ? AND level = ? AND ts = ?;";
+
+    private static final String ON_CONFLICT_DO_UPDATE = " ON CONFLICT (entity_id, key, level, ts) DO UPDATE SET " +
+            "long_min = EXCLUDED.long_min, long_max = EXCLUDED.long_max, long_sum = EXCLUDED.long_sum, long_cnt = EXCLUDED.long_cnt, " +
+            "dbl_min = EXCLUDED.dbl_min, dbl_max = EXCLUDED.dbl_max, dbl_sum = EXCLUDED.dbl_sum, dbl_cnt = EXCLUDED.dbl_cnt, " +
+            "bool_cnt = EXCLUDED.bool_cnt, str_cnt = EXCLUDED.str_cnt, json_cnt = EXCLUDED.json_cnt;";
+
+    private static final String INSERT_FROM_TS_KV = "INSERT INTO ts_rollup (entity_id, key, level, ts, " +
+            "long_min, long_max, long_sum, long_cnt, dbl_min, dbl_max, dbl_sum, dbl_cnt, bool_cnt, str_cnt, json_cnt) " +
+            "SELECT entity_id, key, ?, ?, MIN(long_v), MAX(long_v), SUM(long_v), COUNT(long_v), " +
+            "MIN(dbl_v), MAX(dbl_v), SUM(dbl_v), COUNT(dbl_v), COUNT(bool_v), COUNT(str_v), COUNT(json_v) " +
+            "FROM ts_kv WHERE entity_id = ? AND key = ? AND ts >= ? AND ts < ? GROUP BY entity_id, key" + ON_CONFLICT_DO_UPDATE;
+
+    private static final String INSERT_FROM_ROLLUP = "INSERT INTO ts_rollup (entity_id, key, level, ts, " +
+            "long_min, long_max, long_sum, long_cnt, dbl_min, dbl_max, dbl_sum, dbl_cnt, bool_cnt, str_cnt, json_cnt) " +
+            "SELECT entity_id, key, ?, ?, MIN(long_min), MAX(long_max), SUM(long_sum), SUM(long_cnt), " +
+            "MIN(dbl_min), MAX(dbl_max), SUM(dbl_sum), SUM(dbl_cnt), SUM(bool_cnt), SUM(str_cnt), SUM(json_cnt) " +
+            "FROM ts_rollup WHERE entity_id = ? AND key = ? AND level = ? AND ts >= ? AND ts < ? GROUP BY entity_id, key" + ON_CONFLICT_DO_UPDATE;
+
+    private static final String DELETE_RANGE = "DELETE FROM ts_rollup WHERE entity_id = ? AND key = ? AND level = ? AND ts >= ? AND ts + ? <= ?;";
+
+    private static final String FIND_AGGREGATES = "SELECT (ts - ?) / ? AS idx, " +
+            "MIN(COALESCE(long_min, 9223372036854775807)), MAX(COALESCE(long_max, -9223372036854775807)), " +
+            "SUM(COALESCE(long_sum, 0)), SUM(long_cnt), " +
+            "MIN(COALESCE(dbl_min, 1.79769E+308)), MAX(COALESCE(dbl_max, -1.79769E+308)), " +
+            "SUM(COALESCE(dbl_sum, 0.0)), SUM(dbl_cnt), " +
+            "SUM(bool_cnt), SUM(str_cnt), SUM(json_cnt) " +
+            "FROM ts_rollup WHERE entity_id = ? AND key = ? AND level = ? AND ts >= ? AND ts < ? GROUP BY idx;";
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    protected TransactionTemplate transactionTemplate;
+
+    /**
+     * Persists the given timestamp as the beginning of rollup data unless it is already set and returns the actual value.
+     */
+    public long getOrSaveStartTs(long startTs) {
+        jdbcTemplate.update(INSERT_START_TS, startTs);
+        return jdbcTemplate.queryForObject(SELECT_START_TS, Long.class);
+    }
+
+    /**
+     * Marks the minute buckets dirty. Executed in the transaction of the caller, so the markers are committed
+     * together with the raw data they refer to.
+     */
+    public void markDirty(List<TsRollupBucket> buckets) {
+        jdbcTemplate.batchUpdate(INSERT_DIRTY, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TsRollupBucket bucket = buckets.get(i);
+                ps.setObject(1, bucket.getEntityId());
+                ps.setInt(2, bucket.getKey());
+                ps.setLong(3, bucket.getTs());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return buckets.size();
+            }
+        });
+    }
+
+    /**
+     * Claims up to the limit of dirty minute buckets that are not claimed by other nodes, so every marker is recomputed
+     * by a single node of the cluster. Markers are locked by this statement only and not for the whole recompute,
+     * so the writers of the raw data are not blocked. Claim of a node that fails to recompute expires at the given time.
+     *
+     * @return claimed minute buckets mapped to the version of their markers
+     */
+    public Map<TsRollupBucket, Long> claimDirty(int limit, long claimedUntil) {
+        Map<TsRollupBucket, Long> result = new TreeMap<>(TsRollupBucket.COMPARATOR);
+        jdbcTemplate.query(CLAIM_DIRTY, (RowCallbackHandler) rs ->
+                        result.put(new TsRollupBucket(rs.getObject(1, UUID.class), rs.getInt(2), rs.getLong(3)), rs.getLong(4)),
+                claimedUntil, System.currentTimeMillis(), limit);
+        return result;
+    }
+
+    /**
+     * @return start of the dirty minute buckets of the key within the time range, including the claimed ones
+     */
+    public List<Long> findDirtyTs(UUID entityId, int key, long startTs, long endTs) {
+        return jdbcTemplate.queryForList(SELECT_DIRTY_TS, Long.class, entityId, key, startTs, endTs);
+    }
+
+    /**
+     * Recomputes the claimed minute buckets from the raw data, followed by the hour and day buckets that contain them,
+     * and removes the markers that were not updated meanwhile. Markers updated meanwhile are released for the next flush.
+     * Buckets without source data are removed.
+     *
+     * @return number of removed markers
+     */
+    public int recompute(Map<TsRollupBucket, Long> dirty) {
+        List<TsRollupBucket> minutes = new ArrayList<>(dirty.keySet());
+        return transactionTemplate.execute(status -> {
+            List<TsRollupBucket> buckets = minutes;
+            for (TsRollupLevel level : TsRollupLevel.values()) {
+                if (level != TsRollupLevel.MINUTE) {
+                    buckets = toBuckets(level, buckets);
+                }
+                recompute(level, buckets);
+            }
+            int[] removed = jdbcTemplate.batchUpdate(DELETE_DIRTY, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    TsRollupBucket bucket = minutes.get(i);
+                    ps.setObject(1, bucket.getEntityId());
+                    ps.setInt(2, bucket.getKey());
+                    ps.setLong(3, bucket.getTs());
+                    ps.setLong(4, dirty.get(bucket));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return minutes.size();
+                }
+            });
+            jdbcTemplate.batchUpdate(RELEASE_DIRTY, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    TsRollupBucket bucket = minutes.get(i);
+                    ps.setObject(1, bucket.getEntityId());
+                    ps.setInt(2, bucket.getKey());
+                    ps.setLong(3, bucket.getTs());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return minutes.size();
+                }
+            });
+            return Arrays.stream(removed).map(r -> Math.max(r, 0)).sum();
+        });
+    }
+
+    private void recompute(TsRollupLevel level, List<TsRollupBucket> buckets) {
+        TsRollupLevel sourceLevel = level.getSourceLevel();
+        jdbcTemplate.batchUpdate(DELETE_BUCKET, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TsRollupBucket bucket = buckets.get(i);
+                ps.setObject(1, bucket.getEntityId());
+                ps.setInt(2, bucket.getKey());
+                ps.setInt(3, level.getId());
+                ps.setLong(4, bucket.getTs());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return buckets.size();
+            }
+        });
+        jdbcTemplate.batchUpdate(sourceLevel == null ? INSERT_FROM_TS_KV : INSERT_FROM_ROLLUP, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TsRollupBucket bucket = buckets.get(i);
+                int idx = 1;
+                ps.setInt(idx++, level.getId());
+                ps.setLong(idx++, bucket.getTs());
+                ps.setObject(idx++, bucket.getEntityId());
+                ps.setInt(idx++, bucket.getKey());
+                if (sourceLevel != null) {
+                    ps.setInt(idx++, sourceLevel.getId());
+                }
+                ps.setLong(idx++, bucket.getTs());
+                ps.setLong(idx, bucket.getTs() + level.getBucketMs());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return buckets.size();
+            }
+        });
+    }
+
+    /**
+     * Removes the buckets of all levels that are completely covered by the removed time range.
+     */
+    public void deleteRange(UUID entityId, int key, long startTs, long endTs) {
+        for (TsRollupLevel level : TsRollupLevel.values()) {
+            jdbcTemplate.update(DELETE_RANGE, entityId, key, level.getId(), startTs, level.getBucketMs(), endTs);
+        }
+    }
+
+    /**
+     * Merges the buckets of the level into the intervals of the aggregation query.
+     *
+     * @return aggregates mapped by the start of the interval
+     */
+    public Map<Long, TsRollupAggregate> findAggregates(UUID entityId, int key, TsRollupLevel level, long startTs, long endTs, long interval) {
+        Map<Long, TsRollupAggregate> result = new HashMap<>();
+        jdbcTemplate.query(FIND_AGGREGATES, (RowCallbackHandler) rs -> {
+            TsRollupAggregate aggregate = new TsRollupAggregate();
+            aggregate.setLongMin(rs.getLong(2));
+            aggregate.setLongMax(rs.getLong(3));
+            aggregate.setLongSum(rs.getLong(4));
+            aggregate.setLongCount(rs.getLong(5));
+            aggregate.setDoubleMin(rs.getDouble(6));
+            aggregate.setDoubleMax(rs.getDouble(7));
+            aggregate.setDoubleSum(rs.getDouble(8));
+            aggregate.setDoubleCount(rs.getLong(9));
+            aggregate.setBooleanCount(rs.getLong(10));
+            aggregate.setStrCount(rs.getLong(11));
+            aggregate.setJsonCount(rs.getLong(12));
+            result.put(startTs + rs.getLong(1) * interval, aggregate);
+        }, startTs, interval, entityId, key, level.getId(), startTs, endTs);
+        return result;
+    }
+
+    private static List<TsRollupBucket> toBuckets(TsRollupLevel level, List<TsRollupBucket> buckets) {
+        Set<TsRollupBucket> result = new TreeSet<>(TsRollupBucket.COMPARATOR);
+        for (TsRollupBucket bucket : buckets) {
+            result.add(new TsRollupBucket(bucket.getEntityId(), bucket.getKey(), level.getBucketTs(bucket.getTs())));
+        }
+        return new ArrayList<>(result);
+    }
+
+}
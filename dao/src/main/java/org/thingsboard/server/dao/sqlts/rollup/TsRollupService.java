@@ -0,0 +1,165 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.dao.util.PsqlDao;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maintains minute/hour/day MIN, MAX, SUM and COUNT rollups of the timeseries.
+ * <p>
+ * Saved and removed data points mark their minute buckets as dirty in the same transaction as the raw data.
+ * Dirty buckets are periodically recomputed from the raw data, followed by the hour and day buckets that contain them,
+ * so late and overwritten values are reflected as well. The markers are persisted, so the buckets that were dirty
+ * when a node stopped are recomputed by any other or the restarted node. Every node flushes the markers it claims,
+ * so each dirty bucket is recomputed once per cluster. Rollups are removed together with the raw data by the TTL
+ * functions and by dropping of the partitions. Rollups are available for the data saved after the rollups were
+ * enabled for the first time and are used for aggregation intervals that end before the last few flush intervals
+ * and have no dirty buckets, so late data points and a flush backlog never make the rollups stale.
+ */
+@Slf4j
+@Component
+@SqlTsDao
+@PsqlDao
+@ConditionalOnProperty(prefix = "sql.ts_rollup", value = "enabled", havingValue = "true")
+public class TsRollupService {
+
+    @Autowired
+    private TsRollupRepository rollupRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${sql.ts_rollup.flush_interval_ms:10000}")
+    private long flushIntervalMs;
+
+    @Value("${sql.ts_rollup.batch_size:1000}")
+    private int batchSize;
+
+    // claims of a node that stopped during the recompute are taken over by other nodes after this time
+    private static final int CLAIM_TTL_FLUSH_INTERVALS = 6;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile long startTs;
+
+    @PostConstruct
+    public void init() {
+        long now = System.currentTimeMillis();
+        // rollups are served starting from the first complete day
+        startTs = rollupRepository.getOrSaveStartTs(TsRollupLevel.DAY.getBucketTs(now) + TsRollupLevel.DAY.getBucketMs());
+        log.info("Timeseries rollups are available since {}", startTs);
+        scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("ts-rollup"));
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Removes the raw data together with the rollup buckets covered by the removed range
+     * and marks the partially covered buckets dirty.
+     */
+    public void remove(UUID entityId, int key, long startTs, long endTs, Runnable removeRawData) {
+        transactionTemplate.execute(status -> {
+            removeRawData.run();
+            rollupRepository.deleteRange(entityId, key, startTs, endTs);
+            rollupRepository.markDirty(Arrays.asList(
+                    new TsRollupBucket(entityId, key, TsRollupLevel.MINUTE.getBucketTs(startTs)),
+                    new TsRollupBucket(entityId, key, TsRollupLevel.MINUTE.getBucketTs(endTs - 1))));
+            return null;
+        });
+    }
+
+    /**
+     * Returns the rollup level to serve the aggregation query from or null if the query can't use rollups.
+     */
+    public TsRollupLevel getLevel(ReadTsKvQuery query) {
+        if (query.getAggregation() == null || query.getAggregation() == Aggregation.NONE || query.getStartTs() < startTs) {
+            return null;
+        }
+        return TsRollupLevel.forInterval(query.getStartTs(), query.getInterval());
+    }
+
+    /**
+     * Intervals that end after the returned timestamp are likely to have data points that are not in the rollups yet,
+     * so they are aggregated from the raw data without checking the dirty buckets.
+     */
+    public long getRollupEndTs() {
+        return System.currentTimeMillis() - 3 * flushIntervalMs;
+    }
+
+    /**
+     * Intervals with dirty buckets are returned as aggregates that are not supported, so they are aggregated from the raw data.
+     */
+    public Map<Long, TsRollupAggregate> findAggregates(UUID entityId, int key, TsRollupLevel level, long startTs, long endTs, long interval) {
+        // markers are read first: buckets recomputed meanwhile are up to date when the aggregates are read
+        List<Long> dirtyTs = rollupRepository.findDirtyTs(entityId, key, startTs, endTs);
+        Map<Long, TsRollupAggregate> result = rollupRepository.findAggregates(entityId, key, level, startTs, endTs, interval);
+        for (long ts : dirtyTs) {
+            result.computeIfAbsent(startTs + (ts - startTs) / interval * interval, intervalTs -> new TsRollupAggregate()).setDirty(true);
+        }
+        return result;
+    }
+
+    private void flush() {
+        try {
+            int recomputed = 0;
+            while (true) {
+                long claimedUntil = System.currentTimeMillis() + CLAIM_TTL_FLUSH_INTERVALS * flushIntervalMs;
+                Map<TsRollupBucket, Long> dirty = rollupRepository.claimDirty(batchSize, claimedUntil);
+                if (dirty.isEmpty()) {
+                    break;
+                }
+                int removed = rollupRepository.recompute(dirty);
+                recomputed += dirty.size();
+                // markers updated during the recompute are released for the next flush
+                if (dirty.size() < batchSize || removed == 0) {
+                    break;
+                }
+            }
+            if (recomputed > 0) {
+                log.debug("Recomputed timeseries rollups for {} minute buckets", recomputed);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to recompute timeseries rollups", e);
+        }
+    }
+
+}
@@ -26,6 +26,8 @@ CREATE INDEX IF NOT EXISTS idx_relation_to_id ON relation(relation_type_group, t
 
 CREATE INDEX IF NOT EXISTS idx_relation_from_id ON relation(relation_type_group, from_type, from_id);
 
+CREATE INDEX IF NOT EXISTS idx_alarm_propagation_alarm_id ON alarm_propagation(alarm_id);
+
 CREATE INDEX IF NOT EXISTS idx_device_customer_id ON device(tenant_id, customer_id);
 
 CREATE INDEX IF NOT EXISTS idx_device_customer_id_and_type ON device(tenant_id, customer_id, type);
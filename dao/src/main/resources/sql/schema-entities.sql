@@ -282,6 +282,13 @@ CREATE TABLE IF NOT EXISTS event (
     CONSTRAINT event_unq_key UNIQUE (tenant_id, entity_type, entity_id, event_type, event_uid)
 );
 
+CREATE TABLE IF NOT EXISTS alarm_propagation (
+    entity_id uuid NOT NULL,
+    entity_type varchar(255),
+    alarm_id uuid NOT NULL,
+    CONSTRAINT alarm_propagation_pkey PRIMARY KEY (entity_id, alarm_id)
+);
+
 CREATE TABLE IF NOT EXISTS relation (
     from_id uuid,
     from_type varchar(255),
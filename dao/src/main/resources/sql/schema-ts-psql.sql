@@ -34,6 +34,41 @@ CREATE TABLE IF NOT EXISTS ts_kv_dictionary
     CONSTRAINT ts_key_id_pkey PRIMARY KEY (key)
 );
 
+CREATE TABLE IF NOT EXISTS ts_rollup
+(
+    entity_id uuid     NOT NULL,
+    key       int      NOT NULL,
+    level     smallint NOT NULL,
+    ts        bigint   NOT NULL,
+    long_min  bigint,
+    long_max  bigint,
+    long_sum  bigint,
+    long_cnt  bigint   NOT NULL,
+    dbl_min   double precision,
+    dbl_max   double precision,
+    dbl_sum   double precision,
+    dbl_cnt   bigint   NOT NULL,
+    bool_cnt  bigint   NOT NULL,
+    str_cnt   bigint   NOT NULL,
+    json_cnt  bigint   NOT NULL,
+    CONSTRAINT ts_rollup_pkey PRIMARY KEY (entity_id, key, level, ts)
+);
+
+CREATE TABLE IF NOT EXISTS ts_rollup_start
+(
+    start_ts bigint NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS ts_rollup_dirty
+(
+    entity_id uuid   NOT NULL,
+    key       int    NOT NULL,
+    ts        bigint NOT NULL,
+    version   bigint NOT NULL,
+    claimed_until bigint NOT NULL DEFAULT 0,
+    CONSTRAINT ts_rollup_dirty_pkey PRIMARY KEY (entity_id, key, ts)
+);
+
 CREATE OR REPLACE PROCEDURE drop_partitions_by_max_ttl(IN partition_type varchar, IN system_ttl bigint, INOUT deleted bigint)
     LANGUAGE plpgsql AS
 $$
@@ -197,6 +232,12 @@ BEGIN
                         END IF;
                     END IF;
                 END IF;
+                DELETE
+                FROM ts_rollup
+                WHERE ts < (EXTRACT(EPOCH FROM make_date(partition_by_max_ttl_year::integer,
+                                                         COALESCE(partition_by_max_ttl_month, '1')::integer,
+                                                         COALESCE(partition_by_max_ttl_day, '1')::integer)::timestamp) *
+                            1000)::bigint;
             END IF;
         END IF;
     END IF;
@@ -236,6 +277,19 @@ BEGIN
 END;
 $$ LANGUAGE plpgsql;
 
+CREATE OR REPLACE FUNCTION delete_records_from_ts_rollup(entity_ids varchar, ttl bigint) RETURNS void AS
+$$
+BEGIN
+    -- buckets that contain the ttl are recomputed from the remaining data
+    EXECUTE format(
+            'INSERT INTO ts_rollup_dirty (entity_id, key, ts, version) SELECT DISTINCT entity_id, key, %L::bigint, 0 FROM ts_rollup WHERE entity_id IN (%s) AND level = 2 AND ts < %L::bigint AND ts + 86400000 > %L::bigint ON CONFLICT (entity_id, key, ts) DO UPDATE SET version = ts_rollup_dirty.version + 1',
+            ttl - mod(ttl, 60000), entity_ids, ttl, ttl);
+    EXECUTE format(
+            'DELETE FROM ts_rollup WHERE entity_id IN (%s) AND ((level = 0 AND ts <= %L::bigint) OR (level = 1 AND ts <= %L::bigint) OR (level = 2 AND ts <= %L::bigint))',
+            entity_ids, ttl - 60000, ttl - 3600000, ttl - 86400000);
+END;
+$$ LANGUAGE plpgsql;
+
 CREATE OR REPLACE FUNCTION delete_device_records_from_ts_kv(tenant_id uuid, customer_id uuid, ttl bigint,
                                                             OUT deleted bigint) AS
 $$
@@ -243,6 +297,7 @@ BEGIN
     EXECUTE format(
             'WITH deleted AS (DELETE FROM ts_kv WHERE entity_id IN (SELECT device.id as entity_id FROM device WHERE tenant_id = %L and customer_id = %L) AND ts < %L::bigint RETURNING *) SELECT count(*) FROM deleted',
             tenant_id, customer_id, ttl) into deleted;
+    PERFORM delete_records_from_ts_rollup(format('SELECT device.id as entity_id FROM device WHERE tenant_id = %L and customer_id = %L', tenant_id, customer_id), ttl);
 END;
 $$ LANGUAGE plpgsql;
 
@@ -253,6 +308,7 @@ BEGIN
     EXECUTE format(
             'WITH deleted AS (DELETE FROM ts_kv WHERE entity_id IN (SELECT asset.id as entity_id FROM asset WHERE tenant_id = %L and customer_id = %L) AND ts < %L::bigint RETURNING *) SELECT count(*) FROM deleted',
             tenant_id, customer_id, ttl) into deleted;
+    PERFORM delete_records_from_ts_rollup(format('SELECT asset.id as entity_id FROM asset WHERE tenant_id = %L and customer_id = %L', tenant_id, customer_id), ttl);
 END;
 $$ LANGUAGE plpgsql;
 
@@ -263,6 +319,7 @@ BEGIN
     EXECUTE format(
             'WITH deleted AS (DELETE FROM ts_kv WHERE entity_id IN (SELECT customer.id as entity_id FROM customer WHERE tenant_id = %L and id = %L) AND ts < %L::bigint RETURNING *) SELECT count(*) FROM deleted',
             tenant_id, customer_id, ttl) into deleted;
+    PERFORM delete_records_from_ts_rollup(format('SELECT customer.id as entity_id FROM customer WHERE tenant_id = %L and id = %L', tenant_id, customer_id), ttl);
 END;
 $$ LANGUAGE plpgsql;
 
@@ -0,0 +1,199 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.alarm;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.alarm.Alarm;
+import org.thingsboard.server.common.data.alarm.AlarmSeverity;
+import org.thingsboard.server.common.data.alarm.AlarmStatus;
+import org.thingsboard.server.common.data.id.AlarmId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.dao.tenant.TenantDao;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class LatestAlarmCacheTest {
+
+    private static final String TYPE = "High Temperature";
+
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    private AlarmDao alarmDao;
+    private TenantDao tenantDao;
+    private LatestAlarmCache cache;
+    private AtomicInteger loads;
+
+    @Before
+    public void setUp() {
+        alarmDao = mock(AlarmDao.class);
+        tenantDao = mock(TenantDao.class);
+        given(alarmDao.findLatestActiveAlarms(any(), any())).willReturn(new PageData<>());
+        given(tenantDao.findTenantsIds(any())).willReturn(new PageData<>(Collections.singletonList(tenantId), 1, 1, false));
+        cache = new LatestAlarmCache(alarmDao, tenantDao);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 1000L);
+        ReflectionTestUtils.setField(cache, "ttlMs", TimeUnit.MINUTES.toMillis(1));
+        cache.init();
+        loads = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    public void givenRemoteOriginator_whenFindLatest_thenAlwaysLoaded() throws Exception {
+        cache.onPartitionsChange((tenantId, entityId) -> false, tenantId -> false);
+
+        findLatest(loader(null));
+        findLatest(loader(null));
+
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    public void givenLocalOriginator_whenFindLatest_thenLoadedOnceAndCopyReturned() throws Exception {
+        cache.onPartitionsChange((tenantId, entityId) -> true, tenantId -> true);
+        Alarm alarm = newAlarm(AlarmStatus.ACTIVE_UNACK);
+
+        Alarm first = findLatest(loader(alarm));
+        Alarm second = findLatest(loader(alarm));
+
+        assertThat(loads.get(), is(1));
+        assertThat(second.getId(), is(alarm.getId()));
+        assertThat(second, not(sameInstance(first)));
+    }
+
+    @Test
+    public void givenCachedEntry_whenAlarmCreatedUpdatedAndDeleted_thenEntryFollowsWrites() throws Exception {
+        cache.onPartitionsChange((tenantId, entityId) -> true, tenantId -> true);
+        assertThat(findLatest(loader(null)), nullValue());
+
+        Alarm alarm = newAlarm(AlarmStatus.ACTIVE_UNACK);
+        cache.onCreated(alarm);
+        assertThat(findLatest(loader(null)).getId(), is(alarm.getId()));
+
+        Alarm cleared = new Alarm(alarm);
+        cleared.setStatus(AlarmStatus.CLEARED_UNACK);
+        cache.onUpdated(cleared);
+        assertThat(findLatest(loader(null)).getStatus(), is(AlarmStatus.CLEARED_UNACK));
+
+        cache.onUpdated(newAlarm(AlarmStatus.ACTIVE_ACK));
+        assertThat(findLatest(loader(null)).getId(), is(alarm.getId()));
+        assertThat(loads.get(), is(1));
+
+        cache.onDeleted(alarm);
+        findLatest(loader(null));
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    public void givenActiveAlarms_whenPartitionsAssigned_thenLocalAlarmsLoaded() throws Exception {
+        Alarm alarm = newAlarm(AlarmStatus.ACTIVE_UNACK);
+        given(alarmDao.findLatestActiveAlarms(eq(tenantId), any())).willReturn(new PageData<>(Collections.singletonList(alarm), 1, 1, false));
+
+        cache.onPartitionsChange((tenantId, entityId) -> true, tenantId -> true);
+
+        // a failing loader does not populate the cache, so the alarm can only come from the initial load
+        await().atMost(5, TimeUnit.SECONDS).ignoreExceptions()
+                .until(() -> findLatest(() -> Futures.immediateFailedFuture(new IllegalStateException("Not loaded"))).getId().equals(alarm.getId()));
+    }
+
+    @Test
+    public void givenRemoteTenant_whenPartitionsAssigned_thenItsAlarmsNotLoaded() throws Exception {
+        cache.onPartitionsChange((tenantId, entityId) -> true, tenantId -> false);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> verify(tenantDao).findTenantsIds(any()));
+        verify(alarmDao, never()).findLatestActiveAlarms(any(), any());
+    }
+
+    @Test
+    public void givenStaleEntry_whenLoadedFromDatabase_thenEntryReplaced() throws Exception {
+        cache.onPartitionsChange((tenantId, entityId) -> true, tenantId -> true);
+        Alarm alarm = newAlarm(AlarmStatus.ACTIVE_UNACK);
+        cache.onCreated(alarm);
+
+        Alarm cleared = new Alarm(alarm);
+        cleared.setStatus(AlarmStatus.CLEARED_UNACK);
+        cache.onLoaded(tenantId, deviceId, TYPE, cleared);
+
+        assertThat(findLatest(loader(null)).getStatus(), is(AlarmStatus.CLEARED_UNACK));
+        assertThat(loads.get(), is(0));
+    }
+
+    @Test
+    public void givenAlarmClearedOnAnotherNode_whenInvalidated_thenClearedAlarmLoaded() throws Exception {
+        cache.onPartitionsChange((tenantId, entityId) -> true, tenantId -> true);
+        Alarm alarm = newAlarm(AlarmStatus.ACTIVE_UNACK);
+        cache.onCreated(alarm);
+
+        Alarm cleared = new Alarm(alarm);
+        cleared.setStatus(AlarmStatus.CLEARED_UNACK);
+        cache.invalidate(tenantId, deviceId, TYPE);
+
+        assertThat(findLatest(loader(cleared)).getStatus(), is(AlarmStatus.CLEARED_UNACK));
+        assertThat(loads.get(), is(1));
+    }
+
+    private Alarm findLatest(Supplier<ListenableFuture<Alarm>> loader) throws Exception {
+        return cache.findLatest(tenantId, deviceId, TYPE, loader).get();
+    }
+
+    private Supplier<ListenableFuture<Alarm>> loader(Alarm alarm) {
+        return () -> {
+            loads.incrementAndGet();
+            return Futures.immediateFuture(alarm);
+        };
+    }
+
+    private Alarm newAlarm(AlarmStatus status) {
+        Alarm alarm = new Alarm(new AlarmId(UUID.randomUUID()));
+        alarm.setTenantId(tenantId);
+        alarm.setOriginator(deviceId);
+        alarm.setType(TYPE);
+        alarm.setSeverity(AlarmSeverity.CRITICAL);
+        alarm.setStatus(status);
+        alarm.setStartTs(System.currentTimeMillis());
+        return alarm;
+    }
+
+}
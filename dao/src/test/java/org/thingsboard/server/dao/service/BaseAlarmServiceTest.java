@@ -20,6 +20,8 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.thingsboard.server.common.data.Customer;
 import org.thingsboard.server.common.data.Device;
 import org.thingsboard.server.common.data.Tenant;
@@ -32,6 +34,7 @@ import org.thingsboard.server.common.data.alarm.AlarmStatus;
 import org.thingsboard.server.common.data.asset.Asset;
 import org.thingsboard.server.common.data.id.AssetId;
 import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.SortOrder;
@@ -45,7 +48,9 @@ import org.thingsboard.server.common.data.query.EntityKey;
 import org.thingsboard.server.common.data.query.EntityKeyType;
 import org.thingsboard.server.common.data.relation.EntityRelation;
 import org.thingsboard.server.common.data.relation.RelationTypeGroup;
+import org.thingsboard.server.dao.alarm.AlarmDao;
 import org.thingsboard.server.dao.alarm.AlarmOperationResult;
+import org.thingsboard.server.dao.alarm.LatestAlarmCache;
 import org.thingsboard.common.util.JacksonUtil;
 
 import java.util.Arrays;
@@ -58,6 +63,12 @@ public abstract class BaseAlarmServiceTest extends AbstractServiceTest {
     public static final String TEST_ALARM = "TEST_ALARM";
     private TenantId tenantId;
 
+    @Autowired
+    private AlarmDao alarmDao;
+
+    @Autowired
+    private LatestAlarmCache latestAlarmCache;
+
     @Before
     public void before() {
         Tenant tenant = new Tenant();
@@ -111,6 +122,41 @@ public abstract class BaseAlarmServiceTest extends AbstractServiceTest {
         Assert.assertEquals(created, fetched);
     }
 
+    @Test
+    public void testCreateAlarmAfterClearOutsideOfLatestAlarmCache() throws ExecutionException, InterruptedException {
+        ReflectionTestUtils.setField(latestAlarmCache, "enabled", true);
+        latestAlarmCache.init();
+        try {
+            latestAlarmCache.onPartitionsChange((tenantId, entityId) -> true, tenantId -> false);
+            AssetId originatorId = new AssetId(Uuids.timeBased());
+            Alarm created = alarmService.createOrUpdateAlarm(Alarm.builder().tenantId(tenantId).originator(originatorId)
+                    .type(TEST_ALARM)
+                    .severity(AlarmSeverity.CRITICAL).status(AlarmStatus.ACTIVE_UNACK)
+                    .startTs(System.currentTimeMillis()).build()).getAlarm();
+            Assert.assertEquals(created.getId(), alarmService.findLatestByOriginatorAndType(tenantId, originatorId, TEST_ALARM).get().getId());
+
+            // cleared by another node, the cache of this node still holds the active alarm
+            Alarm cleared = alarmDao.findById(tenantId, created.getUuidId());
+            cleared.setStatus(AlarmStatus.CLEARED_UNACK);
+            cleared.setClearTs(System.currentTimeMillis());
+            alarmDao.save(tenantId, cleared);
+            Assert.assertEquals(AlarmStatus.ACTIVE_UNACK, alarmService.findLatestByOriginatorAndType(tenantId, originatorId, TEST_ALARM).get().getStatus());
+
+            Alarm next = alarmService.createOrUpdateAlarm(Alarm.builder().tenantId(tenantId).originator(originatorId)
+                    .type(TEST_ALARM)
+                    .severity(AlarmSeverity.MAJOR).status(AlarmStatus.ACTIVE_UNACK)
+                    .startTs(System.currentTimeMillis() + 1).build()).getAlarm();
+
+            Assert.assertNotEquals(created.getId(), next.getId());
+            Assert.assertEquals(AlarmStatus.ACTIVE_UNACK, next.getStatus());
+            Assert.assertEquals(AlarmStatus.CLEARED_UNACK, alarmService.findAlarmByIdAsync(tenantId, created.getId()).get().getStatus());
+            Assert.assertEquals(next.getId(), alarmService.findLatestByOriginatorAndType(tenantId, originatorId, TEST_ALARM).get().getId());
+        } finally {
+            latestAlarmCache.destroy();
+            ReflectionTestUtils.setField(latestAlarmCache, "enabled", false);
+        }
+    }
+
     @Test
     public void testFindAlarm() throws ExecutionException, InterruptedException {
         AssetId parentId = new AssetId(Uuids.timeBased());
@@ -612,14 +658,11 @@ public abstract class BaseAlarmServiceTest extends AbstractServiceTest {
         Assert.assertEquals(1, alarms.getData().size());
         Assert.assertEquals(created, alarms.getData().get(0));
 
-        List<EntityRelation> toAlarmRelations = relationService.findByTo(tenantId, created.getId(), RelationTypeGroup.ALARM);
-        Assert.assertEquals(1, toAlarmRelations.size());
+        List<EntityId> propagationEntityIds = alarmDao.findAlarmPropagationEntityIds(tenantId, created.getId());
+        Assert.assertEquals(Collections.singletonList(parentId), propagationEntityIds);
 
-        List<EntityRelation> fromChildRelations = relationService.findByFrom(tenantId, childId, RelationTypeGroup.ALARM);
-        Assert.assertEquals(0, fromChildRelations.size());
-
-        List<EntityRelation> fromParentRelations = relationService.findByFrom(tenantId, parentId, RelationTypeGroup.ALARM);
-        Assert.assertEquals(1, fromParentRelations.size());
+        List<EntityRelation> toAlarmRelations = relationService.findByTo(tenantId, created.getId(), RelationTypeGroup.ALARM);
+        Assert.assertEquals(0, toAlarmRelations.size());
 
 
         Assert.assertTrue("Alarm was not deleted when expected", alarmService.deleteAlarm(tenantId, created.getId()).isSuccessful());
@@ -647,14 +690,74 @@ public abstract class BaseAlarmServiceTest extends AbstractServiceTest {
         Assert.assertNotNull(alarms.getData());
         Assert.assertEquals(0, alarms.getData().size());
 
-        toAlarmRelations = relationService.findByTo(tenantId, created.getId(), RelationTypeGroup.ALARM);
-        Assert.assertEquals(0, toAlarmRelations.size());
+        propagationEntityIds = alarmDao.findAlarmPropagationEntityIds(tenantId, created.getId());
+        Assert.assertEquals(0, propagationEntityIds.size());
+
+    }
+
+    @Test
+    public void testDeleteAlarmPropagationOnEntityDelete() throws ExecutionException, InterruptedException {
+        Asset parent = new Asset();
+        parent.setTenantId(tenantId);
+        parent.setName("Parent asset");
+        parent.setType("default");
+        parent = assetService.saveAsset(parent);
+        AssetId childId = new AssetId(Uuids.timeBased());
+
+        EntityRelation relation = new EntityRelation(parent.getId(), childId, EntityRelation.CONTAINS_TYPE);
+
+        Assert.assertTrue(relationService.saveRelationAsync(tenantId, relation).get());
+
+        Alarm alarm = Alarm.builder().tenantId(tenantId).originator(childId)
+                .type(TEST_ALARM)
+                .propagate(true)
+                .severity(AlarmSeverity.CRITICAL).status(AlarmStatus.ACTIVE_UNACK)
+                .startTs(System.currentTimeMillis()).build();
+
+        Alarm created = alarmService.createOrUpdateAlarm(alarm).getAlarm();
+
+        List<EntityId> propagationEntityIds = alarmDao.findAlarmPropagationEntityIds(tenantId, created.getId());
+        Assert.assertEquals(Collections.singletonList(parent.getId()), propagationEntityIds);
+
+        assetService.deleteAsset(tenantId, parent.getId());
+
+        propagationEntityIds = alarmDao.findAlarmPropagationEntityIds(tenantId, created.getId());
+        Assert.assertEquals(0, propagationEntityIds.size());
+        Assert.assertNotNull(alarmService.findAlarmByIdAsync(tenantId, created.getId()).get());
+    }
+
+    @Test
+    public void testTogglePropagateOffAndOn() throws ExecutionException, InterruptedException {
+        AssetId parentId = new AssetId(Uuids.timeBased());
+        AssetId childId = new AssetId(Uuids.timeBased());
+
+        EntityRelation relation = new EntityRelation(parentId, childId, EntityRelation.CONTAINS_TYPE);
 
-        fromChildRelations = relationService.findByFrom(tenantId, childId, RelationTypeGroup.ALARM);
-        Assert.assertEquals(0, fromChildRelations.size());
+        Assert.assertTrue(relationService.saveRelationAsync(tenantId, relation).get());
 
-        fromParentRelations = relationService.findByFrom(tenantId, childId, RelationTypeGroup.ALARM);
-        Assert.assertEquals(0, fromParentRelations.size());
+        Alarm alarm = Alarm.builder().tenantId(tenantId).originator(childId)
+                .type(TEST_ALARM)
+                .propagate(true)
+                .severity(AlarmSeverity.CRITICAL).status(AlarmStatus.ACTIVE_UNACK)
+                .startTs(System.currentTimeMillis()).build();
+
+        Alarm created = alarmService.createOrUpdateAlarm(alarm).getAlarm();
+        Assert.assertEquals(Collections.singletonList(parentId), alarmDao.findAlarmPropagationEntityIds(tenantId, created.getId()));
+
+        // the service never turns propagation off, so the flag is reset in the alarm table directly
+        created.setPropagate(false);
+        created = alarmDao.save(tenantId, created);
+        Assert.assertFalse(created.isPropagate());
+
+        Alarm update = Alarm.builder().tenantId(tenantId).originator(childId)
+                .type(TEST_ALARM)
+                .propagate(true)
+                .severity(AlarmSeverity.MAJOR).status(AlarmStatus.ACTIVE_UNACK)
+                .startTs(System.currentTimeMillis()).build();
 
+        AlarmOperationResult result = alarmService.createOrUpdateAlarm(update);
+        Assert.assertEquals(created.getId(), result.getAlarm().getId());
+        Assert.assertTrue(result.getAlarm().isPropagate());
+        Assert.assertEquals(Collections.singletonList(parentId), alarmDao.findAlarmPropagationEntityIds(tenantId, created.getId()));
     }
 }
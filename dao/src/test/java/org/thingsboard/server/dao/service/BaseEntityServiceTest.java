@@ -75,8 +75,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -633,6 +635,65 @@ public abstract class BaseEntityServiceTest extends AbstractServiceTest {
         deviceService.deleteDevicesByTenantId(tenantId);
     }
 
+    @Test
+    public void testFindEntityDataByQueryWithKeysetPagination() throws ExecutionException, InterruptedException {
+        List<ListenableFuture<List<Void>>> attributeFutures = new ArrayList<>();
+        Set<EntityId> nullLabelIds = new HashSet<>();
+        for (int i = 0; i < 53; i++) {
+            Device device = new Device();
+            device.setTenantId(tenantId);
+            device.setName("Device" + i);
+            device.setType("default");
+            // duplicated and missing values to check the order of the entities with equal sort values
+            device.setLabel(i % 5 == 0 ? null : "testLabel" + (i % 7));
+            Device savedDevice = deviceService.saveDevice(device);
+            if (device.getLabel() == null) {
+                nullLabelIds.add(savedDevice.getId());
+            }
+            if (i % 4 != 0) {
+                attributeFutures.add(saveLongAttribute(savedDevice.getId(), "temperature", i % 9, DataConstants.CLIENT_SCOPE));
+            }
+        }
+        Futures.successfulAsList(attributeFutures).get();
+
+        DeviceTypeFilter filter = new DeviceTypeFilter();
+        filter.setDeviceType("default");
+        filter.setDeviceNameFilter("");
+        List<EntityKey> entityFields = Collections.singletonList(new EntityKey(EntityKeyType.ENTITY_FIELD, "name"));
+        List<EntityKey> latestValues = Collections.singletonList(new EntityKey(EntityKeyType.ATTRIBUTE, "temperature"));
+
+        for (EntityKey sortKey : Arrays.asList(new EntityKey(EntityKeyType.ENTITY_FIELD, "label"), new EntityKey(EntityKeyType.ATTRIBUTE, "temperature"))) {
+            for (EntityDataSortOrder.Direction direction : EntityDataSortOrder.Direction.values()) {
+                EntityDataSortOrder sortOrder = new EntityDataSortOrder(sortKey, direction);
+                EntityDataQuery query = new EntityDataQuery(filter, new EntityDataPageLink(100, 0, null, sortOrder), entityFields, latestValues, null);
+                List<EntityId> expectedIds = entityService.findEntityDataByQuery(tenantId, new CustomerId(CustomerId.NULL_UUID), query)
+                        .getData().stream().map(EntityData::getEntityId).collect(Collectors.toList());
+                Assert.assertEquals(53, expectedIds.size());
+
+                List<EntityId> loadedIds = new ArrayList<>();
+                EntityDataPageLink pageLink = new EntityDataPageLink(10, 0, null, sortOrder);
+                PageData<EntityData> data;
+                do {
+                    query = new EntityDataQuery(filter, pageLink, entityFields, latestValues, null);
+                    data = entityService.findEntityDataByQuery(tenantId, new CustomerId(CustomerId.NULL_UUID), query);
+                    Assert.assertEquals(53, data.getTotalElements());
+                    data.getData().forEach(entityData -> loadedIds.add(entityData.getEntityId()));
+                    pageLink = pageLink.nextPageLink();
+                    pageLink.setAfterEntityId(loadedIds.get(loadedIds.size() - 1).getId());
+                } while (data.hasNext());
+                Assert.assertEquals(expectedIds, loadedIds);
+                if (sortKey.getType() == EntityKeyType.ENTITY_FIELD) {
+                    // nulls are last in ascending and first in descending order on every database
+                    List<EntityId> nullsPlace = direction == EntityDataSortOrder.Direction.ASC ?
+                            loadedIds.subList(loadedIds.size() - nullLabelIds.size(), loadedIds.size()) : loadedIds.subList(0, nullLabelIds.size());
+                    Assert.assertEquals(nullLabelIds, new HashSet<>(nullsPlace));
+                }
+            }
+        }
+
+        deviceService.deleteDevicesByTenantId(tenantId);
+    }
+
     @Test
     public void testFindEntityDataByQuery_operationEqual_emptySearchQuery() {
         List<Device> devices = createMockDevices(10);
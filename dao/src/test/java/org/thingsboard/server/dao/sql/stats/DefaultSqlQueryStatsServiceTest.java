@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.stats;
+
+import io.micrometer.core.instrument.Timer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.query.SqlQueryShapeSortProperty;
+import org.thingsboard.server.common.data.query.SqlQueryShapeStats;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultSqlQueryStatsServiceTest {
+
+    private DefaultSqlQueryStatsService service;
+    private StatsFactory statsFactory;
+
+    @Before
+    public void before() {
+        statsFactory = mock(StatsFactory.class);
+        when(statsFactory.createTimer(anyString(), any())).thenAnswer(invocation -> mock(Timer.class));
+        when(statsFactory.createDefaultCounter(anyString(), any())).thenAnswer(invocation -> mock(DefaultCounter.class));
+        service = new DefaultSqlQueryStatsService(statsFactory);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxShapes", 2);
+        ReflectionTestUtils.setField(service, "maxTenantsPerShape", 1);
+        ReflectionTestUtils.setField(service, "normalizedCacheSize", 100);
+        service.init();
+    }
+
+    @Test
+    public void testNormalize() {
+        Assert.assertEquals("select * from device d where d.tenant_id = ? and d.type in (?, ...) and d.name like ? limit ?",
+                SqlQueryShapeNormalizer.normalize("select *\n from device d where d.tenant_id = :tenantId and d.type in ('a', 'b''c')" +
+                        "   and d.name like '%test%' limit 10"));
+        Assert.assertEquals("select ts_kv_0.ts from ts_kv ts_kv_0 where ts_kv_0.entity_id = ?::uuid and ts_kv_0.dbl_v > ?",
+                SqlQueryShapeNormalizer.normalize("select ts_kv_0.ts from ts_kv ts_kv_0 where ts_kv_0.entity_id = :id::uuid and ts_kv_0.dbl_v > 1.5"));
+    }
+
+    @Test
+    public void testQueriesWithDifferentLiteralsHaveSameShape() {
+        TenantId tenantId = new TenantId(UUID.randomUUID());
+        service.recordQuery(tenantId, "select * from device where name = 'A'", 10, 1);
+        service.recordQuery(tenantId, "select * from device where name = 'B'", 30, 2);
+
+        List<SqlQueryShapeStats> stats = service.getTopShapes(SqlQueryShapeSortProperty.TOTAL_TIME, 10);
+        Assert.assertEquals(1, stats.size());
+        SqlQueryShapeStats shape = stats.get(0);
+        Assert.assertEquals("select * from device where name = ?", shape.getShape());
+        Assert.assertEquals(2, shape.getCount());
+        Assert.assertEquals(40, shape.getTotalTimeMs());
+        Assert.assertEquals(30, shape.getMaxTimeMs());
+        Assert.assertEquals(3, shape.getRows());
+        Assert.assertEquals(1L, (long) shape.getLatencyHistogram().get("10"));
+        Assert.assertEquals(1L, (long) shape.getLatencyHistogram().get("50"));
+        Assert.assertEquals(1, shape.getTopTenants().size());
+        Assert.assertEquals(tenantId, shape.getTopTenants().get(0).getTenantId());
+        Assert.assertEquals(2, shape.getTopTenants().get(0).getCount());
+    }
+
+    @Test
+    public void testShapesAboveLimitAreAccountedToOverflowShape() {
+        service.recordOperation(null, "DeviceRepository.findByTenantId", 5, 10);
+        service.recordOperation(null, "AssetRepository.findByTenantId", 1, 1);
+        service.recordOperation(null, "CustomerRepository.findByTenantId", 100, 1);
+        service.recordOperation(null, "UserRepository.findByTenantId", 100, 1);
+
+        List<SqlQueryShapeStats> stats = service.getTopShapes(SqlQueryShapeSortProperty.TOTAL_TIME, 10);
+        Assert.assertEquals(3, stats.size());
+        Assert.assertEquals(DefaultSqlQueryStatsService.OVERFLOW_SHAPE, stats.get(0).getShape());
+        Assert.assertEquals(2, stats.get(0).getCount());
+
+        stats = service.getTopShapes(SqlQueryShapeSortProperty.ROWS, 1);
+        Assert.assertEquals("DeviceRepository.findByTenantId", stats.get(0).getShape());
+    }
+
+    @Test
+    public void testTenantsAboveLimitAreNotTracked() {
+        TenantId tenantId = new TenantId(UUID.randomUUID());
+        service.recordOperation(tenantId, "DeviceRepository.findByTenantId", 5, 10);
+        service.recordOperation(new TenantId(UUID.randomUUID()), "DeviceRepository.findByTenantId", 5, 10);
+
+        SqlQueryShapeStats shape = service.getTopShapes(SqlQueryShapeSortProperty.COUNT, 1).get(0);
+        Assert.assertEquals(2, shape.getCount());
+        Assert.assertEquals(1, shape.getTopTenants().size());
+        Assert.assertEquals(tenantId, shape.getTopTenants().get(0).getTenantId());
+    }
+
+    @Test
+    public void testMetersOfShapesOutOfTopAreRemoved() {
+        ReflectionTestUtils.setField(service, "metricsTopN", 1);
+        service.recordOperation(null, "DeviceRepository.findByTenantId", 100, 1);
+        service.recordOperation(null, "AssetRepository.findByTenantId", 1, 1);
+        service.publishTopShapes();
+        String deviceShapeId = service.getTopShapes(SqlQueryShapeSortProperty.TOTAL_TIME, 1).get(0).getId();
+        verify(statsFactory).createTimer(DefaultSqlQueryStatsService.SHAPE_TIMER, DefaultSqlQueryStatsService.SHAPE_TAG, deviceShapeId);
+        verify(statsFactory, never()).removeMeters(anyString(), any());
+
+        service.recordOperation(null, "AssetRepository.findByTenantId", 1000, 1);
+        service.publishTopShapes();
+        String assetShapeId = service.getTopShapes(SqlQueryShapeSortProperty.TOTAL_TIME, 1).get(0).getId();
+        verify(statsFactory).removeMeters(DefaultSqlQueryStatsService.SHAPE_TIMER, DefaultSqlQueryStatsService.SHAPE_TAG, deviceShapeId);
+        verify(statsFactory).removeMeters(DefaultSqlQueryStatsService.SHAPE_ROWS_COUNTER, DefaultSqlQueryStatsService.SHAPE_TAG, deviceShapeId);
+        verify(statsFactory).createTimer(DefaultSqlQueryStatsService.SHAPE_TIMER, DefaultSqlQueryStatsService.SHAPE_TAG, assetShapeId);
+
+        service.reset();
+        verify(statsFactory).removeMeters(DefaultSqlQueryStatsService.SHAPE_TIMER, DefaultSqlQueryStatsService.SHAPE_TAG, assetShapeId);
+        verify(statsFactory).removeMeters(DefaultSqlQueryStatsService.SHAPE_ROWS_COUNTER, DefaultSqlQueryStatsService.SHAPE_TAG, assetShapeId);
+    }
+
+    @Test
+    public void testReset() {
+        service.recordOperation(null, "DeviceRepository.findByTenantId", 5, 10);
+        service.reset();
+        Assert.assertTrue(service.getTopShapes(SqlQueryShapeSortProperty.TOTAL_TIME, 10).isEmpty());
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TsRollupAggregateTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    public void givenAlignedInterval_whenForInterval_thenCoarsestLevelReturned() {
+        assertEquals(TsRollupLevel.DAY, TsRollupLevel.forInterval(10 * DAY, 7 * DAY));
+        assertEquals(TsRollupLevel.HOUR, TsRollupLevel.forInterval(10 * DAY + HOUR, DAY));
+        assertEquals(TsRollupLevel.MINUTE, TsRollupLevel.forInterval(10 * DAY, 30 * MINUTE));
+        assertNull(TsRollupLevel.forInterval(10 * DAY, 30 * 1000));
+        assertNull(TsRollupLevel.forInterval(10 * DAY + 1000, HOUR));
+    }
+
+    @Test
+    public void givenMixedNumericValues_whenToTsKvEntity_thenSameResultAsRawAggregation() {
+        TsRollupAggregate aggregate = new TsRollupAggregate();
+        aggregate.setLongMin(2);
+        aggregate.setLongMax(10);
+        aggregate.setLongSum(12);
+        aggregate.setLongCount(2);
+        aggregate.setDoubleMin(0.5);
+        aggregate.setDoubleMax(20.5);
+        aggregate.setDoubleSum(21.0);
+        aggregate.setDoubleCount(2);
+
+        assertEquals(0.5, aggregate.toTsKvEntity(Aggregation.MIN).getDoubleValue(), 0.0);
+        assertEquals(20.5, aggregate.toTsKvEntity(Aggregation.MAX).getDoubleValue(), 0.0);
+        assertEquals(33.0, aggregate.toTsKvEntity(Aggregation.SUM).getDoubleValue(), 0.0);
+        assertEquals(8.25, aggregate.toTsKvEntity(Aggregation.AVG).getDoubleValue(), 0.0);
+        assertEquals(4L, aggregate.toTsKvEntity(Aggregation.COUNT).getLongValue().longValue());
+    }
+
+    @Test
+    public void givenLongValuesOnly_whenToTsKvEntity_thenLongResult() {
+        TsRollupAggregate aggregate = new TsRollupAggregate();
+        aggregate.setLongMin(-3);
+        aggregate.setLongMax(7);
+        aggregate.setLongSum(4);
+        aggregate.setLongCount(2);
+        aggregate.setDoubleMin(1.79769E+308);
+        aggregate.setDoubleMax(-1.79769E+308);
+
+        TsKvEntity min = aggregate.toTsKvEntity(Aggregation.MIN);
+        assertEquals(-3L, min.getLongValue().longValue());
+        assertNull(min.getDoubleValue());
+        assertEquals(4L, aggregate.toTsKvEntity(Aggregation.SUM).getLongValue().longValue());
+    }
+
+    @Test
+    public void givenStringValues_whenIsSupported_thenMinMaxNotSupported() {
+        TsRollupAggregate aggregate = new TsRollupAggregate();
+        aggregate.setStrCount(1);
+
+        assertFalse(aggregate.isSupported(Aggregation.MIN));
+        assertFalse(aggregate.isSupported(Aggregation.MAX));
+        assertTrue(aggregate.isSupported(Aggregation.COUNT));
+        assertEquals(1L, aggregate.toTsKvEntity(Aggregation.COUNT).getLongValue().longValue());
+    }
+
+    @Test
+    public void givenDirtyBuckets_whenIsSupported_thenNothingSupported() {
+        TsRollupAggregate aggregate = new TsRollupAggregate();
+        aggregate.setDirty(true);
+
+        for (Aggregation aggregation : Aggregation.values()) {
+            assertFalse(aggregate.isSupported(aggregation));
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.server.common.data.kv.Aggregation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TsRollupServiceTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Mock
+    private TsRollupRepository rollupRepository;
+
+    @InjectMocks
+    private TsRollupService rollupService;
+
+    @Test
+    public void givenDirtyMinutes_whenFindAggregates_thenTheirIntervalsNotSupported() {
+        UUID entityId = UUID.randomUUID();
+        long startTs = 10 * DAY;
+        long endTs = startTs + 4 * HOUR;
+        Map<Long, TsRollupAggregate> aggregates = new HashMap<>();
+        aggregates.put(startTs, aggregate(5));
+        aggregates.put(startTs + HOUR, aggregate(7));
+        aggregates.put(startTs + 2 * HOUR, aggregate(9));
+        when(rollupRepository.findAggregates(entityId, 1, TsRollupLevel.HOUR, startTs, endTs, HOUR)).thenReturn(aggregates);
+        // late data point in the second hour and a new one in the hour without rollups yet
+        when(rollupRepository.findDirtyTs(entityId, 1, startTs, endTs)).thenReturn(Arrays.asList(startTs + HOUR + 5 * MINUTE, startTs + 3 * HOUR));
+
+        Map<Long, TsRollupAggregate> result = rollupService.findAggregates(entityId, 1, TsRollupLevel.HOUR, startTs, endTs, HOUR);
+
+        assertEquals(4, result.size());
+        assertTrue(result.get(startTs).isSupported(Aggregation.SUM));
+        assertFalse(result.get(startTs + HOUR).isSupported(Aggregation.SUM));
+        assertTrue(result.get(startTs + 2 * HOUR).isSupported(Aggregation.SUM));
+        assertFalse(result.get(startTs + 3 * HOUR).isSupported(Aggregation.SUM));
+    }
+
+    private static TsRollupAggregate aggregate(long value) {
+        TsRollupAggregate aggregate = new TsRollupAggregate();
+        aggregate.setLongMin(value);
+        aggregate.setLongMax(value);
+        aggregate.setLongSum(value);
+        aggregate.setLongCount(1);
+        return aggregate;
+    }
+
+}
@@ -9,6 +9,7 @@ DROP TABLE IF EXISTS device;
 DROP TABLE IF EXISTS device_credentials;
 DROP TABLE IF EXISTS event;
 DROP TABLE IF EXISTS relation;
+DROP TABLE IF EXISTS alarm_propagation;
 DROP TABLE IF EXISTS tb_user;
 DROP TABLE IF EXISTS tenant;
 DROP TABLE IF EXISTS ts_kv;
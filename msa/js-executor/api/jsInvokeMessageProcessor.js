@@ -66,6 +66,8 @@ JsInvokeMessageProcessor.prototype.onJsInvokeMessage = function (message) {
             this.processInvokeRequest(requestId, responseTopic, headers, request.invokeRequest);
         } else if (request.releaseRequest) {
             this.processReleaseRequest(requestId, responseTopic, headers, request.releaseRequest);
+        } else if (request.invokeBatchRequest) {
+            this.processInvokeBatchRequest(requestId, responseTopic, headers, request.invokeBatchRequest);
         } else {
             logger.error('[%s] Unknown request received!', requestId);
         }
@@ -80,9 +82,10 @@ JsInvokeMessageProcessor.prototype.onJsInvokeMessage = function (message) {
 
     if (tTook > slowQueryLogMs) {
         let functionName;
-        if (request.invokeRequest) {
+        const invokeRequest = request.invokeRequest || request.invokeBatchRequest;
+        if (invokeRequest) {
             try {
-                buf = Buffer.from(request.invokeRequest['functionName']);
+                buf = Buffer.from(invokeRequest['functionName']);
                 functionName = buf.toString('utf8');
             } catch (err) {
                 logger.error('[%s] Failed to read functionName from message header: %s', requestId, err.message);
@@ -160,6 +163,37 @@ JsInvokeMessageProcessor.prototype.processInvokeRequest = function (requestId, r
     );
 }
 
+JsInvokeMessageProcessor.prototype.processInvokeBatchRequest = function (requestId, responseTopic, headers, invokeBatchRequest) {
+    var scriptId = getScriptId(invokeBatchRequest);
+    var invocations = invokeBatchRequest.invocations || [];
+    logger.debug('[%s] Processing invoke batch request, scriptId: [%s], invocations: [%s]', requestId, scriptId, invocations.length);
+    this.executedScriptsCounter += invocations.length;
+    this.getOrCompileScript(scriptId, invokeBatchRequest.scriptBody).then(
+        (script) => {
+            // every invocation is executed and reported separately, so one failed invocation does not fail the whole batch
+            Promise.all(invocations.map((invocation) =>
+                this.executor.executeScript(script, invocation.args || [], invokeBatchRequest.timeout).then(
+                    (result) => createInvokeResponse(result, true),
+                    (err) => {
+                        var errorCode = err.message.includes('Script execution timed out') ? TIMEOUT_ERROR : RUNTIME_ERROR;
+                        return createInvokeResponse("", false, errorCode, err);
+                    }
+                )
+            )).then(
+                (responses) => {
+                    logger.debug('[%s] Sending invoke batch response, scriptId: [%s]', requestId, scriptId);
+                    this.sendResponse(requestId, responseTopic, headers, scriptId, null, null, null, {responses: responses});
+                }
+            );
+        },
+        (err) => {
+            var responses = invocations.map(() => createInvokeResponse("", false, COMPILATION_ERROR, err));
+            logger.debug('[%s] Sending failed invoke batch response, scriptId: [%s], errorCode: [%s]', requestId, scriptId, COMPILATION_ERROR);
+            this.sendResponse(requestId, responseTopic, headers, scriptId, null, null, null, {responses: responses});
+        }
+    );
+}
+
 JsInvokeMessageProcessor.prototype.processReleaseRequest = function (requestId, responseTopic, headers, releaseRequest) {
     var scriptId = getScriptId(releaseRequest);
     logger.debug('[%s] Processing release request, scriptId: [%s]', requestId, scriptId);
@@ -175,9 +209,9 @@ JsInvokeMessageProcessor.prototype.processReleaseRequest = function (requestId,
     this.sendResponse(requestId, responseTopic, headers, scriptId, null, null, releaseResponse);
 }
 
-JsInvokeMessageProcessor.prototype.sendResponse = function (requestId, responseTopic, headers, scriptId, compileResponse, invokeResponse, releaseResponse) {
+JsInvokeMessageProcessor.prototype.sendResponse = function (requestId, responseTopic, headers, scriptId, compileResponse, invokeResponse, releaseResponse, invokeBatchResponse) {
     var tStartSending = performance.now();
-    var remoteResponse = createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse);
+    var remoteResponse = createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse, invokeBatchResponse);
     var rawResponse = Buffer.from(JSON.stringify(remoteResponse), 'utf8');
     logger.debug('[%s] Sending response to queue, scriptId: [%s]', requestId, scriptId);
     this.producer.send(responseTopic, scriptId, rawResponse, headers).then(
@@ -227,14 +261,15 @@ JsInvokeMessageProcessor.prototype.cacheScript = function (scriptId, script) {
     logger.info("scriptMap size is [%s]", this.scriptMap.size);
 }
 
-function createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse) {
+function createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse, invokeBatchResponse) {
     const requestIdBits = Utils.UUIDToBits(requestId);
     return {
         requestIdMSB: requestIdBits[0],
         requestIdLSB: requestIdBits[1],
         compileResponse: compileResponse,
         invokeResponse: invokeResponse,
-        releaseResponse: releaseResponse
+        releaseResponse: releaseResponse,
+        invokeBatchResponse: invokeBatchResponse
     };
 }
 
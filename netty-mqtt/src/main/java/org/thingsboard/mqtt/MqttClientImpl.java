@@ -16,7 +16,6 @@
 package org.thingsboard.mqtt;
 
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.ImmutableSet;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
@@ -66,7 +65,7 @@ final class MqttClientImpl implements MqttClient {
     private final ConcurrentMap<Integer, MqttPendingUnsubscription> pendingServerUnsubscribes = new ConcurrentHashMap<>();
     private final ConcurrentMap<Integer, MqttIncomingQos2Publish> qos2PendingIncomingPublishes = new ConcurrentHashMap<>();
     private final ConcurrentMap<Integer, MqttPendingPublish> pendingPublishes = new ConcurrentHashMap<>();
-    private final HashMultimap<String, MqttSubscription> subscriptions = HashMultimap.create();
+    private final MqttTopicTrie<MqttSubscription> subscriptions = new MqttTopicTrie<>();
     private final ConcurrentMap<Integer, MqttPendingSubscription> pendingSubscriptions = new ConcurrentHashMap<>();
     private final Set<String> pendingSubscribeTopics = new HashSet<>();
     private final HashMultimap<MqttHandler, MqttSubscription> handlerToSubscribtion = HashMultimap.create();
@@ -297,8 +296,7 @@ final class MqttClientImpl implements MqttClient {
     @Override
     public Future<Void> off(String topic) {
         Promise<Void> future = new DefaultPromise<>(this.eventLoop.next());
-        ImmutableSet<MqttSubscription> subscriptions = ImmutableSet.copyOf(this.subscriptions.get(topic));
-        for (MqttSubscription subscription : subscriptions) {
+        for (MqttSubscription subscription : this.subscriptions.get(topic)) {
             for (MqttSubscription handSub : this.handlerToSubscribtion.get(subscription.getHandler())) {
                 this.subscriptions.remove(topic, handSub);
             }
@@ -450,7 +448,7 @@ final class MqttClientImpl implements MqttClient {
         }
         if (this.serverSubscriptions.contains(topic)) {
             MqttSubscription subscription = new MqttSubscription(topic, handler, once);
-            this.subscriptions.put(topic, subscription);
+            this.subscriptions.add(topic, subscription);
             this.handlerToSubscribtion.put(handler, subscription);
             return this.channel.newSucceededFuture();
         }
@@ -474,7 +472,7 @@ final class MqttClientImpl implements MqttClient {
     }
 
     private void checkSubscribtions(String topic, Promise<Void> promise) {
-        if (!(this.subscriptions.containsKey(topic) && this.subscriptions.get(topic).size() != 0) && this.serverSubscriptions.contains(topic)) {
+        if (this.subscriptions.get(topic).isEmpty() && this.serverSubscriptions.contains(topic)) {
             MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.UNSUBSCRIBE, false, MqttQoS.AT_LEAST_ONCE, false, 0);
             MqttMessageIdVariableHeader variableHeader = getNewMessageId();
             MqttUnsubscribePayload payload = new MqttUnsubscribePayload(Collections.singletonList(topic));
@@ -494,7 +492,7 @@ final class MqttClientImpl implements MqttClient {
         return pendingSubscriptions;
     }
 
-    HashMultimap<String, MqttSubscription> getSubscriptions() {
+    MqttTopicTrie<MqttSubscription> getSubscriptions() {
         return subscriptions;
     }
 
@@ -0,0 +1,197 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Index of MQTT topic filters, that resolves all values whose filter matches a topic name in a single walk
+ * over the topic levels instead of testing each filter one by one.
+ * <p>
+ * Filters support the '+' (single level) and '#' (this and all the following levels) wildcards.
+ * Topics that start with '$' are not matched by wildcards on the first level.
+ * <p>
+ * The nodes of the trie are immutable: updates are serialized and copy the path from the root to the changed node,
+ * while reads are lock-free and always see a consistent snapshot of the trie.
+ *
+ * @param <V> the type of values, several distinct values can be registered for the same filter
+ */
+public final class MqttTopicTrie<V> {
+
+    private static final String SEPARATOR = "/";
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+
+    private volatile Node<V> root = Node.empty();
+
+    public synchronized void add(String filter, V value) {
+        update(filter, values -> {
+            if (values.contains(value)) {
+                return values;
+            }
+            Set<V> result = new LinkedHashSet<>(values);
+            result.add(value);
+            return result;
+        });
+    }
+
+    /**
+     * Replaces all values of the filter with the given value.
+     */
+    public synchronized void set(String filter, V value) {
+        update(filter, values -> values.size() == 1 && values.contains(value) ? values : Collections.singleton(value));
+    }
+
+    public synchronized boolean remove(String filter, V value) {
+        return update(filter, values -> {
+            if (!values.contains(value)) {
+                return values;
+            }
+            Set<V> result = new LinkedHashSet<>(values);
+            result.remove(value);
+            return result;
+        });
+    }
+
+    public synchronized boolean removeAll(String filter) {
+        return update(filter, values -> Collections.emptySet());
+    }
+
+    public synchronized void clear() {
+        root = Node.empty();
+    }
+
+    public boolean isEmpty() {
+        return root.isEmpty();
+    }
+
+    /**
+     * Returns the values registered for exactly this filter.
+     */
+    public Set<V> get(String filter) {
+        if (filter == null) {
+            throw new NullPointerException("filter");
+        }
+        Node<V> node = root;
+        for (String level : filter.split(SEPARATOR, -1)) {
+            node = node.children.get(level);
+            if (node == null) {
+                return Collections.emptySet();
+            }
+        }
+        return node.values;
+    }
+
+    /**
+     * Returns the values of all filters that match the topic name.
+     */
+    public List<V> match(String topic) {
+        if (topic == null) {
+            throw new NullPointerException("topic");
+        }
+        Node<V> snapshot = root;
+        if (snapshot.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<V> result = new ArrayList<>();
+        String[] levels = topic.split(SEPARATOR, -1);
+        match(snapshot, levels, 0, !topic.startsWith("$"), result);
+        return result;
+    }
+
+    private static <V> void match(Node<V> node, String[] levels, int idx, boolean wildcardsAllowed, List<V> result) {
+        if (wildcardsAllowed) {
+            Node<V> multiLevel = node.children.get(MULTI_LEVEL_WILDCARD);
+            if (multiLevel != null) {
+                result.addAll(multiLevel.values);
+            }
+        }
+        if (idx == levels.length) {
+            result.addAll(node.values);
+            return;
+        }
+        Node<V> exact = node.children.get(levels[idx]);
+        if (exact != null) {
+            match(exact, levels, idx + 1, true, result);
+        }
+        if (wildcardsAllowed) {
+            Node<V> singleLevel = node.children.get(SINGLE_LEVEL_WILDCARD);
+            if (singleLevel != null) {
+                match(singleLevel, levels, idx + 1, true, result);
+            }
+        }
+    }
+
+    private boolean update(String filter, UnaryOperator<Set<V>> valuesUpdate) {
+        if (filter == null) {
+            throw new NullPointerException("filter");
+        }
+        Node<V> oldRoot = root;
+        Node<V> newRoot = update(oldRoot, filter.split(SEPARATOR, -1), 0, valuesUpdate);
+        root = newRoot;
+        return newRoot != oldRoot;
+    }
+
+    private static <V> Node<V> update(Node<V> node, String[] levels, int idx, UnaryOperator<Set<V>> valuesUpdate) {
+        if (idx == levels.length) {
+            Set<V> values = valuesUpdate.apply(node.values);
+            return values == node.values ? node : new Node<>(node.children, Collections.unmodifiableSet(values));
+        }
+        Node<V> child = node.children.get(levels[idx]);
+        Node<V> newChild = update(child != null ? child : Node.empty(), levels, idx + 1, valuesUpdate);
+        if (newChild == child || (child == null && newChild.isEmpty())) {
+            return node;
+        }
+        Map<String, Node<V>> children = new HashMap<>(node.children);
+        if (newChild.isEmpty()) {
+            children.remove(levels[idx]);
+        } else {
+            children.put(levels[idx], newChild);
+        }
+        return new Node<>(children.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(children), node.values);
+    }
+
+    private static final class Node<V> {
+
+        @SuppressWarnings("rawtypes")
+        private static final Node EMPTY = new Node<>(Collections.emptyMap(), Collections.emptySet());
+
+        private final Map<String, Node<V>> children;
+        private final Set<V> values;
+
+        private Node(Map<String, Node<V>> children, Set<V> values) {
+            this.children = children;
+            this.values = values;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <V> Node<V> empty() {
+            return (Node<V>) EMPTY;
+        }
+
+        boolean isEmpty() {
+            return children.isEmpty() && values.isEmpty();
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MqttTopicTrieTest {
+
+    MqttTopicTrie<String> trie;
+
+    @Before
+    public void setUp() {
+        trie = new MqttTopicTrie<>();
+    }
+
+    @Test
+    public void givenExactFilter_whenMatch_thenOnlySameTopicMatched() {
+        trie.add("v1/devices/me/attributes", "attributes");
+
+        assertEquals(Collections.singletonList("attributes"), trie.match("v1/devices/me/attributes"));
+        assertTrue(trie.match("v1/devices/me/attributes/response/1").isEmpty());
+        assertTrue(trie.match("v1/devices/me").isEmpty());
+    }
+
+    @Test
+    public void givenSingleLevelWildcard_whenMatch_thenExactlyOneLevelMatched() {
+        trie.add("v1/devices/+/rpc", "rpc");
+
+        assertEquals(Collections.singletonList("rpc"), trie.match("v1/devices/me/rpc"));
+        assertEquals(Collections.singletonList("rpc"), trie.match("v1/devices//rpc"));
+        assertTrue(trie.match("v1/devices/me/other/rpc").isEmpty());
+        assertTrue(trie.match("v1/devices/rpc").isEmpty());
+    }
+
+    @Test
+    public void givenMultiLevelWildcard_whenMatch_thenParentAndAllChildLevelsMatched() {
+        trie.add("v1/devices/me/rpc/request/#", "request");
+
+        assertEquals(Collections.singletonList("request"), trie.match("v1/devices/me/rpc/request"));
+        assertEquals(Collections.singletonList("request"), trie.match("v1/devices/me/rpc/request/1"));
+        assertEquals(Collections.singletonList("request"), trie.match("v1/devices/me/rpc/request/1/2"));
+        assertTrue(trie.match("v1/devices/me/rpc/response/1").isEmpty());
+    }
+
+    @Test
+    public void givenOverlappingFilters_whenMatch_thenAllValuesReturned() {
+        trie.add("#", "all");
+        trie.add("a/+/c", "single");
+        trie.add("a/b/#", "multi");
+        trie.add("a/b/c", "exact");
+        trie.add("a/b/c", "exact2");
+
+        assertEquals(new HashSet<>(Arrays.asList("all", "single", "multi", "exact", "exact2")), new HashSet<>(trie.match("a/b/c")));
+        assertEquals(Collections.singletonList("all"), trie.match("x/y"));
+    }
+
+    @Test
+    public void givenDollarTopic_whenMatch_thenNotMatchedByLeadingWildcards() {
+        trie.add("#", "all");
+        trie.add("+/monitor", "single");
+        trie.add("$SYS/#", "sys");
+
+        assertEquals(Collections.singletonList("sys"), trie.match("$SYS/monitor"));
+    }
+
+    @Test
+    public void givenSameValueAddedTwice_whenMatch_thenValueReturnedOnce() {
+        trie.add("a/+", "value");
+        trie.add("a/+", "value");
+
+        assertEquals(Collections.singletonList("value"), trie.match("a/b"));
+    }
+
+    @Test
+    public void givenFilterValues_whenSet_thenValuesReplaced() {
+        trie.add("a/+", "qos0");
+        trie.add("a/+", "qos1");
+
+        trie.set("a/+", "qos2");
+
+        assertEquals(Collections.singleton("qos2"), trie.get("a/+"));
+    }
+
+    @Test
+    public void givenFilters_whenRemove_thenEmptyNodesPruned() {
+        trie.add("a/b/c", "first");
+        trie.add("a/b/c", "second");
+        trie.add("a/#", "multi");
+
+        assertTrue(trie.remove("a/b/c", "first"));
+        assertFalse(trie.remove("a/b/c", "first"));
+        assertFalse(trie.remove("x/y", "first"));
+        assertEquals(Collections.singleton("second"), trie.get("a/b/c"));
+
+        assertTrue(trie.removeAll("a/b/c"));
+        assertTrue(trie.get("a/b/c").isEmpty());
+        assertEquals(Collections.singletonList("multi"), trie.match("a/b/c"));
+
+        assertTrue(trie.remove("a/#", "multi"));
+        assertTrue(trie.isEmpty());
+    }
+
+    @Test
+    public void givenSnapshotOfValues_whenTrieUpdated_thenSnapshotNotChanged() {
+        trie.add("a/b", "first");
+        Set<String> values = trie.get("a/b");
+        List<String> matched = trie.match("a/b");
+
+        trie.add("a/b", "second");
+        trie.clear();
+
+        assertEquals(Collections.singleton("first"), values);
+        assertEquals(Collections.singletonList("first"), matched);
+        assertTrue(trie.isEmpty());
+    }
+
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.aggregation;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.rule.RuleNodeState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time windows of a single originator.
+ * <p>
+ * Windows are split into buckets of the slide length aligned to the epoch. Every key has a ring of buckets that covers
+ * one window, and the statistics of all the buckets are kept in primitive arrays indexed by {@code keyIdx * bucketsPerWindow + slot}.
+ * Windows are closed by their end timestamp, and values of the buckets that belong to the closed windows only are ignored.
+ */
+class AggregationWindows {
+
+    private final long slideMs;
+    private final int bucketsPerWindow;
+
+    private final List<String> keys = new ArrayList<>();
+    private final Map<String, Integer> keyIndexes = new HashMap<>();
+    private long[] bucketNo = new long[0];
+    private long[] count = new long[0];
+    private double[] min = new double[0];
+    private double[] max = new double[0];
+    private double[] sum = new double[0];
+    private double[] last = new double[0];
+    private long[] lastTs = new long[0];
+
+    // bucket of the latest added value
+    private long lastBucket;
+    // end of the last closed window
+    @Getter
+    private long closedEndTs;
+    @Getter
+    private boolean dirty;
+
+    @Getter
+    @Setter
+    private CustomerId customerId;
+    @Getter
+    @Setter
+    private String queueName;
+    @Getter
+    @Setter
+    private RuleNodeState ruleNodeState;
+
+    AggregationWindows(long slideMs, int bucketsPerWindow, long closedEndTs) {
+        this.slideMs = slideMs;
+        this.bucketsPerWindow = bucketsPerWindow;
+        this.closedEndTs = closedEndTs;
+        this.lastBucket = closedEndTs / slideMs - 1;
+    }
+
+    /**
+     * Adds the value to the bucket of the timestamp. Returns false if all the windows of the bucket are already closed.
+     */
+    boolean add(String key, long ts, double value) {
+        long bucket = ts / slideMs;
+        if ((bucket + bucketsPerWindow) * slideMs <= closedEndTs) {
+            return false;
+        }
+        int idx = getKeyIndex(key) * bucketsPerWindow + (int) (bucket % bucketsPerWindow);
+        if (count[idx] > 0 && bucketNo[idx] != bucket) {
+            if (bucketNo[idx] > bucket) {
+                return false;
+            }
+            // the windows of the previous bucket in the slot are closed by the caller
+            count[idx] = 0;
+        }
+        if (count[idx] == 0) {
+            bucketNo[idx] = bucket;
+            min[idx] = value;
+            max[idx] = value;
+            sum[idx] = value;
+            last[idx] = value;
+            lastTs[idx] = ts;
+        } else {
+            min[idx] = Math.min(min[idx], value);
+            max[idx] = Math.max(max[idx], value);
+            sum[idx] += value;
+            if (ts >= lastTs[idx]) {
+                last[idx] = value;
+                lastTs[idx] = ts;
+            }
+        }
+        count[idx]++;
+        lastBucket = Math.max(lastBucket, bucket);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Closes all the windows that end not later than the given timestamp and returns the aggregated values of the windows that contain data.
+     */
+    List<AggregatedWindow> close(long endTs, List<WindowAggregation> aggregations) {
+        if (endTs <= closedEndTs) {
+            return Collections.emptyList();
+        }
+        long minBucket = Long.MAX_VALUE;
+        long maxBucket = Long.MIN_VALUE;
+        for (int i = 0; i < count.length; i++) {
+            if (count[i] > 0) {
+                minBucket = Math.min(minBucket, bucketNo[i]);
+                maxBucket = Math.max(maxBucket, bucketNo[i]);
+            }
+        }
+        List<AggregatedWindow> result = new ArrayList<>();
+        if (minBucket != Long.MAX_VALUE) {
+            long fromEndTs = Math.max(closedEndTs + slideMs, (minBucket + 1) * slideMs);
+            long toEndTs = Math.min(endTs, (maxBucket + bucketsPerWindow) * slideMs);
+            for (long windowEndTs = fromEndTs; windowEndTs <= toEndTs; windowEndTs += slideMs) {
+                ObjectNode values = aggregate(windowEndTs / slideMs, aggregations);
+                if (values != null) {
+                    result.add(new AggregatedWindow(windowEndTs - slideMs * bucketsPerWindow, windowEndTs, values));
+                }
+            }
+        }
+        closedEndTs = endTs;
+        dirty = true;
+        return result;
+    }
+
+    /**
+     * Returns true if all the windows with values are closed and no values were added during one more window after that.
+     */
+    boolean isExpired() {
+        return (lastBucket + bucketsPerWindow * 2L) * slideMs <= closedEndTs;
+    }
+
+    State toState() {
+        dirty = false;
+        State state = new State();
+        state.setClosedEndTs(closedEndTs);
+        state.setKeys(new ArrayList<>(keys));
+        state.setBucketNo(bucketNo);
+        state.setCount(count);
+        state.setMin(min);
+        state.setMax(max);
+        state.setSum(sum);
+        state.setLast(last);
+        state.setLastTs(lastTs);
+        return state;
+    }
+
+    static AggregationWindows fromState(long slideMs, int bucketsPerWindow, State state) {
+        AggregationWindows windows = new AggregationWindows(slideMs, bucketsPerWindow, state.getClosedEndTs());
+        int size = state.getKeys().size() * bucketsPerWindow;
+        if (state.getCount() == null || state.getCount().length != size) {
+            // window size was changed, state can not be restored
+            return windows;
+        }
+        for (int i = 0; i < state.getKeys().size(); i++) {
+            windows.keyIndexes.put(state.getKeys().get(i), i);
+            windows.keys.add(state.getKeys().get(i));
+        }
+        windows.bucketNo = state.getBucketNo();
+        windows.count = state.getCount();
+        windows.min = state.getMin();
+        windows.max = state.getMax();
+        windows.sum = state.getSum();
+        windows.last = state.getLast();
+        windows.lastTs = state.getLastTs();
+        for (int i = 0; i < size; i++) {
+            if (windows.count[i] > 0) {
+                windows.lastBucket = Math.max(windows.lastBucket, windows.bucketNo[i]);
+            }
+        }
+        return windows;
+    }
+
+    private ObjectNode aggregate(long windowEndBucket, List<WindowAggregation> aggregations) {
+        ObjectNode values = null;
+        for (int keyIdx = 0; keyIdx < keys.size(); keyIdx++) {
+            long wCount = 0;
+            double wMin = 0;
+            double wMax = 0;
+            double wSum = 0;
+            double wLast = 0;
+            long wLastTs = Long.MIN_VALUE;
+            for (int slot = 0; slot < bucketsPerWindow; slot++) {
+                int idx = keyIdx * bucketsPerWindow + slot;
+                if (count[idx] > 0 && bucketNo[idx] < windowEndBucket && bucketNo[idx] >= windowEndBucket - bucketsPerWindow) {
+                    if (wCount == 0) {
+                        wMin = min[idx];
+                        wMax = max[idx];
+                    } else {
+                        wMin = Math.min(wMin, min[idx]);
+                        wMax = Math.max(wMax, max[idx]);
+                    }
+                    wCount += count[idx];
+                    wSum += sum[idx];
+                    if (lastTs[idx] >= wLastTs) {
+                        wLast = last[idx];
+                        wLastTs = lastTs[idx];
+                    }
+                }
+            }
+            if (wCount == 0) {
+                continue;
+            }
+            if (values == null) {
+                values = JacksonUtil.newObjectNode();
+            }
+            String key = keys.get(keyIdx);
+            for (WindowAggregation aggregation : aggregations) {
+                String name = key + "_" + aggregation.name().toLowerCase();
+                switch (aggregation) {
+                    case MIN:
+                        values.put(name, wMin);
+                        break;
+                    case MAX:
+                        values.put(name, wMax);
+                        break;
+                    case AVG:
+                        values.put(name, wSum / wCount);
+                        break;
+                    case SUM:
+                        values.put(name, wSum);
+                        break;
+                    case COUNT:
+                        values.put(name, wCount);
+                        break;
+                    case LAST:
+                        values.put(name, wLast);
+                        break;
+                }
+            }
+        }
+        return values;
+    }
+
+    private int getKeyIndex(String key) {
+        Integer keyIdx = keyIndexes.get(key);
+        if (keyIdx == null) {
+            keyIdx = keys.size();
+            keys.add(key);
+            keyIndexes.put(key, keyIdx);
+            int size = keys.size() * bucketsPerWindow;
+            bucketNo = Arrays.copyOf(bucketNo, size);
+            count = Arrays.copyOf(count, size);
+            min = Arrays.copyOf(min, size);
+            max = Arrays.copyOf(max, size);
+            sum = Arrays.copyOf(sum, size);
+            last = Arrays.copyOf(last, size);
+            lastTs = Arrays.copyOf(lastTs, size);
+        }
+        return keyIdx;
+    }
+
+    @Data
+    static class AggregatedWindow {
+        private final long startTs;
+        private final long endTs;
+        private final ObjectNode values;
+    }
+
+    @Data
+    static class State {
+        private long closedEndTs;
+        private List<String> keys;
+        private long[] bucketNo;
+        private long[] count;
+        private double[] min;
+        private double[] max;
+        private double[] sum;
+        private double[] last;
+        private long[] lastTs;
+    }
+
+}
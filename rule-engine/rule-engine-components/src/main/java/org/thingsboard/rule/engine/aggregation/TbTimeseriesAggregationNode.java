@@ -0,0 +1,290 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.aggregation;
+
+import com.google.gson.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.rule.engine.api.RuleNode;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.rule.engine.api.TbNode;
+import org.thingsboard.rule.engine.api.TbNodeConfiguration;
+import org.thingsboard.rule.engine.api.TbNodeException;
+import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.rule.engine.telemetry.TbMsgTimeseriesNode;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.kv.DataType;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.page.PageLink;
+import org.thingsboard.server.common.data.plugin.ComponentType;
+import org.thingsboard.server.common.data.rule.RuleNodeState;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
+import org.thingsboard.server.common.msg.queue.ServiceQueue;
+import org.thingsboard.server.common.msg.session.SessionMsgType;
+import org.thingsboard.server.common.transport.adaptor.JsonConverter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.thingsboard.rule.engine.api.TbRelationTypes.SUCCESS;
+
+@Slf4j
+@RuleNode(
+        type = ComponentType.ACTION,
+        name = "timeseries aggregation",
+        configClazz = TbTimeseriesAggregationNodeConfiguration.class,
+        nodeDescription = "Aggregates timeseries data over time windows",
+        nodeDetails = "Aggregates numeric timeseries values of every originator over tumbling or sliding time windows. " +
+                "When the window is closed, produces POST_TELEMETRY_REQUEST msg with the aggregated values named as key and aggregation, for example 'temperature_avg', " +
+                "and the start of the window as 'ts' metadata field. Expects messages with 'POST_TELEMETRY_REQUEST' message type, " +
+                "please note, this node acknowledges the incoming message (message will be removed from queue). " +
+                "The state of the windows is saved every 'checkpointIntervalInSeconds' and when the node is stopped, " +
+                "so values received since the last checkpoint are lost if the server crashes. " +
+                "Lower interval shortens this window at the cost of more database writes, 0 keeps the windows in memory only",
+        icon = "functions"
+)
+public class TbTimeseriesAggregationNode implements TbNode {
+
+    private static final String TB_TIMESERIES_AGGREGATION_NODE_MSG = "TbTimeseriesAggregationNodeMsg";
+
+    private TbTimeseriesAggregationNodeConfiguration config;
+    private long slideMs;
+    private int bucketsPerWindow;
+    private Set<String> keys;
+    private boolean persistState;
+    private long checkpointIntervalMs;
+    private long lastCheckpointTs;
+    private final Map<EntityId, AggregationWindows> windows = new HashMap<>();
+    private UUID nextTickId;
+    private TbContext ctx;
+
+    @Override
+    public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
+        this.ctx = ctx;
+        this.config = TbNodeUtils.convert(configuration, TbTimeseriesAggregationNodeConfiguration.class);
+        if (config.getWindowSizeInSeconds() <= 0) {
+            throw new TbNodeException("Window size should be positive!");
+        }
+        int slideInSeconds = config.getWindowSlideInSeconds() > 0 ? config.getWindowSlideInSeconds() : config.getWindowSizeInSeconds();
+        if (config.getWindowSizeInSeconds() % slideInSeconds != 0) {
+            throw new TbNodeException("Window size should be a multiple of the window slide!");
+        }
+        if (config.getAggregations() == null || config.getAggregations().isEmpty()) {
+            throw new TbNodeException("At least one aggregation should be selected!");
+        }
+        this.slideMs = TimeUnit.SECONDS.toMillis(slideInSeconds);
+        this.bucketsPerWindow = config.getWindowSizeInSeconds() / slideInSeconds;
+        this.keys = config.getKeys() == null || config.getKeys().isEmpty() ? null : new HashSet<>(config.getKeys());
+        this.persistState = config.getCheckpointIntervalInSeconds() > 0;
+        this.checkpointIntervalMs = TimeUnit.SECONDS.toMillis(config.getCheckpointIntervalInSeconds());
+        this.lastCheckpointTs = System.currentTimeMillis();
+        if (persistState) {
+            recoverWindows(ctx);
+        } else if (ctx.isLocalEntity(ctx.getSelfId())) {
+            ctx.clearRuleNodeStates();
+        }
+        scheduleTickMsg(ctx);
+    }
+
+    @Override
+    public void onMsg(TbContext ctx, TbMsg msg) {
+        long now = System.currentTimeMillis();
+        if (msg.getType().equals(TB_TIMESERIES_AGGREGATION_NODE_MSG)) {
+            if (msg.getId().equals(nextTickId)) {
+                closeWindows(ctx, now);
+                if (persistState && now - lastCheckpointTs >= checkpointIntervalMs) {
+                    checkpoint(ctx);
+                    lastCheckpointTs = now;
+                }
+                scheduleTickMsg(ctx);
+            }
+        } else if (!msg.getType().equals(SessionMsgType.POST_TELEMETRY_REQUEST.name())) {
+            ctx.tellFailure(msg, new IllegalArgumentException("Unsupported msg type: " + msg.getType()));
+        } else {
+            EntityId originator = msg.getOriginator();
+            AggregationWindows originatorWindows = getOrCreateWindows(ctx, originator, now);
+            if (originatorWindows.getClosedEndTs() + slideMs <= now) {
+                // buckets of the windows that should be closed may be reused by the new values
+                closeWindows(ctx, originator, originatorWindows, now);
+            }
+            Map<Long, List<KvEntry>> tsKvMap = JsonConverter.convertToTelemetry(new JsonParser().parse(msg.getData()), TbMsgTimeseriesNode.getTs(msg));
+            int lateValues = 0;
+            for (Map.Entry<Long, List<KvEntry>> tsKvEntry : tsKvMap.entrySet()) {
+                // values from the future are aggregated as the current ones
+                long ts = Math.min(tsKvEntry.getKey(), now);
+                for (KvEntry kvEntry : tsKvEntry.getValue()) {
+                    if (keys != null && !keys.contains(kvEntry.getKey())) {
+                        continue;
+                    }
+                    if (kvEntry.getDataType() == DataType.LONG) {
+                        lateValues += originatorWindows.add(kvEntry.getKey(), ts, kvEntry.getLongValue().get()) ? 0 : 1;
+                    } else if (kvEntry.getDataType() == DataType.DOUBLE) {
+                        lateValues += originatorWindows.add(kvEntry.getKey(), ts, kvEntry.getDoubleValue().get()) ? 0 : 1;
+                    }
+                }
+            }
+            if (lateValues > 0) {
+                log.debug("[{}][{}] Skipped {} values of the closed windows", ctx.getSelfId(), originator, lateValues);
+            }
+            originatorWindows.setCustomerId(msg.getCustomerId());
+            originatorWindows.setQueueName(msg.getQueueName());
+            ctx.ack(msg);
+        }
+    }
+
+    @Override
+    public void onPartitionChangeMsg(TbContext ctx, PartitionChangeMsg msg) {
+        if (!persistState) {
+            return;
+        }
+        // Windows of the entities that are no longer assigned to current server partitions are restored by their new owner
+        Iterator<Map.Entry<EntityId, AggregationWindows>> iterator = windows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<EntityId, AggregationWindows> entry = iterator.next();
+            if (!ctx.isLocalEntity(entry.getKey())) {
+                if (entry.getValue().isDirty()) {
+                    saveState(ctx, entry.getKey(), entry.getValue());
+                }
+                iterator.remove();
+            }
+        }
+        recoverWindows(ctx);
+    }
+
+    private AggregationWindows getOrCreateWindows(TbContext ctx, EntityId originator, long now) {
+        AggregationWindows originatorWindows = windows.get(originator);
+        if (originatorWindows == null) {
+            RuleNodeState state = persistState ? ctx.findRuleNodeStateForEntity(originator) : null;
+            if (state != null) {
+                originatorWindows = restoreWindows(state);
+            } else {
+                originatorWindows = new AggregationWindows(slideMs, bucketsPerWindow, now / slideMs * slideMs);
+            }
+            windows.put(originator, originatorWindows);
+        }
+        return originatorWindows;
+    }
+
+    private void closeWindows(TbContext ctx, long now) {
+        Iterator<Map.Entry<EntityId, AggregationWindows>> iterator = windows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<EntityId, AggregationWindows> entry = iterator.next();
+            AggregationWindows originatorWindows = entry.getValue();
+            closeWindows(ctx, entry.getKey(), originatorWindows, now);
+            if (originatorWindows.isExpired()) {
+                if (originatorWindows.getRuleNodeState() != null) {
+                    ctx.removeRuleNodeStateForEntity(entry.getKey());
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    private void closeWindows(TbContext ctx, EntityId originator, AggregationWindows originatorWindows, long now) {
+        List<AggregationWindows.AggregatedWindow> closed = originatorWindows.close(now / slideMs * slideMs, config.getAggregations());
+        String queueName = originatorWindows.getQueueName() != null ? originatorWindows.getQueueName() : ServiceQueue.MAIN;
+        for (AggregationWindows.AggregatedWindow window : closed) {
+            TbMsgMetaData metaData = new TbMsgMetaData();
+            metaData.putValue("ts", Long.toString(window.getStartTs()));
+            metaData.putValue("windowStartTs", Long.toString(window.getStartTs()));
+            metaData.putValue("windowEndTs", Long.toString(window.getEndTs()));
+            TbMsg tbMsg = TbMsg.newMsg(queueName, SessionMsgType.POST_TELEMETRY_REQUEST.name(), originator,
+                    originatorWindows.getCustomerId(), metaData, JacksonUtil.toString(window.getValues()));
+            ctx.enqueueForTellNext(tbMsg, SUCCESS);
+        }
+    }
+
+    private void checkpoint(TbContext ctx) {
+        int saved = 0;
+        for (Map.Entry<EntityId, AggregationWindows> entry : windows.entrySet()) {
+            if (entry.getValue().isDirty()) {
+                saveState(ctx, entry.getKey(), entry.getValue());
+                saved++;
+            }
+        }
+        log.trace("[{}] Saved state of {} originators", ctx.getSelfId(), saved);
+    }
+
+    private void saveState(TbContext ctx, EntityId originator, AggregationWindows originatorWindows) {
+        RuleNodeState state = originatorWindows.getRuleNodeState();
+        if (state == null) {
+            state = new RuleNodeState();
+            state.setRuleNodeId(ctx.getSelfId());
+            state.setEntityId(originator);
+        }
+        state.setStateData(JacksonUtil.toString(originatorWindows.toState()));
+        originatorWindows.setRuleNodeState(ctx.saveRuleNodeState(state));
+    }
+
+    private void recoverWindows(TbContext ctx) {
+        int fetchCount = 0;
+        PageLink pageLink = new PageLink(1024);
+        while (true) {
+            PageData<RuleNodeState> states = ctx.findRuleNodeStates(pageLink);
+            for (RuleNodeState state : states.getData()) {
+                if (!windows.containsKey(state.getEntityId()) && ctx.isLocalEntity(state.getEntityId())) {
+                    windows.put(state.getEntityId(), restoreWindows(state));
+                    fetchCount++;
+                }
+            }
+            if (!states.hasNext()) {
+                break;
+            } else {
+                pageLink = pageLink.nextPageLink();
+            }
+        }
+        if (fetchCount > 0) {
+            log.info("[{}] Restored windows of {} originators", ctx.getSelfId(), fetchCount);
+        }
+    }
+
+    private AggregationWindows restoreWindows(RuleNodeState state) {
+        AggregationWindows originatorWindows = AggregationWindows.fromState(slideMs, bucketsPerWindow,
+                JacksonUtil.fromString(state.getStateData(), AggregationWindows.State.class));
+        originatorWindows.setRuleNodeState(state);
+        return originatorWindows;
+    }
+
+    private void scheduleTickMsg(TbContext ctx) {
+        long curTs = System.currentTimeMillis();
+        long nextWindowEndTs = (curTs / slideMs + 1) * slideMs;
+        TbMsg tickMsg = ctx.newMsg(ServiceQueue.MAIN, TB_TIMESERIES_AGGREGATION_NODE_MSG, ctx.getSelfId(), new TbMsgMetaData(), "");
+        nextTickId = tickMsg.getId();
+        ctx.tellSelf(tickMsg, nextWindowEndTs - curTs);
+    }
+
+    @Override
+    public void destroy() {
+        if (persistState && ctx != null) {
+            try {
+                checkpoint(ctx);
+            } catch (Exception e) {
+                log.warn("[{}] Failed to save state of the windows", ctx.getSelfId(), e);
+            }
+        }
+        windows.clear();
+    }
+}
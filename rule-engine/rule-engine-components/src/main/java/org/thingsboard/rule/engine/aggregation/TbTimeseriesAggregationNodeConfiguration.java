@@ -0,0 +1,47 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.aggregation;
+
+import lombok.Data;
+import org.thingsboard.rule.engine.api.NodeConfiguration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@Data
+public class TbTimeseriesAggregationNodeConfiguration implements NodeConfiguration<TbTimeseriesAggregationNodeConfiguration> {
+
+    private int windowSizeInSeconds;
+    // 0 or window size for tumbling windows
+    private int windowSlideInSeconds;
+    // aggregate all numeric keys if empty
+    private List<String> keys;
+    private List<WindowAggregation> aggregations;
+    // values acknowledged after the last checkpoint are lost on crash, 0 to disable persistence of the windows state
+    private int checkpointIntervalInSeconds;
+
+    @Override
+    public TbTimeseriesAggregationNodeConfiguration defaultConfiguration() {
+        TbTimeseriesAggregationNodeConfiguration configuration = new TbTimeseriesAggregationNodeConfiguration();
+        configuration.setWindowSizeInSeconds(60);
+        configuration.setWindowSlideInSeconds(0);
+        configuration.setKeys(Collections.emptyList());
+        configuration.setAggregations(Arrays.asList(WindowAggregation.MIN, WindowAggregation.MAX, WindowAggregation.AVG));
+        configuration.setCheckpointIntervalInSeconds(60);
+        return configuration;
+    }
+}
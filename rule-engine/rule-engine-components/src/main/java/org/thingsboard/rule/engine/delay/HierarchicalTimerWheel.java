@@ -0,0 +1,212 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.delay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical timer wheel with a fixed tick.
+ * <p>
+ * Level 0 contains one slot per tick, every next level contains slots that span the whole previous level.
+ * Timers that do not fit into the top level are kept in the overflow list. Adding a timer is O(1), and when
+ * the time advances, timers of the higher levels are cascaded to the lower ones at the slot boundaries.
+ * <p>
+ * Not thread safe: is expected to be used by a single rule node actor.
+ */
+public class HierarchicalTimerWheel<T> {
+
+    // 1 minute of ticks, 1 hour of minutes, 1 day of hours, 1 year of days for the tick of 1 second
+    static final int[] DEFAULT_LEVEL_SIZES = {60, 60, 24, 366};
+
+    private final long tickMs;
+    private final int[] levelSizes;
+    // number of ticks spanned by the slot of each level
+    private final long[] slotSpans;
+    private final List<Entry<T>>[][] levels;
+    private final List<Entry<T>> overflow = new ArrayList<>();
+    // timers with the deadline before the current tick
+    private final List<Entry<T>> overdue = new ArrayList<>();
+    // next tick to process
+    private long currentTick;
+    private int size;
+
+    public HierarchicalTimerWheel(long tickMs, long startTs) {
+        this(tickMs, DEFAULT_LEVEL_SIZES, startTs);
+    }
+
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimerWheel(long tickMs, int[] levelSizes, long startTs) {
+        this.tickMs = tickMs;
+        this.levelSizes = levelSizes.clone();
+        this.slotSpans = new long[levelSizes.length + 1];
+        this.levels = new List[levelSizes.length][];
+        long span = 1;
+        for (int i = 0; i < levelSizes.length; i++) {
+            slotSpans[i] = span;
+            levels[i] = new List[levelSizes[i]];
+            span *= levelSizes[i];
+        }
+        slotSpans[levelSizes.length] = span;
+        this.currentTick = startTs / tickMs;
+    }
+
+    /**
+     * Schedules the item to expire at the given time. Items with the deadline in the past expire on the next {@link #advance}.
+     */
+    public void add(long deadlineTs, T item) {
+        long tick = deadlineTs / tickMs;
+        if (tick < currentTick) {
+            overdue.add(new Entry<>(tick, item));
+        } else {
+            add(new Entry<>(tick, item));
+        }
+        size++;
+    }
+
+    /**
+     * Advances the wheel to the given time and passes all the expired items to the consumer in the order of their deadlines.
+     */
+    public void advance(long ts, Consumer<T> expired) {
+        long targetTick = ts / tickMs;
+        if (!overdue.isEmpty()) {
+            List<Entry<T>> entries = new ArrayList<>(overdue);
+            overdue.clear();
+            for (Entry<T> entry : entries) {
+                size--;
+                expired.accept(entry.item);
+            }
+        }
+        if (size == 0) {
+            currentTick = Math.max(currentTick, targetTick + 1);
+            return;
+        }
+        while (currentTick <= targetTick) {
+            for (int level = levelSizes.length; level > 0; level--) {
+                if (currentTick % slotSpans[level] == 0) {
+                    cascade(level);
+                }
+            }
+            List<Entry<T>> slot = takeSlot(0, (int) (currentTick % levelSizes[0]));
+            if (slot != null) {
+                for (Entry<T> entry : slot) {
+                    size--;
+                    expired.accept(entry.item);
+                }
+            }
+            currentTick++;
+            if (size == 0) {
+                currentTick = Math.max(currentTick, targetTick + 1);
+            }
+        }
+    }
+
+    /**
+     * Removes the items that match the predicate.
+     */
+    public void removeIf(Predicate<T> filter) {
+        for (List<Entry<T>>[] level : levels) {
+            for (List<Entry<T>> slot : level) {
+                if (slot != null) {
+                    removeIf(slot, filter);
+                }
+            }
+        }
+        removeIf(overflow, filter);
+        removeIf(overdue, filter);
+    }
+
+    public void clear() {
+        for (List<Entry<T>>[] level : levels) {
+            Arrays.fill(level, null);
+        }
+        overflow.clear();
+        overdue.clear();
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void removeIf(List<Entry<T>> entries, Predicate<T> filter) {
+        Iterator<Entry<T>> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            if (filter.test(iterator.next().item)) {
+                iterator.remove();
+                size--;
+            }
+        }
+    }
+
+    private void cascade(int level) {
+        List<Entry<T>> entries;
+        if (level == levelSizes.length) {
+            if (overflow.isEmpty()) {
+                return;
+            }
+            entries = new ArrayList<>(overflow);
+            overflow.clear();
+        } else {
+            entries = takeSlot(level, (int) ((currentTick / slotSpans[level]) % levelSizes[level]));
+        }
+        if (entries != null) {
+            entries.forEach(this::add);
+        }
+    }
+
+    private void add(Entry<T> entry) {
+        for (int level = 0; level < levelSizes.length; level++) {
+            long slotTick = entry.tick / slotSpans[level];
+            if (slotTick - currentTick / slotSpans[level] < levelSizes[level]) {
+                int slotIdx = (int) (slotTick % levelSizes[level]);
+                List<Entry<T>> slot = levels[level][slotIdx];
+                if (slot == null) {
+                    slot = new ArrayList<>();
+                    levels[level][slotIdx] = slot;
+                }
+                slot.add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private List<Entry<T>> takeSlot(int level, int slotIdx) {
+        List<Entry<T>> slot = levels[level][slotIdx];
+        levels[level][slotIdx] = null;
+        return slot;
+    }
+
+    private static class Entry<T> {
+        private final long tick;
+        private final T item;
+
+        private Entry(long tick, T item) {
+            this.tick = tick;
+            this.item = item;
+        }
+    }
+
+}
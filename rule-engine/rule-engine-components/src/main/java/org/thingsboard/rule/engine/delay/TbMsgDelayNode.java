@@ -17,19 +17,30 @@ package org.thingsboard.rule.engine.delay;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.math.NumberUtils;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.rule.engine.api.RuleNode;
 import org.thingsboard.rule.engine.api.TbContext;
 import org.thingsboard.rule.engine.api.TbNode;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.page.PageLink;
 import org.thingsboard.server.common.data.plugin.ComponentType;
+import org.thingsboard.server.common.data.rule.RuleNodeState;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
 import org.thingsboard.server.common.msg.queue.ServiceQueue;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -50,28 +61,52 @@ import static org.thingsboard.rule.engine.api.TbRelationTypes.SUCCESS;
 public class TbMsgDelayNode implements TbNode {
 
     private static final String TB_MSG_DELAY_NODE_MSG = "TbMsgDelayNodeMsg";
+    private static final long TICK_MS = TimeUnit.SECONDS.toMillis(1);
+    // payload of the persisted messages delayed for a longer period is not kept in memory
+    private static final long MAX_IN_MEMORY_PAYLOAD_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
 
     private TbMsgDelayNodeConfiguration config;
-    private Map<UUID, TbMsg> pendingMsgs;
+    private HierarchicalTimerWheel<PendingMsg> pendingMsgs;
+    // ids of the persisted msgs that are pending in memory, used to recover persisted msgs of the newly assigned partitions only once
+    private Set<UUID> persistedMsgIds;
+    private boolean tickScheduled;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = TbNodeUtils.convert(configuration, TbMsgDelayNodeConfiguration.class);
-        this.pendingMsgs = new HashMap<>();
+        this.pendingMsgs = new HierarchicalTimerWheel<>(TICK_MS, System.currentTimeMillis());
+        this.persistedMsgIds = new HashSet<>();
+        if (config.isPersistPendingMsgs()) {
+            recoverPendingMsgs(ctx);
+        } else if (ctx.isLocalEntity(ctx.getSelfId())) {
+            ctx.clearRuleNodeStates();
+        }
     }
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) {
         if (msg.getType().equals(TB_MSG_DELAY_NODE_MSG)) {
-            TbMsg pendingMsg = pendingMsgs.remove(UUID.fromString(msg.getData()));
-            if (pendingMsg != null) {
-                ctx.enqueueForTellNext(pendingMsg, SUCCESS);
-            }
+            tickScheduled = false;
+            processExpiredMsgs(ctx);
+            scheduleTick(ctx);
         } else {
             if (pendingMsgs.size() < config.getMaxPendingMsgs()) {
-                pendingMsgs.put(msg.getId(), msg);
-                TbMsg tickMsg = ctx.newMsg(ServiceQueue.MAIN, TB_MSG_DELAY_NODE_MSG, ctx.getSelfId(), msg.getCustomerId(), new TbMsgMetaData(), msg.getId().toString());
-                ctx.tellSelf(tickMsg, getDelay(msg));
+                long delayMs = getDelay(msg);
+                long deadlineTs = System.currentTimeMillis() + delayMs;
+                byte[] data = TbMsg.toByteArray(msg);
+                if (config.isPersistPendingMsgs()) {
+                    try {
+                        persistPendingMsg(ctx, msg, deadlineTs, data);
+                    } catch (Exception e) {
+                        ctx.tellFailure(msg, e);
+                        return;
+                    }
+                    if (delayMs > MAX_IN_MEMORY_PAYLOAD_DELAY_MS) {
+                        data = null;
+                    }
+                }
+                pendingMsgs.add(deadlineTs, new PendingMsg(msg.getId(), msg.getOriginator(), msg.getQueueName(), data));
+                scheduleTick(ctx);
                 ctx.ack(msg);
             } else {
                 ctx.tellFailure(msg, new RuntimeException("Max limit of pending messages reached!"));
@@ -79,6 +114,114 @@ public class TbMsgDelayNode implements TbNode {
         }
     }
 
+    @Override
+    public void onPartitionChangeMsg(TbContext ctx, PartitionChangeMsg msg) {
+        if (config.isPersistPendingMsgs()) {
+            // Msgs of the entities that are no longer assigned to current server partitions are delivered by their new owner
+            pendingMsgs.removeIf(pendingMsg -> {
+                if (ctx.isLocalEntity(pendingMsg.originator)) {
+                    return false;
+                }
+                persistedMsgIds.remove(pendingMsg.id);
+                return true;
+            });
+            recoverPendingMsgs(ctx);
+        }
+    }
+
+    private void scheduleTick(TbContext ctx) {
+        if (!tickScheduled && !pendingMsgs.isEmpty()) {
+            TbMsg tickMsg = ctx.newMsg(ServiceQueue.MAIN, TB_MSG_DELAY_NODE_MSG, ctx.getSelfId(), new TbMsgMetaData(), "");
+            ctx.tellSelf(tickMsg, TICK_MS);
+            tickScheduled = true;
+        }
+    }
+
+    private void processExpiredMsgs(TbContext ctx) {
+        List<PendingMsg> expired = new ArrayList<>();
+        pendingMsgs.advance(System.currentTimeMillis(), expired::add);
+        if (config.isPersistPendingMsgs()) {
+            expired.forEach(pendingMsg -> deliverPersistedMsg(ctx, pendingMsg));
+        } else {
+            expired.forEach(pendingMsg -> deliver(ctx, pendingMsg));
+        }
+    }
+
+    private void deliver(TbContext ctx, PendingMsg pendingMsg) {
+        if (pendingMsg.data != null) {
+            ctx.enqueueForTellNext(TbMsg.fromBytes(pendingMsg.queueName, pendingMsg.data, TbMsgCallback.EMPTY), SUCCESS);
+        } else {
+            log.warn("[{}] Pending msg [{}] of [{}] was not found in the rule node state", ctx.getSelfId(), pendingMsg.id, pendingMsg.originator);
+        }
+    }
+
+    private void persistPendingMsg(TbContext ctx, TbMsg msg, long deadlineTs, byte[] data) {
+        EntityId originator = msg.getOriginator();
+        RuleNodeState state = new RuleNodeState();
+        state.setRuleNodeId(ctx.getSelfId());
+        state.setEntityId(toStateEntityId(originator, msg.getId()));
+        state.setStateData(JacksonUtil.toString(new TbMsgDelayNodeState(originator.getEntityType(), originator.getId(),
+                deadlineTs, msg.getQueueName(), Base64.getEncoder().encodeToString(data))));
+        ctx.saveRuleNodeState(state);
+        persistedMsgIds.add(msg.getId());
+    }
+
+    /**
+     * Restores the payload of the expired msg if it was not kept in memory, delivers the msg and removes its rule node state.
+     * The msg is delivered before the state is removed, so it may be delivered twice if the server stops in between.
+     */
+    private void deliverPersistedMsg(TbContext ctx, PendingMsg pendingMsg) {
+        persistedMsgIds.remove(pendingMsg.id);
+        EntityId stateEntityId = toStateEntityId(pendingMsg.originator, pendingMsg.id);
+        if (pendingMsg.data == null) {
+            RuleNodeState state = ctx.findRuleNodeStateForEntity(stateEntityId);
+            if (state != null) {
+                TbMsgDelayNodeState delayState = JacksonUtil.fromString(state.getStateData(), TbMsgDelayNodeState.class);
+                pendingMsg.data = Base64.getDecoder().decode(delayState.getData());
+            }
+        }
+        deliver(ctx, pendingMsg);
+        ctx.removeRuleNodeStateForEntity(stateEntityId);
+    }
+
+    private void recoverPendingMsgs(TbContext ctx) {
+        int recoveredCount = 0;
+        PageLink pageLink = new PageLink(1024);
+        while (true) {
+            PageData<RuleNodeState> states = ctx.findRuleNodeStates(pageLink);
+            for (RuleNodeState state : states.getData()) {
+                UUID msgId = state.getEntityId().getId();
+                if (persistedMsgIds.contains(msgId)) {
+                    continue;
+                }
+                TbMsgDelayNodeState delayState = JacksonUtil.fromString(state.getStateData(), TbMsgDelayNodeState.class);
+                EntityId originator = EntityIdFactory.getByTypeAndUuid(delayState.getOriginatorType(), delayState.getOriginatorId());
+                if (ctx.isLocalEntity(originator)) {
+                    pendingMsgs.add(delayState.getDeadlineTs(), new PendingMsg(msgId, originator, delayState.getQueueName(), null));
+                    persistedMsgIds.add(msgId);
+                    recoveredCount++;
+                }
+            }
+            if (!states.hasNext()) {
+                break;
+            } else {
+                pageLink = pageLink.nextPageLink();
+            }
+        }
+        if (recoveredCount > 0) {
+            log.info("[{}] Recovered {} pending msgs", ctx.getSelfId(), recoveredCount);
+        }
+        scheduleTick(ctx);
+    }
+
+    /**
+     * Every pending msg is persisted in its own rule node state. The state is bound to the id of the msg,
+     * since the states are unique per rule node and entity, and a single originator may have many pending msgs.
+     */
+    private static EntityId toStateEntityId(EntityId originator, UUID msgId) {
+        return EntityIdFactory.getByTypeAndUuid(originator.getEntityType(), msgId);
+    }
+
     private long getDelay(TbMsg msg) {
         int periodInSeconds;
         if (config.isUseMetadataPeriodInSecondsPatterns()) {
@@ -100,5 +243,21 @@ public class TbMsgDelayNode implements TbNode {
     @Override
     public void destroy() {
         pendingMsgs.clear();
+        persistedMsgIds.clear();
+    }
+
+    private static class PendingMsg {
+        private final UUID id;
+        private final EntityId originator;
+        private final String queueName;
+        // TbMsgProto bytes or null if the payload is kept in the rule node state only
+        private byte[] data;
+
+        private PendingMsg(UUID id, EntityId originator, String queueName, byte[] data) {
+            this.id = id;
+            this.originator = originator;
+            this.queueName = queueName;
+            this.data = data;
+        }
     }
 }
@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.expression;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.msg.TbMsg;
+
+import java.util.Map;
+
+/**
+ * Variables available to the expression. Message payload is parsed on first access only.
+ */
+class ExpressionContext {
+
+    private final TbMsg msg;
+    private JsonNode data;
+
+    ExpressionContext(TbMsg msg) {
+        this.msg = msg;
+    }
+
+    Object getMsg() {
+        if (data == null) {
+            data = JacksonUtil.toJsonNode(msg.getData());
+        }
+        return ExpressionValues.fromJson(data);
+    }
+
+    Map<String, String> getMetadata() {
+        return msg.getMetaData().getData();
+    }
+
+    String getMsgType() {
+        return msg.getType();
+    }
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.expression;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.thingsboard.rule.engine.expression.ExpressionValues.isEqual;
+import static org.thingsboard.rule.engine.expression.ExpressionValues.isNullish;
+import static org.thingsboard.rule.engine.expression.ExpressionValues.toNumber;
+import static org.thingsboard.rule.engine.expression.ExpressionValues.toStr;
+
+/**
+ * Functions that may be called from the expression. None of them has side effects.
+ */
+enum ExpressionFunction {
+
+    CONTAINS("contains", 2) {
+        @Override
+        Object apply(Object[] args) {
+            Object target = args[0];
+            if (target instanceof String) {
+                return !isNullish(args[1]) && ((String) target).contains(toStr(args[1]));
+            } else if (target instanceof List) {
+                return ((List<?>) target).stream().anyMatch(item -> isEqual(item, args[1]));
+            } else if (target instanceof Map) {
+                return ((Map<?, ?>) target).containsKey(toStr(args[1]));
+            } else if (target instanceof JsonNode) {
+                JsonNode node = (JsonNode) target;
+                if (node.isObject()) {
+                    return node.has(toStr(args[1]));
+                }
+                for (JsonNode item : node) {
+                    if (isEqual(ExpressionValues.fromJson(item), args[1])) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    },
+    STARTS_WITH("startsWith", 2) {
+        @Override
+        Object apply(Object[] args) {
+            return args[0] instanceof String && !isNullish(args[1]) && ((String) args[0]).startsWith(toStr(args[1]));
+        }
+    },
+    ENDS_WITH("endsWith", 2) {
+        @Override
+        Object apply(Object[] args) {
+            return args[0] instanceof String && !isNullish(args[1]) && ((String) args[0]).endsWith(toStr(args[1]));
+        }
+    },
+    LOWER("lower", 1) {
+        @Override
+        Object apply(Object[] args) {
+            return !isNullish(args[0]) ? toStr(args[0]).toLowerCase(Locale.ROOT) : null;
+        }
+    },
+    UPPER("upper", 1) {
+        @Override
+        Object apply(Object[] args) {
+            return !isNullish(args[0]) ? toStr(args[0]).toUpperCase(Locale.ROOT) : null;
+        }
+    },
+    LENGTH("length", 1) {
+        @Override
+        Object apply(Object[] args) {
+            Object target = args[0];
+            if (target instanceof String) {
+                return (long) ((String) target).length();
+            } else if (target instanceof List) {
+                return (long) ((List<?>) target).size();
+            } else if (target instanceof Map) {
+                return (long) ((Map<?, ?>) target).size();
+            } else if (target instanceof JsonNode) {
+                return (long) ((JsonNode) target).size();
+            }
+            return 0L;
+        }
+    },
+    NUMBER("number", 1) {
+        @Override
+        Object apply(Object[] args) {
+            return args[0] instanceof Long ? args[0] : toNumber(args[0]);
+        }
+    },
+    STRING("string", 1) {
+        @Override
+        Object apply(Object[] args) {
+            return toStr(args[0]);
+        }
+    },
+    ABS("abs", 1) {
+        @Override
+        Object apply(Object[] args) {
+            return args[0] instanceof Long ? (Object) Math.abs((Long) args[0]) : Math.abs(toNumber(args[0]));
+        }
+    },
+    ROUND("round", 1) {
+        @Override
+        Object apply(Object[] args) {
+            double value = toNumber(args[0]);
+            return Double.isNaN(value) ? value : (Object) Math.round(value);
+        }
+    },
+    FLOOR("floor", 1) {
+        @Override
+        Object apply(Object[] args) {
+            return Math.floor(toNumber(args[0]));
+        }
+    },
+    CEIL("ceil", 1) {
+        @Override
+        Object apply(Object[] args) {
+            return Math.ceil(toNumber(args[0]));
+        }
+    },
+    MIN("min", 2) {
+        @Override
+        Object apply(Object[] args) {
+            return Math.min(toNumber(args[0]), toNumber(args[1]));
+        }
+    },
+    MAX("max", 2) {
+        @Override
+        Object apply(Object[] args) {
+            return Math.max(toNumber(args[0]), toNumber(args[1]));
+        }
+    };
+
+    private final String name;
+    private final int argsCount;
+
+    ExpressionFunction(String name, int argsCount) {
+        this.name = name;
+        this.argsCount = argsCount;
+    }
+
+    abstract Object apply(Object[] args);
+
+    String getName() {
+        return name;
+    }
+
+    int getArgsCount() {
+        return argsCount;
+    }
+
+    static ExpressionFunction byName(String name) {
+        for (ExpressionFunction function : values()) {
+            if (function.name.equals(name)) {
+                return function;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.expression;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Value semantics of the expression language. Values are {@code null}, {@link #UNDEFINED}, {@link Boolean}, {@link Long},
+ * {@link Double}, {@link String}, container {@link JsonNode} of the message payload, metadata {@link Map} or results of the
+ * array and object literals ({@link List} and {@link Map}). Conversions follow JavaScript where it is reasonable,
+ * so that conditions written for the JS nodes keep their meaning.
+ */
+final class ExpressionValues {
+
+    /**
+     * Value of the {@code undefined} literal and of the missing fields. Differs from {@code null} in strict equality only.
+     */
+    static final Object UNDEFINED = new Object() {
+        @Override
+        public String toString() {
+            return "undefined";
+        }
+    };
+
+    private ExpressionValues() {
+    }
+
+    static boolean isNullish(Object value) {
+        return value == null || value == UNDEFINED;
+    }
+
+    static Object fromJson(JsonNode node) {
+        if (node == null || node.isMissingNode()) {
+            return UNDEFINED;
+        } else if (node.isNull()) {
+            return null;
+        } else if (node.isTextual()) {
+            return node.textValue();
+        } else if (node.isIntegralNumber() && node.canConvertToLong()) {
+            return node.longValue();
+        } else if (node.isNumber()) {
+            return node.doubleValue();
+        } else if (node.isBoolean()) {
+            return node.booleanValue();
+        } else {
+            return node;
+        }
+    }
+
+    static JsonNode toJson(Object value) {
+        JsonNodeFactory factory = JsonNodeFactory.instance;
+        if (isNullish(value)) {
+            return factory.nullNode();
+        } else if (value instanceof JsonNode) {
+            return (JsonNode) value;
+        } else if (value instanceof String) {
+            return factory.textNode((String) value);
+        } else if (value instanceof Long) {
+            return factory.numberNode((Long) value);
+        } else if (value instanceof Double) {
+            return factory.numberNode((Double) value);
+        } else if (value instanceof Boolean) {
+            return factory.booleanNode((Boolean) value);
+        } else if (value instanceof List) {
+            ArrayNode array = factory.arrayNode();
+            ((List<?>) value).forEach(item -> array.add(toJson(item)));
+            return array;
+        } else if (value instanceof Map) {
+            ObjectNode object = factory.objectNode();
+            ((Map<?, ?>) value).forEach((key, item) -> {
+                // like JSON.stringify, fields with undefined value are omitted
+                if (item != UNDEFINED) {
+                    object.set(String.valueOf(key), toJson(item));
+                }
+            });
+            return object;
+        }
+        return factory.textNode(value.toString());
+    }
+
+    static Object getMember(Object target, Object key) {
+        if (target instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) target;
+            String name = toStr(key);
+            return map.containsKey(name) ? map.get(name) : UNDEFINED;
+        } else if (target instanceof JsonNode) {
+            JsonNode node = (JsonNode) target;
+            if (node.isArray()) {
+                return "length".equals(key) ? (Object) (long) node.size() : fromJson(node.get(toIndex(key)));
+            }
+            return fromJson(node.get(toStr(key)));
+        } else if (target instanceof List) {
+            List<?> list = (List<?>) target;
+            if ("length".equals(key)) {
+                return (long) list.size();
+            }
+            int idx = toIndex(key);
+            return idx >= 0 && idx < list.size() ? list.get(idx) : UNDEFINED;
+        } else if (target instanceof String && "length".equals(key)) {
+            return (long) ((String) target).length();
+        }
+        return UNDEFINED;
+    }
+
+    private static int toIndex(Object key) {
+        double idx = toNumber(key);
+        return Double.isNaN(idx) ? -1 : (int) idx;
+    }
+
+    static boolean isTruthy(Object value) {
+        if (isNullish(value)) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Long) {
+            return (Long) value != 0L;
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            return d != 0.0 && !Double.isNaN(d);
+        } else if (value instanceof String) {
+            return !((String) value).isEmpty();
+        }
+        return true;
+    }
+
+    static double toNumber(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } else if (value instanceof String) {
+            String str = ((String) value).trim();
+            if (str.isEmpty()) {
+                return 0;
+            }
+            try {
+                return Double.parseDouble(str);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    static String toStr(Object value) {
+        if (value == null) {
+            return "null";
+        } else if (value == UNDEFINED) {
+            return "undefined";
+        } else if (value instanceof String) {
+            return (String) value;
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            if (d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < 1e15) {
+                return Long.toString((long) d);
+            }
+            return Double.toString(d);
+        } else if (value instanceof List || value instanceof Map) {
+            return toJson(value).toString();
+        }
+        return value.toString();
+    }
+
+    static Object add(Object left, Object right) {
+        if (left instanceof String || right instanceof String) {
+            return toStr(left) + toStr(right);
+        } else if (left instanceof Long && right instanceof Long) {
+            return (Long) left + (Long) right;
+        }
+        return toNumber(left) + toNumber(right);
+    }
+
+    static Object arithmetic(char op, Object left, Object right) {
+        if (op != '/' && left instanceof Long && right instanceof Long) {
+            long l = (Long) left;
+            long r = (Long) right;
+            switch (op) {
+                case '-':
+                    return l - r;
+                case '*':
+                    return l * r;
+                case '%':
+                    if (r != 0) {
+                        return l % r;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        double l = toNumber(left);
+        double r = toNumber(right);
+        switch (op) {
+            case '-':
+                return l - r;
+            case '*':
+                return l * r;
+            case '/':
+                return l / r;
+            case '%':
+                return l % r;
+            default:
+                throw new IllegalArgumentException("Unsupported operator: " + op);
+        }
+    }
+
+    static boolean isEqual(Object left, Object right) {
+        if (isNullish(left) || isNullish(right)) {
+            return isNullish(left) && isNullish(right);
+        } else if (left instanceof Number || right instanceof Number || left instanceof Boolean || right instanceof Boolean) {
+            if (left instanceof Boolean && right instanceof Boolean) {
+                return left.equals(right);
+            }
+            return toNumber(left) == toNumber(right);
+        }
+        return left.equals(right);
+    }
+
+    /**
+     * Strict equality of {@code ===}: values of different types are never equal, objects and arrays are equal to themselves only.
+     */
+    static boolean isStrictEqual(Object left, Object right) {
+        if (isNullish(left) || isNullish(right)) {
+            return left == right;
+        } else if (left instanceof Number && right instanceof Number) {
+            return ((Number) left).doubleValue() == ((Number) right).doubleValue();
+        } else if (left instanceof Boolean && right instanceof Boolean || left instanceof String && right instanceof String) {
+            return left.equals(right);
+        }
+        return left == right;
+    }
+
+    /**
+     * Returns negative, zero or positive number like {@link Comparable#compareTo}, or {@code null} if values are not comparable.
+     */
+    static Integer compare(Object left, Object right) {
+        if (left instanceof String && right instanceof String) {
+            return ((String) left).compareTo((String) right);
+        }
+        double l = toNumber(left);
+        double r = toNumber(right);
+        if (Double.isNaN(l) || Double.isNaN(r)) {
+            return null;
+        }
+        return l < r ? -1 : (l > r ? 1 : 0);
+    }
+
+}
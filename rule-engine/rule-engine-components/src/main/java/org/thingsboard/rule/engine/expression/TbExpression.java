@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.expression;
+
+import org.apache.commons.lang3.StringUtils;
+import org.thingsboard.server.common.msg.TbMsg;
+
+/**
+ * Expression compiled to a tree of closures. Expression may read the message payload ({@code msg}),
+ * metadata ({@code metadata}) and type ({@code msgType}), but has no assignments, loops or access to Java objects,
+ * so evaluation is side effect free and always terminates. Missing fields evaluate to {@code undefined},
+ * that is loosely equal to {@code null} and is returned as {@code null}.
+ * Message payload is parsed once per evaluation and only if the expression reads it.
+ * <p>
+ * Instances are immutable and may be evaluated concurrently.
+ */
+public final class TbExpression {
+
+    private final String source;
+    private final ExpressionNode root;
+
+    private TbExpression(String source, ExpressionNode root) {
+        this.source = source;
+        this.root = root;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is empty or has syntax errors
+     */
+    public static TbExpression compile(String source) {
+        if (StringUtils.isBlank(source)) {
+            throw new IllegalArgumentException("Expression is empty");
+        }
+        return new TbExpression(source, new TbExpressionParser(source).parse());
+    }
+
+    /**
+     * Returns {@code null}, {@link Boolean}, {@link Long}, {@link Double}, {@link String}, {@link java.util.List},
+     * {@link java.util.Map} or {@link com.fasterxml.jackson.databind.JsonNode} for objects and arrays of the payload.
+     */
+    public Object evaluate(TbMsg msg) {
+        Object result = root.evaluate(new ExpressionContext(msg));
+        return result != ExpressionValues.UNDEFINED ? result : null;
+    }
+
+    public boolean evaluateCondition(TbMsg msg) {
+        return ExpressionValues.isTruthy(evaluate(msg));
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+}
@@ -0,0 +1,511 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.expression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Recursive descent parser that compiles the expression source into a tree of {@link ExpressionNode} closures.
+ * Sub-expressions without variables are evaluated once at compile time.
+ * <p>
+ * Grammar, from the lowest precedence:
+ * <pre>
+ * expression := or ('?' expression ':' expression)?
+ * or         := and ('||' and)*
+ * and        := equality ('&amp;&amp;' equality)*
+ * equality   := relational (('==' | '!=' | '===' | '!==') relational)*
+ * relational := additive (('&lt;' | '&lt;=' | '&gt;' | '&gt;=') additive)*
+ * additive   := term (('+' | '-') term)*
+ * term       := unary (('*' | '/' | '%') unary)*
+ * unary      := ('!' | '-') unary | postfix
+ * postfix    := primary ('.' name | '[' expression ']')*
+ * primary    := number | string | true | false | null | undefined | msg | metadata | msgType
+ *             | function '(' arguments ')' | '(' expression ')' | '[' items ']' | '{' fields '}'
+ * </pre>
+ * Optional leading {@code return} and trailing {@code ;} are skipped, so one-line JS conditions are valid expressions.
+ */
+class TbExpressionParser {
+
+    private static final List<String> OPERATORS = Arrays.asList(
+            "===", "!==", "==", "!=", "<=", ">=", "&&", "||",
+            "<", ">", "+", "-", "*", "/", "%", "!", "?", ":", ".", ",", "(", ")", "[", "]", "{", "}");
+
+    private final String source;
+    private final List<Token> tokens;
+    private int pos;
+
+    TbExpressionParser(String source) {
+        this.source = source;
+        this.tokens = tokenize(source);
+    }
+
+    ExpressionNode parse() {
+        if (peekIs(TokenType.NAME, "return")) {
+            pos++;
+        }
+        ExpressionNode result = expression();
+        if (peekIs(TokenType.OPERATOR, ";")) {
+            pos++;
+        }
+        if (peek().type != TokenType.END) {
+            throw error("Unexpected '" + peek().text + "'");
+        }
+        return result;
+    }
+
+    private ExpressionNode expression() {
+        ExpressionNode condition = or();
+        if (!accept("?")) {
+            return condition;
+        }
+        ExpressionNode then = expression();
+        expect(":");
+        ExpressionNode otherwise = expression();
+        if (condition instanceof Constant) {
+            return ExpressionValues.isTruthy(((Constant) condition).value) ? then : otherwise;
+        }
+        return ctx -> ExpressionValues.isTruthy(condition.evaluate(ctx)) ? then.evaluate(ctx) : otherwise.evaluate(ctx);
+    }
+
+    private ExpressionNode or() {
+        ExpressionNode left = and();
+        while (accept("||")) {
+            ExpressionNode l = left;
+            ExpressionNode r = and();
+            left = fold(ctx -> {
+                Object value = l.evaluate(ctx);
+                return ExpressionValues.isTruthy(value) ? value : r.evaluate(ctx);
+            }, l, r);
+        }
+        return left;
+    }
+
+    private ExpressionNode and() {
+        ExpressionNode left = equality();
+        while (accept("&&")) {
+            ExpressionNode l = left;
+            ExpressionNode r = equality();
+            left = fold(ctx -> {
+                Object value = l.evaluate(ctx);
+                return ExpressionValues.isTruthy(value) ? r.evaluate(ctx) : value;
+            }, l, r);
+        }
+        return left;
+    }
+
+    private ExpressionNode equality() {
+        ExpressionNode left = relational();
+        while (true) {
+            boolean negate;
+            boolean strict;
+            if (accept("==")) {
+                negate = false;
+                strict = false;
+            } else if (accept("===")) {
+                negate = false;
+                strict = true;
+            } else if (accept("!=")) {
+                negate = true;
+                strict = false;
+            } else if (accept("!==")) {
+                negate = true;
+                strict = true;
+            } else {
+                return left;
+            }
+            ExpressionNode l = left;
+            ExpressionNode r = relational();
+            if (strict) {
+                left = fold(ctx -> negate != ExpressionValues.isStrictEqual(l.evaluate(ctx), r.evaluate(ctx)), l, r);
+            } else {
+                left = fold(ctx -> negate != ExpressionValues.isEqual(l.evaluate(ctx), r.evaluate(ctx)), l, r);
+            }
+        }
+    }
+
+    private ExpressionNode relational() {
+        ExpressionNode left = additive();
+        while (true) {
+            IntPredicate relation;
+            if (accept("<")) {
+                relation = c -> c < 0;
+            } else if (accept("<=")) {
+                relation = c -> c <= 0;
+            } else if (accept(">")) {
+                relation = c -> c > 0;
+            } else if (accept(">=")) {
+                relation = c -> c >= 0;
+            } else {
+                return left;
+            }
+            ExpressionNode l = left;
+            ExpressionNode r = additive();
+            left = fold(ctx -> {
+                Integer result = ExpressionValues.compare(l.evaluate(ctx), r.evaluate(ctx));
+                // values that are not comparable, e.g. missing field, make every comparison false
+                return result != null && relation.test(result);
+            }, l, r);
+        }
+    }
+
+    private ExpressionNode additive() {
+        ExpressionNode left = term();
+        while (true) {
+            ExpressionNode l = left;
+            if (accept("+")) {
+                ExpressionNode r = term();
+                left = fold(ctx -> ExpressionValues.add(l.evaluate(ctx), r.evaluate(ctx)), l, r);
+            } else if (accept("-")) {
+                ExpressionNode r = term();
+                left = fold(ctx -> ExpressionValues.arithmetic('-', l.evaluate(ctx), r.evaluate(ctx)), l, r);
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private ExpressionNode term() {
+        ExpressionNode left = unary();
+        while (peek().type == TokenType.OPERATOR && peek().text.length() == 1 && "*/%".contains(peek().text)) {
+            char op = tokens.get(pos++).text.charAt(0);
+            ExpressionNode l = left;
+            ExpressionNode r = unary();
+            left = fold(ctx -> ExpressionValues.arithmetic(op, l.evaluate(ctx), r.evaluate(ctx)), l, r);
+        }
+        return left;
+    }
+
+    private ExpressionNode unary() {
+        if (accept("!")) {
+            ExpressionNode operand = unary();
+            return fold(ctx -> !ExpressionValues.isTruthy(operand.evaluate(ctx)), operand);
+        } else if (accept("-")) {
+            ExpressionNode operand = unary();
+            return fold(ctx -> {
+                Object value = operand.evaluate(ctx);
+                return value instanceof Long ? (Object) (-(Long) value) : -ExpressionValues.toNumber(value);
+            }, operand);
+        }
+        return postfix();
+    }
+
+    private ExpressionNode postfix() {
+        ExpressionNode target = primary();
+        while (true) {
+            ExpressionNode t = target;
+            if (accept(".")) {
+                Token name = next();
+                if (name.type != TokenType.NAME) {
+                    throw error("Field name expected after '.'");
+                }
+                String key = name.text;
+                target = fold(ctx -> ExpressionValues.getMember(t.evaluate(ctx), key), t);
+            } else if (accept("[")) {
+                ExpressionNode key = expression();
+                expect("]");
+                target = fold(ctx -> ExpressionValues.getMember(t.evaluate(ctx), key.evaluate(ctx)), t, key);
+            } else {
+                return target;
+            }
+        }
+    }
+
+    private ExpressionNode primary() {
+        Token token = next();
+        switch (token.type) {
+            case NUMBER:
+                return new Constant(token.value);
+            case STRING:
+                return new Constant(token.text);
+            case NAME:
+                return name(token);
+            case OPERATOR:
+                switch (token.text) {
+                    case "(":
+                        ExpressionNode inner = expression();
+                        expect(")");
+                        return inner;
+                    case "[":
+                        return arrayLiteral();
+                    case "{":
+                        return objectLiteral();
+                    default:
+                        break;
+                }
+                break;
+            default:
+                break;
+        }
+        throw error(token.type == TokenType.END ? "Unexpected end of expression" : "Unexpected '" + token.text + "'");
+    }
+
+    private ExpressionNode name(Token token) {
+        switch (token.text) {
+            case "true":
+                return new Constant(Boolean.TRUE);
+            case "false":
+                return new Constant(Boolean.FALSE);
+            case "null":
+                return new Constant(null);
+            case "undefined":
+                return new Constant(ExpressionValues.UNDEFINED);
+            case "msg":
+                return ExpressionContext::getMsg;
+            case "metadata":
+                return ExpressionContext::getMetadata;
+            case "msgType":
+                return ExpressionContext::getMsgType;
+            default:
+                break;
+        }
+        ExpressionFunction function = ExpressionFunction.byName(token.text);
+        if (function == null || !peekIs(TokenType.OPERATOR, "(")) {
+            throw error("Unknown identifier '" + token.text + "'", token.offset);
+        }
+        pos++;
+        List<ExpressionNode> args = arguments(")");
+        if (args.size() != function.getArgsCount()) {
+            throw error("Function '" + function.getName() + "' expects " + function.getArgsCount() + " argument(s), but got " + args.size(), token.offset);
+        }
+        ExpressionNode[] argNodes = args.toArray(new ExpressionNode[0]);
+        return fold(ctx -> {
+            Object[] values = new Object[argNodes.length];
+            for (int i = 0; i < argNodes.length; i++) {
+                values[i] = argNodes[i].evaluate(ctx);
+            }
+            return function.apply(values);
+        }, argNodes);
+    }
+
+    private ExpressionNode arrayLiteral() {
+        ExpressionNode[] items = arguments("]").toArray(new ExpressionNode[0]);
+        return ctx -> {
+            List<Object> result = new ArrayList<>(items.length);
+            for (ExpressionNode item : items) {
+                result.add(item.evaluate(ctx));
+            }
+            return result;
+        };
+    }
+
+    private ExpressionNode objectLiteral() {
+        Map<String, ExpressionNode> fields = new LinkedHashMap<>();
+        if (!accept("}")) {
+            do {
+                Token key = next();
+                if (key.type != TokenType.NAME && key.type != TokenType.STRING) {
+                    throw error("Field name expected in object literal");
+                }
+                expect(":");
+                fields.put(key.text, expression());
+            } while (accept(","));
+            expect("}");
+        }
+        return ctx -> {
+            Map<String, Object> result = new LinkedHashMap<>();
+            fields.forEach((key, value) -> result.put(key, value.evaluate(ctx)));
+            return result;
+        };
+    }
+
+    private List<ExpressionNode> arguments(String closing) {
+        if (accept(closing)) {
+            return Collections.emptyList();
+        }
+        List<ExpressionNode> result = new ArrayList<>();
+        do {
+            result.add(expression());
+        } while (accept(","));
+        expect(closing);
+        return result;
+    }
+
+    private static ExpressionNode fold(ExpressionNode node, ExpressionNode... operands) {
+        for (ExpressionNode operand : operands) {
+            if (!(operand instanceof Constant)) {
+                return node;
+            }
+        }
+        return new Constant(node.evaluate(null));
+    }
+
+    private Token peek() {
+        return tokens.get(pos);
+    }
+
+    private Token next() {
+        Token token = tokens.get(pos);
+        if (token.type != TokenType.END) {
+            pos++;
+        }
+        return token;
+    }
+
+    private boolean peekIs(TokenType type, String text) {
+        Token token = peek();
+        return token.type == type && token.text.equals(text);
+    }
+
+    private boolean accept(String operator) {
+        if (peekIs(TokenType.OPERATOR, operator)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String operator) {
+        if (!accept(operator)) {
+            Token token = peek();
+            throw error("Expected '" + operator + "' but found " + (token.type == TokenType.END ? "end of expression" : "'" + token.text + "'"));
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return error(message, peek().offset);
+    }
+
+    private IllegalArgumentException error(String message, int offset) {
+        return new IllegalArgumentException(message + " at position " + offset + " in expression: " + source);
+    }
+
+    private List<Token> tokenize(String src) {
+        List<Token> result = new ArrayList<>();
+        int i = 0;
+        int len = src.length();
+        while (i < len) {
+            char c = src.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < len && Character.isDigit(src.charAt(i + 1)))) {
+                int start = i;
+                boolean fraction = false;
+                while (i < len && (Character.isDigit(src.charAt(i)) || src.charAt(i) == '.')) {
+                    fraction |= src.charAt(i) == '.';
+                    i++;
+                }
+                if (i < len && (src.charAt(i) == 'e' || src.charAt(i) == 'E')) {
+                    fraction = true;
+                    i++;
+                    if (i < len && (src.charAt(i) == '+' || src.charAt(i) == '-')) {
+                        i++;
+                    }
+                    while (i < len && Character.isDigit(src.charAt(i))) {
+                        i++;
+                    }
+                }
+                String text = src.substring(start, i);
+                try {
+                    Object value = fraction ? (Object) Double.parseDouble(text) : (Object) Long.parseLong(text);
+                    result.add(new Token(TokenType.NUMBER, text, value, start));
+                } catch (NumberFormatException e) {
+                    throw error("Invalid number '" + text + "'", start);
+                }
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < len && Character.isJavaIdentifierPart(src.charAt(i))) {
+                    i++;
+                }
+                result.add(new Token(TokenType.NAME, src.substring(start, i), null, start));
+            } else if (c == '\'' || c == '"') {
+                int start = i++;
+                StringBuilder sb = new StringBuilder();
+                while (i < len && src.charAt(i) != c) {
+                    char ch = src.charAt(i++);
+                    if (ch == '\\' && i < len) {
+                        char escaped = src.charAt(i++);
+                        switch (escaped) {
+                            case 'n':
+                                sb.append('\n');
+                                break;
+                            case 't':
+                                sb.append('\t');
+                                break;
+                            case 'r':
+                                sb.append('\r');
+                                break;
+                            default:
+                                sb.append(escaped);
+                        }
+                    } else {
+                        sb.append(ch);
+                    }
+                }
+                if (i >= len) {
+                    throw error("Unterminated string", start);
+                }
+                i++;
+                result.add(new Token(TokenType.STRING, sb.toString(), null, start));
+            } else {
+                String op = null;
+                for (String candidate : OPERATORS) {
+                    if (src.startsWith(candidate, i)) {
+                        op = candidate;
+                        break;
+                    }
+                }
+                if (op == null && c == ';') {
+                    op = ";";
+                }
+                if (op == null) {
+                    throw error("Unexpected character '" + c + "'", i);
+                }
+                result.add(new Token(TokenType.OPERATOR, op, null, i));
+                i += op.length();
+            }
+        }
+        result.add(new Token(TokenType.END, "", null, len));
+        return result;
+    }
+
+    private enum TokenType {
+        NUMBER, STRING, NAME, OPERATOR, END
+    }
+
+    private static class Token {
+        private final TokenType type;
+        private final String text;
+        private final Object value;
+        private final int offset;
+
+        Token(TokenType type, String text, Object value, int offset) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+            this.offset = offset;
+        }
+    }
+
+    private static class Constant implements ExpressionNode {
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate(ExpressionContext ctx) {
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.expression;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.commons.lang3.StringUtils;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.rule.engine.api.ScriptEngine;
+import org.thingsboard.rule.engine.api.TbNodeException;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+
+import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * {@link ScriptEngine} that evaluates {@link TbExpression} in the calling thread, without a round trip to the JS sandbox.
+ * Returned futures are always completed. Results are interpreted the same way as results of the JS functions.
+ */
+public class TbExpressionScriptEngine implements ScriptEngine {
+
+    private static final String MSG = "msg";
+    private static final String METADATA = "metadata";
+    private static final String MSG_TYPE = "msgType";
+
+    private final TbExpression expression;
+
+    private TbExpressionScriptEngine(TbExpression expression) {
+        this.expression = expression;
+    }
+
+    public static TbExpressionScriptEngine create(String expression) throws TbNodeException {
+        try {
+            return new TbExpressionScriptEngine(TbExpression.compile(expression));
+        } catch (IllegalArgumentException e) {
+            throw new TbNodeException(e.getMessage());
+        }
+    }
+
+    @Override
+    public ListenableFuture<List<TbMsg>> executeUpdateAsync(TbMsg msg) {
+        return execute(msg, result -> {
+            JsonNode json = ExpressionValues.toJson(result);
+            if (json.isObject()) {
+                return Collections.singletonList(unbindMsg(json, msg));
+            } else if (json.isArray()) {
+                List<TbMsg> res = new ArrayList<>(json.size());
+                json.forEach(jsonObject -> res.add(unbindMsg(jsonObject, msg)));
+                return res;
+            }
+            throw new IllegalArgumentException("Wrong result type: " + json.getNodeType());
+        });
+    }
+
+    @Override
+    public ListenableFuture<TbMsg> executeGenerateAsync(TbMsg prevMsg) {
+        return execute(prevMsg, result -> {
+            JsonNode json = ExpressionValues.toJson(result);
+            if (!json.isObject()) {
+                throw new IllegalArgumentException("Wrong result type: " + json.getNodeType());
+            }
+            return unbindMsg(json, prevMsg);
+        });
+    }
+
+    @Override
+    public ListenableFuture<Boolean> executeFilterAsync(TbMsg msg) {
+        return execute(msg, ExpressionValues::isTruthy);
+    }
+
+    @Override
+    public ListenableFuture<Set<String>> executeSwitchAsync(TbMsg msg) {
+        return execute(msg, result -> {
+            Set<String> relations = new LinkedHashSet<>();
+            if (result instanceof List || result instanceof JsonNode && ((JsonNode) result).isArray()) {
+                ExpressionValues.toJson(result).forEach(item -> relations.add(item.asText()));
+            } else if (result instanceof String) {
+                relations.add((String) result);
+            } else if (result != null) {
+                throw new IllegalArgumentException("Wrong result type: " + ExpressionValues.toJson(result).getNodeType());
+            }
+            return relations;
+        });
+    }
+
+    @Override
+    public ListenableFuture<JsonNode> executeJsonAsync(TbMsg msg) {
+        return execute(msg, ExpressionValues::toJson);
+    }
+
+    @Override
+    public ListenableFuture<String> executeToStringAsync(TbMsg msg) {
+        return execute(msg, result -> result != null ? ExpressionValues.toStr(result) : null);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private <T> ListenableFuture<T> execute(TbMsg msg, Function<Object, T> resultMapper) {
+        try {
+            return Futures.immediateFuture(resultMapper.apply(expression.evaluate(msg)));
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(new ScriptException(e.getMessage()));
+        }
+    }
+
+    private static TbMsg unbindMsg(JsonNode msgData, TbMsg msg) {
+        String data = null;
+        Map<String, String> metadata = null;
+        String messageType = null;
+        if (msgData.has(MSG)) {
+            data = JacksonUtil.toString(msgData.get(MSG));
+        }
+        if (msgData.has(METADATA)) {
+            Map<String, String> values = new HashMap<>();
+            msgData.get(METADATA).fields().forEachRemaining(entry -> {
+                JsonNode value = entry.getValue();
+                if (!value.isNull()) {
+                    values.put(entry.getKey(), value.isTextual() ? value.textValue() : value.toString());
+                }
+            });
+            metadata = values;
+        }
+        if (msgData.has(MSG_TYPE)) {
+            messageType = msgData.get(MSG_TYPE).asText();
+        }
+        String newData = data != null ? data : msg.getData();
+        TbMsgMetaData newMetadata = metadata != null ? new TbMsgMetaData(metadata) : msg.getMetaData().copy();
+        String newMessageType = StringUtils.isNotEmpty(messageType) ? messageType : msg.getType();
+        return TbMsg.transformMsg(msg, newMessageType, msg.getOriginator(), newMetadata, newData);
+    }
+
+}
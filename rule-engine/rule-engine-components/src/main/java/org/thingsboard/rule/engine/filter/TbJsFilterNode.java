@@ -23,6 +23,8 @@ import org.thingsboard.rule.engine.api.TbNode;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.rule.engine.expression.ScriptLanguage;
+import org.thingsboard.rule.engine.expression.TbExpressionScriptEngine;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
 
@@ -38,7 +40,9 @@ import static org.thingsboard.common.util.DonAsynchron.withCallback;
                 "If <b>True</b> - send Message via <b>True</b> chain, otherwise <b>False</b> chain is used." +
                 "Message payload can be accessed via <code>msg</code> property. For example <code>msg.temperature < 10;</code><br/>" +
                 "Message metadata can be accessed via <code>metadata</code> property. For example <code>metadata.customerName === 'John';</code><br/>" +
-                "Message type can be accessed via <code>msgType</code> property.",
+                "Message type can be accessed via <code>msgType</code> property.<br/>" +
+                "With <code>scriptLang</code> set to <code>EXPRESSION</code> the <code>expression</code> condition is evaluated " +
+                "in the rule engine instead of the JS sandbox. For example <code>msg.temperature > 20 && metadata.deviceType == 'thermostat'</code>",
         uiResources = {"static/rulenode/rulenode-core-config.js"},
         configDirective = "tbFilterNodeScriptConfig")
 
@@ -46,15 +50,28 @@ public class TbJsFilterNode implements TbNode {
 
     private TbJsFilterNodeConfiguration config;
     private ScriptEngine jsEngine;
+    private boolean expression;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = TbNodeUtils.convert(configuration, TbJsFilterNodeConfiguration.class);
-        this.jsEngine = ctx.createJsScriptEngine(config.getJsScript());
+        this.expression = ScriptLanguage.EXPRESSION.equals(config.getScriptLang());
+        if (expression) {
+            this.jsEngine = TbExpressionScriptEngine.create(config.getExpression());
+        } else {
+            this.jsEngine = ctx.createJsScriptEngine(config.getJsScript());
+        }
     }
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) {
+        if (expression) {
+            // expression result is already available, no need to switch threads
+            withCallback(jsEngine.executeFilterAsync(msg),
+                    filterResult -> ctx.tellNext(msg, filterResult ? "True" : "False"),
+                    t -> ctx.tellFailure(msg, t));
+            return;
+        }
         ctx.logJsEvalRequest();
         withCallback(jsEngine.executeFilterAsync(msg),
                 filterResult -> {
@@ -17,16 +17,20 @@ package org.thingsboard.rule.engine.filter;
 
 import lombok.Data;
 import org.thingsboard.rule.engine.api.NodeConfiguration;
+import org.thingsboard.rule.engine.expression.ScriptLanguage;
 
 @Data
 public class TbJsFilterNodeConfiguration implements NodeConfiguration<TbJsFilterNodeConfiguration> {
 
+    private ScriptLanguage scriptLang = ScriptLanguage.JS;
     private String jsScript;
+    private String expression;
 
     @Override
     public TbJsFilterNodeConfiguration defaultConfiguration() {
         TbJsFilterNodeConfiguration configuration = new TbJsFilterNodeConfiguration();
         configuration.setJsScript("return msg.temperature > 20;");
+        configuration.setExpression("msg.temperature > 20");
         return configuration;
     }
 }
@@ -28,6 +28,8 @@ import org.thingsboard.rule.engine.api.TbNode;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.rule.engine.expression.ScriptLanguage;
+import org.thingsboard.rule.engine.expression.TbExpressionScriptEngine;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
 
@@ -44,33 +46,48 @@ import java.util.Set;
                 "If Array is empty - message not routed to next Node. " +
                 "Message payload can be accessed via <code>msg</code> property. For example <code>msg.temperature < 10;</code><br/>" +
                 "Message metadata can be accessed via <code>metadata</code> property. For example <code>metadata.customerName === 'John';</code><br/>" +
-                "Message type can be accessed via <code>msgType</code> property.",
+                "Message type can be accessed via <code>msgType</code> property.<br/>" +
+                "With <code>scriptLang</code> set to <code>EXPRESSION</code> the <code>expression</code> is evaluated " +
+                "in the rule engine instead of the JS sandbox and should return chain name or array of chain names. " +
+                "For example <code>msg.temperature > 20 ? ['Alarm', 'Save'] : 'Save'</code>",
         uiResources = {"static/rulenode/rulenode-core-config.js"},
         configDirective = "tbFilterNodeSwitchConfig")
 public class TbJsSwitchNode implements TbNode {
 
     private TbJsSwitchNodeConfiguration config;
     private ScriptEngine jsEngine;
+    private boolean expression;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = TbNodeUtils.convert(configuration, TbJsSwitchNodeConfiguration.class);
-        this.jsEngine = ctx.createJsScriptEngine(config.getJsScript());
+        this.expression = ScriptLanguage.EXPRESSION.equals(config.getScriptLang());
+        if (expression) {
+            this.jsEngine = TbExpressionScriptEngine.create(config.getExpression());
+        } else {
+            this.jsEngine = ctx.createJsScriptEngine(config.getJsScript());
+        }
     }
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) {
-        ctx.logJsEvalRequest();
+        if (!expression) {
+            ctx.logJsEvalRequest();
+        }
         Futures.addCallback(jsEngine.executeSwitchAsync(msg), new FutureCallback<Set<String>>() {
             @Override
             public void onSuccess(@Nullable Set<String> result) {
-                ctx.logJsEvalResponse();
+                if (!expression) {
+                    ctx.logJsEvalResponse();
+                }
                 processSwitch(ctx, msg, result);
             }
 
             @Override
             public void onFailure(Throwable t) {
-                ctx.logJsEvalFailure();
+                if (!expression) {
+                    ctx.logJsEvalFailure();
+                }
                 ctx.tellFailure(msg, t);
             }
         }, MoreExecutors.directExecutor()); //usually runs in a callbackExecutor
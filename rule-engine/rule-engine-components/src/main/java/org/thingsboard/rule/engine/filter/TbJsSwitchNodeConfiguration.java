@@ -18,13 +18,16 @@ package org.thingsboard.rule.engine.filter;
 import com.google.common.collect.Sets;
 import lombok.Data;
 import org.thingsboard.rule.engine.api.NodeConfiguration;
+import org.thingsboard.rule.engine.expression.ScriptLanguage;
 
 import java.util.Set;
 
 @Data
 public class TbJsSwitchNodeConfiguration implements NodeConfiguration<TbJsSwitchNodeConfiguration> {
 
+    private ScriptLanguage scriptLang = ScriptLanguage.JS;
     private String jsScript;
+    private String expression;
 
     @Override
     public TbJsSwitchNodeConfiguration defaultConfiguration() {
@@ -36,6 +39,7 @@ public class TbJsSwitchNodeConfiguration implements NodeConfiguration<TbJsSwitch
                 "    return ['two'];\n" +
                 "}\n" +
                 "return nextRelation(metadata, msg);");
+        configuration.setExpression("msgType == 'POST_TELEMETRY_REQUEST' ? ['two'] : ['one', 'nine']");
         return configuration;
     }
 }
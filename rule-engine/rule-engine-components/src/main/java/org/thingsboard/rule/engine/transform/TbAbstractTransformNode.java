@@ -27,6 +27,7 @@ import org.thingsboard.server.common.msg.queue.RuleEngineException;
 import org.thingsboard.server.common.msg.queue.TbMsgCallback;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static org.thingsboard.common.util.DonAsynchron.withCallback;
 import static org.thingsboard.rule.engine.api.TbRelationTypes.FAILURE;
@@ -49,7 +50,11 @@ public abstract class TbAbstractTransformNode implements TbNode {
         withCallback(transform(ctx, msg),
                 m -> transformSuccess(ctx, msg, m),
                 t -> transformFailure(ctx, msg, t),
-                ctx.getDbCallbackExecutor());
+                getCallbackExecutor(ctx));
+    }
+
+    protected Executor getCallbackExecutor(TbContext ctx) {
+        return ctx.getDbCallbackExecutor();
     }
 
     protected void transformFailure(TbContext ctx, TbMsg msg, Throwable t) {
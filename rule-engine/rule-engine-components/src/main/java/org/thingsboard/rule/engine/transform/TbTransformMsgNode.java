@@ -16,16 +16,20 @@
 package org.thingsboard.rule.engine.transform;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.thingsboard.rule.engine.api.RuleNode;
 import org.thingsboard.rule.engine.api.ScriptEngine;
 import org.thingsboard.rule.engine.api.TbContext;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.rule.engine.expression.ScriptLanguage;
+import org.thingsboard.rule.engine.expression.TbExpressionScriptEngine;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 @RuleNode(
         type = ComponentType.TRANSFORMATION,
@@ -38,36 +42,57 @@ import java.util.List;
                 "<code>msgType</code> - is a Message type.<br/>" +
                 "Should return the following structure:<br/>" +
                 "<code>{ msg: <i style=\"color: #666;\">new payload</i>,<br/>&nbsp&nbsp&nbspmetadata: <i style=\"color: #666;\">new metadata</i>,<br/>&nbsp&nbsp&nbspmsgType: <i style=\"color: #666;\">new msgType</i> }</code><br/>" +
-                "All fields in resulting object are optional and will be taken from original message if not specified.",
+                "All fields in resulting object are optional and will be taken from original message if not specified.<br/>" +
+                "With <code>scriptLang</code> set to <code>EXPRESSION</code> the <code>expression</code> is evaluated " +
+                "in the rule engine instead of the JS sandbox. For example " +
+                "<code>{msg: {temperature: msg.temperature, alarm: msg.temperature > 50}, msgType: 'POST_TELEMETRY_REQUEST'}</code>",
         uiResources = {"static/rulenode/rulenode-core-config.js"},
         configDirective = "tbTransformationNodeScriptConfig")
 public class TbTransformMsgNode extends TbAbstractTransformNode {
 
     private TbTransformMsgNodeConfiguration config;
     private ScriptEngine jsEngine;
+    private boolean expression;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = TbNodeUtils.convert(configuration, TbTransformMsgNodeConfiguration.class);
-        this.jsEngine = ctx.createJsScriptEngine(config.getJsScript());
+        this.expression = ScriptLanguage.EXPRESSION.equals(config.getScriptLang());
+        if (expression) {
+            this.jsEngine = TbExpressionScriptEngine.create(config.getExpression());
+        } else {
+            this.jsEngine = ctx.createJsScriptEngine(config.getJsScript());
+        }
         setConfig(config);
     }
 
     @Override
     protected ListenableFuture<List<TbMsg>> transform(TbContext ctx, TbMsg msg) {
-        ctx.logJsEvalRequest();
+        if (!expression) {
+            ctx.logJsEvalRequest();
+        }
         return jsEngine.executeUpdateAsync(msg);
     }
 
+    @Override
+    protected Executor getCallbackExecutor(TbContext ctx) {
+        // expression result is already available, no need to switch threads
+        return expression ? MoreExecutors.directExecutor() : super.getCallbackExecutor(ctx);
+    }
+
     @Override
     protected void transformSuccess(TbContext ctx, TbMsg msg, TbMsg m) {
-        ctx.logJsEvalResponse();
+        if (!expression) {
+            ctx.logJsEvalResponse();
+        }
         super.transformSuccess(ctx, msg, m);
     }
 
     @Override
     protected void transformFailure(TbContext ctx, TbMsg msg, Throwable t) {
-        ctx.logJsEvalFailure();
+        if (!expression) {
+            ctx.logJsEvalFailure();
+        }
         super.transformFailure(ctx, msg, t);
     }
 
@@ -17,16 +17,20 @@ package org.thingsboard.rule.engine.transform;
 
 import lombok.Data;
 import org.thingsboard.rule.engine.api.NodeConfiguration;
+import org.thingsboard.rule.engine.expression.ScriptLanguage;
 
 @Data
 public class TbTransformMsgNodeConfiguration extends TbTransformNodeConfiguration implements NodeConfiguration {
 
+    private ScriptLanguage scriptLang = ScriptLanguage.JS;
     private String jsScript;
+    private String expression;
 
     @Override
     public TbTransformMsgNodeConfiguration defaultConfiguration() {
         TbTransformMsgNodeConfiguration configuration = new TbTransformMsgNodeConfiguration();
         configuration.setJsScript("return {msg: msg, metadata: metadata, msgType: msgType};");
+        configuration.setExpression("{msg: msg, metadata: metadata, msgType: msgType}");
         return configuration;
     }
 }
@@ -0,0 +1,106 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.aggregation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AggregationWindowsTest {
+
+    private static final long MINUTE = 60000;
+    private static final long START_TS = MINUTE * 1000;
+
+    @Test
+    public void givenTumblingWindow_whenClosed_thenAllAggregationsProduced() {
+        AggregationWindows windows = new AggregationWindows(MINUTE, 1, START_TS);
+        windows.add("temperature", START_TS + 10, 1);
+        windows.add("temperature", START_TS + 30, 5);
+        windows.add("temperature", START_TS + 20, 3);
+        windows.add("humidity", START_TS + 40, 70);
+
+        List<AggregationWindows.AggregatedWindow> closed = windows.close(START_TS + MINUTE, Arrays.asList(WindowAggregation.values()));
+
+        assertEquals(1, closed.size());
+        AggregationWindows.AggregatedWindow window = closed.get(0);
+        assertEquals(START_TS, window.getStartTs());
+        assertEquals(START_TS + MINUTE, window.getEndTs());
+        assertEquals(1.0, window.getValues().get("temperature_min").asDouble(), 0.0);
+        assertEquals(5.0, window.getValues().get("temperature_max").asDouble(), 0.0);
+        assertEquals(3.0, window.getValues().get("temperature_avg").asDouble(), 0.0);
+        assertEquals(9.0, window.getValues().get("temperature_sum").asDouble(), 0.0);
+        assertEquals(3, window.getValues().get("temperature_count").asLong());
+        assertEquals(5.0, window.getValues().get("temperature_last").asDouble(), 0.0);
+        assertEquals(70.0, window.getValues().get("humidity_avg").asDouble(), 0.0);
+    }
+
+    @Test
+    public void givenClosedWindow_whenLateValueAdded_thenSkipped() {
+        AggregationWindows windows = new AggregationWindows(MINUTE, 1, START_TS);
+
+        assertFalse(windows.add("temperature", START_TS - 10, 1));
+        assertTrue(windows.add("temperature", START_TS + 10, 1));
+    }
+
+    @Test
+    public void givenSlidingWindow_whenClosedOnEverySlide_thenWindowsOverlap() {
+        AggregationWindows windows = new AggregationWindows(MINUTE, 3, START_TS);
+        List<WindowAggregation> sum = Collections.singletonList(WindowAggregation.SUM);
+        for (int i = 0; i < 4; i++) {
+            windows.add("energy", START_TS + i * MINUTE + 10, i + 1);
+            List<AggregationWindows.AggregatedWindow> closed = windows.close(START_TS + (i + 1) * MINUTE, sum);
+            assertEquals(1, closed.size());
+            assertEquals(START_TS + (i - 2) * MINUTE, closed.get(0).getStartTs());
+        }
+        List<AggregationWindows.AggregatedWindow> closed = windows.close(START_TS + 6 * MINUTE, sum);
+
+        assertEquals(2, closed.size());
+        assertEquals(7.0, closed.get(0).getValues().get("energy_sum").asDouble(), 0.0);
+        assertEquals(4.0, closed.get(1).getValues().get("energy_sum").asDouble(), 0.0);
+    }
+
+    @Test
+    public void givenWindowsWithoutNewValues_whenClosed_thenExpired() {
+        AggregationWindows windows = new AggregationWindows(MINUTE, 1, START_TS);
+        windows.add("temperature", START_TS + 10, 1);
+
+        windows.close(START_TS + MINUTE, Collections.singletonList(WindowAggregation.AVG));
+        assertFalse(windows.isExpired());
+
+        assertTrue(windows.close(START_TS + 2 * MINUTE, Collections.singletonList(WindowAggregation.AVG)).isEmpty());
+        assertTrue(windows.isExpired());
+    }
+
+    @Test
+    public void givenState_whenRestored_thenOpenWindowsContinued() {
+        AggregationWindows windows = new AggregationWindows(MINUTE, 1, START_TS);
+        windows.add("temperature", START_TS + 10, 1);
+
+        AggregationWindows restored = AggregationWindows.fromState(MINUTE, 1, windows.toState());
+        restored.add("temperature", START_TS + 20, 3);
+        List<AggregationWindows.AggregatedWindow> closed = restored.close(START_TS + MINUTE, Collections.singletonList(WindowAggregation.AVG));
+
+        assertEquals(1, closed.size());
+        assertEquals(2.0, closed.get(0).getValues().get("temperature_avg").asDouble(), 0.0);
+    }
+
+}
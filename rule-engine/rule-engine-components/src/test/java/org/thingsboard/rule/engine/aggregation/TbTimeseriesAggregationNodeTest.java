@@ -0,0 +1,181 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.aggregation;
+
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.rule.engine.api.TbNodeConfiguration;
+import org.thingsboard.rule.engine.api.TbNodeException;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.rule.RuleNodeState;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.ServiceQueue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.thingsboard.rule.engine.api.TbRelationTypes.SUCCESS;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbTimeseriesAggregationNodeTest {
+
+    private static final int WINDOW_SIZE_IN_SECONDS = 2;
+    private static final long WINDOW_SIZE_MS = TimeUnit.SECONDS.toMillis(WINDOW_SIZE_IN_SECONDS);
+
+    private final RuleNodeId ruleNodeId = new RuleNodeId(Uuids.timeBased());
+    private final DeviceId deviceId = new DeviceId(Uuids.timeBased());
+    private final Map<EntityId, RuleNodeState> states = new HashMap<>();
+
+    @Mock
+    private TbContext ctx;
+
+    @Before
+    public void before() {
+        lenient().when(ctx.getSelfId()).thenReturn(ruleNodeId);
+        lenient().when(ctx.isLocalEntity(any())).thenReturn(true);
+        lenient().when(ctx.newMsg(any(), any(), any(), any(), any())).thenAnswer(invocation -> TbMsg.newMsg(invocation.<String>getArgument(0),
+                invocation.<String>getArgument(1), invocation.<EntityId>getArgument(2), invocation.<TbMsgMetaData>getArgument(3), invocation.<String>getArgument(4)));
+        lenient().when(ctx.findRuleNodeStates(any())).thenAnswer(invocation ->
+                new PageData<>(new ArrayList<>(states.values()), 1, states.size(), false));
+        lenient().when(ctx.saveRuleNodeState(any())).thenAnswer(invocation -> {
+            RuleNodeState state = invocation.getArgument(0);
+            states.put(state.getEntityId(), state);
+            return state;
+        });
+        lenient().when(ctx.findRuleNodeStateForEntity(any())).thenAnswer(invocation -> states.get(invocation.<EntityId>getArgument(0)));
+        lenient().doAnswer(invocation -> states.remove(invocation.<EntityId>getArgument(0))).when(ctx).removeRuleNodeStateForEntity(any());
+    }
+
+    @Test
+    public void givenCheckpointedWindows_whenNodeRestartedAfterCrash_thenWindowIsRestoredAndEmitted() throws Exception {
+        TbTimeseriesAggregationNode node = initNode(1);
+        long windowStartTs = awaitWindowStart();
+        TbMsg first = telemetryMsg(windowStartTs, 10);
+        TbMsg second = telemetryMsg(windowStartTs, 20);
+        node.onMsg(ctx, first);
+        node.onMsg(ctx, second);
+
+        verify(ctx).ack(first);
+        verify(ctx).ack(second);
+        assertTrue(states.isEmpty());
+
+        // the tick within the window saves the checkpoint once the checkpoint interval has passed since the init
+        Thread.sleep(1100);
+        node.onMsg(ctx, lastTickMsg());
+
+        verify(ctx, never()).enqueueForTellNext(any(), eq(SUCCESS));
+        assertEquals(1, states.size());
+        assertEquals(ruleNodeId, states.get(deviceId).getRuleNodeId());
+
+        // the node is not destroyed, the windows are restored from the last checkpoint only
+        TbTimeseriesAggregationNode restartedNode = initNode(1);
+        Thread.sleep(Math.max(0, windowStartTs + WINDOW_SIZE_MS - System.currentTimeMillis()) + 50);
+        restartedNode.onMsg(ctx, lastTickMsg());
+
+        ArgumentCaptor<TbMsg> captor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx).enqueueForTellNext(captor.capture(), eq(SUCCESS));
+        TbMsg aggregated = captor.getValue();
+        assertEquals(deviceId, aggregated.getOriginator());
+        assertEquals("POST_TELEMETRY_REQUEST", aggregated.getType());
+        assertEquals(Long.toString(windowStartTs), aggregated.getMetaData().getValue("ts"));
+        assertEquals(Long.toString(windowStartTs + WINDOW_SIZE_MS), aggregated.getMetaData().getValue("windowEndTs"));
+        JsonNode values = JacksonUtil.toJsonNode(aggregated.getData());
+        assertEquals(10.0, values.get("temperature_min").asDouble(), 0.0);
+        assertEquals(20.0, values.get("temperature_max").asDouble(), 0.0);
+        assertEquals(15.0, values.get("temperature_avg").asDouble(), 0.0);
+    }
+
+    @Test
+    public void givenNodeStopped_whenRestarted_thenWindowsRestoredFromStateSavedOnStop() throws TbNodeException {
+        TbTimeseriesAggregationNode node = initNode(60);
+        node.onMsg(ctx, telemetryMsg(System.currentTimeMillis(), 10));
+        node.destroy();
+
+        assertEquals(1, states.size());
+
+        TbTimeseriesAggregationNode restartedNode = initNode(60);
+        restartedNode.destroy();
+
+        // restored windows are not modified, so they are not saved again
+        verify(ctx, times(1)).saveRuleNodeState(any());
+        assertEquals(1, states.size());
+    }
+
+    @Test
+    public void givenCheckpointDisabled_whenNodeStopped_thenStateNotSaved() throws TbNodeException {
+        TbTimeseriesAggregationNode node = initNode(0);
+        node.onMsg(ctx, telemetryMsg(System.currentTimeMillis(), 10));
+        node.destroy();
+
+        verify(ctx).clearRuleNodeStates();
+        verify(ctx, never()).saveRuleNodeState(any());
+        verify(ctx, never()).findRuleNodeStates(any());
+    }
+
+    private TbTimeseriesAggregationNode initNode(int checkpointIntervalInSeconds) throws TbNodeException {
+        TbTimeseriesAggregationNodeConfiguration config = new TbTimeseriesAggregationNodeConfiguration().defaultConfiguration();
+        config.setWindowSizeInSeconds(WINDOW_SIZE_IN_SECONDS);
+        config.setCheckpointIntervalInSeconds(checkpointIntervalInSeconds);
+        TbTimeseriesAggregationNode node = new TbTimeseriesAggregationNode();
+        node.init(ctx, new TbNodeConfiguration(JacksonUtil.valueToTree(config)));
+        return node;
+    }
+
+    private TbMsg telemetryMsg(long ts, double temperature) {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("ts", Long.toString(ts));
+        return TbMsg.newMsg(ServiceQueue.MAIN, "POST_TELEMETRY_REQUEST", deviceId, metaData, "{\"temperature\":" + temperature + "}");
+    }
+
+    private TbMsg lastTickMsg() {
+        ArgumentCaptor<TbMsg> captor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx, atLeastOnce()).tellSelf(captor.capture(), anyLong());
+        return captor.getValue();
+    }
+
+    // waits for the start of the next window, so the test steps do not cross the window end
+    private static long awaitWindowStart() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        long windowStartTs = (now / WINDOW_SIZE_MS + 1) * WINDOW_SIZE_MS;
+        Thread.sleep(windowStartTs - now + 10);
+        return windowStartTs;
+    }
+
+}
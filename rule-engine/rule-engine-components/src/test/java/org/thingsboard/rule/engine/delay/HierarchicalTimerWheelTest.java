@@ -0,0 +1,106 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.delay;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HierarchicalTimerWheelTest {
+
+    private static final long TICK_MS = 1000;
+    private static final long START_TS = 1600000000500L;
+
+    private HierarchicalTimerWheel<String> wheel;
+    private List<String> expired;
+
+    @Before
+    public void init() {
+        wheel = new HierarchicalTimerWheel<>(TICK_MS, START_TS);
+        expired = new ArrayList<>();
+    }
+
+    @Test
+    public void givenTimersOfDifferentLevels_whenTimeAdvances_thenExpireInOrderOfDeadlines() {
+        wheel.add(START_TS + TimeUnit.DAYS.toMillis(2), "days");
+        wheel.add(START_TS + TimeUnit.SECONDS.toMillis(5), "seconds");
+        wheel.add(START_TS + TimeUnit.HOURS.toMillis(3), "hours");
+        wheel.add(START_TS + TimeUnit.MINUTES.toMillis(7), "minutes");
+
+        wheel.advance(START_TS + TimeUnit.SECONDS.toMillis(4), expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(START_TS + TimeUnit.DAYS.toMillis(2), expired::add);
+        assertEquals(Arrays.asList("seconds", "minutes", "hours", "days"), expired);
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void givenTimer_whenAdvancedToTickBeforeDeadline_thenNotExpired() {
+        long deadline = START_TS + TimeUnit.MINUTES.toMillis(90);
+        wheel.add(deadline, "timer");
+
+        wheel.advance(deadline - TICK_MS, expired::add);
+        assertTrue(expired.isEmpty());
+        assertEquals(1, wheel.size());
+
+        wheel.advance(deadline, expired::add);
+        assertEquals(Collections.singletonList("timer"), expired);
+    }
+
+    @Test
+    public void givenTimerBeyondTopLevel_whenTimeAdvances_thenExpiredFromOverflow() {
+        long deadline = START_TS + TimeUnit.DAYS.toMillis(400);
+        wheel.add(deadline, "overflow");
+
+        wheel.advance(deadline - TICK_MS, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(deadline, expired::add);
+        assertEquals(Collections.singletonList("overflow"), expired);
+    }
+
+    @Test
+    public void givenDeadlineInPast_whenAdvanced_thenExpiredImmediately() {
+        wheel.advance(START_TS + TICK_MS, expired::add);
+        wheel.add(START_TS - TimeUnit.HOURS.toMillis(1), "overdue");
+
+        wheel.advance(START_TS + TICK_MS, expired::add);
+        assertEquals(Collections.singletonList("overdue"), expired);
+    }
+
+    @Test
+    public void givenTimers_whenRemovedByFilter_thenNotExpired() {
+        wheel.add(START_TS + TimeUnit.SECONDS.toMillis(10), "keep");
+        wheel.add(START_TS + TimeUnit.SECONDS.toMillis(10), "remove");
+        wheel.add(START_TS + TimeUnit.DAYS.toMillis(10), "remove");
+
+        wheel.removeIf("remove"::equals);
+        assertEquals(1, wheel.size());
+
+        wheel.advance(START_TS + TimeUnit.DAYS.toMillis(10), expired::add);
+        assertEquals(Collections.singletonList("keep"), expired);
+    }
+
+}
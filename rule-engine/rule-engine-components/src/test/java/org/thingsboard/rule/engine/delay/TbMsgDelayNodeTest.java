@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.delay;
+
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.rule.engine.api.TbNodeConfiguration;
+import org.thingsboard.rule.engine.api.TbNodeException;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.rule.RuleNodeState;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.ServiceQueue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.thingsboard.rule.engine.api.TbRelationTypes.SUCCESS;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbMsgDelayNodeTest {
+
+    private final RuleNodeId ruleNodeId = new RuleNodeId(Uuids.timeBased());
+    private final Map<EntityId, RuleNodeState> states = new HashMap<>();
+
+    @Mock
+    private TbContext ctx;
+
+    @Before
+    public void before() {
+        lenient().when(ctx.getSelfId()).thenReturn(ruleNodeId);
+        lenient().when(ctx.isLocalEntity(any())).thenReturn(true);
+        lenient().when(ctx.newMsg(any(), any(), any(), any(), any())).thenAnswer(invocation -> TbMsg.newMsg(invocation.<String>getArgument(0),
+                invocation.<String>getArgument(1), invocation.<EntityId>getArgument(2), invocation.<TbMsgMetaData>getArgument(3), invocation.<String>getArgument(4)));
+        lenient().when(ctx.findRuleNodeStates(any())).thenAnswer(invocation ->
+                new PageData<>(new ArrayList<>(states.values()), 1, states.size(), false));
+        lenient().when(ctx.saveRuleNodeState(any())).thenAnswer(invocation -> {
+            RuleNodeState state = invocation.getArgument(0);
+            states.put(state.getEntityId(), state);
+            return state;
+        });
+        lenient().when(ctx.findRuleNodeStateForEntity(any())).thenAnswer(invocation -> states.get(invocation.<EntityId>getArgument(0)));
+        lenient().doAnswer(invocation -> states.remove(invocation.<EntityId>getArgument(0))).when(ctx).removeRuleNodeStateForEntity(any());
+    }
+
+    @Test
+    public void givenPersistedMsg_whenNodeRestarted_thenMsgIsRecoveredAndDelivered() throws TbNodeException {
+        TbMsg msg = TbMsg.newMsg(ServiceQueue.MAIN, "POST_TELEMETRY_REQUEST", new DeviceId(Uuids.timeBased()), new TbMsgMetaData(), "{\"temperature\":42}");
+
+        TbMsgDelayNode node = initNode();
+        node.onMsg(ctx, msg);
+        node.destroy();
+
+        verify(ctx).ack(msg);
+        verify(ctx, never()).enqueueForTellNext(any(), eq(SUCCESS));
+        assertEquals(1, states.size());
+
+        TbMsgDelayNode restartedNode = initNode();
+        restartedNode.onMsg(ctx, TbMsg.newMsg(ServiceQueue.MAIN, "TbMsgDelayNodeMsg", ruleNodeId, new TbMsgMetaData(), ""));
+
+        ArgumentCaptor<TbMsg> captor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx).enqueueForTellNext(captor.capture(), eq(SUCCESS));
+        TbMsg delivered = captor.getValue();
+        assertEquals(msg.getId(), delivered.getId());
+        assertEquals(msg.getOriginator(), delivered.getOriginator());
+        assertEquals(msg.getData(), delivered.getData());
+        assertTrue(states.isEmpty());
+    }
+
+    @Test
+    public void givenPersistedMsgs_whenDelivered_thenEachStateIsRemoved() throws TbNodeException {
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        TbMsgDelayNode node = initNode();
+        for (int i = 0; i < 3; i++) {
+            node.onMsg(ctx, TbMsg.newMsg(ServiceQueue.MAIN, "POST_TELEMETRY_REQUEST", deviceId, new TbMsgMetaData(), "{\"value\":" + i + "}"));
+        }
+        assertEquals(3, states.size());
+
+        node.onMsg(ctx, TbMsg.newMsg(ServiceQueue.MAIN, "TbMsgDelayNodeMsg", ruleNodeId, new TbMsgMetaData(), ""));
+
+        verify(ctx, times(3)).enqueueForTellNext(any(), eq(SUCCESS));
+        verify(ctx, atLeastOnce()).tellSelf(any(), anyLong());
+        assertTrue(states.isEmpty());
+    }
+
+    private TbMsgDelayNode initNode() throws TbNodeException {
+        TbMsgDelayNodeConfiguration config = new TbMsgDelayNodeConfiguration().defaultConfiguration();
+        config.setPeriodInSeconds(0);
+        config.setPersistPendingMsgs(true);
+        TbMsgDelayNode node = new TbMsgDelayNode();
+        node.init(ctx, new TbNodeConfiguration(JacksonUtil.valueToTree(config)));
+        return node;
+    }
+
+}
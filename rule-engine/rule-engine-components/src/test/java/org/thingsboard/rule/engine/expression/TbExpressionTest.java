@@ -0,0 +1,184 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.expression;
+
+import org.junit.Test;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.rule.engine.api.ScriptEngine;
+import org.thingsboard.rule.engine.api.TbNodeException;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TbExpressionTest {
+
+    private final TbMsg msg = newMsg("{\"temperature\":25.5,\"humidity\":70,\"name\":\"Sensor A\",\"tags\":[\"indoor\",\"lab\"]," +
+            "\"location\":{\"floor\":2}}");
+
+    @Test
+    public void testConditions() {
+        assertTrue(eval("msg.temperature > 20", msg));
+        assertTrue(eval("return msg.temperature > 20;", msg));
+        assertFalse(eval("msg.temperature > 20 && msg.humidity < 50", msg));
+        assertTrue(eval("msg.humidity >= 70 || msg.missing", msg));
+        assertTrue(eval("msg.location.floor === 2 && msg.tags[1] == 'lab'", msg));
+        assertTrue(eval("metadata.deviceType == 'thermostat' && metadata.threshold < msg.temperature", msg));
+        assertTrue(eval("msgType != 'POST_ATTRIBUTES_REQUEST'", msg));
+        assertTrue(eval("!(msg.temperature <= 25) && msg.tags.length == 2", msg));
+    }
+
+    @Test
+    public void testMissingValuesAreNotComparable() {
+        assertFalse(eval("msg.missing > 0", msg));
+        assertFalse(eval("msg.missing <= 0", msg));
+        assertFalse(eval("msg.location.missing.deeper == 1", msg));
+        assertTrue(eval("msg.missing == null", msg));
+        assertFalse(eval("metadata.unknown >= 0", msg));
+    }
+
+    @Test
+    public void testStrictEquality() {
+        assertFalse(eval("'1' === 1", msg));
+        assertTrue(eval("'1' == 1", msg));
+        assertTrue(eval("'1' !== 1", msg));
+        assertFalse(eval("'1' != 1", msg));
+        assertFalse(eval("'' === 0", msg));
+        assertTrue(eval("'' == 0", msg));
+        assertFalse(eval("true === 1", msg));
+        assertTrue(eval("2 === 2.0", msg));
+        assertFalse(eval("null === undefined", msg));
+        assertTrue(eval("null == undefined", msg));
+        assertTrue(eval("msg.missing === undefined", msg));
+        assertFalse(eval("msg.missing === null", msg));
+        assertTrue(eval("msg.humidity === 70 && msg.name === 'Sensor A'", msg));
+        assertFalse(eval("msg.humidity === '70'", msg));
+        assertTrue(eval("msg.location === msg.location", msg));
+        assertFalse(eval("[1] === [1]", msg));
+        assertTrue(eval("metadata.threshold === '20' && metadata.threshold !== 20", msg));
+    }
+
+    @Test
+    public void testArithmeticAndFunctions() {
+        assertEquals(102L, TbExpression.compile("msg.humidity + 32").evaluate(msg));
+        assertEquals(77.9, (Double) TbExpression.compile("msg.temperature * 9 / 5 + 32").evaluate(msg), 0.0001);
+        assertEquals(1L, TbExpression.compile("msg.humidity % 3").evaluate(msg));
+        assertEquals("Sensor A: 25.5", TbExpression.compile("msg.name + ': ' + msg.temperature").evaluate(msg));
+        assertEquals("sensor a", TbExpression.compile("lower(msg.name)").evaluate(msg));
+        assertEquals(26L, TbExpression.compile("round(msg.temperature)").evaluate(msg));
+        assertEquals(8L, TbExpression.compile("length(msg.name)").evaluate(msg));
+        assertTrue(eval("contains(msg.tags, 'lab') && startsWith(msg.name, 'Sensor') && contains(metadata, 'threshold')", msg));
+        assertEquals(-5L, TbExpression.compile("-(2 + 3)").evaluate(msg));
+    }
+
+    @Test
+    public void testTernaryAndLiterals() {
+        assertEquals("hot", TbExpression.compile("msg.temperature > 25 ? 'hot' : msg.temperature > 15 ? 'warm' : 'cold'").evaluate(msg));
+        assertEquals(Arrays.asList("indoor", 2L, true, null),
+                TbExpression.compile("[msg.tags[0], msg.location.floor, true, null]").evaluate(msg));
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("t", 25.5);
+        expected.put("f", 2L);
+        assertEquals(expected, TbExpression.compile("{t: msg.temperature, 'f': msg['location']['floor']}").evaluate(msg));
+    }
+
+    @Test
+    public void testPayloadIsNotParsedIfNotUsed() {
+        TbMsg notJson = newMsg("not a json");
+        assertTrue(eval("metadata.deviceType == 'thermostat'", notJson));
+        try {
+            eval("msg.temperature > 20", notJson);
+            fail("Expected exception for not a JSON payload");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSyntaxErrors() {
+        assertCompileError("msg.temperature >", "Unexpected end of expression");
+        assertCompileError("msg.temperature > 20 20", "Unexpected '20'");
+        assertCompileError("temperature > 20", "Unknown identifier 'temperature'");
+        assertCompileError("lower(msg.name, 1)", "Function 'lower' expects 1 argument(s), but got 2");
+        assertCompileError("msg.name == 'abc", "Unterminated string");
+        assertCompileError("msg.temperature = 20", "Unexpected character '='");
+        assertCompileError(" ", "Expression is empty");
+    }
+
+    @Test
+    public void testScriptEngine() throws TbNodeException, ExecutionException, InterruptedException {
+        assertTrue(TbExpressionScriptEngine.create("msg.temperature > 20").executeFilterAsync(msg).get());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("Hot", "Save")),
+                TbExpressionScriptEngine.create("msg.temperature > 20 ? ['Hot', 'Save'] : 'Save'").executeSwitchAsync(msg).get());
+        assertEquals(Collections.emptySet(), TbExpressionScriptEngine.create("null").executeSwitchAsync(msg).get());
+
+        ScriptEngine engine = TbExpressionScriptEngine.create("{msg: {t: msg.temperature, floor: msg.location.floor}, " +
+                "metadata: {deviceType: metadata.deviceType, floor: msg.location.floor}, msgType: 'CUSTOM'}");
+        List<TbMsg> result = engine.executeUpdateAsync(msg).get();
+        assertEquals(1, result.size());
+        TbMsg transformed = result.get(0);
+        assertEquals("CUSTOM", transformed.getType());
+        assertEquals(JacksonUtil.toJsonNode("{\"t\":25.5,\"floor\":2}"), JacksonUtil.toJsonNode(transformed.getData()));
+        assertEquals("thermostat", transformed.getMetaData().getValue("deviceType"));
+        assertEquals("2", transformed.getMetaData().getValue("floor"));
+        assertNull(transformed.getMetaData().getValue("threshold"));
+
+        TbMsg unchanged = TbExpressionScriptEngine.create("{}").executeUpdateAsync(msg).get().get(0);
+        assertEquals(msg.getData(), unchanged.getData());
+        assertEquals(msg.getType(), unchanged.getType());
+        assertEquals(msg.getMetaData().getData(), unchanged.getMetaData().getData());
+
+        try {
+            TbExpressionScriptEngine.create("msg.temperature").executeUpdateAsync(msg).get();
+            fail("Expected failed future for the wrong result type");
+        } catch (ExecutionException e) {
+            assertEquals("Wrong result type: NUMBER", e.getCause().getMessage());
+        }
+    }
+
+    private static boolean eval(String expression, TbMsg msg) {
+        return TbExpression.compile(expression).evaluateCondition(msg);
+    }
+
+    private static void assertCompileError(String expression, String expectedMessage) {
+        try {
+            TbExpression.compile(expression);
+            fail("Expected syntax error for: " + expression);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(expectedMessage));
+        }
+    }
+
+    private static TbMsg newMsg(String data) {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceType", "thermostat");
+        metaData.putValue("threshold", "20");
+        return TbMsg.newMsg("POST_TELEMETRY_REQUEST", null, metaData, data);
+    }
+
+}
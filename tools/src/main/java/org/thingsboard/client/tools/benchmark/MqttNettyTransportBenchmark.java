@@ -0,0 +1,265 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools.benchmark;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.mqtt.MqttConnAckMessage;
+import io.netty.handler.codec.mqtt.MqttConnAckVariableHeader;
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.netty.handler.codec.mqtt.MqttDecoder;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageBuilders;
+import io.netty.handler.codec.mqtt.MqttMessageIdVariableHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares connection setup rate and QoS 1 publish throughput of the NIO and the native epoll transports.
+ * The server side uses the same channel classes, allocator and SO_REUSEPORT acceptors as the MQTT transport
+ * and acknowledges messages right away, so the numbers reflect the network layer only.
+ * <p>
+ * Run it from the tools jar with dependencies:
+ * {@code java -cp tools-<version>-jar-with-dependencies.jar org.thingsboard.client.tools.benchmark.MqttNettyTransportBenchmark}
+ */
+@Slf4j
+public class MqttNettyTransportBenchmark {
+
+    private static final int PORT = 18830;
+    private static final int CONNECTIONS = 2000;
+    private static final int MSGS_PER_CONNECTION = 500;
+    private static final int ACCEPTORS = 4;
+    private static final byte[] PAYLOAD = "{\"temperature\":42,\"humidity\":73}".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        for (TransportType type : TransportType.values()) {
+            if (type == TransportType.EPOLL && !Epoll.isAvailable()) {
+                log.info("Skipping EPOLL: native transport is not available: {}", String.valueOf(Epoll.unavailabilityCause()));
+                continue;
+            }
+            run(type);
+        }
+    }
+
+    private static void run(TransportType type) throws Exception {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true);
+        EventLoopGroup bossGroup = type.newEventLoopGroup(ACCEPTORS);
+        EventLoopGroup workerGroup = type.newEventLoopGroup(Runtime.getRuntime().availableProcessors());
+        EventLoopGroup clientGroup = type.newEventLoopGroup(Runtime.getRuntime().availableProcessors());
+        try {
+            ServerBootstrap sb = new ServerBootstrap()
+                    .group(bossGroup, workerGroup)
+                    .channel(type.getServerChannelClass())
+                    .option(ChannelOption.ALLOCATOR, allocator)
+                    .childOption(ChannelOption.ALLOCATOR, allocator)
+                    .option(ChannelOption.SO_BACKLOG, 4096)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new MqttDecoder(), MqttEncoder.INSTANCE, new ServerHandler());
+                        }
+                    });
+            int acceptors = 1;
+            if (type == TransportType.EPOLL) {
+                sb.option(EpollChannelOption.SO_REUSEPORT, true);
+                acceptors = ACCEPTORS;
+            }
+            List<Channel> serverChannels = new ArrayList<>();
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(sb.bind(PORT).sync().channel());
+            }
+
+            CountDownLatch connected = new CountDownLatch(CONNECTIONS);
+            CountDownLatch acked = new CountDownLatch(CONNECTIONS * MSGS_PER_CONNECTION);
+            Bootstrap cb = new Bootstrap()
+                    .group(clientGroup)
+                    .channel(type.getChannelClass())
+                    .option(ChannelOption.ALLOCATOR, allocator)
+                    .handler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new MqttDecoder(), MqttEncoder.INSTANCE, new ClientHandler(connected, acked));
+                        }
+                    });
+
+            long start = System.nanoTime();
+            List<Channel> clients = new ArrayList<>(CONNECTIONS);
+            for (int i = 0; i < CONNECTIONS; i++) {
+                Channel client = cb.connect("127.0.0.1", PORT).sync().channel();
+                client.writeAndFlush(MqttMessageBuilders.connect().clientId("client-" + i).build());
+                clients.add(client);
+            }
+            if (!connected.await(1, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Not all clients connected");
+            }
+            long connectNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (Channel client : clients) {
+                client.eventLoop().execute(() -> {
+                    for (int i = 1; i <= MSGS_PER_CONNECTION; i++) {
+                        client.write(MqttMessageBuilders.publish()
+                                .topicName("v1/devices/me/telemetry")
+                                .qos(MqttQoS.AT_LEAST_ONCE)
+                                .messageId(i)
+                                .payload(Unpooled.wrappedBuffer(PAYLOAD))
+                                .build());
+                    }
+                    client.flush();
+                });
+            }
+            if (!acked.await(5, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Not all msgs acknowledged");
+            }
+            long publishNs = System.nanoTime() - start;
+
+            log.info("{}: {} connections in {} ms ({} conn/s), {} msgs in {} ms ({} msgs/s)", type,
+                    CONNECTIONS, TimeUnit.NANOSECONDS.toMillis(connectNs), CONNECTIONS * TimeUnit.SECONDS.toNanos(1) / connectNs,
+                    CONNECTIONS * MSGS_PER_CONNECTION, TimeUnit.NANOSECONDS.toMillis(publishNs),
+                    (long) CONNECTIONS * MSGS_PER_CONNECTION * TimeUnit.SECONDS.toNanos(1) / publishNs);
+
+            for (Channel client : clients) {
+                client.close().sync();
+            }
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.close().sync();
+            }
+        } finally {
+            clientGroup.shutdownGracefully().sync();
+            workerGroup.shutdownGracefully().sync();
+            bossGroup.shutdownGracefully().sync();
+        }
+    }
+
+    private static class ServerHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            try {
+                MqttMessage mqttMsg = (MqttMessage) msg;
+                if (mqttMsg.fixedHeader().messageType() == MqttMessageType.CONNECT) {
+                    ctx.write(new MqttConnAckMessage(new MqttFixedHeader(MqttMessageType.CONNACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                            new MqttConnAckVariableHeader(MqttConnectReturnCode.CONNECTION_ACCEPTED, false)));
+                } else if (mqttMsg.fixedHeader().messageType() == MqttMessageType.PUBLISH) {
+                    ctx.write(new MqttMessage(new MqttFixedHeader(MqttMessageType.PUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                            MqttMessageIdVariableHeader.from(((MqttPublishMessage) mqttMsg).variableHeader().packetId())));
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush();
+        }
+    }
+
+    private static class ClientHandler extends ChannelInboundHandlerAdapter {
+        private final CountDownLatch connected;
+        private final CountDownLatch acked;
+
+        ClientHandler(CountDownLatch connected, CountDownLatch acked) {
+            this.connected = connected;
+            this.acked = acked;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            try {
+                MqttMessageType type = ((MqttMessage) msg).fixedHeader().messageType();
+                if (type == MqttMessageType.CONNACK) {
+                    connected.countDown();
+                } else if (type == MqttMessageType.PUBACK) {
+                    acked.countDown();
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+    }
+
+    private enum TransportType {
+
+        NIO {
+            @Override
+            EventLoopGroup newEventLoopGroup(int threads) {
+                return new NioEventLoopGroup(threads);
+            }
+
+            @Override
+            Class<? extends ServerSocketChannel> getServerChannelClass() {
+                return NioServerSocketChannel.class;
+            }
+
+            @Override
+            Class<? extends SocketChannel> getChannelClass() {
+                return NioSocketChannel.class;
+            }
+        },
+        EPOLL {
+            @Override
+            EventLoopGroup newEventLoopGroup(int threads) {
+                return new EpollEventLoopGroup(threads);
+            }
+
+            @Override
+            Class<? extends ServerSocketChannel> getServerChannelClass() {
+                return EpollServerSocketChannel.class;
+            }
+
+            @Override
+            Class<? extends SocketChannel> getChannelClass() {
+                return EpollSocketChannel.class;
+            }
+        };
+
+        abstract EventLoopGroup newEventLoopGroup(int threads);
+
+        abstract Class<? extends ServerSocketChannel> getServerChannelClass();
+
+        abstract Class<? extends SocketChannel> getChannelClass();
+    }
+
+}
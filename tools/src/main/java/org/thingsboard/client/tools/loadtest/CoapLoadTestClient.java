@@ -0,0 +1,65 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools.loadtest;
+
+import org.eclipse.californium.core.CoapClient;
+import org.eclipse.californium.core.CoapHandler;
+import org.eclipse.californium.core.CoapResponse;
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
+
+import java.util.concurrent.CompletableFuture;
+
+public class CoapLoadTestClient implements LoadTestClient {
+
+    private final CoapClient client;
+
+    public CoapLoadTestClient(String host, int port, String accessToken, long timeoutMs) {
+        this.client = new CoapClient("coap", host, port, "api", "v1", accessToken, "telemetry");
+        this.client.setTimeout(timeoutMs);
+    }
+
+    @Override
+    public CompletableFuture<Void> connect() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(String payload) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        client.post(new CoapHandler() {
+            @Override
+            public void onLoad(CoapResponse response) {
+                if (response.isSuccess()) {
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(new IllegalStateException("Unexpected response code: " + response.getCode()));
+                }
+            }
+
+            @Override
+            public void onError() {
+                result.completeExceptionally(new IllegalStateException("Request timed out or was rejected"));
+            }
+        }, payload, MediaTypeRegistry.APPLICATION_JSON);
+        return result;
+    }
+
+    @Override
+    public void disconnect() {
+        client.shutdown();
+    }
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+public class HttpLoadTestClient implements LoadTestClient {
+
+    private final HttpClient httpClient;
+    private final URI telemetryUri;
+    private final Duration timeout;
+
+    public HttpLoadTestClient(HttpClient httpClient, String baseUrl, String accessToken, Duration timeout) {
+        this.httpClient = httpClient;
+        this.telemetryUri = URI.create(baseUrl + "/api/v1/" + accessToken + "/telemetry");
+        this.timeout = timeout;
+    }
+
+    @Override
+    public CompletableFuture<Void> connect() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(String payload) {
+        HttpRequest request = HttpRequest.newBuilder(telemetryUri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenAccept(response -> {
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Unexpected response status: " + response.statusCode());
+            }
+        });
+    }
+
+    @Override
+    public void disconnect() {
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.id.DeviceId;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the end-to-end latency of a sample of devices: subscribes to the latest value of the
+ * {@value TelemetryGenerator#SENT_TS_KEY} key over the telemetry WebSocket API and records the difference between
+ * the time the update is received and the time the message was sent. The load test and the server are expected
+ * to run on the same host or on hosts with synchronized clocks.
+ */
+@Slf4j
+public class LatencyMonitor implements WebSocket.Listener {
+
+    private final HttpClient httpClient;
+    private final URI uri;
+    private final LatencyHistogram histogram;
+    private final StringBuilder buffer = new StringBuilder();
+
+    private volatile long subscribedTs;
+    private volatile WebSocket webSocket;
+
+    public LatencyMonitor(HttpClient httpClient, String baseUrl, String jwtToken, LatencyHistogram histogram) {
+        this.httpClient = httpClient;
+        this.uri = URI.create(baseUrl.replaceFirst("^http", "ws") + "/api/ws/plugins/telemetry?token=" + jwtToken);
+        this.histogram = histogram;
+    }
+
+    public void start(List<DeviceId> deviceIds) throws Exception {
+        if (deviceIds.isEmpty()) {
+            return;
+        }
+        webSocket = httpClient.newWebSocketBuilder().buildAsync(uri, this).get(30, TimeUnit.SECONDS);
+        ObjectNode cmds = JacksonUtil.newObjectNode();
+        ArrayNode tsSubCmds = cmds.putArray("tsSubCmds");
+        int cmdId = 0;
+        for (DeviceId deviceId : deviceIds) {
+            ObjectNode cmd = tsSubCmds.addObject();
+            cmd.put("entityType", deviceId.getEntityType().name());
+            cmd.put("entityId", deviceId.getId().toString());
+            cmd.put("scope", "LATEST_TELEMETRY");
+            cmd.put("keys", TelemetryGenerator.SENT_TS_KEY);
+            cmd.put("cmdId", ++cmdId);
+        }
+        cmds.putArray("historyCmds");
+        cmds.putArray("attrSubCmds");
+        subscribedTs = System.currentTimeMillis();
+        webSocket.sendText(JacksonUtil.toString(cmds), true).get(30, TimeUnit.SECONDS);
+        log.info("Subscribed to the telemetry of {} devices to measure end-to-end latency", deviceIds.size());
+    }
+
+    public void stop() {
+        if (webSocket != null) {
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").exceptionally(e -> null);
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        buffer.append(data);
+        if (last) {
+            long receivedTs = System.currentTimeMillis();
+            try {
+                onUpdate(JacksonUtil.toJsonNode(buffer.toString()), receivedTs);
+            } catch (RuntimeException e) {
+                log.debug("Failed to process WebSocket update", e);
+            }
+            buffer.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        log.warn("Telemetry WebSocket failed, end-to-end latency is not measured anymore", error);
+    }
+
+    private void onUpdate(JsonNode update, long receivedTs) {
+        if (update.hasNonNull("errorCode") && update.get("errorCode").asInt() != 0) {
+            log.warn("Telemetry subscription failed: {}", update.get("errorMsg"));
+            return;
+        }
+        JsonNode values = update.path("data").path(TelemetryGenerator.SENT_TS_KEY);
+        for (JsonNode value : values) {
+            long sentTs = value.path(1).asLong();
+            // the first update of the subscription contains the value saved before it
+            if (sentTs >= subscribedTs) {
+                histogram.record(receivedTs - sentTs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+}
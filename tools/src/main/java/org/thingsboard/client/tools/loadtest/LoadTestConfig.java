@@ -0,0 +1,55 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools.loadtest;
+
+import lombok.Data;
+
+@Data
+public class LoadTestConfig {
+
+    private String restUrl = "http://localhost:8080";
+    private String username = "tenant@thingsboard.org";
+    private String password = "tenant";
+
+    private LoadTestProtocol protocol = LoadTestProtocol.MQTT;
+    private String mqttHost = "localhost";
+    private int mqttPort = 1883;
+    private int mqttQos = 1;
+    private String coapHost = "localhost";
+    private int coapPort = 5683;
+
+    private int devices = 100;
+    // gateways are always simulated over MQTT, each of them reports the telemetry of its sub-devices in one message
+    private int gateways;
+    private int devicesPerGateway = 10;
+    // per device or gateway
+    private double msgsPerSecond = 1.0;
+    private int extraKeys;
+
+    private int connectsPerSecond = 100;
+    private int warmupSeconds = 30;
+    private int durationSeconds = 120;
+    private int reportIntervalSeconds = 10;
+    private int maxInFlight = 10000;
+    private long requestTimeoutMs = 10000;
+    private int latencySampleSize = 20;
+
+    private Integer serverPid;
+    private String resultsFile;
+    private boolean keepDevices;
+    private String runId = Long.toString(System.currentTimeMillis() / 1000, 36);
+
+}
@@ -0,0 +1,385 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools.loadtest;
+
+import com.google.common.util.concurrent.RateLimiter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.rest.client.RestClient;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.id.DeviceId;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Provisions the simulated devices and gateways, sends their telemetry at a fixed rate and reports the sustained
+ * throughput, the latencies and the resource usage of the measurement period that follows the warm-up.
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    private static final String DEVICE_TYPE = "load-test";
+    private static final String RESULTS_HEADER = "runId,startTime,protocol,devices,gateways,devicesPerGateway,targetMsgsPerSecond,durationSeconds," +
+            "sent,acked,failed,skipped,ackedMsgsPerSecond,ackP50Ms,ackP99Ms,e2eSamples,e2eP50Ms,e2eP95Ms,e2eP99Ms,e2eMaxMs," +
+            "serverCpuAvg,serverCpuMax,serverRssMaxMb,clientCpuAvg";
+
+    private final LoadTestConfig config;
+    private final LoadTestStats stats = new LoadTestStats();
+    private final ResourceUsageSampler resourceSampler;
+    private final RestClient restClient;
+    private final HttpClient httpClient;
+    private final List<Device> devices = new ArrayList<>();
+    private final List<Device> gateways = new ArrayList<>();
+    private final List<SimulatedClient> clients = new ArrayList<>();
+
+    private EventLoopGroup eventLoopGroup;
+    private ScheduledExecutorService publishScheduler;
+    private ScheduledExecutorService monitorScheduler;
+    private LatencyMonitor latencyMonitor;
+
+    public LoadTestRunner(LoadTestConfig config) {
+        this.config = config;
+        this.resourceSampler = new ResourceUsageSampler(config.getServerPid());
+        this.restClient = new RestClient(config.getRestUrl());
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(config.getRequestTimeoutMs())).build();
+    }
+
+    public void run() throws Exception {
+        Instant startTime = Instant.now();
+        restClient.login(config.getUsername(), config.getPassword());
+        try {
+            provision();
+            connect();
+            startPublishing();
+
+            log.info("Warming up for {} seconds", config.getWarmupSeconds());
+            TimeUnit.SECONDS.sleep(config.getWarmupSeconds());
+            startLatencyMonitor();
+            stats.resetLatencies();
+            resourceSampler.reset();
+            LoadTestStats.Counters start = stats.counters();
+
+            log.info("Measuring for {} seconds", config.getDurationSeconds());
+            TimeUnit.SECONDS.sleep(config.getDurationSeconds());
+            LoadTestStats.Counters end = stats.counters();
+            LatencyHistogram.Snapshot ackLatency = stats.getAckLatency().snapshot();
+            LatencyHistogram.Snapshot endToEndLatency = stats.getEndToEndLatency().snapshot();
+
+            report(startTime, start, end, ackLatency, endToEndLatency);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void provision() throws Exception {
+        log.info("[{}] Provisioning {} devices and {} gateways", config.getRunId(), config.getDevices(), config.getGateways());
+        ExecutorService executor = Executors.newFixedThreadPool(8, ThingsBoardThreadFactory.forName("load-test-provisioning"));
+        try {
+            devices.addAll(createDevices(executor, config.getDevices(), i -> deviceName("device-" + i), false));
+            gateways.addAll(createDevices(executor, config.getGateways(), i -> deviceName("gateway-" + i), true));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Device> createDevices(ExecutorService executor, int count, IntFunction<String> nameFunction, boolean gateway) throws Exception {
+        List<CompletableFuture<Device>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = nameFunction.apply(i);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                Device device = new Device();
+                device.setName(name);
+                device.setType(DEVICE_TYPE);
+                if (gateway) {
+                    device.setAdditionalInfo(JacksonUtil.newObjectNode().put("gateway", true));
+                }
+                return restClient.saveDevice(device, accessToken(name));
+            }, executor));
+        }
+        List<Device> result = new ArrayList<>(count);
+        for (CompletableFuture<Device> future : futures) {
+            result.add(future.get());
+        }
+        return result;
+    }
+
+    private void connect() throws InterruptedException {
+        eventLoopGroup = new NioEventLoopGroup(Runtime.getRuntime().availableProcessors(), ThingsBoardThreadFactory.forName("load-test-mqtt"));
+        MqttQoS qos = MqttQoS.valueOf(config.getMqttQos());
+        for (Device device : devices) {
+            String name = device.getName();
+            TelemetryGenerator generator = new TelemetryGenerator(config.getExtraKeys());
+            clients.add(new SimulatedClient(createDeviceClient(name, qos), generator::nextDeviceMsg, 1));
+        }
+        for (Device gateway : gateways) {
+            String name = gateway.getName();
+            List<String> subDevices = subDeviceNames(name);
+            TelemetryGenerator generator = new TelemetryGenerator(config.getExtraKeys());
+            LoadTestClient client = new MqttLoadTestClient(eventLoopGroup, config.getMqttHost(), config.getMqttPort(), name, accessToken(name),
+                    MqttLoadTestClient.GATEWAY_TELEMETRY_TOPIC, qos);
+            clients.add(new SimulatedClient(client, () -> generator.nextGatewayMsg(subDevices), subDevices.size()));
+        }
+
+        log.info("Connecting {} clients", clients.size());
+        RateLimiter rateLimiter = RateLimiter.create(config.getConnectsPerSecond());
+        List<CompletableFuture<Void>> connectFutures = new ArrayList<>(clients.size());
+        for (SimulatedClient client : clients) {
+            rateLimiter.acquire();
+            connectFutures.add(client.client.connect().whenComplete((r, e) -> {
+                if (e == null) {
+                    stats.getConnected().incrementAndGet();
+                } else {
+                    stats.getConnectFailures().increment();
+                    log.debug("Failed to connect client", e);
+                }
+            }));
+        }
+        try {
+            CompletableFuture.allOf(connectFutures.toArray(new CompletableFuture[0])).get(config.getRequestTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.debug("Not all clients connected", e);
+        }
+        log.info("Connected {} clients, {} failed", stats.getConnected().get(), stats.getConnectFailures().sum());
+    }
+
+    private LoadTestClient createDeviceClient(String name, MqttQoS qos) {
+        switch (config.getProtocol()) {
+            case MQTT:
+                return new MqttLoadTestClient(eventLoopGroup, config.getMqttHost(), config.getMqttPort(), name, accessToken(name),
+                        MqttLoadTestClient.DEVICE_TELEMETRY_TOPIC, qos);
+            case HTTP:
+                return new HttpLoadTestClient(httpClient, config.getRestUrl(), accessToken(name), Duration.ofMillis(config.getRequestTimeoutMs()));
+            case COAP:
+                return new CoapLoadTestClient(config.getCoapHost(), config.getCoapPort(), accessToken(name), config.getRequestTimeoutMs());
+            default:
+                throw new IllegalArgumentException("Unsupported protocol: " + config.getProtocol());
+        }
+    }
+
+    private void startPublishing() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        publishScheduler = Executors.newScheduledThreadPool(threads, ThingsBoardThreadFactory.forName("load-test-publish"));
+        long periodUs = Math.max(1, (long) (TimeUnit.SECONDS.toMicros(1) / config.getMsgsPerSecond()));
+        for (SimulatedClient client : clients) {
+            // spread the messages of the clients evenly over the period
+            long initialDelayUs = ThreadLocalRandom.current().nextLong(periodUs);
+            publishScheduler.scheduleAtFixedRate(client::publish, initialDelayUs, periodUs, TimeUnit.MICROSECONDS);
+        }
+
+        monitorScheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("load-test-monitor"));
+        monitorScheduler.scheduleAtFixedRate(resourceSampler::sample, 0, 1, TimeUnit.SECONDS);
+        LoadTestStats.Counters[] previous = {stats.counters()};
+        monitorScheduler.scheduleAtFixedRate(() -> {
+            LoadTestStats.Counters current = stats.counters();
+            logProgress(previous[0], current);
+            previous[0] = current;
+        }, config.getReportIntervalSeconds(), config.getReportIntervalSeconds(), TimeUnit.SECONDS);
+    }
+
+    private void startLatencyMonitor() {
+        List<String> names = new ArrayList<>();
+        devices.forEach(device -> names.add(device.getName()));
+        gateways.forEach(gateway -> names.addAll(subDeviceNames(gateway.getName())));
+        Collections.shuffle(names);
+        // sub-devices of gateways are created by the first messages of the gateways, so they are resolved by name
+        List<DeviceId> sample = names.stream()
+                .limit(config.getLatencySampleSize())
+                .map(restClient::getTenantDevice)
+                .filter(Optional::isPresent)
+                .map(device -> device.get().getId())
+                .collect(Collectors.toList());
+        latencyMonitor = new LatencyMonitor(httpClient, config.getRestUrl(), restClient.getToken(), stats.getEndToEndLatency());
+        try {
+            latencyMonitor.start(sample);
+        } catch (Exception e) {
+            log.warn("Failed to subscribe to the telemetry updates, end-to-end latency is not measured", e);
+        }
+    }
+
+    private void logProgress(LoadTestStats.Counters previous, LoadTestStats.Counters current) {
+        LatencyHistogram.Snapshot ackLatency = stats.getAckLatency().snapshot();
+        LatencyHistogram.Snapshot endToEndLatency = stats.getEndToEndLatency().snapshot();
+        ResourceUsageSampler.Sample usage = resourceSampler.getLastSample();
+        log.info(String.format(Locale.ROOT, "sent: %.0f msg/s, acked: %.0f msg/s, failed: %d, skipped: %d, in flight: %d, " +
+                        "ack p99: %.1f ms, e2e p50/p99: %.1f/%.1f ms, server cpu: %.0f%%, server rss: %d MB, client cpu: %.0f%%",
+                current.sentPerSecond(previous), current.ackedPerSecond(previous), current.getFailed(), current.getSkipped(),
+                stats.getInFlight().get(), ackLatency.getPercentileMs(99), endToEndLatency.getPercentileMs(50), endToEndLatency.getPercentileMs(99),
+                usage.serverCpu, usage.serverRssKb / 1024, usage.clientCpu));
+    }
+
+    private void report(Instant startTime, LoadTestStats.Counters start, LoadTestStats.Counters end,
+                        LatencyHistogram.Snapshot ackLatency, LatencyHistogram.Snapshot endToEndLatency) throws IOException {
+        double targetRate = (config.getDevices() + (double) config.getGateways() * config.getDevicesPerGateway()) * config.getMsgsPerSecond();
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format(Locale.ROOT, "%n===== Load test %s: %s, %d devices, %d gateways x %d devices =====%n",
+                config.getRunId(), config.getProtocol(), config.getDevices(), config.getGateways(), config.getDevicesPerGateway()));
+        summary.append(String.format(Locale.ROOT, "Throughput:    %.0f msg/s acknowledged (target %.0f msg/s)%n", end.ackedPerSecond(start), targetRate));
+        summary.append(String.format(Locale.ROOT, "Messages:      %d sent, %d acknowledged, %d failed, %d skipped%n",
+                end.getSent() - start.getSent(), end.getAcked() - start.getAcked(), end.getFailed() - start.getFailed(), end.getSkipped() - start.getSkipped()));
+        summary.append(String.format(Locale.ROOT, "Ack latency:   p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                ackLatency.getPercentileMs(50), ackLatency.getPercentileMs(95), ackLatency.getPercentileMs(99), ackLatency.getMaxMs()));
+        summary.append(String.format(Locale.ROOT, "E2E latency:   p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms (%d samples)%n",
+                endToEndLatency.getPercentileMs(50), endToEndLatency.getPercentileMs(95), endToEndLatency.getPercentileMs(99),
+                endToEndLatency.getMaxMs(), endToEndLatency.getCount()));
+        if (resourceSampler.isServerMonitored()) {
+            summary.append(String.format(Locale.ROOT, "Server:        cpu avg %.0f%%, max %.0f%%, rss max %d MB%n",
+                    resourceSampler.getServerCpuAvg(), resourceSampler.getServerCpuMax(), resourceSampler.getServerRssMaxMb()));
+        }
+        summary.append(String.format(Locale.ROOT, "Load test:     cpu avg %.0f%%, max %.0f%%, heap max %d MB",
+                resourceSampler.getClientCpuAvg(), resourceSampler.getClientCpuMax(), resourceSampler.getClientHeapMaxMb()));
+        log.info(summary.toString());
+
+        if (config.getResultsFile() != null) {
+            appendResults(startTime, start, end, ackLatency, endToEndLatency, targetRate);
+        }
+    }
+
+    private void appendResults(Instant startTime, LoadTestStats.Counters start, LoadTestStats.Counters end,
+                               LatencyHistogram.Snapshot ackLatency, LatencyHistogram.Snapshot endToEndLatency, double targetRate) throws IOException {
+        Path path = Paths.get(config.getResultsFile());
+        boolean newFile = !Files.exists(path);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (newFile) {
+                writer.println(RESULTS_HEADER);
+            }
+            writer.println(String.format(Locale.ROOT, "%s,%s,%s,%d,%d,%d,%.0f,%d,%d,%d,%d,%d,%.1f,%.1f,%.1f,%d,%.1f,%.1f,%.1f,%.1f,%.0f,%.0f,%d,%.0f",
+                    config.getRunId(), startTime, config.getProtocol(), config.getDevices(), config.getGateways(), config.getDevicesPerGateway(),
+                    targetRate, config.getDurationSeconds(), end.getSent() - start.getSent(), end.getAcked() - start.getAcked(),
+                    end.getFailed() - start.getFailed(), end.getSkipped() - start.getSkipped(), end.ackedPerSecond(start),
+                    ackLatency.getPercentileMs(50), ackLatency.getPercentileMs(99), endToEndLatency.getCount(),
+                    endToEndLatency.getPercentileMs(50), endToEndLatency.getPercentileMs(95), endToEndLatency.getPercentileMs(99), endToEndLatency.getMaxMs(),
+                    resourceSampler.getServerCpuAvg(), resourceSampler.getServerCpuMax(), resourceSampler.getServerRssMaxMb(), resourceSampler.getClientCpuAvg()));
+        }
+        log.info("Results appended to {}", path.toAbsolutePath());
+    }
+
+    private void shutdown() {
+        if (publishScheduler != null) {
+            publishScheduler.shutdownNow();
+        }
+        if (monitorScheduler != null) {
+            monitorScheduler.shutdownNow();
+        }
+        if (latencyMonitor != null) {
+            latencyMonitor.stop();
+        }
+        clients.forEach(client -> client.client.disconnect());
+        if (eventLoopGroup != null) {
+            eventLoopGroup.shutdownGracefully();
+        }
+        if (!config.isKeepDevices()) {
+            log.info("Deleting the devices of the load test");
+            List<DeviceId> toDelete = new ArrayList<>();
+            devices.forEach(device -> toDelete.add(device.getId()));
+            gateways.forEach(gateway -> {
+                toDelete.add(gateway.getId());
+                subDeviceNames(gateway.getName()).forEach(name -> restClient.getTenantDevice(name).ifPresent(device -> toDelete.add(device.getId())));
+            });
+            for (DeviceId deviceId : toDelete) {
+                try {
+                    restClient.deleteDevice(deviceId);
+                } catch (Exception e) {
+                    log.warn("[{}] Failed to delete device", deviceId, e);
+                }
+            }
+        }
+        restClient.close();
+    }
+
+    private List<String> subDeviceNames(String gatewayName) {
+        return IntStream.range(0, config.getDevicesPerGateway())
+                .mapToObj(i -> gatewayName + "-device-" + i)
+                .collect(Collectors.toList());
+    }
+
+    private String deviceName(String suffix) {
+        return "LT-" + config.getRunId() + "-" + suffix;
+    }
+
+    private static String accessToken(String deviceName) {
+        return deviceName.toLowerCase(Locale.ROOT);
+    }
+
+    private class SimulatedClient {
+
+        private final LoadTestClient client;
+        private final Supplier<String> payloadSupplier;
+        private final int deviceMsgs;
+
+        SimulatedClient(LoadTestClient client, Supplier<String> payloadSupplier, int deviceMsgs) {
+            this.client = client;
+            this.payloadSupplier = payloadSupplier;
+            this.deviceMsgs = deviceMsgs;
+        }
+
+        void publish() {
+            if (stats.getInFlight().get() >= config.getMaxInFlight()) {
+                stats.getSkipped().add(deviceMsgs);
+                return;
+            }
+            stats.getInFlight().incrementAndGet();
+            stats.getSent().add(deviceMsgs);
+            long startNs = System.nanoTime();
+            try {
+                client.publish(payloadSupplier.get())
+                        .orTimeout(config.getRequestTimeoutMs(), TimeUnit.MILLISECONDS)
+                        .whenComplete((r, e) -> onPublished(startNs, e));
+            } catch (RuntimeException e) {
+                onPublished(startNs, e);
+            }
+        }
+
+        private void onPublished(long startNs, Throwable e) {
+            stats.getInFlight().decrementAndGet();
+            if (e == null) {
+                stats.getAcked().add(deviceMsgs);
+                stats.getAckLatency().record(System.nanoTime() - startNs, TimeUnit.NANOSECONDS);
+            } else {
+                stats.getFailed().add(deviceMsgs);
+                log.trace("Failed to publish msg", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools.loadtest;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the load test. Message counters are in device messages: a gateway message counts once per sub-device.
+ */
+@Getter
+public class LoadTestStats {
+
+    private final AtomicInteger connected = new AtomicInteger();
+    private final LongAdder connectFailures = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    // not sent because too many messages were waiting for the acknowledgement
+    private final LongAdder skipped = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // from the publish until the acknowledgement of the transport
+    private final LatencyHistogram ackLatency = new LatencyHistogram();
+    // from the publish until the value is pushed to the WebSocket subscription
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+
+    public Counters counters() {
+        return new Counters(System.nanoTime(), sent.sum(), acked.sum(), failed.sum(), skipped.sum());
+    }
+
+    public void resetLatencies() {
+        ackLatency.reset();
+        endToEndLatency.reset();
+    }
+
+    @Getter
+    public static class Counters {
+        private final long timeNs;
+        private final long sent;
+        private final long acked;
+        private final long failed;
+        private final long skipped;
+
+        Counters(long timeNs, long sent, long acked, long failed, long skipped) {
+            this.timeNs = timeNs;
+            this.sent = sent;
+            this.acked = acked;
+            this.failed = failed;
+            this.skipped = skipped;
+        }
+
+        public double ackedPerSecond(Counters previous) {
+            return ratePerSecond(acked - previous.acked, timeNs - previous.timeNs);
+        }
+
+        public double sentPerSecond(Counters previous) {
+            return ratePerSecond(sent - previous.sent, timeNs - previous.timeNs);
+        }
+
+        private static double ratePerSecond(long count, long periodNs) {
+            return periodNs > 0 ? count * 1_000_000_000.0 / periodNs : 0;
+        }
+    }
+
+}
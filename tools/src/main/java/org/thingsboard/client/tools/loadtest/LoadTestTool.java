@@ -0,0 +1,162 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools.loadtest;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.util.Locale;
+
+public class LoadTestTool {
+
+    public static void main(String[] args) {
+        CommandLine cmd = parseArgs(args);
+
+        try {
+            LoadTestConfig config = new LoadTestConfig();
+            if (cmd.hasOption("restUrl")) {
+                config.setRestUrl(cmd.getOptionValue("restUrl"));
+            }
+            if (cmd.hasOption("username")) {
+                config.setUsername(cmd.getOptionValue("username"));
+            }
+            if (cmd.hasOption("password")) {
+                config.setPassword(cmd.getOptionValue("password"));
+            }
+            if (cmd.hasOption("protocol")) {
+                config.setProtocol(LoadTestProtocol.valueOf(cmd.getOptionValue("protocol").toUpperCase(Locale.ROOT)));
+            }
+            if (cmd.hasOption("mqttHost")) {
+                config.setMqttHost(cmd.getOptionValue("mqttHost"));
+            }
+            if (cmd.hasOption("mqttPort")) {
+                config.setMqttPort(Integer.parseInt(cmd.getOptionValue("mqttPort")));
+            }
+            if (cmd.hasOption("mqttQos")) {
+                config.setMqttQos(Integer.parseInt(cmd.getOptionValue("mqttQos")));
+            }
+            if (cmd.hasOption("coapHost")) {
+                config.setCoapHost(cmd.getOptionValue("coapHost"));
+            }
+            if (cmd.hasOption("coapPort")) {
+                config.setCoapPort(Integer.parseInt(cmd.getOptionValue("coapPort")));
+            }
+            if (cmd.hasOption("devices")) {
+                config.setDevices(Integer.parseInt(cmd.getOptionValue("devices")));
+            }
+            if (cmd.hasOption("gateways")) {
+                config.setGateways(Integer.parseInt(cmd.getOptionValue("gateways")));
+            }
+            if (cmd.hasOption("devicesPerGateway")) {
+                config.setDevicesPerGateway(Integer.parseInt(cmd.getOptionValue("devicesPerGateway")));
+            }
+            if (cmd.hasOption("rate")) {
+                config.setMsgsPerSecond(Double.parseDouble(cmd.getOptionValue("rate")));
+            }
+            if (cmd.hasOption("extraKeys")) {
+                config.setExtraKeys(Integer.parseInt(cmd.getOptionValue("extraKeys")));
+            }
+            if (cmd.hasOption("connectRate")) {
+                config.setConnectsPerSecond(Integer.parseInt(cmd.getOptionValue("connectRate")));
+            }
+            if (cmd.hasOption("warmup")) {
+                config.setWarmupSeconds(Integer.parseInt(cmd.getOptionValue("warmup")));
+            }
+            if (cmd.hasOption("duration")) {
+                config.setDurationSeconds(Integer.parseInt(cmd.getOptionValue("duration")));
+            }
+            if (cmd.hasOption("reportInterval")) {
+                config.setReportIntervalSeconds(Integer.parseInt(cmd.getOptionValue("reportInterval")));
+            }
+            if (cmd.hasOption("maxInFlight")) {
+                config.setMaxInFlight(Integer.parseInt(cmd.getOptionValue("maxInFlight")));
+            }
+            if (cmd.hasOption("timeout")) {
+                config.setRequestTimeoutMs(Long.parseLong(cmd.getOptionValue("timeout")));
+            }
+            if (cmd.hasOption("latencySample")) {
+                config.setLatencySampleSize(Integer.parseInt(cmd.getOptionValue("latencySample")));
+            }
+            if (cmd.hasOption("serverPid")) {
+                config.setServerPid(Integer.parseInt(cmd.getOptionValue("serverPid")));
+            }
+            if (cmd.hasOption("results")) {
+                config.setResultsFile(cmd.getOptionValue("results"));
+            }
+            if (cmd.hasOption("runId")) {
+                config.setRunId(cmd.getOptionValue("runId"));
+            }
+            config.setKeepDevices(cmd.hasOption("keepDevices"));
+            if (config.getMsgsPerSecond() <= 0) {
+                throw new IllegalArgumentException("Message rate should be positive");
+            }
+
+            new LoadTestRunner(config).run();
+        } catch (Throwable th) {
+            th.printStackTrace();
+            throw new IllegalStateException("failed", th);
+        }
+        System.exit(0);
+    }
+
+    private static CommandLine parseArgs(String[] args) {
+        Options options = new Options();
+        options.addOption(new Option("url", "restUrl", true, "ThingsBoard base URL, also used by the HTTP devices (default: http://localhost:8080)"));
+        options.addOption(new Option("u", "username", true, "tenant administrator username (default: tenant@thingsboard.org)"));
+        options.addOption(new Option("p", "password", true, "tenant administrator password (default: tenant)"));
+        options.addOption(new Option("protocol", "protocol", true, "protocol of the devices: MQTT, HTTP or COAP (default: MQTT)"));
+        options.addOption(new Option("mqttHost", "mqttHost", true, "MQTT transport host (default: localhost)"));
+        options.addOption(new Option("mqttPort", "mqttPort", true, "MQTT transport port (default: 1883)"));
+        options.addOption(new Option("mqttQos", "mqttQos", true, "QoS of the MQTT messages (default: 1)"));
+        options.addOption(new Option("coapHost", "coapHost", true, "CoAP transport host (default: localhost)"));
+        options.addOption(new Option("coapPort", "coapPort", true, "CoAP transport port (default: 5683)"));
+        options.addOption(new Option("d", "devices", true, "number of devices (default: 100)"));
+        options.addOption(new Option("g", "gateways", true, "number of MQTT gateways (default: 0)"));
+        options.addOption(new Option("dpg", "devicesPerGateway", true, "number of devices behind each gateway (default: 10)"));
+        options.addOption(new Option("r", "rate", true, "messages per second of each device or gateway (default: 1)"));
+        options.addOption(new Option("k", "extraKeys", true, "number of additional numeric keys in every message (default: 0)"));
+        options.addOption(new Option("cr", "connectRate", true, "new connections per second (default: 100)"));
+        options.addOption(new Option("w", "warmup", true, "warm-up period in seconds, not included in the results (default: 30)"));
+        options.addOption(new Option("t", "duration", true, "measurement period in seconds (default: 120)"));
+        options.addOption(new Option("ri", "reportInterval", true, "progress report interval in seconds (default: 10)"));
+        options.addOption(new Option("mif", "maxInFlight", true, "max messages waiting for the acknowledgement, the following ones are skipped (default: 10000)"));
+        options.addOption(new Option("to", "timeout", true, "connect and publish timeout in milliseconds (default: 10000)"));
+        options.addOption(new Option("ls", "latencySample", true, "number of devices subscribed to measure the end-to-end latency (default: 20)"));
+        options.addOption(new Option("pid", "serverPid", true, "pid of the local ThingsBoard process to report its CPU and memory usage"));
+        options.addOption(new Option("o", "results", true, "CSV file the results are appended to, to compare the runs"));
+        options.addOption(new Option("id", "runId", true, "run identifier used in the device names and the results"));
+        options.addOption(new Option("keep", "keepDevices", false, "do not delete the devices after the test"));
+
+        HelpFormatter formatter = new HelpFormatter();
+        CommandLineParser parser = new BasicParser();
+
+        try {
+            return parser.parse(options, args);
+        } catch (ParseException e) {
+            System.out.println(e.getMessage());
+            formatter.printHelp("load-test", options);
+
+            System.exit(1);
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools.loadtest;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.concurrent.Future;
+import org.thingsboard.mqtt.MqttClient;
+import org.thingsboard.mqtt.MqttClientConfig;
+import org.thingsboard.mqtt.MqttConnectResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+public class MqttLoadTestClient implements LoadTestClient {
+
+    public static final String DEVICE_TELEMETRY_TOPIC = "v1/devices/me/telemetry";
+    public static final String GATEWAY_TELEMETRY_TOPIC = "v1/gateway/telemetry";
+
+    private final MqttClient client;
+    private final String host;
+    private final int port;
+    private final String topic;
+    private final MqttQoS qos;
+
+    public MqttLoadTestClient(EventLoopGroup eventLoop, String host, int port, String clientId, String accessToken, String topic, MqttQoS qos) {
+        MqttClientConfig config = new MqttClientConfig();
+        config.setClientId(clientId);
+        config.setUsername(accessToken);
+        config.setCleanSession(true);
+        config.setReconnect(false);
+        this.client = MqttClient.create(config, null);
+        this.client.setEventLoop(eventLoop);
+        this.host = host;
+        this.port = port;
+        this.topic = topic;
+        this.qos = qos;
+    }
+
+    @Override
+    public CompletableFuture<Void> connect() {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Future<MqttConnectResult> connectFuture = client.connect(host, port);
+        connectFuture.addListener(f -> {
+            if (!f.isSuccess()) {
+                result.completeExceptionally(f.cause());
+            } else if (!connectFuture.getNow().isSuccess()) {
+                result.completeExceptionally(new IllegalStateException("Connection refused: " + connectFuture.getNow().getReturnCode()));
+            } else {
+                result.complete(null);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(String payload) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        client.publish(topic, Unpooled.wrappedBuffer(payload.getBytes(StandardCharsets.UTF_8)), qos).addListener(f -> {
+            if (f.isSuccess()) {
+                result.complete(null);
+            } else {
+                result.completeExceptionally(f.cause());
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void disconnect() {
+        client.disconnect();
+    }
+
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Samples CPU and memory usage of the load test itself and, on Linux, of the server process given by its pid.
+ * The load generator competes with the server for the CPU when both run on the same host, so both are reported.
+ */
+@Slf4j
+public class ResourceUsageSampler {
+
+    // USER_HZ, the unit of the CPU times in /proc/[pid]/stat, is 100 on all the mainstream Linux platforms
+    private static final double CLOCK_TICKS_PER_SECOND = 100.0;
+
+    private final Integer serverPid;
+    private final com.sun.management.OperatingSystemMXBean osBean;
+
+    private long lastSampleNs;
+    private long lastServerCpuTicks = -1;
+    private long lastClientCpuNs;
+
+    private int samples;
+    private double serverCpuSum;
+    private double serverCpuMax;
+    private long serverRssMaxKb;
+    private double clientCpuSum;
+    private double clientCpuMax;
+    private long clientHeapMaxBytes;
+
+    private volatile Sample lastSample = new Sample(0, 0, 0, 0);
+
+    public ResourceUsageSampler(Integer serverPid) {
+        this.serverPid = serverPid;
+        this.osBean = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    }
+
+    /**
+     * CPU usage is reported in percent of a single core, so 400% means that 4 cores were busy.
+     */
+    public synchronized void sample() {
+        long now = System.nanoTime();
+        long clientCpuNs = osBean.getProcessCpuTime();
+        long serverCpuTicks = readServerCpuTicks();
+        if (lastSampleNs != 0) {
+            double periodSec = (now - lastSampleNs) / 1_000_000_000.0;
+            double clientCpu = (clientCpuNs - lastClientCpuNs) / 1_000_000_000.0 / periodSec * 100;
+            double serverCpu = serverCpuTicks >= 0 && lastServerCpuTicks >= 0 ?
+                    (serverCpuTicks - lastServerCpuTicks) / CLOCK_TICKS_PER_SECOND / periodSec * 100 : 0;
+            long serverRssKb = readServerRssKb();
+            long clientHeap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+
+            samples++;
+            serverCpuSum += serverCpu;
+            serverCpuMax = Math.max(serverCpuMax, serverCpu);
+            serverRssMaxKb = Math.max(serverRssMaxKb, serverRssKb);
+            clientCpuSum += clientCpu;
+            clientCpuMax = Math.max(clientCpuMax, clientCpu);
+            clientHeapMaxBytes = Math.max(clientHeapMaxBytes, clientHeap);
+            lastSample = new Sample(serverCpu, serverRssKb, clientCpu, clientHeap);
+        }
+        lastSampleNs = now;
+        lastClientCpuNs = clientCpuNs;
+        lastServerCpuTicks = serverCpuTicks;
+    }
+
+    public synchronized void reset() {
+        samples = 0;
+        serverCpuSum = 0;
+        serverCpuMax = 0;
+        serverRssMaxKb = 0;
+        clientCpuSum = 0;
+        clientCpuMax = 0;
+        clientHeapMaxBytes = 0;
+    }
+
+    public Sample getLastSample() {
+        return lastSample;
+    }
+
+    public synchronized double getServerCpuAvg() {
+        return samples > 0 ? serverCpuSum / samples : 0;
+    }
+
+    public synchronized double getServerCpuMax() {
+        return serverCpuMax;
+    }
+
+    public synchronized long getServerRssMaxMb() {
+        return serverRssMaxKb / 1024;
+    }
+
+    public synchronized double getClientCpuAvg() {
+        return samples > 0 ? clientCpuSum / samples : 0;
+    }
+
+    public synchronized double getClientCpuMax() {
+        return clientCpuMax;
+    }
+
+    public synchronized long getClientHeapMaxMb() {
+        return clientHeapMaxBytes / 1024 / 1024;
+    }
+
+    public boolean isServerMonitored() {
+        return serverPid != null;
+    }
+
+    private long readServerCpuTicks() {
+        if (serverPid == null) {
+            return -1;
+        }
+        try {
+            String stat = Files.readString(procFile("stat"));
+            // the process name in parentheses may contain spaces, so the fields are counted from its end
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            // utime and stime are the 14th and 15th fields of the whole line
+            return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+        } catch (IOException | RuntimeException e) {
+            log.debug("[{}] Failed to read CPU usage of the server process", serverPid, e);
+            return -1;
+        }
+    }
+
+    private long readServerRssKb() {
+        if (serverPid == null) {
+            return 0;
+        }
+        try {
+            List<String> lines = Files.readAllLines(procFile("status"));
+            for (String line : lines) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("[{}] Failed to read memory usage of the server process", serverPid, e);
+        }
+        return 0;
+    }
+
+    private Path procFile(String name) {
+        return Paths.get("/proc", serverPid.toString(), name);
+    }
+
+    public static class Sample {
+        final double serverCpu;
+        final long serverRssKb;
+        final double clientCpu;
+        final long clientHeapBytes;
+
+        Sample(double serverCpu, long serverRssKb, double clientCpu, long clientHeapBytes) {
+            this.serverCpu = serverCpu;
+            this.serverRssKb = serverRssKb;
+            this.clientCpu = clientCpu;
+            this.clientHeapBytes = clientHeapBytes;
+        }
+    }
+
+}
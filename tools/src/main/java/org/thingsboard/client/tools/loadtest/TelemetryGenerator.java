@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools.loadtest;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.thingsboard.common.util.JacksonUtil;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates telemetry of a simulated sensor: values drift slowly from the previous ones instead of being random noise,
+ * so the payloads are compressed and deduplicated by the server the same way as the real ones.
+ * Every message carries the time it was sent in the {@value #SENT_TS_KEY} key to measure the end-to-end latency.
+ */
+public class TelemetryGenerator {
+
+    public static final String SENT_TS_KEY = "sentTs";
+
+    private static final String[] STATUSES = {"OK", "OK", "OK", "OK", "WARNING", "MAINTENANCE"};
+
+    private final int extraKeys;
+    private double temperature;
+    private double humidity;
+    private double battery;
+    private long counter;
+
+    public TelemetryGenerator(int extraKeys) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.extraKeys = extraKeys;
+        this.temperature = 18 + random.nextDouble() * 10;
+        this.humidity = 40 + random.nextDouble() * 30;
+        this.battery = 50 + random.nextDouble() * 50;
+    }
+
+    public synchronized String nextDeviceMsg() {
+        return JacksonUtil.toString(nextValues(System.currentTimeMillis()));
+    }
+
+    /**
+     * Message of the gateway telemetry API with one entry for every sub-device.
+     */
+    public synchronized String nextGatewayMsg(List<String> deviceNames) {
+        long ts = System.currentTimeMillis();
+        ObjectNode msg = JacksonUtil.newObjectNode();
+        for (String deviceName : deviceNames) {
+            ObjectNode entry = JacksonUtil.newObjectNode();
+            entry.put("ts", ts);
+            entry.set("values", nextValues(ts));
+            ArrayNode entries = msg.putArray(deviceName);
+            entries.add(entry);
+        }
+        return JacksonUtil.toString(msg);
+    }
+
+    private ObjectNode nextValues(long ts) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        temperature = clamp(temperature + random.nextGaussian() * 0.2, -40, 85);
+        humidity = clamp(humidity + random.nextGaussian() * 0.5, 0, 100);
+        battery = battery > 1 ? battery - random.nextDouble() * 0.01 : 100;
+        counter++;
+
+        ObjectNode values = JacksonUtil.newObjectNode();
+        values.put(SENT_TS_KEY, ts);
+        values.put("temperature", round(temperature));
+        values.put("humidity", round(humidity));
+        values.put("battery", round(battery));
+        values.put("counter", counter);
+        values.put("doorOpen", random.nextInt(20) == 0);
+        values.put("status", STATUSES[random.nextInt(STATUSES.length)]);
+        for (int i = 0; i < extraKeys; i++) {
+            values.put("key" + i, round(random.nextDouble() * 1000));
+        }
+        return values;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+}
@@ -0,0 +1,171 @@
+#!/bin/bash
+#
+# Copyright © 2016-2021 The Thingsboard Authors
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+usage() {
+    echo "This script starts a local ThingsBoard monolith with the in-memory queue and an HSQLDB or PostgreSQL database,"
+    echo "runs the load test against it and stops the server."
+    echo "usage: ./load-test.sh -j file -t file [-d database] [-h file] [-i] [-- load test options]"
+    echo "    -j | --jar file          ThingsBoard boot jar, e.g. application/target/thingsboard-*-boot.jar"
+    echo "    -t | --tools file        Tools jar with dependencies, see 'mvn compile assembly:single' in the tools module"
+    echo "    -d | --db database       hsqldb or postgres. Defaults to hsqldb"
+    echo "    -h | --hsqldb file       HSQLDB jar, it is not packaged into the ThingsBoard jar. Required for hsqldb"
+    echo "    -i | --install           Install the schema and the demo data. Always done for hsqldb, that starts with an empty database"
+    echo "    --help                   Display this help and exit"
+    echo "Options after '--' are passed to the load test, run it with --help to list them."
+    echo "PostgreSQL connection is configured with the SPRING_DATASOURCE_URL, SPRING_DATASOURCE_USERNAME and SPRING_DATASOURCE_PASSWORD variables."
+}
+
+SCRIPT_DIR=$(cd "$(dirname "$0")" && pwd)
+DB=hsqldb
+INSTALL=false
+
+while [[ $# -gt 0 ]]
+do
+key="$1"
+
+case $key in
+    -j|--jar)
+    TB_JAR="$2"
+    shift
+    ;;
+    -t|--tools)
+    TOOLS_JAR="$2"
+    shift
+    ;;
+    -d|--db)
+    DB="$2"
+    shift
+    ;;
+    -h|--hsqldb)
+    HSQLDB_JAR="$2"
+    shift
+    ;;
+    -i|--install)
+    INSTALL=true
+    ;;
+    --help)
+    usage
+    exit 0
+    ;;
+    --)
+    shift
+    break
+    ;;
+    *)
+    echo "Unknown option: $key"
+    usage
+    exit 1
+    ;;
+esac
+shift
+done
+
+if [ -z "$TB_JAR" ] || [ -z "$TOOLS_JAR" ]; then
+    usage
+    exit 1
+fi
+
+DATA_DIR=$(mktemp -d)
+export TB_QUEUE_TYPE=in-memory
+export DATABASE_TS_TYPE=sql
+export DATABASE_TS_LATEST_TYPE=sql
+export INSTALL_DATA_DIR=${INSTALL_DATA_DIR:-$SCRIPT_DIR/../../../../application/src/main/data}
+export LOADER_PATH=${LOADER_PATH:-}
+
+case $DB in
+    hsqldb)
+    if [ -z "$HSQLDB_JAR" ]; then
+        echo "HSQLDB jar is required for the hsqldb database"
+        exit 1
+    fi
+    export SPRING_JPA_DATABASE_PLATFORM=org.hibernate.dialect.HSQLDialect
+    export SPRING_DRIVER_CLASS_NAME=org.hsqldb.jdbc.JDBCDriver
+    export SPRING_DATASOURCE_URL="jdbc:hsqldb:file:${DATA_DIR}/db;sql.enforce_size=false;sql.syntax_pgs=true"
+    export SPRING_DATASOURCE_USERNAME=sa
+    export SPRING_DATASOURCE_PASSWORD=
+    export LOADER_PATH="$HSQLDB_JAR,$LOADER_PATH"
+    INSTALL=true
+    ;;
+    postgres)
+    ;;
+    *)
+    echo "Unsupported database: $DB"
+    exit 1
+    ;;
+esac
+
+cleanup() {
+    if [ -n "$SERVER_PID" ]; then
+        echo "Stopping ThingsBoard ..."
+        kill "$SERVER_PID" 2>/dev/null
+        wait "$SERVER_PID" 2>/dev/null
+    fi
+    if [ "$KEEP_DATA" == "true" ]; then
+        echo "Logs are kept in $DATA_DIR"
+    else
+        rm -rf "$DATA_DIR"
+    fi
+}
+trap cleanup EXIT
+
+if [ "$INSTALL" == "true" ]; then
+    echo "Installing ThingsBoard ..."
+    java -cp "$TB_JAR" $JAVA_OPTS -Dloader.main=org.thingsboard.server.ThingsboardInstallApplication \
+                    -Dinstall.data_dir="$INSTALL_DATA_DIR" \
+                    -Dinstall.load_demo=true \
+                    -Dspring.jpa.hibernate.ddl-auto=none \
+                    -Dinstall.upgrade=false \
+                    org.springframework.boot.loader.PropertiesLauncher > "$DATA_DIR/install.log" 2>&1
+    if [ $? -ne 0 ]; then
+        echo "ThingsBoard installation failed"
+        KEEP_DATA=true
+        exit 1
+    fi
+fi
+
+echo "Starting ThingsBoard ..."
+java -cp "$TB_JAR" $JAVA_OPTS -Dloader.main=org.thingsboard.server.ThingsboardServerApplication \
+                    -Dinstall.data_dir="$INSTALL_DATA_DIR" \
+                    -Dspring.jpa.hibernate.ddl-auto=none \
+                    org.springframework.boot.loader.PropertiesLauncher > "$DATA_DIR/thingsboard.log" 2>&1 &
+SERVER_PID=$!
+
+HTTP_PORT=${HTTP_BIND_PORT:-8080}
+STARTED=false
+for i in $(seq 1 300); do
+    if ! kill -0 "$SERVER_PID" 2>/dev/null; then
+        echo "ThingsBoard failed to start:"
+        tail -n 50 "$DATA_DIR/thingsboard.log"
+        SERVER_PID=
+        KEEP_DATA=true
+        exit 1
+    fi
+    if [ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$HTTP_PORT/api/noauth/oauth2Clients" -X POST)" == "200" ]; then
+        STARTED=true
+        break
+    fi
+    sleep 1
+done
+if [ "$STARTED" != "true" ]; then
+    echo "ThingsBoard did not start in time"
+    KEEP_DATA=true
+    exit 1
+fi
+echo "ThingsBoard started, pid $SERVER_PID"
+
+java $LOAD_TEST_JAVA_OPTS -cp "$TOOLS_JAR" org.thingsboard.client.tools.loadtest.LoadTestTool \
+    --restUrl "http://localhost:$HTTP_PORT" --serverPid "$SERVER_PID" "$@"
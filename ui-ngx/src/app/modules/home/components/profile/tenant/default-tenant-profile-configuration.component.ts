@@ -73,6 +73,7 @@ export class DefaultTenantProfileConfigurationComponent implements ControlValueA
       maxJSExecutions: [null, [Validators.required, Validators.min(0)]],
       maxDPStorageDays: [null, [Validators.required, Validators.min(0)]],
       maxRuleNodeExecutionsPerMessage: [null, [Validators.required, Validators.min(0)]],
+      ruleEngineDispatcherWeight: [null, [Validators.required, Validators.min(0)]],
       maxEmails: [null, [Validators.required, Validators.min(0)]],
       maxSms: [null, [Validators.required, Validators.min(0)]],
       maxCreatedAlarms: [null, [Validators.required, Validators.min(0)]],
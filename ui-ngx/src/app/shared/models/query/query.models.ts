@@ -699,6 +699,7 @@ export interface EntityDataPageLink {
   textSearch?: string;
   sortOrder?: EntityDataSortOrder;
   dynamic?: boolean;
+  afterEntityId?: string;
 }
 
 export interface AlarmDataPageLink extends EntityDataPageLink {
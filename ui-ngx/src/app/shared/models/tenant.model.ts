@@ -47,6 +47,7 @@ export interface DefaultTenantProfileConfiguration {
   maxJSExecutions: number;
   maxDPStorageDays: number;
   maxRuleNodeExecutionsPerMessage: number;
+  ruleEngineDispatcherWeight: number;
   maxEmails: number;
   maxSms: number;
   maxCreatedAlarms: number;
@@ -82,6 +83,7 @@ export function createTenantProfileConfiguration(type: TenantProfileType): Tenan
           maxJSExecutions: 0,
           maxDPStorageDays: 0,
           maxRuleNodeExecutionsPerMessage: 0,
+          ruleEngineDispatcherWeight: 0,
           maxEmails: 0,
           maxSms: 0,
           maxCreatedAlarms: 0,